@@ -2,6 +2,7 @@ package com.levels.backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.info.Info;
@@ -13,6 +14,7 @@ import io.swagger.v3.oas.annotations.info.Info;
  * Es el punto de inicio de la inyección de dependencias, controladores, y servicios.
  */
 @SpringBootApplication
+@EnableScheduling // Tareas periódicas (ej: barrido de reservas de stock vencidas)
 @OpenAPIDefinition(info = @Info(title = "LevelUp Store API", version = "1.0", description = "Documentación de la tienda de videojuegos"))
 public class BackendApplication {
 
@@ -23,6 +23,8 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import com.levels.backend.security.JwtAuthFilter;
+import com.levels.backend.service.CarritoAnonimoService;
+import com.levels.backend.service.RespuestasIdempotentes;
 
 /**
  * CONFIGURACIÓN DE SEGURIDAD (Spring Security 6)
@@ -66,12 +68,22 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.GET, "/api/categorias/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/blog/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/resenas/**").permitAll()
+
+                // Carrito anónimo (viaja firmado en una cookie; no toca la BD hasta el login)
+                .requestMatchers("/api/carrito/anonimo/**").permitAll()
                 
                 // Documentación Swagger/OpenAPI
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
 
                 // --- B. RUTAS DE CLIENTE (Requieren Login) ---
                 
+                // Exportación de todas las ventas (va antes de "/api/ordenes/{id}", que también la cubriría)
+                .requestMatchers(HttpMethod.GET, "/api/ordenes/exportar").hasAnyRole("ADMIN", "VENDEDOR")
+                // Estadísticas del Dashboard (mismo motivo: "/api/ordenes/{id}" también cubriría "/stats")
+                .requestMatchers(HttpMethod.GET, "/api/ordenes/stats", "/api/ordenes/stats/**").hasAnyRole("ADMIN", "VENDEDOR")
+                .requestMatchers(HttpMethod.POST, "/api/ordenes/stats/conciliar").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET, "/api/ordenes/analytics/**").hasAnyRole("ADMIN", "VENDEDOR")
+
                 // Ver detalle de UNA orden (Mi comprobante)
                 // Permitimos 'authenticated()' para que cualquier usuario vea SU propia orden.
                 // (Nota: Idealmente el controlador debe verificar que la orden pertenezca al usuario).
@@ -84,7 +96,6 @@ public class SecurityConfig {
                 
                 // Ver TODAS las ventas del sistema (Dashboard)
                 .requestMatchers(HttpMethod.GET, "/api/ordenes").hasAnyRole("ADMIN", "VENDEDOR") 
-                .requestMatchers(HttpMethod.GET, "/api/ordenes/stats").hasAnyRole("ADMIN", "VENDEDOR")
 
                 // Gestión de Inventario (Solo el Jefe puede borrar/crear)
                 .requestMatchers(HttpMethod.POST, "/api/productos/**").hasRole("ADMIN")
@@ -94,6 +105,9 @@ public class SecurityConfig {
                 // Gestión del Blog
                 .requestMatchers("/api/blog/**").hasRole("ADMIN")
 
+                // Métricas internas (cachés, contadores)
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
+
                 // --- D. TODO LO DEMÁS ---
                 // Cualquier otra ruta no listada arriba requiere al menos estar logueado.
                 .anyRequest().authenticated()
@@ -124,10 +138,14 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000")); 
         
         // Métodos HTTP permitidos
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         
         // Cabeceras permitidas (Authorization es vital para enviar el Token)
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type",
+                CarritoAnonimoService.CABECERA, RespuestasIdempotentes.CABECERA));
+
+        // Cabeceras de respuesta que el Frontend puede leer (carrito anónimo renovado, respuesta repetida)
+        configuration.setExposedHeaders(Arrays.asList(CarritoAnonimoService.CABECERA, RespuestasIdempotentes.CABECERA_REPETIDA));
         
         configuration.setAllowCredentials(true);
 
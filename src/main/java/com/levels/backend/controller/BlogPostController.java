@@ -3,6 +3,7 @@ package com.levels.backend.controller;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,6 +13,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import com.levels.backend.model.BlogPost;
 import com.levels.backend.repository.BlogPostRepository;
@@ -37,12 +39,21 @@ public class BlogPostController {
     @Autowired
     private BlogPostRepository blogRepository;
 
+    // Caché HTTP: segundos que el navegador/CDN puede reutilizar el listado
+    @Value("${levelup.http.max-age.blog:60}")
+    private long maxAgeBlog;
+
     /**
      * 1. LISTAR NOTICIAS (GET /api/blog)
      * Devuelve la lista completa de publicaciones.
+     * * CACHÉ HTTP: Responde 304 si el ETag enviado (If-None-Match) sigue vigente.
      */
     @GetMapping
-    public List<BlogPost> listar() {
+    public List<BlogPost> listar(ServletWebRequest request) {
+        if (CacheHttp.noModificado(request, "blog", blogService.versionDatos(),
+                blogService.ultimaModificacion(), maxAgeBlog)) {
+            return null; // 304 Not Modified
+        }
         return blogService.listarNoticias();
     }
 
@@ -0,0 +1,45 @@
+package com.levels.backend.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * UTILIDAD: CACHÉ HTTP (ETag + GET Condicional)
+ * ----------------------------------------------------
+ * Permite que el navegador (o un CDN) reutilice respuestas que no han cambiado.
+ * * El ETag se deriva de la VERSIÓN de los datos que mantiene cada servicio: si el cliente
+ * envía 'If-None-Match' con el ETag vigente, respondemos 304 Not Modified SIN consultar
+ * la BD ni serializar JSON.
+ */
+final class CacheHttp {
+
+    private CacheHttp() {}
+
+    /**
+     * Evalúa la petición condicional y escribe las cabeceras de caché.
+     * @param request Petición actual (inyectada por Spring en el controlador).
+     * @param recurso Nombre corto del recurso (ej: "productos").
+     * @param version Versión actual de los datos (cambia con cada escritura).
+     * @param ultimaModificacion Instante (ms) del último cambio, para 'Last-Modified'.
+     * @param maxAgeSegundos Tiempo que el cliente puede reutilizar la respuesta sin preguntar.
+     * @return true si el cliente ya tiene la versión vigente: el controlador debe devolver null (304).
+     */
+    static boolean noModificado(ServletWebRequest request, String recurso, long version,
+            long ultimaModificacion, long maxAgeSegundos) {
+
+        // Los parámetros (categoría, cursor, orden...) forman parte de la identidad de la respuesta
+        String query = request.getRequest().getQueryString();
+        String etag = "\"" + recurso + "-" + version
+                + (query != null ? "-" + Integer.toHexString(query.hashCode()) : "") + "\"";
+
+        // Cache-Control explícito: también evita que Spring Security lo reemplace por 'no-store'
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(maxAgeSegundos, TimeUnit.SECONDS).cachePublic().getHeaderValue());
+
+        // Compara If-None-Match / If-Modified-Since, y escribe ETag y Last-Modified en la respuesta
+        return request.checkNotModified(etag, ultimaModificacion);
+    }
+}
@@ -0,0 +1,117 @@
+package com.levels.backend.controller;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CookieValue;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.levels.backend.service.CarritoAnonimoService;
+
+/**
+ * CONTROLADOR: CARRITO ANÓNIMO (visitantes sin sesión)
+ * ----------------------------------------------------
+ * Mismas operaciones que el carrito normal, pero el contenido viaja firmado en la cookie
+ * 'carrito_anonimo' (o en la cabecera X-Carrito-Anonimo, para clientes sin cookies).
+ * * Cada respuesta devuelve el token renovado en el body, en la cabecera y en la cookie.
+ * * Al iniciar sesión (/api/usuarios/login) su contenido pasa al carrito del usuario.
+ */
+@RestController
+@RequestMapping("/api/carrito/anonimo")
+@CrossOrigin(origins = "*")
+public class CarritoAnonimoController {
+
+    @Autowired
+    private CarritoAnonimoService carritoAnonimoService;
+
+    @Value("${levelup.carrito-anonimo.dias-vigencia:30}")
+    private long diasVigencia;
+
+    /**
+     * 1. VER EL CARRITO
+     * Método: GET /api/carrito/anonimo
+     */
+    @GetMapping
+    public ResponseEntity<?> ver(@RequestHeader(value = CarritoAnonimoService.CABECERA, required = false) String cabecera,
+                                 @CookieValue(value = CarritoAnonimoService.COOKIE, required = false) String cookie) {
+        return ResponseEntity.ok(carritoAnonimoService.vista(cabecera != null ? cabecera : cookie));
+    }
+
+    /**
+     * 2. AGREGAR
+     * Método: POST /api/carrito/anonimo/agregar
+     * Body JSON: { "productoId": 5, "cantidad": 2 }
+     */
+    @PostMapping("/agregar")
+    public ResponseEntity<?> agregar(@RequestHeader(value = CarritoAnonimoService.CABECERA, required = false) String cabecera,
+                                     @CookieValue(value = CarritoAnonimoService.COOKIE, required = false) String cookie,
+                                     @RequestBody Map<String, Object> payload) {
+        try {
+            Long productoId = ((Number) payload.get("productoId")).longValue();
+            Integer cantidad = ((Number) payload.get("cantidad")).intValue();
+            return responder(carritoAnonimoService.agregar(cabecera != null ? cabecera : cookie, productoId, cantidad));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * 3. CAMBIAR CANTIDAD
+     * Método: PUT /api/carrito/anonimo/producto/{productoId}?cantidad=3
+     */
+    @PutMapping("/producto/{productoId}")
+    public ResponseEntity<?> actualizarCantidad(@RequestHeader(value = CarritoAnonimoService.CABECERA, required = false) String cabecera,
+                                                @CookieValue(value = CarritoAnonimoService.COOKIE, required = false) String cookie,
+                                                @PathVariable Long productoId,
+                                                @RequestParam Integer cantidad) {
+        try {
+            return responder(carritoAnonimoService.actualizarCantidad(cabecera != null ? cabecera : cookie, productoId, cantidad));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 4. QUITAR PRODUCTO
+     * Método: DELETE /api/carrito/anonimo/producto/{productoId}
+     */
+    @DeleteMapping("/producto/{productoId}")
+    public ResponseEntity<?> eliminar(@RequestHeader(value = CarritoAnonimoService.CABECERA, required = false) String cabecera,
+                                      @CookieValue(value = CarritoAnonimoService.COOKIE, required = false) String cookie,
+                                      @PathVariable Long productoId) {
+        return responder(carritoAnonimoService.eliminar(cabecera != null ? cabecera : cookie, productoId));
+    }
+
+    // --- AUXILIARES ---
+
+    /**
+     * Vista del carrito + token renovado en la cabecera y en la cookie (HttpOnly: JavaScript no la lee).
+     */
+    private ResponseEntity<?> responder(String token) {
+        ResponseCookie cookie = ResponseCookie.from(CarritoAnonimoService.COOKIE, token)
+                .httpOnly(true)
+                .sameSite("Lax")
+                .path("/api")
+                .maxAge(Duration.ofDays(diasVigencia))
+                .build();
+        return ResponseEntity.ok()
+                .header(CarritoAnonimoService.CABECERA, token)
+                .header(HttpHeaders.SET_COOKIE, cookie.toString())
+                .body(carritoAnonimoService.vista(token));
+    }
+}
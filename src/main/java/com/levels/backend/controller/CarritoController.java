@@ -1,5 +1,8 @@
 package com.levels.backend.controller;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,16 +10,22 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.levels.backend.model.Carrito;
 import com.levels.backend.service.CarritoService;
+import com.levels.backend.service.CarritoService.Operacion;
+import com.levels.backend.service.CarritoService.ResultadoLote;
+import com.levels.backend.service.CarritoService.TipoOperacion;
+import com.levels.backend.service.RespuestasIdempotentes;
 
 /**
  * CONTROLADOR: CARRITO DE COMPRAS
@@ -36,6 +45,10 @@ public class CarritoController {
     @Autowired
     private CarritoService carritoService;
 
+    // Reintentos de la app móvil (Idempotency-Key): no se suman dos veces las mismas unidades
+    @Autowired
+    private RespuestasIdempotentes respuestasIdempotentes;
+
     /**
      * 1. AGREGAR AL CARRITO
      * Método: POST /api/carrito/agregar
@@ -44,9 +57,16 @@ public class CarritoController {
      * En lugar de crear una clase Java (DTO) para recibir estos 3 datos, 
      * usamos un Map dinámico. Es rápido de programar, pero requiere 'castear' 
      * (convertir) los datos manualmente.
+     * * Cabecera opcional 'Idempotency-Key': un reintento con la misma clave devuelve el
+     * carrito de la primera vez, sin volver a sumar la cantidad.
      */
     @PostMapping("/agregar")
-    public ResponseEntity<?> agregar(@RequestBody Map<String, Object> payload) {
+    public ResponseEntity<?> agregar(@RequestHeader(value = RespuestasIdempotentes.CABECERA, required = false) String claveIdempotencia,
+                                     @RequestBody Map<String, Object> payload) {
+        return respuestasIdempotentes.ejecutar(claveIdempotencia, "carrito.agregar", payload, () -> procesarAgregar(payload));
+    }
+
+    private ResponseEntity<?> procesarAgregar(Map<String, Object> payload) {
         try {
             // Conversión segura de tipos:
             // JSON envía números, Java los puede leer como Integer o Double.
@@ -70,6 +90,7 @@ public class CarritoController {
      * 2. VER MI CARRITO
      * Método: GET /api/carrito/{usuarioId}
      * Recupera el estado actual del carrito de un usuario específico.
+     * Se sirve desde memoria (CarritoStore): solo la primera vez se lee de la BD.
      */
     @GetMapping("/{usuarioId}")
     public ResponseEntity<?> verCarrito(@PathVariable Long usuarioId) {
@@ -117,4 +138,53 @@ public class CarritoController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage())); 
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 5. VARIOS CAMBIOS DE UNA VEZ
+     * Método: PATCH /api/carrito/{usuarioId}
+     * Body JSON: [ { "op": "add", "productoId": 5, "cantidad": 1 },
+     *              { "op": "set", "productoId": 7, "cantidad": 3 },
+     *              { "op": "remove", "productoId": 9 } ]
+     * * En vez de una petición por línea (cada una leyendo y guardando el carrito), el lote se
+     * aplica completo o no se aplica: una lectura, una escritura y un solo cálculo del total.
+     * * Respuesta: el carrito final + cuántas operaciones se juntaron con otras del mismo producto.
+     */
+    @PatchMapping("/{usuarioId}")
+    public ResponseEntity<?> aplicarOperaciones(@PathVariable Long usuarioId,
+                                                @RequestBody List<Map<String, Object>> payload) {
+        try {
+            List<Operacion> operaciones = new ArrayList<>();
+            for (Map<String, Object> op : payload) {
+                Number productoId = (Number) op.get("productoId");
+                Number cantidad = (Number) op.get("cantidad");
+                operaciones.add(new Operacion(
+                        tipoOperacion((String) op.get("op")),
+                        productoId != null ? productoId.longValue() : null,
+                        cantidad != null ? cantidad.intValue() : 0));
+            }
+
+            ResultadoLote resultado = carritoService.aplicarOperaciones(usuarioId, operaciones);
+
+            Map<String, Object> respuesta = new LinkedHashMap<>();
+            respuesta.put("carrito", resultado.carrito());
+            respuesta.put("operaciones", resultado.operaciones());
+            respuesta.put("lineasModificadas", resultado.lineasModificadas());
+            respuesta.put("operacionesCoalescidas", resultado.coalescidas());
+            return ResponseEntity.ok(respuesta);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    // --- AUXILIARES ---
+
+    private TipoOperacion tipoOperacion(String op) {
+        if (op == null) throw new RuntimeException("Falta el tipo de operación ('op').");
+        return switch (op.toLowerCase()) {
+            case "add", "agregar" -> TipoOperacion.AGREGAR;
+            case "set", "fijar" -> TipoOperacion.FIJAR;
+            case "remove", "quitar" -> TipoOperacion.QUITAR;
+            default -> throw new RuntimeException("Operación desconocida: " + op + " (use add, set o remove).");
+        };
+    }
+}
@@ -3,6 +3,7 @@ package com.levels.backend.controller;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,6 +13,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import com.levels.backend.model.Categoria;
 import com.levels.backend.service.CategoriaService;
@@ -32,13 +34,22 @@ public class CategoriaController {
     @Autowired
     private CategoriaService categoriaService;
 
+    // Caché HTTP: las categorías casi nunca cambian, se pueden reutilizar por más tiempo
+    @Value("${levelup.http.max-age.categorias:300}")
+    private long maxAgeCategorias;
+
     /**
      * 1. LISTAR TODAS (Público)
      * Método: GET /api/categorias
      * Uso: El Frontend llama a esto apenas carga la página para llenar el menú.
+     * * CACHÉ HTTP: Responde 304 si el ETag enviado (If-None-Match) sigue vigente.
      */
     @GetMapping 
-    public List<Categoria> getAll() {
+    public List<Categoria> getAll(ServletWebRequest request) {
+        if (CacheHttp.noModificado(request, "categorias", categoriaService.versionDatos(),
+                categoriaService.ultimaModificacion(), maxAgeCategorias)) {
+            return null; // 304 Not Modified
+        }
         return categoriaService.findAll();
     }
 
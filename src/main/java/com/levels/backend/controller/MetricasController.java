@@ -0,0 +1,118 @@
+package com.levels.backend.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.levels.backend.security.CustomUserDetailsService;
+import com.levels.backend.security.JwtService;
+import com.levels.backend.service.AnaliticaVentas;
+import com.levels.backend.service.AutocompletadoIndex;
+import com.levels.backend.service.BusquedaProductosIndex;
+import com.levels.backend.service.CarritoAnonimoService;
+import com.levels.backend.service.CarritoStore;
+import com.levels.backend.service.CatalogoCache;
+import com.levels.backend.service.ExportadorOrdenes;
+import com.levels.backend.service.FacetasCatalogo;
+import com.levels.backend.service.InventarioCaliente;
+import com.levels.backend.service.OrdenService;
+import com.levels.backend.service.OrdenesLectura;
+import com.levels.backend.service.ReintentosConcurrencia;
+import com.levels.backend.service.RespuestasIdempotentes;
+import com.levels.backend.service.ReservasStock;
+import com.levels.backend.service.VentasAcumuladas;
+
+/**
+ * CONTROLADOR: MÉTRICAS INTERNAS (Solo Admin)
+ * ----------------------------------------------------
+ * Expone en un solo JSON los contadores de las cachés y estructuras en memoria,
+ * para poder dimensionarlas y detectar problemas de rendimiento.
+ */
+@RestController
+@RequestMapping("/api/admin/metricas")
+@CrossOrigin(origins = "*")
+public class MetricasController {
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private BusquedaProductosIndex busquedaIndex;
+
+    @Autowired
+    private AutocompletadoIndex autocompletado;
+
+    @Autowired
+    private FacetasCatalogo facetas;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private ReservasStock reservasStock;
+
+    @Autowired
+    private InventarioCaliente inventarioCaliente;
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @Autowired
+    private CarritoStore carritoStore;
+
+    @Autowired
+    private CarritoAnonimoService carritoAnonimo;
+
+    @Autowired
+    private RespuestasIdempotentes respuestasIdempotentes;
+
+    @Autowired
+    private ExportadorOrdenes exportadorOrdenes;
+
+    @Autowired
+    private VentasAcumuladas ventasAcumuladas;
+
+    @Autowired
+    private AnaliticaVentas analiticaVentas;
+
+    @Autowired
+    private OrdenesLectura ordenesLectura;
+
+    /**
+     * 1. VER MÉTRICAS
+     * Método: GET /api/admin/metricas
+     */
+    @GetMapping
+    public Map<String, Object> obtener() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("cacheUsuarios", userDetailsService.estadisticas());
+        metricas.put("tokensJwtEnCache", jwtService.tokensEnCache());
+        metricas.put("catalogo", catalogoCache.estadisticas());
+        metricas.put("indiceBusqueda", busquedaIndex.estadisticas());
+        metricas.put("autocompletado", autocompletado.estadisticas());
+        metricas.put("facetas", facetas.estadisticas());
+        metricas.put("checkout", ordenService.estadisticas());
+        metricas.put("reservas", reservasStock.estadisticas());
+        metricas.put("inventarioCaliente", inventarioCaliente.estadisticas());
+        metricas.put("reintentos", reintentos.estadisticas());
+        metricas.put("carritos", carritoStore.estadisticas());
+        metricas.put("carritoAnonimo", carritoAnonimo.estadisticas());
+        metricas.put("idempotencia", respuestasIdempotentes.estadisticas());
+        metricas.put("exportacionOrdenes", exportadorOrdenes.estadisticas());
+        metricas.put("ventasAcumuladas", ventasAcumuladas.estadisticas());
+        metricas.put("analiticaVentas", analiticaVentas.estadisticas());
+        metricas.put("ordenesLectura", ordenesLectura.estadisticas());
+        return metricas;
+    }
+}
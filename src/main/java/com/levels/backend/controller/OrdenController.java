@@ -1,21 +1,37 @@
 package com.levels.backend.controller;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.levels.backend.model.Orden;
-import com.levels.backend.repository.OrdenRepository;
+import com.levels.backend.model.OrdenLectura;
+import com.levels.backend.service.AnaliticaVentas;
+import com.levels.backend.service.ExportadorOrdenes;
 import com.levels.backend.service.OrdenService;
+import com.levels.backend.service.RespuestasIdempotentes;
+import com.levels.backend.service.VentasAcumuladas;
 
 /**
  * CONTROLADOR: ÓRDENES DE COMPRA (Ventas)
@@ -33,20 +49,48 @@ public class OrdenController {
     @Autowired
     private OrdenService ordenService;
 
-    // Inyección Directa del Repositorio
-    // * Nota: Usualmente usamos el Service, pero para consultas estadísticas rápidas (COUNT, SUM)
-    // es aceptable inyectar el repositorio aquí para no sobrecargar la capa de servicio.
+    // Totales del dashboard, mantenidos por el checkout (sin SUM/COUNT sobre 'ordenes')
     @Autowired
-    private OrdenRepository ordenRepository;
+    private VentasAcumuladas ventasAcumuladas;
+
+    // Analítica de ventas por producto, categoría, región y tiempo (en memoria)
+    @Autowired
+    private AnaliticaVentas analiticaVentas;
+
+    // Reintentos de la app móvil (Idempotency-Key): la compra se ejecuta una sola vez
+    @Autowired
+    private RespuestasIdempotentes respuestasIdempotentes;
+
+    // Exportación completa en streaming (NDJSON / CSV)
+    @Autowired
+    private ExportadorOrdenes exportadorOrdenes;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Compatibilidad: true = el historial sin parámetros de paginación devuelve todas las órdenes completas
+    @Value("${levelup.ordenes.historial-completo:true}")
+    private boolean historialCompleto;
+
+    // Tiempo máximo para terminar de escribir una exportación (ms). Solo aplica a esa respuesta.
+    @Value("${levelup.ordenes.exportar.timeout-ms:600000}")
+    private long timeoutExportarMs;
 
     /**
      * 1. CHECKOUT (Finalizar Compra)
      * Método: POST /api/ordenes/checkout
      * Body: { "usuarioId": 1, "direccion": "...", "region": "...", "comuna": "..." }
      * Responsabilidad: Recibe los datos de envío, mueve los items del carrito a la orden y vacía el carrito.
+     * * Cabecera opcional 'Idempotency-Key': si el cliente reintenta con la misma clave, recibe
+     * la orden ya creada (no se compra dos veces).
      */
     @PostMapping("/checkout")
-    public ResponseEntity<?> checkout(@RequestBody Map<String, Object> payload) {
+    public ResponseEntity<?> checkout(@RequestHeader(value = RespuestasIdempotentes.CABECERA, required = false) String claveIdempotencia,
+                                      @RequestBody Map<String, Object> payload) {
+        return respuestasIdempotentes.ejecutar(claveIdempotencia, "orden.checkout", payload, () -> procesarCheckout(payload));
+    }
+
+    private ResponseEntity<?> procesarCheckout(Map<String, Object> payload) {
         try {
             // EXTRACCIÓN DE DATOS DEL MAPA (Parsing Seguro)
             // Jackson (Librería JSON) puede interpretar números como Integer o Long.
@@ -72,10 +116,31 @@ public class OrdenController {
      * 2. HISTORIAL DE UN USUARIO
      * Método: GET /api/ordenes/usuario/{id}
      * Uso: Pantalla "Mi Perfil" en React.
+     * * PAGINACIÓN POR CURSOR: GET /api/ordenes/usuario/{id}?limite=20&desde=2025-01-01&hasta=2025-03-31&cursor=...
+     * Si viene 'cursor', 'limite', 'desde' o 'hasta' (o el historial completo está desactivado),
+     * responde { items, siguienteCursor, limite } con una fila liviana por orden
+     * { id, fechaCreacion, total, cantidadItems }, más recientes primero. El detalle de cada
+     * orden se pide al abrirla (GET /api/ordenes/{id}).
      */
     @GetMapping("/usuario/{id}")
-    public List<Orden> historial(@PathVariable Long id) {
-        return ordenService.obtenerOrdenesUsuario(id);
+    public ResponseEntity<?> historial(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+
+        boolean pidePagina = cursor != null || limite != null || desde != null || hasta != null;
+        if (historialCompleto && !pidePagina) {
+            return ResponseEntity.ok(ordenService.obtenerOrdenesUsuario(id)); // Comportamiento antiguo
+        }
+
+        try {
+            return ResponseEntity.ok(ordenService.historialPaginado(id, cursor, limite, desde, hasta));
+        } catch (RuntimeException e) {
+            // Cursor corrupto
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     /**
@@ -84,8 +149,8 @@ public class OrdenController {
      * Uso: Pantalla de "Comprobante de venta" (OrderDetail.js).
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Orden> obtenerPorId(@PathVariable Long id) {
-        Orden orden = ordenService.findById(id);
+    public ResponseEntity<OrdenLectura> obtenerPorId(@PathVariable Long id) {
+        OrdenLectura orden = ordenService.findById(id);
         
         if (orden == null) {
             return ResponseEntity.notFound().build();
@@ -98,18 +163,54 @@ public class OrdenController {
      * 4. ESTADÍSTICAS (Solo Admin)
      * Método: GET /api/ordenes/stats
      * Uso: Panel de Control (Dashboard). Muestra cuánto dinero ha entrado.
+     * * Responde desde memoria (VentasAcumuladas): no recorre la tabla de órdenes.
      */
     @GetMapping("/stats")
     public ResponseEntity<?> obtenerEstadisticas() {
-        // Usamos consultas nativas del repositorio (Queries)
-        Double totalVentas = ordenRepository.sumarVentasTotales(); // SELECT SUM(total)...
-        long cantidadOrdenes = ordenRepository.count();            // SELECT COUNT(*)...
-
-        // Devolvemos un JSON simple construido al vuelo con Map.of
-        return ResponseEntity.ok(Map.of(
-            "totalVentas", totalVentas != null ? totalVentas : 0.0,
-            "cantidadOrdenes", cantidadOrdenes
-        ));
+        return ResponseEntity.ok(ventasAcumuladas.totales()); // { totalVentas, cantidadOrdenes }
+    }
+
+    /**
+     * 4.1 VENTAS POR DÍA (Staff)
+     * Método: GET /api/ordenes/stats/diarias?desde=2025-01-01&hasta=2025-01-31
+     * Uso: Gráfico de ventas del Dashboard. Por defecto, los últimos 30 días.
+     */
+    @GetMapping("/stats/diarias")
+    public ResponseEntity<?> ventasDiarias(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.minusDays(29);
+        if (inicio.isAfter(fin)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'desde' no puede ser posterior a 'hasta'."));
+        }
+        return ResponseEntity.ok(ventasAcumuladas.porDia(inicio, fin));
+    }
+
+    /**
+     * 4.2 VENTAS POR REGIÓN (Staff)
+     * Método: GET /api/ordenes/stats/regiones
+     */
+    @GetMapping("/stats/regiones")
+    public ResponseEntity<?> ventasPorRegion() {
+        return ResponseEntity.ok(ventasAcumuladas.porRegion());
+    }
+
+    /**
+     * 4.3 CONCILIAR LOS ACUMULADOS (Solo Admin)
+     * Método: POST /api/ordenes/stats/conciliar
+     * Recalcula los acumulados desde las órdenes, corrige las diferencias y devuelve el informe.
+     * (También corre solo, todos los días; el último informe está en GET /api/ordenes/stats/conciliacion).
+     */
+    @PostMapping("/stats/conciliar")
+    public ResponseEntity<?> conciliar() {
+        return ResponseEntity.ok(ventasAcumuladas.conciliar());
+    }
+
+    @GetMapping("/stats/conciliacion")
+    public ResponseEntity<?> ultimaConciliacion() {
+        Map<String, Object> informe = ventasAcumuladas.ultimaConciliacion();
+        return informe != null ? ResponseEntity.ok(informe) : ResponseEntity.noContent().build();
     }
 
     /**
@@ -119,7 +220,108 @@ public class OrdenController {
      */
     @GetMapping
     // @PreAuthorize("hasRole('ADMIN')") <--- Ya lo configuramos en SecurityConfig, es redundante pero sirve de refuerzo.
-    public List<Orden> listarTodas() {
+    public List<OrdenLectura> listarTodas() {
         return ordenService.listarTodas();
     }
-}
\ No newline at end of file
+
+    /**
+     * 6. EXPORTAR TODAS LAS VENTAS (Solo Staff)
+     * Método: GET /api/ordenes/exportar?formato=csv&desde=2025-01-01&hasta=2025-12-31&region=Metropolitana
+     * Uso: Descargar las ventas para reportes/contabilidad, sin cargar la tabla completa en memoria:
+     * las filas se escriben en la respuesta a medida que salen de la BD.
+     * * formato: "ndjson" (por defecto, un JSON por línea) o "csv". Los filtros son opcionales.
+     * * El tipo de retorno debe decir StreamingResponseBody: con ResponseEntity<?> Spring no lo
+     * reconoce como streaming y busca un conversor JSON para la lambda (error 500).
+     */
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @RequestParam(defaultValue = ExportadorOrdenes.NDJSON) String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String region,
+            WebRequest request) {
+
+        String tipo = formato.toLowerCase();
+        if (!ExportadorOrdenes.NDJSON.equals(tipo) && !ExportadorOrdenes.CSV.equals(tipo)) {
+            Map<String, String> error = Map.of("error", "Formato no soportado: " + formato + " (use ndjson o csv)");
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(salida -> objectMapper.writeValue(salida, error));
+        }
+
+        // El cuerpo se escribe después de devolver la respuesta, en un hilo aparte (respuesta asíncrona).
+        // Puede tardar minutos: se alarga el tiempo máximo de ESTA petición, no el de todas las asíncronas.
+        WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest().setTimeout(timeoutExportarMs);
+        StreamingResponseBody cuerpo = salida -> exportadorOrdenes.exportar(tipo, desde, hasta, region, salida);
+        MediaType contentType = ExportadorOrdenes.CSV.equals(tipo)
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON;
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"ordenes." + tipo + "\"")
+                .body(cuerpo);
+    }
+
+    /**
+     * 7. ANALÍTICA DE VENTAS (Staff)
+     * Uso: Reportes del Admin Panel. Se calcula en memoria (AnaliticaVentas), sin consultar la BD.
+     * Objetivo de latencia: < 50 ms con 10 millones de líneas vendidas; < 5 ms para rangos de pocos días.
+     * Cada respuesta trae { cargada, duracionMs, items }.
+     * * GET /api/ordenes/analytics/productos?desde&hasta&limite=10&orden=unidades|ingresos
+     * * GET /api/ordenes/analytics/categorias?desde&hasta
+     * * GET /api/ordenes/analytics/regiones?desde&hasta&agrupar=region|comuna
+     * * GET /api/ordenes/analytics/series?granularidad=dia|hora&desde&hasta
+     * Fechas en formato ISO (2025-01-31), ambas incluidas y opcionales (salvo en las series,
+     * que por defecto cubren los últimos 30 días, o solo hoy si es por hora).
+     */
+    @GetMapping("/analytics/productos")
+    public ResponseEntity<?> analyticsProductos(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "10") int limite,
+            @RequestParam(defaultValue = "unidades") String orden) {
+        if (!"unidades".equals(orden) && !"ingresos".equals(orden)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Orden no soportado: " + orden + " (use unidades o ingresos)"));
+        }
+        int tope = Math.max(1, Math.min(limite, 100));
+        return ResponseEntity.ok(analiticaVentas.topProductos(desde, hasta, tope, "ingresos".equals(orden)));
+    }
+
+    @GetMapping("/analytics/categorias")
+    public ResponseEntity<?> analyticsCategorias(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return ResponseEntity.ok(analiticaVentas.agrupar(AnaliticaVentas.Dimension.CATEGORIA, desde, hasta));
+    }
+
+    @GetMapping("/analytics/regiones")
+    public ResponseEntity<?> analyticsRegiones(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "region") String agrupar) {
+        if (!"region".equals(agrupar) && !"comuna".equals(agrupar)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Agrupación no soportada: " + agrupar + " (use region o comuna)"));
+        }
+        AnaliticaVentas.Dimension dimension = "comuna".equals(agrupar) ? AnaliticaVentas.Dimension.COMUNA : AnaliticaVentas.Dimension.REGION;
+        return ResponseEntity.ok(analiticaVentas.agrupar(dimension, desde, hasta));
+    }
+
+    @GetMapping("/analytics/series")
+    public ResponseEntity<?> analyticsSeries(
+            @RequestParam(defaultValue = "dia") String granularidad,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        if (!"dia".equals(granularidad) && !"hora".equals(granularidad)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Granularidad no soportada: " + granularidad + " (use dia u hora)"));
+        }
+        boolean porHora = "hora".equals(granularidad);
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : (porHora ? fin : fin.minusDays(29));
+        try {
+            return ResponseEntity.ok(analiticaVentas.serie(porHora ? AnaliticaVentas.Dimension.HORA : AnaliticaVentas.Dimension.DIA, inicio, fin));
+        } catch (RuntimeException e) {
+            // Rango invertido o demasiado grande
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
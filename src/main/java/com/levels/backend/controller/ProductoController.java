@@ -4,6 +4,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -15,10 +18,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import com.levels.backend.dto.ProductoCard;
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.dto.ProductoDetalle;
+import com.levels.backend.dto.Sugerencia;
 import com.levels.backend.model.Categoria;
 import com.levels.backend.model.Producto;
-import com.levels.backend.repository.CategoriaRepository;
+import com.levels.backend.service.CategoriaService;
 import com.levels.backend.service.ProductoService;
 
 /**
@@ -35,9 +43,18 @@ public class ProductoController {
     @Autowired
     private ProductoService productoService;
     
-    // Inyección del Repositorio de Categorías para resolver relaciones
+    // Inyección del Servicio de Categorías para resolver relaciones
+    // (pasa por el servicio para que la foto en memoria del catálogo se entere de las categorías nuevas)
     @Autowired
-    private CategoriaRepository categoriaRepository;
+    private CategoriaService categoriaService;
+
+    // Compatibilidad: si es true, GET /api/productos sin parámetros de paginación devuelve la lista completa (comportamiento antiguo)
+    @Value("${levelup.catalogo.listado-completo:true}")
+    private boolean listadoCompleto;
+
+    // Caché HTTP: segundos que el navegador/CDN puede reutilizar la respuesta (application.properties)
+    @Value("${levelup.http.max-age.productos:30}")
+    private long maxAgeProductos;
 
     /**
      * HELPER PRIVADO: Resolver Categoría
@@ -51,39 +68,162 @@ public class ProductoController {
             throw new RuntimeException("La categoría no puede estar vacía.");
         }
         
-        // Buscamos si ya existe (para no duplicar "Teclados" y "teclados")
-        return categoriaRepository.findByNombre(nombreCategoria)
-                .orElseGet(() -> {
-                    // Si no existe, la creamos al vuelo.
-                    Categoria nueva = new Categoria();
-                    nueva.setNombre(nombreCategoria);
-                    nueva.setImagenUrl(imagenUrl); // Usamos la imagen del producto como portada por defecto
-                    return categoriaRepository.save(nueva);
-                });
+        // Buscamos si ya existe (para no duplicar "Teclados" y "teclados").
+        // Si no existe, la creamos al vuelo usando la imagen del producto como portada por defecto.
+        return categoriaService.buscarOCrear(nombreCategoria, imagenUrl);
     }
 
     /**
      * 1. LISTAR PRODUCTOS (Catálogo)
      * Método: GET /api/productos?categoria=Teclados
      * Si viene el parámetro 'categoria', filtra. Si no, devuelve todos.
+     * * PAGINACIÓN POR CURSOR: GET /api/productos?orden=precio&limite=24&cursor=...
+     * Si viene 'orden', 'cursor' o 'limite' (o el listado completo está desactivado),
+     * responde { items, siguienteCursor, limite }. Para la página siguiente se envía
+     * el 'siguienteCursor' recibido.
+     * * CACHÉ HTTP: Responde 304 si el ETag enviado (If-None-Match) sigue vigente.
      */
     @GetMapping
-    public List<Producto> listar(@RequestParam(required = false) String categoria) {
-        return productoService.listarProductos(categoria); 
+    public ResponseEntity<?> listar(
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) String orden,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            ServletWebRequest request) {
+
+        if (CacheHttp.noModificado(request, "productos-" + productoService.versionStock(), productoService.versionDatos(),
+                productoService.ultimaModificacion(), maxAgeProductos)) {
+            return null; // 304 Not Modified: sin BD ni JSON
+        }
+
+        boolean pidePagina = orden != null || cursor != null || limite != null;
+        if (listadoCompleto && !pidePagina) {
+            return ResponseEntity.ok(productoService.listarProductos(categoria)); // Comportamiento antiguo
+        }
+
+        try {
+            return ResponseEntity.ok(productoService.listarPagina(categoria, orden, cursor, limite));
+        } catch (RuntimeException e) {
+            // Cursor corrupto u orden desconocido
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
+    /**
+     * 1.A TARJETAS DEL CATÁLOGO (Vista liviana para la grilla)
+     * Método: GET /api/productos/tarjetas?categoria=Teclados
+     * Devuelve [{ id, nombre, precio, stock, imagenUrl, categoria }]: sin descripción,
+     * sin video y con la categoría como texto. Mucho menos JSON que GET /api/productos.
+     */
+    @GetMapping("/tarjetas")
+    public ResponseEntity<List<ProductoCard>> listarTarjetas(
+            @RequestParam(required = false) String categoria,
+            ServletWebRequest request) {
+
+        if (CacheHttp.noModificado(request, "tarjetas-" + productoService.versionStock(), productoService.versionDatos(),
+                productoService.ultimaModificacion(), maxAgeProductos)) {
+            return null; // 304 Not Modified
+        }
+        return ResponseEntity.ok(productoService.listarTarjetas(categoria));
+    }
+
+    /**
+     * 1.B BUSCAR PRODUCTOS (Texto libre)
+     * Método: GET /api/productos/search?q=teclado mecanico&limite=20
+     * Ignora tildes y mayúsculas; los resultados vienen ordenados por relevancia.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> buscar(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limite,
+            ServletWebRequest request) {
+
+        if (CacheHttp.noModificado(request, "busqueda-" + productoService.versionStock(), productoService.versionDatos(),
+                productoService.ultimaModificacion(), maxAgeProductos)) {
+            return null; // 304 Not Modified
+        }
+        return ResponseEntity.ok(productoService.buscar(q, limite));
+    }
+
+    /**
+     * 1.C AUTOCOMPLETADO (Type-ahead del buscador)
+     * Método: GET /api/productos/suggest?q=logi
+     * Responde en cada tecla desde memoria: [{ texto, tipo, productoId }].
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Sugerencia>> sugerir(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(productoService.sugerir(q, limite));
+    }
+
+    /**
+     * 1.D FILTRO POR FACETAS
+     * Método: GET /api/productos/filtro?categoria=Teclados&categoria=Mouses&precio=20000-50000&enStock=true&calificacionMin=4
+     * Varios valores de una misma faceta se combinan con OR; facetas distintas, con AND.
+     * Responde { items, total, facetas: { categoria: {...}, precio: {...}, enStock: {...}, calificacion: {...} } }.
+     */
+    @GetMapping("/filtro")
+    public ResponseEntity<?> filtrar(
+            @RequestParam(required = false) List<String> categoria,
+            @RequestParam(required = false) List<String> precio,
+            @RequestParam(required = false) Boolean enStock,
+            @RequestParam(required = false) Integer calificacionMin,
+            @RequestParam(required = false) Integer pagina,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            return ResponseEntity.ok(productoService.filtrar(categoria, precio, enStock, calificacionMin, pagina, limite));
+        } catch (RuntimeException e) {
+            // Rango de precio desconocido o calificación fuera de 1..5
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 1.E DISPONIBILIDAD (stock que aún se puede agregar al carrito)
+     * Método: GET /api/productos/disponibilidad?ids=1,2,3
+     * Responde { "1": 4, "2": 0, ... } = stock - unidades reservadas en otros carritos.
+     * Sin ETag: cambia con cada carrito, pero se calcula en memoria (sin BD).
+     */
+    @GetMapping("/disponibilidad")
+    public ResponseEntity<Map<Long, Integer>> disponibilidad(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(productoService.disponibilidad(ids));
+    }
+
     /**
      * 2. DETALLE DE PRODUCTO
      * Método: GET /api/productos/{id}
      * Devuelve toda la info de un producto para la página ProductDetail.js
+     * * El ETag incluye la versión de la fila: una venta cambia el stock y con él el ETag
+     * de este producto, sin invalidar el resto del catálogo.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Producto> obtenerPorId(@PathVariable Long id) {
+    public ResponseEntity<ProductoCatalogo> obtenerPorId(@PathVariable Long id, ServletWebRequest request) {
+        if (CacheHttp.noModificado(request, "producto-" + id + "-" + productoService.versionProducto(id), productoService.versionDatos(),
+                productoService.ultimaModificacion(), maxAgeProductos)) {
+            return null; // 304 Not Modified
+        }
         return productoService.obtenerPorId(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * 2.B DETALLE APLANADO
+     * Método: GET /api/productos/{id}/detalle
+     * Igual que el detalle, pero como DTO plano (categoriaId, categoria, categoriaImagenUrl).
+     */
+    @GetMapping("/{id}/detalle")
+    public ResponseEntity<ProductoDetalle> obtenerDetalle(@PathVariable Long id, ServletWebRequest request) {
+        if (CacheHttp.noModificado(request, "detalle-" + id + "-" + productoService.versionProducto(id), productoService.versionDatos(),
+                productoService.ultimaModificacion(), maxAgeProductos)) {
+            return null; // 304 Not Modified
+        }
+        return productoService.obtenerDetalle(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * 3. CREAR PRODUCTO (Solo Admin)
      * Método: POST /api/productos
@@ -124,6 +264,7 @@ public class ProductoController {
      * 4. ACTUALIZAR PRODUCTO (Solo Admin)
      * Método: PUT /api/productos/{id}
      * Sobrescribe los datos de un producto existente.
+     * Se envía la 'version' que se leyó: si el producto cambió desde entonces, responde 409.
      */
     @PutMapping("/{id}")
     public ResponseEntity<?> actualizar(@PathVariable Long id, @RequestBody Map<String, Object> payload) {
@@ -141,14 +282,33 @@ public class ProductoController {
             datosNuevos.setImagenUrl(imagenUrl);
             datosNuevos.setVideoUrl((String) payload.get("videoUrl"));
             datosNuevos.setCategoria(categoriaEntidad);
+            Object version = payload.get("version");
+            datosNuevos.setVersion(version != null ? ((Number) version).longValue() : null);
 
             Producto actualizado = productoService.actualizarProducto(id, datosNuevos);
             return ResponseEntity.ok(actualizado);
+        } catch (OptimisticLockingFailureException e) {
+            // Otro Admin o un checkout lo modificó después de que se leyó
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
     }
 
+    /**
+     * 4.B MODO INVENTARIO CALIENTE (Venta flash) - Solo Admin
+     * Método: PUT /api/productos/{id}/inventario-caliente?activo=true
+     * Activarlo antes de abrir el lanzamiento y desactivarlo al cerrarlo.
+     */
+    @PutMapping("/{id}/inventario-caliente")
+    public ResponseEntity<?> cambiarInventarioCaliente(@PathVariable Long id, @RequestParam boolean activo) {
+        try {
+            return ResponseEntity.ok(productoService.cambiarInventarioCaliente(id, activo));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * 5. ELIMINAR PRODUCTO (Solo Admin)
      * Método: DELETE /api/productos/{id}
@@ -4,17 +4,23 @@ import java.time.LocalDate;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.levels.backend.model.Usuario;
 import com.levels.backend.security.JwtService;
+import com.levels.backend.service.CarritoAnonimoService;
+import com.levels.backend.service.CarritoService;
 import com.levels.backend.service.UsuarioService;
 
 /**
@@ -37,6 +43,12 @@ public class UsuarioController {
     @Autowired
     private JwtService jwtService; 
 
+    // Carrito armado antes de iniciar sesión (cookie firmada) y carrito persistente
+    @Autowired
+    private CarritoAnonimoService carritoAnonimoService;
+    @Autowired
+    private CarritoService carritoService;
+
     /**
      * 1. REGISTRO DE USUARIO
      * Método: POST /api/usuarios/registro
@@ -80,9 +92,12 @@ public class UsuarioController {
      * Método: POST /api/usuarios/login
      * Body: { "email": "...", "password": "..." }
      * * * Retorno Crítico: Devuelve el TOKEN JWT + Datos del usuario.
+     * * Si trae un carrito anónimo (cookie o cabecera X-Carrito-Anonimo), se fusiona con su carrito.
      */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> credenciales) {
+    public ResponseEntity<?> login(@RequestBody Map<String, String> credenciales,
+                                   @RequestHeader(value = CarritoAnonimoService.CABECERA, required = false) String carritoCabecera,
+                                   @CookieValue(value = CarritoAnonimoService.COOKIE, required = false) String carritoCookie) {
         try {
             String email = credenciales.get("email");
             String password = credenciales.get("password");
@@ -92,10 +107,15 @@ public class UsuarioController {
             Usuario usuario = usuarioService.login(email, password);
             
             // B. Generar el Token JWT (La "Llave Maestra")
-            // Usamos el email como identificador principal (Subject).
-            String token = jwtService.generateToken(usuario.getEmail());
+            // Usamos el email como identificador principal (Subject) y embebemos id, rol y versión
+            // para que el filtro JWT pueda autenticar sin consultar la BD.
+            String token = jwtService.generateToken(usuario);
 
-            // C. Construir la respuesta completa para el Frontend
+            // C. Carrito anónimo: lo elegido antes de iniciar sesión pasa a su carrito (una sola escritura)
+            String carritoAnonimo = carritoCabecera != null ? carritoCabecera : carritoCookie;
+            int productosFusionados = fusionarCarritoAnonimo(usuario.getId(), carritoAnonimo);
+
+            // D. Construir la respuesta completa para el Frontend
             // React necesita el token para guardarlo en localStorage y los datos para mostrar el perfil.
             Map<String, Object> respuesta = Map.of(
                 "token", token,          // <--- VITAL
@@ -106,10 +126,20 @@ public class UsuarioController {
                 "esEstudianteDuoc", usuario.isEsEstudianteDuoc(), // Para descuentos
                 "puntosLevelUp", usuario.getPuntosLevelUp(),      // Gamificación
                 "nivel", usuario.getNivel(),
-                "fechaNacimiento", usuario.getFechaNacimiento() != null ? usuario.getFechaNacimiento() : ""
+                "fechaNacimiento", usuario.getFechaNacimiento() != null ? usuario.getFechaNacimiento() : "",
+                "carritoFusionado", productosFusionados // Productos que pasaron del carrito anónimo
             );
 
-            return ResponseEntity.ok(respuesta);
+            if (carritoAnonimo == null) return ResponseEntity.ok(respuesta);
+
+            // La cookie del carrito anónimo ya no sirve: se borra (max-age 0)
+            ResponseCookie borrarCookie = ResponseCookie.from(CarritoAnonimoService.COOKIE, "")
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .path("/api")
+                    .maxAge(0)
+                    .build();
+            return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, borrarCookie.toString()).body(respuesta);
 
         } catch (RuntimeException e) {
             // Error 401 Unauthorized: Credenciales inválidas
@@ -117,6 +147,22 @@ public class UsuarioController {
         }
     }
 
+    /**
+     * Pasa el carrito anónimo al carrito del usuario.
+     * Un problema aquí (token inválido, sin stock) NUNCA impide iniciar sesión.
+     * Reenviar el mismo token no duplica nada: la fusión es idempotente.
+     * @return Cantidad de productos que se agregaron.
+     */
+    private int fusionarCarritoAnonimo(Long usuarioId, String token) {
+        if (token == null) return 0;
+        try {
+            Map<Long, Integer> lineas = carritoAnonimoService.leer(token).lineas();
+            return carritoService.fusionarAnonimo(usuarioId, lineas).size();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
     /**
      * 3. ACTUALIZAR PERFIL
      * Método: PUT /api/usuarios/{id}
@@ -0,0 +1,21 @@
+package com.levels.backend.dto;
+
+/**
+ * DTO: ESTADO DE STOCK DE UN PRODUCTO
+ * ----------------------------------------------------
+ * Stock y versión de la fila tal como quedaron tras un UPDATE (checkout, volcado del
+ * inventario caliente). La versión permite descartar un estado más viejo que el ya conocido.
+ */
+public record EstadoStock(Integer stock, Long version) {
+
+    /**
+     * Devuelve el más nuevo de los dos (el de mayor versión; ante la duda, el segundo).
+     */
+    public static EstadoStock masReciente(EstadoStock a, EstadoStock b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        long va = a.version() != null ? a.version() : -1;
+        long vb = b.version() != null ? b.version() : -1;
+        return va > vb ? a : b;
+    }
+}
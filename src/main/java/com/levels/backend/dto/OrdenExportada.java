@@ -0,0 +1,13 @@
+package com.levels.backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO: ORDEN EXPORTADA (Fila plana de GET /api/ordenes/exportar)
+ * ----------------------------------------------------
+ * Una fila por orden, sin objetos anidados: se escribe tal cual como una línea NDJSON o CSV.
+ * @param email Email del cliente (null si el usuario ya no existe).
+ * @param unidades Unidades compradas (suma de las cantidades de sus líneas).
+ */
+public record OrdenExportada(Long id, LocalDateTime fechaCreacion, Long usuarioId, String email, Double total,
+                             String region, String comuna, String direccion, long unidades) {}
@@ -0,0 +1,12 @@
+package com.levels.backend.dto;
+
+import java.util.Date;
+
+/**
+ * DTO: RESUMEN DE ORDEN (Fila del historial de compras)
+ * ----------------------------------------------------
+ * Lo mínimo para listar las compras de un cliente: sin usuario, sin dirección y sin detalles.
+ * El detalle completo se pide solo al abrir una orden (GET /api/ordenes/{id}).
+ * @param cantidadItems Unidades compradas (suma de las cantidades de sus líneas).
+ */
+public record OrdenResumen(Long id, Date fechaCreacion, Double total, Long cantidadItems) {}
@@ -0,0 +1,16 @@
+package com.levels.backend.dto;
+
+import java.util.List;
+
+/**
+ * DTO: PÁGINA CON CURSOR (Keyset Pagination)
+ * ----------------------------------------------------
+ * Respuesta genérica para listados paginados por cursor.
+ * * En vez de "página 5" (OFFSET, que obliga a la BD a recorrer y descartar filas),
+ * el cliente envía el 'siguienteCursor' recibido: un token opaco que indica la última
+ * fila vista. Así la página 500 cuesta lo mismo que la página 1.
+ * @param items Elementos de esta página.
+ * @param siguienteCursor Token para pedir la siguiente página (null si no hay más).
+ * @param limite Tamaño de página efectivamente aplicado.
+ */
+public record PaginaCursor<T>(List<T> items, String siguienteCursor, int limite) {}
@@ -0,0 +1,38 @@
+package com.levels.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * DTO: TARJETA DE PRODUCTO (Vista de grilla del catálogo)
+ * ----------------------------------------------------
+ * Solo lo que muestra una tarjeta: sin descripción, sin video y con la categoría
+ * reducida a su nombre. Pesa mucho menos que la entidad completa en el JSON.
+ * * Es una vista sobre el producto de la foto: el stock que muestra es siempre el actual.
+ */
+@JsonPropertyOrder({ "id", "nombre", "precio", "stock", "imagenUrl", "categoria" })
+public final class ProductoCard {
+
+    private final ProductoCatalogo producto;
+
+    private ProductoCard(ProductoCatalogo producto) {
+        this.producto = producto;
+    }
+
+    /**
+     * Arma la tarjeta desde el producto (usado al construir la foto en memoria del catálogo).
+     */
+    public static ProductoCard desde(ProductoCatalogo p) {
+        return new ProductoCard(p);
+    }
+
+    public Long getId() { return producto.getId(); }
+    public String getNombre() { return producto.getNombre(); }
+    public Double getPrecio() { return producto.getPrecio(); }
+    public Integer getStock() { return producto.getStock(); }
+    public String getImagenUrl() { return producto.getImagenUrl(); }
+
+    // Nombre de la categoría (null si no tiene)
+    public String getCategoria() {
+        return producto.getCategoria() != null ? producto.getCategoria().getNombre() : null;
+    }
+}
@@ -0,0 +1,114 @@
+package com.levels.backend.dto;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+
+/**
+ * DTO: PRODUCTO DE LA FOTO DEL CATÁLOGO (Solo lectura)
+ * ----------------------------------------------------
+ * Copia inmutable de un Producto que comparten todos los hilos que leen la foto en memoria
+ * (CatalogoCache). A diferencia de la entidad, nadie puede modificarla por error ni
+ * Hibernate la puede asociar a una sesión.
+ * * Stock y versión NO se copian: se leen de una celda compartida que las ventas actualizan
+ * en su lugar, sin armar una foto nueva por cada checkout.
+ * * Mismos getters (y mismo JSON) que la entidad: el Frontend no nota la diferencia.
+ */
+@JsonPropertyOrder({ "id", "nombre", "descripcion", "precio", "stock", "inventarioCaliente", "version",
+        "imagenUrl", "videoUrl", "categoria" })
+public final class ProductoCatalogo {
+
+    private final Long id;
+    private final String nombre;
+    private final String descripcion;
+    private final Double precio;
+    private final Boolean inventarioCaliente;
+    private final String imagenUrl;
+    private final String videoUrl;
+    private final CategoriaCatalogo categoria;
+
+    // Celda de stock compartida entre las fotos sucesivas (ver CatalogoCache)
+    private final AtomicReference<EstadoStock> inventario;
+
+    private ProductoCatalogo(Producto p, AtomicReference<EstadoStock> inventario) {
+        this.id = p.getId();
+        this.nombre = p.getNombre();
+        this.descripcion = p.getDescripcion();
+        this.precio = p.getPrecio();
+        this.inventarioCaliente = p.getInventarioCaliente();
+        this.imagenUrl = p.getImagenUrl();
+        this.videoUrl = p.getVideoUrl();
+        this.categoria = p.getCategoria() != null ? new CategoriaCatalogo(p.getCategoria()) : null;
+        this.inventario = inventario;
+    }
+
+    /**
+     * Copia los datos de la entidad; el stock se lee desde 'inventario'.
+     */
+    public static ProductoCatalogo desde(Producto p, AtomicReference<EstadoStock> inventario) {
+        return new ProductoCatalogo(p, inventario);
+    }
+
+    /**
+     * Entidad nueva y desacoplada con los mismos datos, para quien necesita un Producto
+     * propio (ej: la línea de un carrito). Cada llamada entrega una copia distinta.
+     */
+    public Producto aEntidad() {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre(nombre);
+        p.setDescripcion(descripcion);
+        p.setPrecio(precio);
+        p.setStock(getStock());
+        p.setInventarioCaliente(inventarioCaliente);
+        p.setVersion(getVersion());
+        p.setImagenUrl(imagenUrl);
+        p.setVideoUrl(videoUrl);
+        p.setCategoria(categoria != null ? categoria.aEntidad() : null);
+        return p;
+    }
+
+    // --- GETTERS ---
+
+    public Long getId() { return id; }
+    public String getNombre() { return nombre; }
+    public String getDescripcion() { return descripcion; }
+    public Double getPrecio() { return precio; }
+    public Integer getStock() { return inventario.get().stock(); }
+    public Boolean getInventarioCaliente() { return inventarioCaliente; }
+    public Long getVersion() { return inventario.get().version(); }
+    public String getImagenUrl() { return imagenUrl; }
+    public String getVideoUrl() { return videoUrl; }
+    public CategoriaCatalogo getCategoria() { return categoria; }
+
+    /**
+     * Categoría del producto, también inmutable (sin la lista de productos, igual que su JSON).
+     */
+    @JsonPropertyOrder({ "id", "nombre", "imagenUrl" })
+    public static final class CategoriaCatalogo {
+
+        private final Long id;
+        private final String nombre;
+        private final String imagenUrl;
+
+        private CategoriaCatalogo(Categoria c) {
+            this.id = c.getId();
+            this.nombre = c.getNombre();
+            this.imagenUrl = c.getImagenUrl();
+        }
+
+        private Categoria aEntidad() {
+            Categoria c = new Categoria();
+            c.setId(id);
+            c.setNombre(nombre);
+            c.setImagenUrl(imagenUrl);
+            return c;
+        }
+
+        public Long getId() { return id; }
+        public String getNombre() { return nombre; }
+        public String getImagenUrl() { return imagenUrl; }
+    }
+}
@@ -0,0 +1,32 @@
+package com.levels.backend.dto;
+
+/**
+ * DTO: DETALLE DE PRODUCTO (Página ProductDetail)
+ * ----------------------------------------------------
+ * Todos los campos del producto, con la categoría "aplanada" (id, nombre e imagen)
+ * en vez del objeto anidado.
+ */
+public record ProductoDetalle(
+        Long id,
+        String nombre,
+        String descripcion,
+        Double precio,
+        Integer stock,
+        String imagenUrl,
+        String videoUrl,
+        Long categoriaId,
+        String categoria,
+        String categoriaImagenUrl) {
+
+    /**
+     * Arma el detalle desde el producto de la foto en memoria del catálogo (stock del momento).
+     */
+    public static ProductoDetalle desde(ProductoCatalogo p) {
+        boolean conCategoria = p.getCategoria() != null;
+        return new ProductoDetalle(p.getId(), p.getNombre(), p.getDescripcion(), p.getPrecio(), p.getStock(),
+                p.getImagenUrl(), p.getVideoUrl(),
+                conCategoria ? p.getCategoria().getId() : null,
+                conCategoria ? p.getCategoria().getNombre() : null,
+                conCategoria ? p.getCategoria().getImagenUrl() : null);
+    }
+}
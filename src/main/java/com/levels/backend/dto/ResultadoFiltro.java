@@ -0,0 +1,15 @@
+package com.levels.backend.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO: RESULTADO DEL FILTRO POR FACETAS
+ * ----------------------------------------------------
+ * Respuesta de GET /api/productos/filtro: la página de productos que cumplen TODOS los
+ * filtros y, para cada faceta, cuántos productos habría al elegir cada uno de sus valores.
+ * @param items Productos de la página pedida.
+ * @param total Cantidad total de productos que cumplen el filtro.
+ * @param facetas faceta -> (valor -> cantidad). Ej: { "categoria": { "Teclados": 12 } }.
+ */
+public record ResultadoFiltro<T>(List<T> items, int total, Map<String, Map<String, Integer>> facetas) {}
@@ -0,0 +1,11 @@
+package com.levels.backend.dto;
+
+/**
+ * DTO: SUGERENCIA DE AUTOCOMPLETADO
+ * ----------------------------------------------------
+ * Un ítem de la lista desplegable del buscador.
+ * @param texto Texto a mostrar (ej: "Mouse Logitech G203").
+ * @param tipo "producto" o "categoria".
+ * @param productoId Id del producto (null si es una categoría).
+ */
+public record Sugerencia(String texto, String tipo, Long productoId) {}
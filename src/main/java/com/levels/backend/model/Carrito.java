@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -11,6 +12,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Version;
 
 /**
  * ENTIDAD: CARRITO DE COMPRAS
@@ -48,8 +50,26 @@ public class Carrito {
     @OneToMany(mappedBy = "carrito", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<DetalleCarrito> items = new ArrayList<>();
 
-    // Total acumulado (Suma de precio * cantidad de todos los items)
+    // Total a pagar (subtotal con el descuento del usuario, si corresponde)
     private Double total = 0.0;
+
+    /**
+     * SUBTOTAL SIN DESCUENTO, EN CENTAVOS
+     * Suma exacta (entero) de precio * cantidad de las líneas: el total se deriva de aquí
+     * aplicando el descuento UNA vez, en vez de acumular diferencias ya descontadas y redondeadas.
+     * null en carritos anteriores a esta columna: se calcula desde las líneas en el próximo cambio.
+     */
+    private Long subtotalCentavos = 0L;
+
+    /**
+     * VERSIÓN (Bloqueo optimista)
+     * Hibernate la incrementa en cada UPDATE y agrega "AND version = ?" al WHERE: si otra
+     * escritura se coló entre la lectura y el guardado, falla (y se reintenta) en vez de pisarla.
+     * DEFAULT 0: las filas que ya existían en la tabla parten en la versión 0.
+     */
+    @Version
+    @Column(columnDefinition = "BIGINT DEFAULT 0")
+    private Long version;
     
     // --- GETTERS Y SETTERS ---
     
@@ -62,6 +82,12 @@ public class Carrito {
     public List<DetalleCarrito> getItems() { return items; }
     public void setItems(List<DetalleCarrito> items) { this.items = items; }
     
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public Double getTotal() { return total; }
     public void setTotal(Double total) { this.total = total; }
+
+    public Long getSubtotalCentavos() { return subtotalCentavos; }
+    public void setSubtotalCentavos(Long subtotalCentavos) { this.subtotalCentavos = subtotalCentavos; }
 }
\ No newline at end of file
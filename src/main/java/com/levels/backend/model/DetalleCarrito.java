@@ -5,12 +5,14 @@ import org.hibernate.annotations.OnDeleteAction;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Version;
 
 /**
  * ENTIDAD: DETALLE DE CARRITO (Item)
@@ -55,6 +57,11 @@ public class DetalleCarrito {
     // Precio al momento de agregar (útil si el precio cambia mientras compras)
     private Double precioUnitario;
 
+    // Bloqueo optimista: dos pestañas cambiando la misma línea a la vez ya no se pisan
+    @Version
+    @Column(columnDefinition = "BIGINT DEFAULT 0")
+    private Long version;
+
     /**
      * MÉTODO HELPER (Lógica de Negocio en la Entidad)
      * Calcula el total de esta línea.
@@ -81,6 +88,9 @@ public class DetalleCarrito {
     public Integer getCantidad() { return cantidad; }
     public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public Double getPrecioUnitario() { return precioUnitario; }
     public void setPrecioUnitario(Double precioUnitario) { this.precioUnitario = precioUnitario; }
 }
\ No newline at end of file
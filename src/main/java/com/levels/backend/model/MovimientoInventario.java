@@ -0,0 +1,67 @@
+package com.levels.backend.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * ENTIDAD: MOVIMIENTO DE INVENTARIO (Diario de descuentos pendientes)
+ * ----------------------------------------------------
+ * Cada venta de un producto con "inventario caliente" deja aquí una fila, en la MISMA
+ * transacción que la orden. El stock de la tabla 'producto' se actualiza después, por lotes.
+ * * aplicado = false: el descuento todavía no llega a 'producto'.
+ * * El volcado resta y marca como aplicado en una sola transacción: si la app se cae a mitad
+ * de camino, al reintentar no se descuenta dos veces (idempotente).
+ * * Una sola fila por (orden, producto).
+ */
+@Entity
+@Table(name = "movimiento_inventario",
+        uniqueConstraints = @UniqueConstraint(name = "uk_movimiento_orden_producto", columnNames = {"orden_id", "producto_id"}),
+        indexes = @Index(name = "idx_movimiento_aplicado", columnList = "aplicado, id"))
+public class MovimientoInventario {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long ordenId;
+
+    private Long productoId;
+
+    private Integer cantidad;
+
+    @Column(nullable = false)
+    private Boolean aplicado = false;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fecha;
+
+    // --- GETTERS Y SETTERS ---
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getOrdenId() { return ordenId; }
+    public void setOrdenId(Long ordenId) { this.ordenId = ordenId; }
+
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public Integer getCantidad() { return cantidad; }
+    public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+
+    public Boolean getAplicado() { return aplicado; }
+    public void setAplicado(Boolean aplicado) { this.aplicado = aplicado; }
+
+    public Date getFecha() { return fecha; }
+    public void setFecha(Date fecha) { this.fecha = fecha; }
+}
@@ -11,6 +11,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
@@ -26,7 +27,9 @@ import jakarta.persistence.TemporalType;
  * Una vez creada, no debería modificarse (inmutabilidad financiera).
  */
 @Entity
-@Table(name = "ordenes")
+@Table(name = "ordenes",
+        // Historial por cliente (más recientes primero) paginado por cursor sin ordenar en memoria
+        indexes = @Index(name = "idx_ordenes_usuario_fecha_id", columnList = "usuario_id, fecha_creacion, id"))
 public class Orden {
 
     // --- IDENTIFICADOR ---
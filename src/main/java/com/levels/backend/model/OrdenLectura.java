@@ -0,0 +1,119 @@
+package com.levels.backend.model;
+
+import java.util.Date;
+
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import jakarta.persistence.Transient;
+
+/**
+ * ENTIDAD: ORDEN (vista de lectura)
+ * ----------------------------------------------------
+ * Copia "aplanada" de una Orden, escrita UNA vez en el checkout y solo leída después.
+ * Mostrar una Orden normal recorre usuario -> detalles -> producto -> categoría (una consulta
+ * por cada salto); esta fila trae todo en una sola lectura (el usuario, con JOIN FETCH).
+ * * Las líneas van en una columna JSON (detalles), con los datos del producto y su categoría
+ * CONGELADOS al momento de la compra. Se envían tal cual al cliente (@JsonRawValue).
+ * * El JSON tiene la misma forma que el de Orden: { id, total, usuario, detalles, fechaCreacion, ... },
+ * con el usuario completo (sin contraseña) y cada producto con sus campos y su categoría como objeto.
+ * * Mismo id que la orden (no se genera).
+ */
+@Entity
+@Table(name = "ordenes_lectura",
+        indexes = @Index(name = "idx_ordenes_lectura_usuario_id", columnList = "usuario_id, id"))
+@JsonIgnoreProperties({"usuarioId", "new"})
+public class OrdenLectura implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    @Column(name = "usuario_id")
+    private Long usuarioId;
+
+    /**
+     * Cliente (solo lectura, misma columna que usuarioId). Las consultas del repositorio lo traen
+     * con JOIN FETCH: mismos datos actuales que mostraba la Orden (puntos, nivel...) sin consultas extra.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "usuario_id", insertable = false, updatable = false)
+    @JsonIgnoreProperties("password")
+    private Usuario usuario;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaCreacion;
+
+    private Double total;
+    private String direccion;
+    private String region;
+    private String comuna;
+
+    // Unidades compradas (suma de las cantidades de las líneas)
+    private Long cantidadItems;
+
+    // [{ id, producto: { id, nombre, descripcion, precio, stock, imagenUrl, videoUrl,
+    //   categoria: { id, nombre, imagenUrl } }, cantidad, precioUnitario }, ...]
+    @Column(columnDefinition = "TEXT")
+    @JsonRawValue
+    private String detalles;
+
+    // true hasta guardarla: save() hace un INSERT directo (sin el SELECT previo de un id asignado a mano)
+    @Transient
+    private boolean nueva = true;
+
+    @PostLoad
+    @PostPersist
+    void marcarGuardada() {
+        nueva = false;
+    }
+
+    @Override
+    public boolean isNew() { return nueva; }
+
+    // --- GETTERS Y SETTERS ---
+
+    @Override
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getUsuarioId() { return usuarioId; }
+    public void setUsuarioId(Long usuarioId) { this.usuarioId = usuarioId; }
+
+    public Usuario getUsuario() { return usuario; }
+    public void setUsuario(Usuario usuario) { this.usuario = usuario; }
+
+    public Date getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(Date fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+
+    public Double getTotal() { return total; }
+    public void setTotal(Double total) { this.total = total; }
+
+    public String getDireccion() { return direccion; }
+    public void setDireccion(String direccion) { this.direccion = direccion; }
+
+    public String getRegion() { return region; }
+    public void setRegion(String region) { this.region = region; }
+
+    public String getComuna() { return comuna; }
+    public void setComuna(String comuna) { this.comuna = comuna; }
+
+    public Long getCantidadItems() { return cantidadItems; }
+    public void setCantidadItems(Long cantidadItems) { this.cantidadItems = cantidadItems; }
+
+    public String getDetalles() { return detalles; }
+    public void setDetalles(String detalles) { this.detalles = detalles; }
+}
@@ -1,11 +1,15 @@
 package com.levels.backend.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 /**
  * ENTIDAD: PRODUCTO
@@ -14,6 +18,13 @@ import jakarta.persistence.ManyToOne;
  * Esta clase se convierte automáticamente en la tabla 'producto' en MySQL.
  */
 @Entity
+@Table(name = "producto",
+        // Paginación por cursor del catálogo (ver ProductoRepository): orden + id, con y sin categoría
+        indexes = {
+                @Index(name = "idx_producto_precio_id", columnList = "precio, id"),
+                @Index(name = "idx_producto_nombre_id", columnList = "nombre, id"),
+                @Index(name = "idx_producto_categoria_precio_id", columnList = "categoria_id, precio, id"),
+                @Index(name = "idx_producto_categoria_nombre_id", columnList = "categoria_id, nombre, id") })
 public class Producto {
 
     // --- IDENTIFICADOR ÚNICO ---
@@ -36,6 +47,25 @@ public class Producto {
     private Double precio;
     private Integer stock;
 
+    /**
+     * INVENTARIO CALIENTE (venta flash, lo activa el Admin)
+     * Si es true, el stock se descuenta en memoria (InventarioCaliente) y 'stock' se actualiza
+     * por lotes, con unos instantes de retraso.
+     */
+    @Column(columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private Boolean inventarioCaliente = false;
+
+    /**
+     * VERSIÓN (Bloqueo optimista)
+     * Hibernate la incrementa en cada UPDATE y agrega "AND version = ?" al WHERE: si otra
+     * escritura se coló entre la lectura y el guardado, falla (y se reintenta) en vez de pisarla.
+     * Los UPDATE de stock por JDBC (checkout, volcado) también la incrementan.
+     * DEFAULT 0: las filas que ya existían en la tabla parten en la versión 0.
+     */
+    @Version
+    @Column(columnDefinition = "BIGINT DEFAULT 0")
+    private Long version;
+
     // --- MULTIMEDIA ---
     // Guardamos solo la URL (String), no la imagen binaria (BLOB).
     // Es una mejor práctica: la imagen vive en la nube (o carpeta pública) y la BD solo guarda el link.
@@ -77,6 +107,12 @@ public class Producto {
     public Integer getStock() { return stock; }
     public void setStock(Integer stock) { this.stock = stock; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public Boolean getInventarioCaliente() { return inventarioCaliente; }
+    public void setInventarioCaliente(Boolean inventarioCaliente) { this.inventarioCaliente = inventarioCaliente; }
+
     public String getImagenUrl() { return imagenUrl; }
     public void setImagenUrl(String imagenUrl) { this.imagenUrl = imagenUrl; }
 
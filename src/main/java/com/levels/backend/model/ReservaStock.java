@@ -0,0 +1,60 @@
+package com.levels.backend.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * ENTIDAD: RESERVA DE STOCK
+ * ----------------------------------------------------
+ * Unidades de un producto "apartadas" para el carrito de un usuario durante un tiempo limitado.
+ * La fuente de verdad en caliente es el libro en memoria (ReservasStock); esta tabla solo
+ * sirve para que las reservas sobrevivan a un reinicio.
+ * * Una fila por (usuario, producto): la cantidad es el total de ese producto en el carrito.
+ * * Guarda ids sueltos (sin @ManyToOne) para que escribirla sea un INSERT simple.
+ */
+@Entity
+@Table(name = "reserva_stock",
+        uniqueConstraints = @UniqueConstraint(name = "uk_reserva_usuario_producto", columnNames = {"usuario_id", "producto_id"}),
+        indexes = @Index(name = "idx_reserva_expira_en", columnList = "expira_en"))
+public class ReservaStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long usuarioId;
+
+    private Long productoId;
+
+    private Integer cantidad;
+
+    // Pasada esta fecha, la reserva ya no cuenta y el barrido la libera.
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiraEn;
+
+    // --- GETTERS Y SETTERS ---
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getUsuarioId() { return usuarioId; }
+    public void setUsuarioId(Long usuarioId) { this.usuarioId = usuarioId; }
+
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public Integer getCantidad() { return cantidad; }
+    public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+
+    public Date getExpiraEn() { return expiraEn; }
+    public void setExpiraEn(Date expiraEn) { this.expiraEn = expiraEn; }
+}
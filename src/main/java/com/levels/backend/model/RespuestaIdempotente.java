@@ -0,0 +1,85 @@
+package com.levels.backend.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * ENTIDAD: RESPUESTA IDEMPOTENTE
+ * ----------------------------------------------------
+ * Respaldo en BD de las respuestas guardadas por 'Idempotency-Key' (RespuestasIdempotentes).
+ * La copia rápida vive en memoria; esta tabla cubre los reinicios y las otras instancias.
+ * * Estados: EN_CURSO (alguien la está ejecutando) y COMPLETA (status + cuerpo listos para repetir).
+ * * Se escribe con sentencias directas (INSERT IGNORE / UPDATE), sin cargar la entidad.
+ */
+@Entity
+@Table(name = "respuesta_idempotente",
+        uniqueConstraints = @UniqueConstraint(name = "uk_respuesta_idempotente_clave", columnNames = "clave"),
+        indexes = @Index(name = "idx_respuesta_idempotente_expira_en", columnList = "expira_en"))
+public class RespuestaIdempotente {
+
+    public static final String EN_CURSO = "EN_CURSO";
+    public static final String COMPLETA = "COMPLETA";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Operación + clave enviada por el cliente (ej: "orden.checkout:8f14e45f-...")
+    @Column(length = 250, nullable = false)
+    private String clave;
+
+    // SHA-256 del cuerpo de la petición: la misma clave con otro cuerpo es un error del cliente
+    @Column(length = 64)
+    private String huella;
+
+    @Column(length = 10)
+    private String estado;
+
+    private Integer status;
+
+    @Column(columnDefinition = "TEXT")
+    private String cuerpo;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creadaEn;
+
+    // Pasada esta fecha la clave se puede volver a usar y el barrido borra la fila.
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiraEn;
+
+    // --- GETTERS Y SETTERS ---
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getClave() { return clave; }
+    public void setClave(String clave) { this.clave = clave; }
+
+    public String getHuella() { return huella; }
+    public void setHuella(String huella) { this.huella = huella; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public Integer getStatus() { return status; }
+    public void setStatus(Integer status) { this.status = status; }
+
+    public String getCuerpo() { return cuerpo; }
+    public void setCuerpo(String cuerpo) { this.cuerpo = cuerpo; }
+
+    public Date getCreadaEn() { return creadaEn; }
+    public void setCreadaEn(Date creadaEn) { this.creadaEn = creadaEn; }
+
+    public Date getExpiraEn() { return expiraEn; }
+    public void setExpiraEn(Date expiraEn) { this.expiraEn = expiraEn; }
+}
@@ -2,6 +2,9 @@ package com.levels.backend.model;
 
 import java.time.LocalDate;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -50,6 +53,16 @@ public class Usuario {
     // Define los permisos (ADMIN puede acceder al Panel, CLIENTE solo puede comprar)
     private String rol = "CLIENTE"; // Valores posibles: "CLIENTE", "ADMIN", "VENDEDOR"
 
+    /**
+     * VERSIÓN DE SEGURIDAD
+     * Se incrementa cada vez que cambian las credenciales (contraseña) del usuario.
+     * Viaja dentro del Token JWT: un token con una versión menor a la actual se rechaza.
+     * * @JsonIgnore: Es un dato interno, el Frontend no debe verlo ni poder modificarlo.
+     */
+    @JsonIgnore
+    @Column(columnDefinition = "INT DEFAULT 0")
+    private Integer versionSeguridad = 0;
+
     // Constructor vacío (necesario para JPA)
     public Usuario() {}
 
@@ -84,4 +97,7 @@ public class Usuario {
     
     public String getRol() { return rol; }
     public void setRol(String rol) { this.rol = rol; }
+
+    public Integer getVersionSeguridad() { return versionSeguridad != null ? versionSeguridad : 0; }
+    public void setVersionSeguridad(Integer versionSeguridad) { this.versionSeguridad = versionSeguridad; }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.levels.backend.model;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * ENTIDAD: VENTAS POR DÍA (acumulado)
+ * ----------------------------------------------------
+ * Una fila por día con la cantidad de órdenes y el monto vendido. El checkout la actualiza
+ * en su misma transacción (VentasAcumuladas), así el dashboard no recorre la tabla 'ordenes'.
+ * * El monto va en CENTAVOS (entero): sumar doubles orden a orden acumula error de redondeo,
+ * y una suma entera se puede comparar exacto al conciliar.
+ */
+@Entity
+@Table(name = "venta_diaria")
+public class VentaDiaria {
+
+    @Id
+    private LocalDate dia;
+
+    @Column(nullable = false)
+    private Long cantidadOrdenes;
+
+    @Column(nullable = false)
+    private Long totalCentavos;
+
+    // --- GETTERS Y SETTERS ---
+
+    public LocalDate getDia() { return dia; }
+    public void setDia(LocalDate dia) { this.dia = dia; }
+
+    public Long getCantidadOrdenes() { return cantidadOrdenes; }
+    public void setCantidadOrdenes(Long cantidadOrdenes) { this.cantidadOrdenes = cantidadOrdenes; }
+
+    public Long getTotalCentavos() { return totalCentavos; }
+    public void setTotalCentavos(Long totalCentavos) { this.totalCentavos = totalCentavos; }
+}
@@ -0,0 +1,40 @@
+package com.levels.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * ENTIDAD: VENTAS POR REGIÓN (acumulado)
+ * ----------------------------------------------------
+ * Igual que VentaDiaria, pero agrupado por la región de envío de la orden.
+ * Las órdenes antiguas sin región se acumulan en "Sin región".
+ */
+@Entity
+@Table(name = "venta_region")
+public class VentaRegion {
+
+    public static final String SIN_REGION = "Sin región";
+
+    @Id
+    @Column(length = 100)
+    private String region;
+
+    @Column(nullable = false)
+    private Long cantidadOrdenes;
+
+    @Column(nullable = false)
+    private Long totalCentavos;
+
+    // --- GETTERS Y SETTERS ---
+
+    public String getRegion() { return region; }
+    public void setRegion(String region) { this.region = region; }
+
+    public Long getCantidadOrdenes() { return cantidadOrdenes; }
+    public void setCantidadOrdenes(Long cantidadOrdenes) { this.cantidadOrdenes = cantidadOrdenes; }
+
+    public Long getTotalCentavos() { return totalCentavos; }
+    public void setTotalCentavos(Long totalCentavos) { this.totalCentavos = totalCentavos; }
+}
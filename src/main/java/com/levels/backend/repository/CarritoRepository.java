@@ -1,6 +1,11 @@
 package com.levels.backend.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.levels.backend.model.Carrito;
 
@@ -23,4 +28,26 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
      * @return El objeto Carrito asociado a ese usuario (relación OneToOne).
      */
     Carrito findByUsuarioId(Long usuarioId);
-}
\ No newline at end of file
+
+    /**
+     * CARGA COMPLETA EN UNA SOLA CONSULTA (JOIN FETCH)
+     * ----------------------------------------------------
+     * Trae el carrito con su usuario, sus ítems, el producto de cada ítem y su categoría.
+     * * Uso: Todas las operaciones del carrito (y el checkout). Evita la consulta extra por
+     * la lista de ítems y una más por cada producto (problema N+1).
+     * @param usuarioId El ID del usuario.
+     * @return El carrito listo para usar, o null si el usuario aún no tiene uno.
+     */
+    @Query("SELECT c FROM Carrito c JOIN FETCH c.usuario u "
+            + "LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.producto p LEFT JOIN FETCH p.categoria "
+            + "WHERE u.id = :usuarioId")
+    Carrito cargarCompleto(@Param("usuarioId") Long usuarioId);
+
+    /**
+     * Igual que cargarCompleto, pero para varios usuarios a la vez (volcado por lotes del CarritoStore).
+     */
+    @Query("SELECT c FROM Carrito c JOIN FETCH c.usuario u "
+            + "LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.producto p LEFT JOIN FETCH p.categoria "
+            + "WHERE u.id IN :usuarioIds")
+    List<Carrito> cargarCompletos(@Param("usuarioIds") Collection<Long> usuarioIds);
+}
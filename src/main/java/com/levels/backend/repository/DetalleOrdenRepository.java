@@ -1,6 +1,9 @@
 package com.levels.backend.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.levels.backend.model.DetalleOrden;
@@ -28,4 +31,11 @@ public interface DetalleOrdenRepository extends JpaRepository<DetalleOrden, Long
     
     // NOTA: No se necesitan métodos personalizados de búsqueda (findBy...)
     // porque el DetalleOrden siempre se consulta a través de su Orden asociada.
+
+    /**
+     * POPULARIDAD: Unidades vendidas por producto (una sola consulta agregada).
+     * Cada fila es [productoId (Long), unidades (Long)]. La usa el autocompletado al arrancar.
+     */
+    @Query("SELECT d.producto.id, SUM(d.cantidad) FROM DetalleOrden d WHERE d.producto IS NOT NULL GROUP BY d.producto.id")
+    List<Object[]> sumarUnidadesVendidasPorProducto();
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package com.levels.backend.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.levels.backend.dto.OrdenExportada;
+
+/**
+ * REPOSITORIO: EXPORTACIÓN DE ÓRDENES (JDBC directo, en streaming)
+ * ----------------------------------------------------
+ * findAll() arma TODA la tabla 'ordenes' (con usuarios y detalles) en memoria antes de escribir
+ * el primer byte. Aquí se recorre con un cursor de solo avance: la BD entrega las filas de a
+ * 'fetch-size' y cada una se entrega al llamador y se descarta. La memoria no crece con la tabla.
+ * * En MySQL, el driver ignora el fetch size (trae el resultado completo) salvo con 'useCursorFetch=true'
+ * en la URL, que cambiaría TODAS las conexiones del pool. Se usa su modo fila a fila
+ * (fetch size Integer.MIN_VALUE), que solo afecta a la sentencia que lo pide.
+ * * Sin entidades ni contexto de persistencia: cada fila se convierte directo a OrdenExportada.
+ * * También recorre las ventas crudas (fecha, región, total) para conciliar los acumulados,
+ * y las líneas vendidas (DetalleOrden) para cargar la analítica en memoria.
+ */
+@Repository
+public class OrdenExportJdbcRepository {
+
+    private static final String SELECCION =
+            "SELECT o.id, o.fecha_creacion, o.usuario_id, u.email, o.total, o.region, o.comuna, o.direccion, "
+            + "(SELECT COALESCE(SUM(d.cantidad), 0) FROM detalles_orden d WHERE d.orden_id = o.id) AS unidades "
+            + "FROM ordenes o LEFT JOIN usuario u ON u.id = o.usuario_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${levelup.ordenes.exportar.fetch-size:500}")
+    private int fetchSize;
+
+    /**
+     * RECORRER las órdenes (por id ascendente) que cumplen los filtros.
+     * @param desde Desde esta fecha, inclusive (opcional).
+     * @param hasta Hasta esta fecha, exclusive (opcional).
+     * @param region Región exacta (opcional).
+     * @param destino Recibe cada fila; no debe guardarlas.
+     * @return Cantidad de filas recorridas.
+     */
+    public long recorrer(Date desde, Date hasta, String region, Consumer<OrdenExportada> destino) {
+        StringBuilder sql = new StringBuilder(SELECCION).append(" WHERE 1 = 1");
+        List<Object> parametros = new ArrayList<>();
+        if (desde != null) {
+            sql.append(" AND o.fecha_creacion >= ?");
+            parametros.add(new Timestamp(desde.getTime()));
+        }
+        if (hasta != null) {
+            sql.append(" AND o.fecha_creacion < ?");
+            parametros.add(new Timestamp(hasta.getTime()));
+        }
+        if (region != null) {
+            sql.append(" AND o.region = ?");
+            parametros.add(region);
+        }
+        sql.append(" ORDER BY o.id");
+
+        long[] filas = new long[1];
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = prepararLectura(con, sql.toString());
+            for (int i = 0; i < parametros.size(); i++) {
+                ps.setObject(i + 1, parametros.get(i));
+            }
+            return ps;
+        }, rs -> {
+            Timestamp fecha = rs.getTimestamp("fecha_creacion");
+            Long usuarioId = rs.getObject("usuario_id", Long.class);
+            Double total = rs.getObject("total", Double.class);
+            destino.accept(new OrdenExportada(
+                    rs.getLong("id"),
+                    fecha != null ? fecha.toLocalDateTime() : null,
+                    usuarioId,
+                    rs.getString("email"),
+                    total,
+                    rs.getString("region"),
+                    rs.getString("comuna"),
+                    rs.getString("direccion"),
+                    rs.getLong("unidades")));
+            filas[0]++;
+        });
+        return filas[0];
+    }
+
+    /**
+     * Lo mínimo de una orden para recalcular los acumulados de ventas.
+     */
+    public record FilaVenta(LocalDateTime fechaCreacion, String region, Double total) {}
+
+    /**
+     * RECORRER TODAS las órdenes (fecha, región y total), con el mismo cursor de solo avance.
+     * Uso: conciliación de los acumulados de ventas (VentasAcumuladas).
+     * @return Cantidad de filas recorridas.
+     */
+    public long recorrerVentas(Consumer<FilaVenta> destino) {
+        long[] filas = new long[1];
+        jdbcTemplate.query(con -> prepararLectura(con, "SELECT fecha_creacion, region, total FROM ordenes"), rs -> {
+            Timestamp fecha = rs.getTimestamp("fecha_creacion");
+            destino.accept(new FilaVenta(
+                    fecha != null ? fecha.toLocalDateTime() : null,
+                    rs.getString("region"),
+                    rs.getObject("total", Double.class)));
+            filas[0]++;
+        });
+        return filas[0];
+    }
+
+    /**
+     * Una línea vendida, con los datos de su orden y de su producto (aplanados).
+     * @param productoId null si el producto ya no existe.
+     */
+    public record LineaVendida(long ordenId, LocalDateTime fechaCreacion, String region, String comuna,
+                               Long productoId, String producto, String categoria, int cantidad, double precioUnitario) {}
+
+    /**
+     * RECORRER TODAS las líneas de detalle, agrupadas por orden (orden_id ascendente).
+     * Uso: carga inicial de AnaliticaVentas.
+     * @return Cantidad de líneas recorridas.
+     */
+    public long recorrerLineas(Consumer<LineaVendida> destino) {
+        String sql = "SELECT d.orden_id, o.fecha_creacion, o.region, o.comuna, d.producto_id, p.nombre, c.nombre AS categoria, "
+                + "d.cantidad, d.precio_unitario "
+                + "FROM detalles_orden d JOIN ordenes o ON o.id = d.orden_id "
+                + "LEFT JOIN producto p ON p.id = d.producto_id LEFT JOIN categoria c ON c.id = p.categoria_id "
+                + "ORDER BY d.orden_id, d.id";
+        long[] filas = new long[1];
+        jdbcTemplate.query(con -> prepararLectura(con, sql), rs -> {
+            Timestamp fecha = rs.getTimestamp("fecha_creacion");
+            if (fecha == null) return;
+            Integer cantidad = rs.getObject("cantidad", Integer.class);
+            Double precio = rs.getObject("precio_unitario", Double.class);
+            destino.accept(new LineaVendida(
+                    rs.getLong("orden_id"),
+                    fecha.toLocalDateTime(),
+                    rs.getString("region"),
+                    rs.getString("comuna"),
+                    rs.getObject("producto_id", Long.class),
+                    rs.getString("nombre"),
+                    rs.getString("categoria"),
+                    cantidad != null ? cantidad : 0,
+                    precio != null ? precio : 0));
+            filas[0]++;
+        });
+        return filas[0];
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    /**
+     * Sentencia de solo avance que la BD entrega por tramos, sin cargar el resultado completo.
+     * MySQL: fila a fila (Integer.MIN_VALUE); mientras se lee, esa conexión no admite otra consulta.
+     * Otras BD (H2 en las pruebas): de a 'fetch-size' filas.
+     */
+    private PreparedStatement prepararLectura(Connection con, String sql) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        boolean mysql = "MySQL".equals(con.getMetaData().getDatabaseProductName());
+        ps.setFetchSize(mysql ? Integer.MIN_VALUE : fetchSize);
+        return ps;
+    }
+}
@@ -0,0 +1,45 @@
+package com.levels.backend.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.levels.backend.model.OrdenLectura;
+
+/**
+ * REPOSITORIO: ÓRDENES (vista de lectura)
+ * ----------------------------------------------------
+ * Cada método es UNA consulta: la tabla de vistas más su usuario (JOIN FETCH), sin cargas perezosas.
+ */
+@Repository
+public interface OrdenLecturaRepository extends JpaRepository<OrdenLectura, Long> {
+
+    /**
+     * 1. HISTORIAL completo de un cliente (mismo orden que antes: por id).
+     */
+    @Query("SELECT l FROM OrdenLectura l LEFT JOIN FETCH l.usuario WHERE l.usuarioId = :usuarioId ORDER BY l.id")
+    List<OrdenLectura> delUsuario(@Param("usuarioId") Long usuarioId);
+
+    /**
+     * 2. TODAS las ventas (Admin).
+     */
+    @Query("SELECT l FROM OrdenLectura l LEFT JOIN FETCH l.usuario ORDER BY l.id")
+    List<OrdenLectura> todas();
+
+    /**
+     * 2.B UNA orden con su usuario.
+     */
+    @Query("SELECT l FROM OrdenLectura l LEFT JOIN FETCH l.usuario WHERE l.id = :id")
+    Optional<OrdenLectura> buscar(@Param("id") Long id);
+
+    /**
+     * 3. ÓRDENES SIN VISTA DE LECTURA (anteriores a esta tabla), de a 'lote'.
+     */
+    @Query(value = "SELECT o.id FROM ordenes o LEFT JOIN ordenes_lectura l ON l.id = o.id "
+            + "WHERE l.id IS NULL ORDER BY o.id LIMIT :lote", nativeQuery = true)
+    List<Long> idsSinVista(@Param("lote") int lote);
+}
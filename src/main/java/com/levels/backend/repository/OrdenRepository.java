@@ -1,11 +1,16 @@
 package com.levels.backend.repository;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.levels.backend.dto.OrdenResumen;
 import com.levels.backend.model.Orden;
 
 /**
@@ -42,4 +47,38 @@ public interface OrdenRepository extends JpaRepository<Orden, Long> {
      */
     @Query("SELECT COALESCE(SUM(o.total), 0) FROM Orden o")
     Double sumarVentasTotales();
-}
\ No newline at end of file
+
+    // --- 3. HISTORIAL PAGINADO POR CURSOR (Keyset Pagination) ---
+    // Más recientes primero, ordenadas por (fechaCreacion, id): el id desempata compras del mismo
+    // instante. El índice (usuario_id, fecha_creacion, id) permite leer solo las filas de la página.
+    // Las unidades se cuentan con una subconsulta: se evalúa solo para las filas devueltas.
+    // 'desde' (inclusive) y 'hasta' (exclusive) son opcionales.
+
+    @Query("SELECT new com.levels.backend.dto.OrdenResumen(o.id, o.fechaCreacion, o.total, "
+            + "(SELECT COALESCE(SUM(d.cantidad), 0) FROM DetalleOrden d WHERE d.orden = o)) "
+            + "FROM Orden o WHERE o.usuario.id = :usuarioId "
+            + "AND (:desde IS NULL OR o.fechaCreacion >= :desde) AND (:hasta IS NULL OR o.fechaCreacion < :hasta) "
+            + "ORDER BY o.fechaCreacion DESC, o.id DESC")
+    List<OrdenResumen> primeraPaginaHistorial(@Param("usuarioId") Long usuarioId,
+            @Param("desde") Date desde, @Param("hasta") Date hasta, Limit limite);
+
+    @Query("SELECT new com.levels.backend.dto.OrdenResumen(o.id, o.fechaCreacion, o.total, "
+            + "(SELECT COALESCE(SUM(d.cantidad), 0) FROM DetalleOrden d WHERE d.orden = o)) "
+            + "FROM Orden o WHERE o.usuario.id = :usuarioId "
+            + "AND (:desde IS NULL OR o.fechaCreacion >= :desde) AND (:hasta IS NULL OR o.fechaCreacion < :hasta) "
+            + "AND (o.fechaCreacion < :fecha OR (o.fechaCreacion = :fecha AND o.id < :id)) "
+            + "ORDER BY o.fechaCreacion DESC, o.id DESC")
+    List<OrdenResumen> siguientePaginaHistorial(@Param("usuarioId") Long usuarioId,
+            @Param("desde") Date desde, @Param("hasta") Date hasta,
+            @Param("fecha") Date fecha, @Param("id") Long id, Limit limite);
+
+    /**
+     * 4. CARGA COMPLETA DE VARIAS ÓRDENES EN UNA SOLA CONSULTA (JOIN FETCH)
+     * Trae cada orden con su usuario, sus detalles, el producto de cada detalle y su categoría.
+     * * Uso: completar la vista de lectura (OrdenLectura) de las órdenes antiguas, por lotes.
+     */
+    @Query("SELECT DISTINCT o FROM Orden o LEFT JOIN FETCH o.usuario "
+            + "LEFT JOIN FETCH o.detalles d LEFT JOIN FETCH d.producto p LEFT JOIN FETCH p.categoria "
+            + "WHERE o.id IN :ids")
+    List<Orden> cargarCompletas(@Param("ids") Collection<Long> ids);
+}
@@ -2,7 +2,10 @@ package com.levels.backend.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.levels.backend.model.Producto;
@@ -30,4 +33,69 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     
     // 2. Opcion B: Buscar por ID de la Categoría (Alternativa)
     // List<Producto> findByCategoriaId(Long id);
+
+    // --- 3. PAGINACIÓN POR CURSOR (Keyset Pagination) ---
+    // En lugar de OFFSET (que recorre y descarta todas las filas anteriores), filtramos por
+    // "después de la última fila vista" usando la pareja (columna de orden, id).
+    // El id desempata productos con el mismo precio/nombre, garantizando un orden total.
+    // Cada criterio tiene dos consultas: la primera página (sin cursor) y las siguientes.
+    // El filtro de categoría es opcional: si 'categoria' es null, se listan todas.
+    // Precio o nombre NULL: MySQL (y H2) los ordenan PRIMERO en ASC. Si la última fila vista
+    // tenía NULL, la página siguiente usa la variante 'DesdeNulos' (el resto de los NULL por id
+    // y luego todos los valores), porque "p.precio > NULL" no es verdadero para ninguna fila.
+    // Índices: (precio, id), (nombre, id) y sus variantes con categoria_id (ver Producto).
+
+    @Query("SELECT p FROM Producto p LEFT JOIN p.categoria c "
+            + "WHERE (:categoria IS NULL OR c.nombre = :categoria) "
+            + "ORDER BY p.precio ASC, p.id ASC")
+    List<Producto> primeraPaginaPorPrecio(@Param("categoria") String categoria, Limit limite);
+
+    @Query("SELECT p FROM Producto p LEFT JOIN p.categoria c "
+            + "WHERE (:categoria IS NULL OR c.nombre = :categoria) "
+            + "AND (p.precio > :precio OR (p.precio = :precio AND p.id > :id)) "
+            + "ORDER BY p.precio ASC, p.id ASC")
+    List<Producto> siguientePaginaPorPrecio(@Param("categoria") String categoria,
+            @Param("precio") Double precio, @Param("id") Long id, Limit limite);
+
+    @Query("SELECT p FROM Producto p LEFT JOIN p.categoria c "
+            + "WHERE (:categoria IS NULL OR c.nombre = :categoria) "
+            + "AND ((p.precio IS NULL AND p.id > :id) OR p.precio IS NOT NULL) "
+            + "ORDER BY p.precio ASC, p.id ASC")
+    List<Producto> siguientePaginaPorPrecioDesdeNulos(@Param("categoria") String categoria,
+            @Param("id") Long id, Limit limite);
+
+    @Query("SELECT p FROM Producto p LEFT JOIN p.categoria c "
+            + "WHERE (:categoria IS NULL OR c.nombre = :categoria) "
+            + "ORDER BY p.nombre ASC, p.id ASC")
+    List<Producto> primeraPaginaPorNombre(@Param("categoria") String categoria, Limit limite);
+
+    @Query("SELECT p FROM Producto p LEFT JOIN p.categoria c "
+            + "WHERE (:categoria IS NULL OR c.nombre = :categoria) "
+            + "AND (p.nombre > :nombre OR (p.nombre = :nombre AND p.id > :id)) "
+            + "ORDER BY p.nombre ASC, p.id ASC")
+    List<Producto> siguientePaginaPorNombre(@Param("categoria") String categoria,
+            @Param("nombre") String nombre, @Param("id") Long id, Limit limite);
+
+    @Query("SELECT p FROM Producto p LEFT JOIN p.categoria c "
+            + "WHERE (:categoria IS NULL OR c.nombre = :categoria) "
+            + "AND ((p.nombre IS NULL AND p.id > :id) OR p.nombre IS NOT NULL) "
+            + "ORDER BY p.nombre ASC, p.id ASC")
+    List<Producto> siguientePaginaPorNombreDesdeNulos(@Param("categoria") String categoria,
+            @Param("id") Long id, Limit limite);
+
+    // "Más recientes": el id es autoincremental, así que un id mayor = producto más nuevo.
+    @Query("SELECT p FROM Producto p LEFT JOIN p.categoria c "
+            + "WHERE (:categoria IS NULL OR c.nombre = :categoria) "
+            + "ORDER BY p.id DESC")
+    List<Producto> primeraPaginaRecientes(@Param("categoria") String categoria, Limit limite);
+
+    @Query("SELECT p FROM Producto p LEFT JOIN p.categoria c "
+            + "WHERE (:categoria IS NULL OR c.nombre = :categoria) AND p.id < :id "
+            + "ORDER BY p.id DESC")
+    List<Producto> siguientePaginaRecientes(@Param("categoria") String categoria, @Param("id") Long id, Limit limite);
+
+    /**
+     * Productos en modo venta flash (su stock se lleva en memoria). Se usa al arrancar.
+     */
+    List<Producto> findByInventarioCalienteTrue();
 }
\ No newline at end of file
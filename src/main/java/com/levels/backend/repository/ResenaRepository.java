@@ -3,6 +3,7 @@ package com.levels.backend.repository;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.levels.backend.model.Resena;
@@ -37,4 +38,13 @@ public interface ResenaRepository extends JpaRepository<Resena, Long> {
      * @param productoId El ID del producto a eliminar.
      */
     void deleteByProductoId(Long productoId); 
+
+    /**
+     * 3. CALIFICACIONES AGREGADAS POR PRODUCTO (una sola consulta)
+     * ----------------------------------------------------
+     * Cada fila es [productoId (Long), suma de estrellas (Long), cantidad de reseñas (Long)].
+     * * Uso: Carga inicial de la faceta "calificación mínima" del catálogo.
+     */
+    @Query("SELECT r.producto.id, SUM(r.calificacion), COUNT(r) FROM Resena r WHERE r.producto IS NOT NULL GROUP BY r.producto.id")
+    List<Object[]> sumarCalificacionesPorProducto();
 }
\ No newline at end of file
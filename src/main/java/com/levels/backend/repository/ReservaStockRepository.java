@@ -0,0 +1,66 @@
+package com.levels.backend.repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.levels.backend.model.ReservaStock;
+
+/**
+ * REPOSITORIO: RESERVAS DE STOCK
+ * ----------------------------------------------------
+ * Persistencia del libro de reservas. Todas las escrituras son sentencias directas
+ * (sin cargar entidades) porque se ejecutan en cada "agregar al carrito".
+ */
+@Repository
+public interface ReservaStockRepository extends JpaRepository<ReservaStock, Long> {
+
+    /**
+     * 1. CREAR O RENOVAR (UPSERT) la reserva de un usuario sobre un producto.
+     * Traducción SQL: INSERT ... ON DUPLICATE KEY UPDATE (una sola ida a la BD).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO reserva_stock (usuario_id, producto_id, cantidad, expira_en) "
+            + "VALUES (:usuarioId, :productoId, :cantidad, :expiraEn) "
+            + "ON DUPLICATE KEY UPDATE cantidad = :cantidad, expira_en = :expiraEn", nativeQuery = true)
+    int guardar(@Param("usuarioId") Long usuarioId, @Param("productoId") Long productoId,
+                @Param("cantidad") int cantidad, @Param("expiraEn") Date expiraEn);
+
+    /**
+     * 2. LIBERAR las reservas de un usuario sobre ciertos productos (quitar del carrito o checkout).
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ReservaStock r WHERE r.usuarioId = :usuarioId AND r.productoId IN :productoIds")
+    int eliminar(@Param("usuarioId") Long usuarioId, @Param("productoIds") Collection<Long> productoIds);
+
+    /**
+     * 3. LIBERAR todas las reservas de productos borrados del catálogo.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ReservaStock r WHERE r.productoId IN :productoIds")
+    int eliminarPorProductos(@Param("productoIds") Collection<Long> productoIds);
+
+    /**
+     * 4. BARRIDO: borra hasta 'lote' reservas vencidas. Se llama en bucle hasta que borra menos de 'lote',
+     * así cada DELETE bloquea pocas filas y por poco tiempo.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM reserva_stock WHERE expira_en <= :limite LIMIT :lote", nativeQuery = true)
+    int eliminarVencidas(@Param("limite") Date limite, @Param("lote") int lote);
+
+    /**
+     * 5. CARGA AL ARRANCAR: reservas aún vigentes.
+     */
+    List<ReservaStock> findByExpiraEnAfter(Date ahora);
+}
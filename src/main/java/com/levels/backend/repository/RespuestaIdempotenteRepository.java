@@ -0,0 +1,73 @@
+package com.levels.backend.repository;
+
+import java.util.Date;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.levels.backend.model.RespuestaIdempotente;
+
+/**
+ * REPOSITORIO: RESPUESTAS IDEMPOTENTES
+ * ----------------------------------------------------
+ * La clave única de la tabla hace de "candado" entre instancias: solo quien logra insertar
+ * (o tomar una fila vencida) ejecuta la petición.
+ */
+@Repository
+public interface RespuestaIdempotenteRepository extends JpaRepository<RespuestaIdempotente, Long> {
+
+    /**
+     * 1. RECLAMAR una clave nueva.
+     * @return 1 si esta petición la reclamó; 0 si la clave ya existía.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO respuesta_idempotente (clave, huella, estado, creada_en, expira_en) "
+            + "VALUES (:clave, :huella, 'EN_CURSO', :ahora, :expiraEn)", nativeQuery = true)
+    int reclamar(@Param("clave") String clave, @Param("huella") String huella,
+                 @Param("ahora") Date ahora, @Param("expiraEn") Date expiraEn);
+
+    /**
+     * 2. TOMAR una clave vencida, o EN_CURSO abandonada (la instancia que la ejecutaba se cayó).
+     * @return 1 si esta petición la tomó; 0 si sigue vigente.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE respuesta_idempotente SET huella = :huella, estado = 'EN_CURSO', status = NULL, "
+            + "cuerpo = NULL, creada_en = :ahora, expira_en = :expiraEn "
+            + "WHERE clave = :clave AND (expira_en <= :ahora OR (estado = 'EN_CURSO' AND creada_en <= :abandonadaAntesDe))",
+            nativeQuery = true)
+    int tomar(@Param("clave") String clave, @Param("huella") String huella, @Param("ahora") Date ahora,
+              @Param("expiraEn") Date expiraEn, @Param("abandonadaAntesDe") Date abandonadaAntesDe);
+
+    /**
+     * 3. GUARDAR la respuesta final.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RespuestaIdempotente r SET r.estado = 'COMPLETA', r.status = :status, r.cuerpo = :cuerpo "
+            + "WHERE r.clave = :clave")
+    int completar(@Param("clave") String clave, @Param("status") int status, @Param("cuerpo") String cuerpo);
+
+    /**
+     * 4. SOLTAR una clave que terminó en error (el cliente puede reintentar y se vuelve a ejecutar).
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RespuestaIdempotente r WHERE r.clave = :clave AND r.estado = 'EN_CURSO'")
+    int soltar(@Param("clave") String clave);
+
+    /**
+     * 5. BARRIDO: borra hasta 'lote' filas vencidas (se llama en bucle, igual que las reservas).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM respuesta_idempotente WHERE expira_en <= :limite LIMIT :lote", nativeQuery = true)
+    int eliminarVencidas(@Param("limite") Date limite, @Param("lote") int lote);
+
+    RespuestaIdempotente findByClave(String clave);
+}
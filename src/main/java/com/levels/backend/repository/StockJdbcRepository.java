@@ -0,0 +1,200 @@
+package com.levels.backend.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.levels.backend.dto.EstadoStock;
+
+/**
+ * REPOSITORIO: DESCUENTO ATÓMICO DE STOCK (JDBC directo)
+ * ----------------------------------------------------
+ * El checkout no lee el stock, lo resta en Java y lo guarda (eso pierde actualizaciones
+ * cuando dos compras llegan a la vez). En su lugar, la propia BD resta y valida en una
+ * sola sentencia condicional:
+ * UPDATE producto SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock >= ?
+ * * Si no alcanza el stock, la fila no cambia (0 filas afectadas) y el llamador aborta.
+ * * Todas las líneas de la compra viajan juntas en un solo batch JDBC.
+ * * Usa la misma conexión y transacción que JPA (JpaTransactionManager la comparte).
+ * * Todo UPDATE de 'producto' incrementa 'version' (@Version de la entidad): así una edición
+ * del Admin que leyó el stock antes de una venta detecta el conflicto en vez de pisarla.
+ * * Bloqueo determinista: las filas se bloquean siempre en orden de id, con una sola
+ * consulta. Dos carritos con los mismos productos en distinto orden no pueden
+ * bloquearse mutuamente (deadlock de InnoDB).
+ * * Inventario caliente: los productos en venta flash no se bloquean ni se descuentan aquí
+ * en el checkout; se anotan en 'movimiento_inventario' y se vuelcan a 'producto' por lotes.
+ */
+@Repository
+public class StockJdbcRepository {
+
+    private static final String DESCONTAR_STOCK =
+            "UPDATE producto SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock >= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * BLOQUEAR PRODUCTOS (SELECT ... FOR UPDATE, una sola consulta, en orden de id)
+     * Las filas quedan bloqueadas hasta el fin de la transacción: ninguna otra compra
+     * puede cambiar su stock mientras tanto.
+     * @param productoIds Productos a bloquear.
+     * @return Stock y versión actuales (ya bloqueados) por id, en orden ascendente de id.
+     */
+    public Map<Long, EstadoStock> bloquear(Collection<Long> productoIds) {
+        return leerEstados(productoIds, " FOR UPDATE");
+    }
+
+    /**
+     * Una línea a descontar: producto y cantidad comprada.
+     */
+    public record LineaStock(Long productoId, int cantidad) {}
+
+    /**
+     * DESCONTAR STOCK (un batch para todas las líneas)
+     * Nota: no activamos 'rewriteBatchedStatements' en la URL de MySQL, para que el driver
+     * informe las filas afectadas de CADA sentencia y podamos saber cuál falló.
+     * @param lineas Productos y cantidades de la compra.
+     * @return Ids de los productos sin stock suficiente (vacío = todo descontado).
+     */
+    public List<Long> descontar(List<LineaStock> lineas) {
+        int[] filasAfectadas = jdbcTemplate.batchUpdate(DESCONTAR_STOCK, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                LineaStock linea = lineas.get(i);
+                ps.setInt(1, linea.cantidad());
+                ps.setLong(2, linea.productoId());
+                ps.setInt(3, linea.cantidad());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lineas.size();
+            }
+        });
+
+        List<Long> sinStock = new ArrayList<>();
+        for (int i = 0; i < filasAfectadas.length; i++) {
+            if (filasAfectadas[i] == 0) {
+                sinStock.add(lineas.get(i).productoId());
+            }
+        }
+        return sinStock;
+    }
+
+    /**
+     * DIARIO: anota los descuentos pendientes de una orden (un batch, en la transacción del checkout).
+     */
+    public void anotarMovimientos(Long ordenId, List<LineaStock> lineas) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO movimiento_inventario (orden_id, producto_id, cantidad, aplicado, fecha) VALUES (?, ?, ?, FALSE, CURRENT_TIMESTAMP)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        LineaStock linea = lineas.get(i);
+                        ps.setLong(1, ordenId);
+                        ps.setLong(2, linea.productoId());
+                        ps.setInt(3, linea.cantidad());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return lineas.size();
+                    }
+                });
+    }
+
+    /**
+     * Resultado de un volcado: cuántos movimientos se aplicaron, cuánto se restó por producto
+     * y en qué stock y versión quedó cada uno.
+     */
+    public record Volcado(int movimientos, Map<Long, Integer> porProducto, Map<Long, EstadoStock> estados) {}
+
+    /**
+     * VOLCADO: aplica a 'producto' hasta 'lote' movimientos pendientes y los marca como aplicados.
+     * Debe llamarse dentro de una transacción: restar y marcar se confirman juntos o no se confirma
+     * nada, así un reintento tras una caída nunca descuenta dos veces.
+     */
+    public Volcado aplicarMovimientos(int lote) {
+        List<Long> ids = new ArrayList<>();
+        Map<Long, Integer> porProducto = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, producto_id, cantidad FROM movimiento_inventario WHERE aplicado = FALSE ORDER BY id LIMIT ? FOR UPDATE",
+                rs -> {
+                    ids.add(rs.getLong("id"));
+                    porProducto.merge(rs.getLong("producto_id"), rs.getInt("cantidad"), Integer::sum);
+                },
+                lote);
+        if (ids.isEmpty()) {
+            return new Volcado(0, Map.of(), Map.of());
+        }
+
+        // Una resta por producto (no por venta): miles de compras se vuelven pocas sentencias
+        List<Map.Entry<Long, Integer>> restas = new ArrayList<>(porProducto.entrySet());
+        restas.sort(Map.Entry.comparingByKey()); // Mismo orden de bloqueo que el checkout
+        jdbcTemplate.batchUpdate("UPDATE producto SET stock = stock - ?, version = version + 1 WHERE id = ?", new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, restas.get(i).getValue());
+                ps.setLong(2, restas.get(i).getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return restas.size();
+            }
+        });
+
+        String marcadores = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update("UPDATE movimiento_inventario SET aplicado = TRUE WHERE id IN (" + marcadores + ")", ids.toArray());
+        // Las filas siguen bloqueadas por el UPDATE: este es su estado al confirmar
+        return new Volcado(ids.size(), porProducto, leerEstados(porProducto.keySet(), ""));
+    }
+
+    /**
+     * Stock y versión de los productos indicados, en orden de id ('bloqueo' = " FOR UPDATE" o "").
+     */
+    private Map<Long, EstadoStock> leerEstados(Collection<Long> productoIds, String bloqueo) {
+        if (productoIds.isEmpty()) {
+            return Map.of();
+        }
+        String marcadores = String.join(",", Collections.nCopies(productoIds.size(), "?"));
+        Map<Long, EstadoStock> estados = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, stock, version FROM producto WHERE id IN (" + marcadores + ") ORDER BY id" + bloqueo,
+                rs -> {
+                    estados.put(rs.getLong("id"), new EstadoStock(rs.getInt("stock"), rs.getLong("version")));
+                },
+                productoIds.toArray());
+        return estados;
+    }
+
+    /**
+     * Marca o desmarca un producto como "inventario caliente".
+     */
+    public void marcarInventarioCaliente(Long productoId, boolean activo) {
+        jdbcTemplate.update("UPDATE producto SET inventario_caliente = ?, version = version + 1 WHERE id = ?", activo, productoId);
+    }
+
+    /**
+     * Unidades vendidas que aún no llegan a 'producto', por producto.
+     */
+    public Map<Long, Integer> pendientesPorProducto() {
+        Map<Long, Integer> pendientes = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT producto_id, SUM(cantidad) AS unidades FROM movimiento_inventario WHERE aplicado = FALSE GROUP BY producto_id",
+                rs -> {
+                    pendientes.put(rs.getLong("producto_id"), rs.getInt("unidades"));
+                });
+        return pendientes;
+    }
+}
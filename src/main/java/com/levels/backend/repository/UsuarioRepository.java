@@ -1,6 +1,9 @@
 package com.levels.backend.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.levels.backend.model.Usuario;
@@ -36,4 +39,15 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
      * @return El objeto Usuario dueño de ese código, o null.
      */
     Usuario findByCodigoReferidoPropio(String codigo);
+
+    /**
+     * 3. VERSIONES DE SEGURIDAD VIGENTES (JPQL Personalizada)
+     * ----------------------------------------------------
+     * Devuelve pares [id, versionSeguridad] solo de los usuarios que alguna vez cambiaron
+     * sus credenciales (versión > 0). Es una lista pequeña.
+     * * Uso: Precargar en memoria la tabla de versiones al iniciar la aplicación,
+     * para que JwtAuthFilter no tenga que consultar la BD en cada petición.
+     */
+    @Query("SELECT u.id, u.versionSeguridad FROM Usuario u WHERE u.versionSeguridad > 0")
+    List<Object[]> findVersionesSeguridad();
 }
\ No newline at end of file
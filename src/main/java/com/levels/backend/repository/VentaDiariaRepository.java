@@ -0,0 +1,48 @@
+package com.levels.backend.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.levels.backend.model.VentaDiaria;
+
+/**
+ * REPOSITORIO: VENTAS POR DÍA
+ * ----------------------------------------------------
+ * Se escribe con un UPSERT que SUMA (no lee-modifica-escribe): dos checkouts simultáneos
+ * del mismo día nunca se pisan.
+ */
+@Repository
+public interface VentaDiariaRepository extends JpaRepository<VentaDiaria, LocalDate> {
+
+    /**
+     * 1. SUMAR órdenes y centavos a un día (crea la fila si es la primera venta del día).
+     * También sirve para restar: la conciliación corrige con valores negativos.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO venta_diaria (dia, cantidad_ordenes, total_centavos) "
+            + "VALUES (:dia, :ordenes, :centavos) "
+            + "ON DUPLICATE KEY UPDATE cantidad_ordenes = cantidad_ordenes + :ordenes, "
+            + "total_centavos = total_centavos + :centavos", nativeQuery = true)
+    int sumar(@Param("dia") LocalDate dia, @Param("ordenes") long ordenes, @Param("centavos") long centavos);
+
+    /**
+     * 2. TOTALES GENERALES (al arrancar y en cada refresco; la tabla tiene una fila por día).
+     * Una sola consulta: órdenes y centavos salen de la misma lectura.
+     * Una fila: [órdenes (Long), centavos (Long)].
+     */
+    @Query("SELECT COALESCE(SUM(v.cantidadOrdenes), 0), COALESCE(SUM(v.totalCentavos), 0) FROM VentaDiaria v")
+    List<Object[]> sumarTotales();
+
+    /**
+     * 3. DÍAS de un rango (ambos incluidos), en orden cronológico.
+     */
+    List<VentaDiaria> findByDiaBetweenOrderByDiaAsc(LocalDate desde, LocalDate hasta);
+}
@@ -0,0 +1,37 @@
+package com.levels.backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.levels.backend.model.VentaRegion;
+
+/**
+ * REPOSITORIO: VENTAS POR REGIÓN
+ * ----------------------------------------------------
+ * Mismo UPSERT que suma que VentaDiariaRepository.
+ */
+@Repository
+public interface VentaRegionRepository extends JpaRepository<VentaRegion, String> {
+
+    /**
+     * 1. SUMAR órdenes y centavos a una región (valores negativos = corrección).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO venta_region (region, cantidad_ordenes, total_centavos) "
+            + "VALUES (:region, :ordenes, :centavos) "
+            + "ON DUPLICATE KEY UPDATE cantidad_ordenes = cantidad_ordenes + :ordenes, "
+            + "total_centavos = total_centavos + :centavos", nativeQuery = true)
+    int sumar(@Param("region") String region, @Param("ordenes") long ordenes, @Param("centavos") long centavos);
+
+    /**
+     * 2. REGIONES de mayor a menor monto vendido.
+     */
+    List<VentaRegion> findAllByOrderByTotalCentavosDesc();
+}
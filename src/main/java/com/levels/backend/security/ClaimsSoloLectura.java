@@ -0,0 +1,59 @@
+package com.levels.backend.security;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * CLAIMS DE SOLO LECTURA (los que entrega la caché de JwtService)
+ * ----------------------------------------------------
+ * La caché reparte la MISMA instancia a todas las peticiones que traen el token: si fuera
+ * modificable, un 'put' de un llamador cambiaría lo que las siguientes ven como claims verificados.
+ * * Las lecturas se delegan a los Claims que entregó el parser (nadie más tiene esa referencia);
+ * put, remove, clear y los setters lanzan UnsupportedOperationException.
+ */
+final class ClaimsSoloLectura extends AbstractMap<String, Object> implements Claims {
+
+    private final Claims claims;
+
+    ClaimsSoloLectura(Claims claims) {
+        this.claims = claims;
+    }
+
+    // --- LECTURAS (delegadas) ---
+
+    @Override public String getIssuer() { return claims.getIssuer(); }
+    @Override public String getSubject() { return claims.getSubject(); }
+    @Override public String getAudience() { return claims.getAudience(); }
+    @Override public Date getExpiration() { return claims.getExpiration(); }   // Date nueva en cada llamada
+    @Override public Date getNotBefore() { return claims.getNotBefore(); }
+    @Override public Date getIssuedAt() { return claims.getIssuedAt(); }
+    @Override public String getId() { return claims.getId(); }
+    @Override public <T> T get(String nombre, Class<T> tipo) { return claims.get(nombre, tipo); }
+
+    @Override public Object get(Object nombre) { return claims.get(nombre); }
+    @Override public boolean containsKey(Object nombre) { return claims.containsKey(nombre); }
+    @Override public int size() { return claims.size(); }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return Collections.unmodifiableMap(claims).entrySet();
+    }
+
+    // --- ESCRITURAS (rechazadas; put/remove/clear ya las rechaza AbstractMap) ---
+
+    @Override public Claims setIssuer(String iss) { throw soloLectura(); }
+    @Override public Claims setSubject(String sub) { throw soloLectura(); }
+    @Override public Claims setAudience(String aud) { throw soloLectura(); }
+    @Override public Claims setExpiration(Date exp) { throw soloLectura(); }
+    @Override public Claims setNotBefore(Date nbf) { throw soloLectura(); }
+    @Override public Claims setIssuedAt(Date iat) { throw soloLectura(); }
+    @Override public Claims setId(String jti) { throw soloLectura(); }
+
+    private static UnsupportedOperationException soloLectura() {
+        return new UnsupportedOperationException("Los claims de un token verificado son de solo lectura");
+    }
+}
@@ -1,14 +1,25 @@
 package com.levels.backend.security;
 
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.levels.backend.model.Usuario;
 import com.levels.backend.repository.UsuarioRepository;
@@ -17,9 +28,15 @@ import com.levels.backend.repository.UsuarioRepository;
  * SERVICIO: CARGA DE DATOS DE USUARIO (Spring Security)
  * ----------------------------------------------------
  * Implementa la interfaz central UserDetailsService.
- * Su única responsabilidad es cargar los detalles de un usuario (principalmente 
- * el email, la contraseña y el rol) desde la base de datos al ser solicitados 
+ * Su única responsabilidad es cargar los detalles de un usuario (principalmente
+ * el email, la contraseña y el rol) desde la base de datos al ser solicitados
  * por el proceso de autenticación o validación de tokens.
+ * * CACHÉ: Los UserDetails se guardan en memoria con un tiempo de vida (TTL) y un
+ * tamaño máximo. Si varias peticiones piden el mismo usuario a la vez, solo una
+ * consulta la BD y las demás esperan su resultado (single-flight).
+ * * INVALIDACIÓN: cada email tiene una generación que sube al invalidarlo. Una carga anota
+ * la generación al empezar y, si cambió al terminar (leyó la fila durante una modificación),
+ * entrega el resultado pero no lo deja en la caché.
  */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
@@ -28,6 +45,31 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UsuarioRepository usuarioRepository;
 
+    // Configuración de la caché (application.properties)
+    @Value("${levelup.seguridad.cache-usuarios.ttl-segundos:300}")
+    private long ttlSegundos;
+
+    @Value("${levelup.seguridad.cache-usuarios.max-entradas:5000}")
+    private int maxEntradas;
+
+    // email -> carga (en curso o terminada). El Future permite que los concurrentes esperen la misma consulta.
+    private final Map<String, CompletableFuture<EntradaCache>> cache = new ConcurrentHashMap<>();
+
+    // Generación de cada email, repartida en franjas para no crecer con la cantidad de usuarios
+    // (dos emails en la misma franja solo provocan alguna recarga de más).
+    private static final int FRANJAS = 1024;
+    private final AtomicLongArray generaciones = new AtomicLongArray(FRANJAS);
+
+    // Contadores para dimensionar la caché
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+
+    /**
+     * Entrada de la caché: los datos de seguridad y el instante (ms) en que caducan.
+     */
+    private record EntradaCache(UserDetails detalles, long expiraEn) {}
+
     /**
      * MÉTODO PRINCIPAL DE LA SEGURIDAD
      * ----------------------------------------------------
@@ -40,9 +82,113 @@ public class CustomUserDetailsService implements UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        while (true) {
+            CompletableFuture<EntradaCache> existente = cache.get(email);
+
+            if (existente == null) {
+                long generacion = generaciones.get(franja(email)); // Antes de publicar la carga y de leer la BD
+                CompletableFuture<EntradaCache> nueva = new CompletableFuture<>();
+                existente = cache.putIfAbsent(email, nueva);
+                if (existente == null) {
+                    // Somos el único hilo que consulta la BD para este email
+                    fallos.increment();
+                    return copiar(cargarDesdeBd(email, nueva, generacion).detalles());
+                }
+            }
+
+            EntradaCache entrada = esperar(existente);
+            if (entrada.expiraEn() > System.currentTimeMillis()) {
+                aciertos.increment();
+                return copiar(entrada.detalles());
+            }
+
+            // TTL vencido: la sacamos y volvemos a intentar (la próxima vuelta recarga)
+            if (cache.remove(email, existente)) {
+                desalojos.increment();
+            }
+        }
+    }
+
+    /**
+     * Invalida la entrada de un usuario. Se llama cuando UsuarioService modifica sus datos.
+     * * Dentro de una transacción se invalida ahora y otra vez después del commit: una carga
+     * que llegue entre medio todavía lee la fila anterior y no debe quedar en la caché.
+     */
+    public void invalidar(String email) {
+        if (email == null) {
+            return;
+        }
+        quitar(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    quitar(email);
+                }
+            });
+        }
+    }
+
+    /**
+     * Contadores de la caché (aciertos, fallos, desalojos y tamaño actual).
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("aciertos", aciertos.sum());
+        stats.put("fallos", fallos.sum());
+        stats.put("desalojos", desalojos.sum());
+        stats.put("tamano", cache.size());
+        stats.put("maxEntradas", maxEntradas);
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    /**
+     * Sube la generación del email (primero) y saca su entrada de la caché.
+     */
+    private void quitar(String email) {
+        generaciones.incrementAndGet(franja(email));
+        if (cache.remove(email) != null) {
+            desalojos.increment();
+        }
+    }
+
+    private static int franja(String email) {
+        return (email.hashCode() & 0x7fffffff) % FRANJAS;
+    }
+
+    /**
+     * Consulta la BD y completa el Future compartido.
+     * Si el usuario no existe, no se cachea el error (se quita la entrada).
+     * Si el email se invalidó durante la carga, tampoco se cachea el resultado.
+     */
+    private EntradaCache cargarDesdeBd(String email, CompletableFuture<EntradaCache> futuro, long generacion) {
+        try {
+            EntradaCache entrada = new EntradaCache(buscarUsuario(email), System.currentTimeMillis() + ttlSegundos * 1000);
+            futuro.complete(entrada);
+            // invalidar() sube la generación antes de quitar: si aún no la vemos cambiada, su remove llega después
+            if (generaciones.get(franja(email)) != generacion && cache.remove(email, futuro)) {
+                desalojos.increment();
+            }
+            if (cache.size() > maxEntradas) {
+                liberarEspacio();
+            }
+            return entrada;
+        } catch (RuntimeException e) {
+            cache.remove(email, futuro);
+            futuro.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 1. Buscar el usuario en la BD y 2. convertirlo a 'User' de Spring Security.
+     */
+    private UserDetails buscarUsuario(String email) {
         // 1. Buscar el usuario en la BD usando el método personalizado del Repositorio
         Usuario usuario = usuarioRepository.findByEmail(email);
-        
+
         if (usuario == null) {
             // Si no existe, lanzamos la excepción estándar de Spring Security
             throw new UsernameNotFoundException("Usuario no encontrado: " + email);
@@ -53,10 +199,57 @@ public class CustomUserDetailsService implements UserDetailsService {
         return new User(
                 usuario.getEmail(), // Credencial (Username)
                 usuario.getPassword(), // Contraseña (Debe estar hasheada, aunque aquí usamos NoOp)
-                
+
                 // Roles (Autoridades)
                 // Es obligatorio anteponer "ROLE_" al nombre del rol (ADMIN -> ROLE_ADMIN)
                 Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + usuario.getRol()))
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Espera el resultado de una carga en curso (de otro hilo) y propaga su error tal cual.
+     */
+    private EntradaCache esperar(CompletableFuture<EntradaCache> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve una copia: Spring Security borra la contraseña del principal tras el login
+     * (eraseCredentials), y eso no debe afectar a la instancia guardada en la caché.
+     */
+    private UserDetails copiar(UserDetails detalles) {
+        return User.withUserDetails(detalles).build();
+    }
+
+    /**
+     * Desaloja primero las entradas vencidas y, si no alcanza, entradas arbitrarias
+     * hasta quedar bajo el 90% del máximo.
+     */
+    private void liberarEspacio() {
+        long ahora = System.currentTimeMillis();
+        Iterator<CompletableFuture<EntradaCache>> it = cache.values().iterator();
+        while (it.hasNext()) {
+            CompletableFuture<EntradaCache> futuro = it.next();
+            if (futuro.isDone() && !futuro.isCompletedExceptionally() && futuro.join().expiraEn() <= ahora) {
+                it.remove();
+                desalojos.increment();
+            }
+        }
+
+        it = cache.values().iterator();
+        while (cache.size() > maxEntradas * 9 / 10 && it.hasNext()) {
+            CompletableFuture<EntradaCache> futuro = it.next();
+            if (futuro.isDone()) { // No desalojamos cargas en curso (otros hilos las esperan)
+                it.remove();
+                desalojos.increment();
+            }
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package com.levels.backend.security;
 
 import java.io.IOException;
+import java.util.Collections;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -21,16 +26,26 @@ import jakarta.servlet.http.HttpServletResponse;
  * Intercepta CADA petición HTTP para verificar si tiene un Token JWT válido.
  * Si el Token es válido, autentica al usuario internamente para que Spring Security
  * permita el acceso a las rutas protegidas.
+ * * MODO STATELESS: Si el token trae los claims de id, rol y versión (tokens nuevos),
+ * el usuario se construye solo con esos datos firmados, sin consultar la BD.
+ * Los tokens antiguos (solo email) siguen usando CustomUserDetailsService.
  */
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     @Autowired
     private JwtService jwtService; // Servicio para leer/validar el token
-    
+
     @Autowired
     private CustomUserDetailsService userDetailsService; // Servicio para cargar el usuario desde la BD
 
+    @Autowired
+    private RegistroVersionesSeguridad registroVersiones; // Tabla en memoria para revocar tokens antiguos
+
+    // Interruptor del modo stateless (application.properties)
+    @Value("${levelup.seguridad.jwt-stateless:true}")
+    private boolean modoStateless;
+
     /**
      * Lógica que se ejecuta una vez por cada solicitud HTTP.
      */
@@ -41,14 +56,16 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         // 1. Obtener el header "Authorization" que envía React
         String authHeader = request.getHeader("Authorization");
         String token = null;
+        Claims claims = null;
         String username = null; // En nuestro caso, el email del usuario
 
         // 2. Verificar formato y extraer el Token
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             token = authHeader.substring(7); // Quitar "Bearer " (que son los primeros 7 caracteres)
             try {
-                // Extraer el sujeto del token (el email)
-                username = jwtService.extractUsername(token);
+                // Verificamos la firma UNA vez y leemos el sujeto (el email)
+                claims = jwtService.extractAllClaims(token);
+                username = claims.getSubject();
             } catch (Exception e) {
                 // Ignoramos errores de tokens expirados o inválidos y dejamos que el flujo continúe (será bloqueado después)
                 System.out.println("Error al extraer usuario del token: " + e.getMessage());
@@ -60,20 +77,22 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         // a) Se encontró un usuario en el token.
         // b) El contexto de seguridad de Spring (SecurityContextHolder) está vacío (aún no está autenticado).
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            
-            // 4. Cargar los detalles del usuario desde la BD (roles, password)
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
-            // 5. Validar que el token no esté expirado y coincida con el usuario cargado
-            if (jwtService.validateToken(token, userDetails.getUsername())) {
-                
+            // 4. Obtener los detalles del usuario: desde el token (stateless) o desde la BD (tokens antiguos)
+            UserDetails userDetails = modoStateless && tieneClaimsDeAutoridad(claims)
+                    ? usuarioDesdeClaims(claims)
+                    : userDetailsService.loadUserByUsername(username);
+
+            // 5. Validar que el token no esté expirado, coincida con el usuario y no haya sido revocado
+            if (userDetails != null && jwtService.validateToken(token, userDetails.getUsername())) {
+
                 // 6. Crear un objeto de autenticación válido
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
-                        
+
                 // Añadir detalles de la solicitud (IP, sesión, etc.)
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                
+
                 // 7. Autenticar oficialmente en el Contexto de Spring
                 // Esto le dice a Spring Security: "Este usuario es válido, déjalo pasar."
                 SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -83,4 +102,32 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         // 8. Continuar con la cadena de filtros de Spring Security (va hacia el controlador o es bloqueado si no se autenticó)
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Indica si el token fue emitido con id, rol y versión embebidos (JwtService.generateToken(Usuario)).
+     */
+    private boolean tieneClaimsDeAutoridad(Claims claims) {
+        return claims.get(JwtService.CLAIM_USUARIO_ID) != null
+                && claims.get(JwtService.CLAIM_ROL) != null
+                && claims.get(JwtService.CLAIM_VERSION) != null;
+    }
+
+    /**
+     * Construye el usuario autenticado solo con los claims firmados (sin ir a la BD).
+     * @return null si el token fue emitido antes de un cambio de credenciales (versión revocada).
+     */
+    private UserDetails usuarioDesdeClaims(Claims claims) {
+        Long usuarioId = ((Number) claims.get(JwtService.CLAIM_USUARIO_ID)).longValue();
+        int version = ((Number) claims.get(JwtService.CLAIM_VERSION)).intValue();
+
+        if (!registroVersiones.esVigente(usuarioId, version)) {
+            return null; // Token revocado: la contraseña cambió después de emitirlo
+        }
+
+        // La contraseña no viaja en el token; el principal nunca se usa para re-autenticar
+        return new User(
+                claims.getSubject(),
+                "",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + claims.get(JwtService.CLAIM_ROL))));
+    }
+}
@@ -1,14 +1,29 @@
 package com.levels.backend.security;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.springframework.stereotype.Service;
 
+import com.levels.backend.model.Usuario;
+
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -18,6 +33,9 @@ import io.jsonwebtoken.security.Keys;
  * ----------------------------------------------------
  * Clase utilitaria encargada de generar, firmar, y validar los Tokens JWT.
  * Es la base de la autenticación Stateless (sin estado de sesión en el servidor).
+ * * Optimización: La llave y el parser se construyen UNA sola vez, y los tokens ya
+ * verificados se guardan en una caché acotada hasta su fecha de expiración ('exp').
+ * Así cada petición verifica la firma HMAC una sola vez por token, no tres veces.
  */
 @Service
 public class JwtService {
@@ -26,6 +44,37 @@ public class JwtService {
     // Si esta clave se filtra, cualquier atacante podría falsificar tokens válidos.
     private static final String SECRET_KEY = "esta_es_una_clave_muy_secreta_para_el_proyecto_fullstack_duoc_2024";
 
+    // NOMBRES DE LOS CLAIMS PROPIOS: Permiten autenticar sin consultar la BD (modo stateless).
+    public static final String CLAIM_USUARIO_ID = "uid";
+    public static final String CLAIM_ROL = "rol";
+    public static final String CLAIM_VERSION = "ver";
+
+    // Máximo de tokens verificados que guardamos en memoria (cota de heap).
+    private static final int MAX_TOKENS_EN_CACHE = 10_000;
+
+    // Vigencia de los tokens emitidos: 10 horas.
+    private static final long VIGENCIA_MS = 1000L * 60 * 60 * 10;
+
+    // Llave y parser inmutables: son thread-safe, no hace falta reconstruirlos en cada petición.
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+
+    // CACHÉ DE TOKENS VERIFICADOS: digest SHA-256 del token -> Claims ya validados.
+    // Usamos el digest como llave para no retener los tokens en texto plano.
+    private final Map<String, TokenVerificado> tokensVerificados = new ConcurrentHashMap<>();
+
+    // LLAVES DERIVADAS por propósito (ej: "carrito-anonimo") para firmas que no son JWT.
+    private final Map<String, SecretKeySpec> llavesDerivadas = new ConcurrentHashMap<>();
+
+    // Métricas: verificaciones completas de firma (las que no resolvió la caché)
+    private final LongAdder verificaciones = new LongAdder();
+
+    /**
+     * Entrada de la caché: los Claims parseados (de solo lectura: se comparten entre peticiones)
+     * y el instante (ms) en que el token expira.
+     */
+    private record TokenVerificado(Claims claims, long expiraEn) {}
+
     /**
      * 1. GENERAR TOKEN PÚBLICO
      * Prepara los Claims (metadatos) y delega la creación del token.
@@ -34,20 +83,36 @@ public class JwtService {
      */
     public String generateToken(String username) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, username);
+        return createToken(claims, username, VIGENCIA_MS);
+    }
+
+    /**
+     * 1.B GENERAR TOKEN CON AUTORIDADES EMBEBIDAS
+     * Además del email, el token lleva el id, el rol y la versión de seguridad del usuario.
+     * Como el token está firmado, JwtAuthFilter puede confiar en estos datos sin ir a la BD.
+     * @param usuario El usuario autenticado.
+     * @return El token JWT firmado (String).
+     */
+    public String generateToken(Usuario usuario) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USUARIO_ID, usuario.getId());
+        claims.put(CLAIM_ROL, usuario.getRol());
+        claims.put(CLAIM_VERSION, usuario.getVersionSeguridad());
+        return createToken(claims, usuario.getEmail(), VIGENCIA_MS);
     }
 
     /**
      * 2. CONSTRUCCIÓN DEL TOKEN
      * Define la estructura, la expiración y aplica la firma.
+     * @param vigenciaMs Milisegundos hasta la expiración (las pruebas usan vigencias cortas).
      */
-    private String createToken(Map<String, Object> claims, String subject) {
+    String createToken(Map<String, Object> claims, String subject, long vigenciaMs) {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject) // El "dueño" del token (el email del usuario)
                 .setIssuedAt(new Date(System.currentTimeMillis())) // Fecha de emisión (ahora)
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // Expira en 10 Horas
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256) // Firma el token con la clave secreta usando HS256
+                .setExpiration(new Date(System.currentTimeMillis() + vigenciaMs)) // Expira en 10 Horas (VIGENCIA_MS)
+                .signWith(signingKey, SignatureAlgorithm.HS256) // Firma el token con la clave secreta usando HS256
                 .compact(); // Finaliza y genera la cadena de texto JWT
     }
 
@@ -59,8 +124,8 @@ public class JwtService {
      * @return true si es válido y no está expirado.
      */
     public boolean validateToken(String token, String username) {
-        final String tokenUsername = extractUsername(token);
-        return (tokenUsername.equals(username) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token); // Un solo parseo (o un acierto de caché)
+        return (claims.getSubject().equals(username) && !claims.getExpiration().before(new Date()));
     }
 
     /**
@@ -72,14 +137,6 @@ public class JwtService {
     }
 
     // --- Métodos Auxiliares de Lectura y Firma ---
-    
-    /**
-     * Genera la Key (llave) de cifrado a partir de la cadena secreta.
-     */
-    private Key getSigningKey() {
-        // Usa la biblioteca Keys para asegurar que la clave sea lo suficientemente fuerte (256 bits)
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
-    }
 
     /**
      * Función genérica para leer cualquier campo (Claim) del token.
@@ -91,26 +148,113 @@ public class JwtService {
 
     /**
      * Descifra y verifica la firma del token.
+     * * Primero consulta la caché: si el token ya fue verificado y sigue vigente,
+     * devolvemos sus Claims sin volver a calcular el HMAC.
+     * * Los Claims devueltos son de solo lectura (ClaimsSoloLectura): la misma instancia
+     * llega a todas las peticiones con ese token.
      */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey()) // Usa la clave secreta para verificar la firma
-                .build()
-                .parseClaimsJws(token) // Verifica la firma
-                .getBody(); // Devuelve los Claims (metadatos)
+    public Claims extractAllClaims(String token) {
+        final long ahora = System.currentTimeMillis();
+        final String digest = digest(token);
+
+        TokenVerificado cacheado = tokensVerificados.get(digest);
+        if (cacheado != null) {
+            if (cacheado.expiraEn() > ahora) {
+                return cacheado.claims();
+            }
+            tokensVerificados.remove(digest, cacheado); // Expiró: lo sacamos y verificamos de nuevo (lanzará ExpiredJwtException)
+        }
+
+        verificaciones.increment();
+        Claims claims = new ClaimsSoloLectura(parser.parseClaimsJws(token).getBody()); // Verifica la firma (operación costosa)
+
+        Date expiracion = claims.getExpiration();
+        if (expiracion != null) {
+            if (tokensVerificados.size() >= MAX_TOKENS_EN_CACHE) {
+                purgarCache(ahora);
+            }
+            tokensVerificados.put(digest, new TokenVerificado(claims, expiracion.getTime()));
+        }
+        return claims;
+    }
+
+    /**
+     * 5. FIRMA HMAC-SHA256 DE DATOS PROPIOS (ej: el carrito anónimo en una cookie)
+     * Usa una llave derivada de la misma clave secreta, distinta para cada 'proposito':
+     * una firma hecha para un propósito no sirve para otro, ni como firma de un JWT.
+     */
+    public byte[] firmar(String proposito, byte[] datos) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256"); // Mac no es thread-safe: uno por llamada
+            mac.init(llavesDerivadas.computeIfAbsent(proposito, this::derivarLlave));
+            return mac.doFinal(datos);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 no disponible", e);
+        }
+    }
+
+    /**
+     * 5.B Verifica una firma hecha con firmar(). Acepta firmas truncadas (los primeros N bytes).
+     * La comparación toma siempre el mismo tiempo (no revela cuántos bytes coinciden).
+     */
+    public boolean verificarFirma(String proposito, byte[] datos, byte[] firma) {
+        byte[] esperada = firmar(proposito, datos);
+        if (firma.length < 16 || firma.length > esperada.length) return false;
+        return MessageDigest.isEqual(Arrays.copyOf(esperada, firma.length), firma);
+    }
+
+    /**
+     * Cantidad de tokens verificados guardados actualmente (útil para monitoreo).
+     */
+    public int tokensEnCache() {
+        return tokensVerificados.size();
+    }
+
+    /**
+     * Cantidad de verificaciones completas de firma (las llamadas restantes fueron aciertos de caché).
+     */
+    public long verificacionesCompletas() {
+        return verificaciones.sum();
+    }
+
+    /**
+     * Libera espacio en la caché: primero elimina los tokens expirados y, si aún
+     * está llena, descarta entradas arbitrarias hasta quedar bajo el 90% de la cota.
+     */
+    private void purgarCache(long ahora) {
+        tokensVerificados.values().removeIf(t -> t.expiraEn() <= ahora);
+
+        Iterator<String> it = tokensVerificados.keySet().iterator();
+        while (tokensVerificados.size() > MAX_TOKENS_EN_CACHE * 9 / 10 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
     }
 
     /**
-     * Verifica si la fecha de expiración es anterior a la fecha actual.
+     * Llave derivada = HMAC(clave secreta, proposito).
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private SecretKeySpec derivarLlave(String proposito) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return new SecretKeySpec(mac.doFinal(proposito.getBytes(StandardCharsets.UTF_8)), "HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 no disponible", e);
+        }
     }
 
     /**
-     * Extrae el Claim de Expiración.
+     * Calcula el SHA-256 del token (Base64) para usarlo como llave de la caché.
      */
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 es obligatorio en toda JVM, esto no debería ocurrir nunca
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package com.levels.backend.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.UsuarioRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * REGISTRO EN MEMORIA: VERSIONES DE SEGURIDAD
+ * ----------------------------------------------------
+ * Tabla pequeña (id de usuario -> versión) que permite revocar Tokens JWT sin
+ * consultar la BD en cada petición.
+ * * Solo guarda a los usuarios que cambiaron sus credenciales alguna vez; para el resto
+ * la versión vigente es 0. Se precarga desde la BD al iniciar la aplicación, por lo que
+ * sobrevive a reinicios.
+ */
+@Component
+public class RegistroVersionesSeguridad {
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    private final Map<Long, Integer> versiones = new ConcurrentHashMap<>();
+
+    /**
+     * CARGA INICIAL: Trae de la BD los usuarios con versión > 0.
+     */
+    @PostConstruct
+    public void cargar() {
+        for (Object[] fila : usuarioRepository.findVersionesSeguridad()) {
+            versiones.put(((Number) fila[0]).longValue(), ((Number) fila[1]).intValue());
+        }
+    }
+
+    /**
+     * Versión vigente del usuario (0 si nunca cambió sus credenciales).
+     */
+    public int versionActual(Long usuarioId) {
+        return versiones.getOrDefault(usuarioId, 0);
+    }
+
+    /**
+     * Incrementa la versión del usuario: en la entidad de inmediato y en la tabla en memoria
+     * solo cuando la transacción hace commit. Todos los tokens emitidos antes quedan invalidados.
+     * * Si la memoria se adelantara y el guardado fallara, la BD seguiría en N (el login emite
+     * tokens con N) y la memoria exigiría N+1: ningún token sería válido hasta reiniciar.
+     * * Nota: Llamarlo después de las validaciones y persistir la entidad en la misma transacción.
+     */
+    public void incrementar(Usuario usuario) {
+        int nueva = usuario.getVersionSeguridad() + 1;
+        usuario.setVersionSeguridad(nueva);
+        Long usuarioId = usuario.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versiones.merge(usuarioId, nueva, Math::max);
+                }
+            });
+        } else {
+            versiones.merge(usuarioId, nueva, Math::max);
+        }
+    }
+
+    /**
+     * Verifica si un token emitido con la versión indicada sigue vigente.
+     */
+    public boolean esVigente(Long usuarioId, int versionToken) {
+        return versionToken >= versionActual(usuarioId);
+    }
+}
@@ -0,0 +1,573 @@
+package com.levels.backend.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.levels.backend.model.DetalleOrden;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.OrdenExportJdbcRepository;
+import com.levels.backend.repository.OrdenExportJdbcRepository.LineaVendida;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * ANALÍTICA DE VENTAS (en memoria, por columnas)
+ * ----------------------------------------------------
+ * Productos más vendidos, ventas por categoría, región/comuna y por hora o día, sin GROUP BY
+ * sobre detalles_orden + producto + ordenes. Cada línea vendida se guarda en arreglos primitivos
+ * (una columna por dato), en bloques de tamaño fijo:
+ *   hora (horas locales desde 1970) | producto | comuna | cantidad | centavos | ¿primera línea de su orden?
+ * * Textos (productos, categorías, regiones, comunas) codificados como índices de diccionario:
+ * ~25 bytes por línea (10 millones de líneas ≈ 250 MB).
+ * * Consultas: recorrido paralelo (ForkJoin, un bloque por tarea) que suma en arreglos por grupo.
+ * Cada bloque recuerda su hora mínima y máxima: un filtro por fechas se salta bloques enteros.
+ * * Lectura sin bloqueos: un escritor (el checkout, tras el commit) agrega filas y las publica
+ * con un contador volátil; cada consulta recorre solo las filas publicadas al empezar.
+ * * Carga inicial desde la BD al arrancar; las órdenes que llegan mientras tanto se aplican al final.
+ * OBJETIVO DE LATENCIA: < 50 ms (p99) con 10 millones de líneas y 8 núcleos; < 5 ms en un rango
+ * de pocos días (los demás bloques se saltan). Medido en 'estadisticas()' (GET /api/admin/metricas).
+ * Ingresos = cantidad × precio unitario de la línea (los descuentos de la orden no se reparten).
+ */
+@Component
+public class AnaliticaVentas {
+
+    public enum Dimension { PRODUCTO, CATEGORIA, REGION, COMUNA, HORA, DIA }
+
+    public static final String SIN_CATEGORIA = "Sin categoría";
+    public static final String SIN_REGION = "Sin región";
+    public static final String SIN_COMUNA = "Sin comuna";
+    public static final String PRODUCTO_ELIMINADO = "Producto eliminado";
+
+    // Máximo de cubetas de una serie de tiempo (ej: 92 días por hora = 2.208)
+    private static final int MAX_CUBETAS = 10_000;
+
+    @Autowired
+    private OrdenExportJdbcRepository ordenJdbcRepository;
+
+    @Value("${levelup.analitica.filas-por-bloque:65536}")
+    private int filasPorBloque;
+
+    // 0 = un hilo por núcleo
+    @Value("${levelup.analitica.paralelismo:0}")
+    private int paralelismo;
+
+    private ForkJoinPool pool;
+
+    // --- COLUMNAS ---
+    // Se reemplaza (copia + 1) al crear un bloque; 'filas' se publica DESPUÉS, así quien lee
+    // 'filas' ve también el bloque que las contiene.
+    private volatile Bloque[] bloques = new Bloque[0];
+    private volatile int filas;
+    private int filasEscritas; // Solo el escritor (synchronized)
+
+    // --- DICCIONARIOS (se modifican y copian bajo synchronized (this)) ---
+    private final Map<Long, Integer> indiceProducto = new HashMap<>();
+    private final List<Long> productoIds = new ArrayList<>();
+    private final List<String> productoNombres = new ArrayList<>();
+    private int[] categoriaDeProducto = new int[64]; // Categoría actual de cada producto
+    private final Map<String, Integer> indiceCategoria = new HashMap<>();
+    private final List<String> categorias = new ArrayList<>();
+    private final Map<String, Integer> indiceRegion = new HashMap<>();
+    private final List<String> regiones = new ArrayList<>();
+    private final Map<String, Integer> indiceComuna = new HashMap<>(); // "region\0comuna"
+    private final List<String> comunas = new ArrayList<>();
+    private int[] regionDeComuna = new int[64];
+
+    // Carga inicial: hasta que termina, las órdenes nuevas esperan aquí
+    private final Object recarga = new Object();
+    private boolean cargando = true;
+    private List<Orden> pendientes = new ArrayList<>();
+
+    // Métricas
+    private final LongAdder consultas = new LongAdder();
+    private final LongAdder nanosConsultas = new LongAdder();
+    private final AtomicLong maxNanosConsulta = new AtomicLong();
+    private final AtomicLong ultimaCargaMs = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        pool = new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void cerrar() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 1. CARGA (al arrancar, o a mano para reconstruir): todas las líneas vendidas, leídas de la BD
+     * en streaming. Las órdenes confirmadas durante la carga quedan pendientes; al terminar se
+     * agregan solo las que la lectura no alcanzó a ver (un BitSet de ids de orden evita duplicarlas).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        synchronized (recarga) { // Una carga a la vez
+            long inicio = System.currentTimeMillis();
+            synchronized (this) {
+                vaciar();
+            }
+            BitSet ordenesLeidas = new BitSet();
+            long[] ordenAnterior = {-1};
+            ordenJdbcRepository.recorrerLineas(linea -> {
+                boolean primera = linea.ordenId() != ordenAnterior[0];
+                ordenAnterior[0] = linea.ordenId();
+                if (linea.ordenId() <= Integer.MAX_VALUE) ordenesLeidas.set((int) linea.ordenId());
+                synchronized (this) {
+                    agregarLinea(linea, primera);
+                    filas = filasEscritas;
+                }
+            });
+
+            synchronized (this) {
+                for (Orden orden : pendientes) {
+                    if (orden.getId() > Integer.MAX_VALUE || !ordenesLeidas.get(orden.getId().intValue())) {
+                        agregarOrden(orden);
+                    }
+                }
+                pendientes = null;
+                cargando = false;
+            }
+            ultimaCargaMs.set(System.currentTimeMillis() - inicio);
+        }
+    }
+
+    /**
+     * 2. NUEVA VENTA (después del commit del checkout).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alGenerarOrden(OrdenGeneradaEvento evento) {
+        if (cargando) {
+            pendientes.add(evento.orden());
+        } else {
+            agregarOrden(evento.orden());
+        }
+    }
+
+    /**
+     * 3. PRODUCTOS MÁS VENDIDOS en un rango de fechas.
+     * @param porIngresos true = ordenar por ingresos; false = por unidades.
+     */
+    public Map<String, Object> topProductos(LocalDate desde, LocalDate hasta, int limite, boolean porIngresos) {
+        long inicio = System.nanoTime();
+        Foto foto = foto();
+        Acumulado total = recorrer(foto, new Consulta(Dimension.PRODUCTO, horaInicio(desde), horaFin(hasta), 0, foto.productos()));
+
+        // Top K con un heap de tamaño K (sin ordenar todos los productos)
+        long[] criterio = porIngresos ? total.centavos : total.unidades;
+        PriorityQueue<Integer> mejores = new PriorityQueue<>((a, b) -> Long.compare(criterio[a], criterio[b]));
+        for (int g = 0; g < criterio.length; g++) {
+            if (total.lineas[g] == 0) continue;
+            mejores.add(g);
+            if (mejores.size() > limite) mejores.poll();
+        }
+        List<Map<String, Object>> items = new ArrayList<>();
+        while (!mejores.isEmpty()) {
+            int g = mejores.poll();
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("productoId", foto.productoIds().get(g));
+            fila.put("nombre", foto.productoNombres().get(g));
+            fila.put("unidades", total.unidades[g]);
+            fila.put("ingresos", aMonto(total.centavos[g]));
+            fila.put("ordenes", total.lineas[g]); // Un producto aparece una vez por orden
+            items.add(0, fila);
+        }
+        return respuesta(items, inicio);
+    }
+
+    /**
+     * 4. VENTAS AGRUPADAS por categoría, región o comuna (de mayor a menor ingreso).
+     */
+    public Map<String, Object> agrupar(Dimension dimension, LocalDate desde, LocalDate hasta) {
+        long inicio = System.nanoTime();
+        Foto foto = foto();
+        int grupos = switch (dimension) {
+            case CATEGORIA -> foto.categorias().size();
+            case REGION -> foto.regiones().size();
+            case COMUNA -> foto.comunas().size();
+            default -> throw new IllegalArgumentException("Dimensión no agrupable: " + dimension);
+        };
+        Acumulado total = recorrer(foto, new Consulta(dimension, horaInicio(desde), horaFin(hasta), 0, grupos));
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        Integer[] orden = new Integer[grupos];
+        for (int g = 0; g < grupos; g++) orden[g] = g;
+        Arrays.sort(orden, (a, b) -> Long.compare(total.centavos[b], total.centavos[a]));
+        for (int g : orden) {
+            if (total.lineas[g] == 0) continue;
+            Map<String, Object> fila = new LinkedHashMap<>();
+            switch (dimension) {
+                case CATEGORIA -> fila.put("categoria", foto.categorias().get(g));
+                case REGION -> fila.put("region", foto.regiones().get(g));
+                default -> {
+                    fila.put("region", foto.regiones().get(foto.regionDeComuna()[g]));
+                    fila.put("comuna", foto.comunas().get(g));
+                }
+            }
+            if (dimension != Dimension.CATEGORIA) {
+                fila.put("ordenes", total.ordenes[g]);
+            }
+            fila.put("unidades", total.unidades[g]);
+            fila.put("ingresos", aMonto(total.centavos[g]));
+            items.add(fila);
+        }
+        return respuesta(items, inicio);
+    }
+
+    /**
+     * 5. SERIE DE TIEMPO por hora o por día (ambas fechas incluidas). Incluye las cubetas en cero,
+     * para graficar directo.
+     */
+    public Map<String, Object> serie(Dimension granularidad, LocalDate desde, LocalDate hasta) {
+        if (granularidad != Dimension.HORA && granularidad != Dimension.DIA) {
+            throw new IllegalArgumentException("Granularidad no soportada: " + granularidad);
+        }
+        if (desde.isAfter(hasta)) throw new RuntimeException("'desde' no puede ser posterior a 'hasta'.");
+        long inicio = System.nanoTime();
+        int horaDesde = horaInicio(desde);
+        int horaHasta = horaFin(hasta);
+        boolean porHora = granularidad == Dimension.HORA;
+        int base = porHora ? horaDesde : Math.floorDiv(horaDesde, 24);
+        int cubetas = porHora ? horaHasta - horaDesde : (horaHasta - horaDesde) / 24;
+        if (cubetas > MAX_CUBETAS) {
+            throw new RuntimeException("Rango demasiado grande: máximo " + MAX_CUBETAS + " " + (porHora ? "horas" : "días") + ".");
+        }
+        Acumulado total = recorrer(foto(), new Consulta(granularidad, horaDesde, horaHasta, base, cubetas));
+
+        List<Map<String, Object>> items = new ArrayList<>(cubetas);
+        for (int g = 0; g < cubetas; g++) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put(porHora ? "hora" : "dia", porHora
+                    ? LocalDateTime.ofEpochSecond((base + g) * 3600L, 0, ZoneOffset.UTC).toString()
+                    : LocalDate.ofEpochDay(base + g).toString());
+            fila.put("ordenes", total.ordenes[g]);
+            fila.put("unidades", total.unidades[g]);
+            fila.put("ingresos", aMonto(total.centavos[g]));
+            items.add(fila);
+        }
+        return respuesta(items, inicio);
+    }
+
+    /**
+     * Métricas: líneas en memoria, memoria aproximada y latencia de las consultas.
+     */
+    public Map<String, Object> estadisticas() {
+        long total = consultas.sum();
+        int lineas = filas;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("cargada", !cargando);
+            stats.put("productos", productoIds.size());
+            stats.put("comunas", comunas.size());
+        }
+        stats.put("lineas", lineas);
+        stats.put("bloques", bloques.length);
+        stats.put("memoriaAproxMb", (long) bloques.length * filasPorBloque * Bloque.BYTES_POR_FILA / (1024 * 1024));
+        stats.put("paralelismo", pool.getParallelism());
+        stats.put("ultimaCargaMs", ultimaCargaMs.get());
+        stats.put("consultas", total);
+        stats.put("consultaPromedioMs", total > 0 ? nanosConsultas.sum() / total / 1_000_000.0 : 0);
+        stats.put("consultaMaximaMs", maxNanosConsulta.get() / 1_000_000.0);
+        return stats;
+    }
+
+    // --- ESCRITURA (siempre bajo synchronized (this)) ---
+
+    private void vaciar() {
+        cargando = true;
+        if (pendientes == null) pendientes = new ArrayList<>();
+        bloques = new Bloque[0];
+        filas = 0;
+        filasEscritas = 0;
+        indiceProducto.clear();
+        productoIds.clear();
+        productoNombres.clear();
+        indiceCategoria.clear();
+        categorias.clear();
+        indiceRegion.clear();
+        regiones.clear();
+        indiceComuna.clear();
+        comunas.clear();
+    }
+
+    private void agregarOrden(Orden orden) {
+        LocalDateTime fecha = LocalDateTime.ofInstant(orden.getFechaCreacion().toInstant(), ZoneId.systemDefault());
+        boolean primera = true;
+        for (DetalleOrden d : orden.getDetalles()) {
+            Producto p = d.getProducto();
+            agregarLinea(new LineaVendida(orden.getId(), fecha, orden.getRegion(), orden.getComuna(),
+                    p != null ? p.getId() : null,
+                    p != null ? p.getNombre() : null,
+                    p != null && p.getCategoria() != null ? p.getCategoria().getNombre() : null,
+                    d.getCantidad() != null ? d.getCantidad() : 0,
+                    d.getPrecioUnitario() != null ? d.getPrecioUnitario() : 0), primera);
+            primera = false;
+        }
+        filas = filasEscritas; // Se publica la orden completa
+    }
+
+    private void agregarLinea(LineaVendida linea, boolean primeraDeSuOrden) {
+        int fila = filasEscritas;
+        int numeroBloque = fila / filasPorBloque;
+        int posicion = fila % filasPorBloque;
+        if (posicion == 0) {
+            Bloque[] nuevos = Arrays.copyOf(bloques, numeroBloque + 1);
+            nuevos[numeroBloque] = new Bloque(filasPorBloque);
+            bloques = nuevos;
+        }
+        Bloque bloque = bloques[numeroBloque];
+        int hora = horaLocal(linea.fechaCreacion());
+        bloque.hora[posicion] = hora;
+        bloque.producto[posicion] = producto(linea.productoId(), linea.producto(), linea.categoria());
+        bloque.comuna[posicion] = comuna(linea.region(), linea.comuna());
+        bloque.cantidad[posicion] = linea.cantidad();
+        bloque.centavos[posicion] = Math.round(linea.cantidad() * linea.precioUnitario() * 100);
+        bloque.primeraLinea[posicion] = primeraDeSuOrden;
+        bloque.minHora = Math.min(bloque.minHora, hora);
+        bloque.maxHora = Math.max(bloque.maxHora, hora);
+        filasEscritas = fila + 1;
+    }
+
+    private int producto(Long id, String nombre, String categoria) {
+        Long clave = id != null ? id : -1L; // Todas las líneas de productos borrados van juntas
+        Integer indice = indiceProducto.get(clave);
+        if (indice == null) {
+            indice = productoIds.size();
+            indiceProducto.put(clave, indice);
+            productoIds.add(id);
+            productoNombres.add(id != null ? nombre : PRODUCTO_ELIMINADO);
+            if (indice == categoriaDeProducto.length) {
+                categoriaDeProducto = Arrays.copyOf(categoriaDeProducto, indice * 2);
+            }
+        } else if (nombre != null) {
+            productoNombres.set(indice, nombre); // El nombre y la categoría más recientes
+        }
+        categoriaDeProducto[indice] = indiceDe(indiceCategoria, categorias, categoria != null ? categoria : SIN_CATEGORIA);
+        return indice;
+    }
+
+    private int comuna(String region, String comuna) {
+        String nombreRegion = (region == null || region.isBlank()) ? SIN_REGION : region.trim();
+        String nombreComuna = (comuna == null || comuna.isBlank()) ? SIN_COMUNA : comuna.trim();
+        String clave = nombreRegion + '\0' + nombreComuna;
+        Integer indice = indiceComuna.get(clave);
+        if (indice == null) {
+            indice = comunas.size();
+            indiceComuna.put(clave, indice);
+            comunas.add(nombreComuna);
+            if (indice == regionDeComuna.length) {
+                regionDeComuna = Arrays.copyOf(regionDeComuna, indice * 2);
+            }
+            regionDeComuna[indice] = indiceDe(indiceRegion, regiones, nombreRegion);
+        }
+        return indice;
+    }
+
+    private static int indiceDe(Map<String, Integer> indice, List<String> valores, String valor) {
+        return indice.computeIfAbsent(valor, v -> {
+            valores.add(v);
+            return valores.size() - 1;
+        });
+    }
+
+    // --- LECTURA ---
+
+    /**
+     * Lo que una consulta necesita, copiado en un instante: filas publicadas y diccionarios.
+     */
+    private record Foto(Bloque[] bloques, int filas, int productos, List<Long> productoIds, List<String> productoNombres,
+                        int[] categoriaDeProducto, List<String> categorias, List<String> regiones,
+                        List<String> comunas, int[] regionDeComuna) {}
+
+    private synchronized Foto foto() {
+        int publicadas = filas;
+        return new Foto(bloques, publicadas, productoIds.size(),
+                new ArrayList<>(productoIds), new ArrayList<>(productoNombres),
+                Arrays.copyOf(categoriaDeProducto, productoIds.size()), new ArrayList<>(categorias),
+                new ArrayList<>(regiones), new ArrayList<>(comunas), Arrays.copyOf(regionDeComuna, comunas.size()));
+    }
+
+    private Acumulado recorrer(Foto foto, Consulta consulta) {
+        int cantidadBloques = (foto.filas() + filasPorBloque - 1) / filasPorBloque;
+        if (cantidadBloques == 0) return new Acumulado(consulta.grupos());
+        return pool.invoke(new Escaneo(foto, consulta, filasPorBloque, 0, cantidadBloques));
+    }
+
+    private Map<String, Object> respuesta(List<Map<String, Object>> items, long inicioNanos) {
+        long duracion = System.nanoTime() - inicioNanos;
+        consultas.increment();
+        nanosConsultas.add(duracion);
+        maxNanosConsulta.accumulateAndGet(duracion, Math::max);
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        synchronized (this) {
+            respuesta.put("cargada", !cargando); // false = la carga inicial aún no termina
+        }
+        respuesta.put("duracionMs", duracion / 1_000_000.0);
+        respuesta.put("items", items);
+        return respuesta;
+    }
+
+    // --- AUXILIARES ---
+
+    /**
+     * Horas locales desde 1970 (la hora del día es hora % 24 y el día, hora / 24).
+     */
+    private static int horaLocal(LocalDateTime fecha) {
+        return (int) Math.floorDiv(fecha.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    private static int horaInicio(LocalDate desde) {
+        return desde != null ? horaLocal(desde.atStartOfDay()) : Integer.MIN_VALUE;
+    }
+
+    private static int horaFin(LocalDate hasta) {
+        return hasta != null ? horaLocal(hasta.plusDays(1).atStartOfDay()) : Integer.MAX_VALUE; // Exclusivo
+    }
+
+    private static double aMonto(long centavos) {
+        return centavos / 100.0;
+    }
+
+    /**
+     * Un bloque de filas: una columna (arreglo primitivo) por dato.
+     */
+    private static final class Bloque {
+        static final int BYTES_POR_FILA = 4 + 4 + 4 + 4 + 8 + 1;
+
+        final int[] hora;
+        final int[] producto;
+        final int[] comuna;
+        final int[] cantidad;
+        final long[] centavos;
+        final boolean[] primeraLinea;
+        // Rango de horas del bloque: un filtro por fechas que no lo toca lo salta entero
+        int minHora = Integer.MAX_VALUE;
+        int maxHora = Integer.MIN_VALUE;
+
+        Bloque(int capacidad) {
+            hora = new int[capacidad];
+            producto = new int[capacidad];
+            comuna = new int[capacidad];
+            cantidad = new int[capacidad];
+            centavos = new long[capacidad];
+            primeraLinea = new boolean[capacidad];
+        }
+    }
+
+    /**
+     * Qué se agrupa y qué rango de horas [horaDesde, horaHasta) se considera.
+     * @param base Primera hora (o día) de la serie de tiempo.
+     */
+    private record Consulta(Dimension dimension, int horaDesde, int horaHasta, int base, int grupos) {}
+
+    /**
+     * Totales por grupo: órdenes (solo cuenta la primera línea de cada una), líneas, unidades y centavos.
+     */
+    private static final class Acumulado {
+        final long[] ordenes;
+        final long[] lineas;
+        final long[] unidades;
+        final long[] centavos;
+
+        Acumulado(int grupos) {
+            ordenes = new long[grupos];
+            lineas = new long[grupos];
+            unidades = new long[grupos];
+            centavos = new long[grupos];
+        }
+
+        Acumulado sumar(Acumulado otro) {
+            for (int g = 0; g < ordenes.length; g++) {
+                ordenes[g] += otro.ordenes[g];
+                lineas[g] += otro.lineas[g];
+                unidades[g] += otro.unidades[g];
+                centavos[g] += otro.centavos[g];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Recorrido ForkJoin: divide los bloques en mitades hasta llegar a uno por tarea.
+     */
+    private static final class Escaneo extends RecursiveTask<Acumulado> {
+        private final Foto foto;
+        private final Consulta consulta;
+        private final int filasPorBloque;
+        private final int primerBloque;
+        private final int finBloques; // Exclusivo
+
+        Escaneo(Foto foto, Consulta consulta, int filasPorBloque, int primerBloque, int finBloques) {
+            this.foto = foto;
+            this.consulta = consulta;
+            this.filasPorBloque = filasPorBloque;
+            this.primerBloque = primerBloque;
+            this.finBloques = finBloques;
+        }
+
+        @Override
+        protected Acumulado compute() {
+            if (finBloques - primerBloque == 1) {
+                return recorrerBloque(primerBloque);
+            }
+            int mitad = (primerBloque + finBloques) >>> 1;
+            Escaneo izquierda = new Escaneo(foto, consulta, filasPorBloque, primerBloque, mitad);
+            izquierda.fork();
+            Acumulado derecha = new Escaneo(foto, consulta, filasPorBloque, mitad, finBloques).compute();
+            return derecha.sumar(izquierda.join());
+        }
+
+        private Acumulado recorrerBloque(int numero) {
+            Acumulado acumulado = new Acumulado(consulta.grupos());
+            Bloque b = foto.bloques()[numero];
+            int desde = consulta.horaDesde();
+            int hasta = consulta.horaHasta();
+            if (b.maxHora < desde || b.minHora >= hasta) {
+                return acumulado; // Ninguna fila del bloque cae en el rango
+            }
+            int filas = Math.min(filasPorBloque, foto.filas() - numero * filasPorBloque);
+            int[] categoriaDeProducto = foto.categoriaDeProducto();
+            int[] regionDeComuna = foto.regionDeComuna();
+            int base = consulta.base();
+            for (int i = 0; i < filas; i++) {
+                int hora = b.hora[i];
+                if (hora < desde || hora >= hasta) continue;
+                int g = switch (consulta.dimension()) {
+                    case PRODUCTO -> b.producto[i];
+                    case CATEGORIA -> categoriaDeProducto[b.producto[i]];
+                    case COMUNA -> b.comuna[i];
+                    case REGION -> regionDeComuna[b.comuna[i]];
+                    case HORA -> hora - base;
+                    case DIA -> Math.floorDiv(hora, 24) - base;
+                };
+                if (b.primeraLinea[i]) acumulado.ordenes[g]++;
+                acumulado.lineas[g]++;
+                acumulado.unidades[g] += b.cantidad[i];
+                acumulado.centavos[g] += b.centavos[i];
+            }
+            return acumulado;
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package com.levels.backend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.dto.Sugerencia;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.DetalleOrden;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.DetalleOrdenRepository;
+
+/**
+ * ÍNDICE: AUTOCOMPLETADO DEL BUSCADOR (Trie compacto en memoria)
+ * ----------------------------------------------------
+ * Árbol de prefijos sobre los nombres de productos y categorías. Es un árbol "radix":
+ * cada arista lleva un tramo de texto (no una sola letra) y las cadenas de nodos sin
+ * ramificación se funden en uno, así que hay del orden de dos nodos por clave en vez de
+ * uno por carácter. Cada nodo guarda precalculadas sus mejores K sugerencias: responder
+ * a una tecla es recorrer el prefijo escrito y copiar esas K (sin consultar MySQL).
+ * * Se sugiere tanto por el inicio del nombre como por el inicio de cada palabra
+ * ("logi" -> "Mouse Logitech G203").
+ * * Ranking: popularidad (unidades vendidas según DetalleOrden). Una categoría suma
+ * las ventas de sus productos.
+ */
+@Component
+public class AutocompletadoIndex {
+
+    private static final String TIPO_PRODUCTO = "producto";
+    private static final String TIPO_CATEGORIA = "categoria";
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private DetalleOrdenRepository detalleOrdenRepository;
+
+    // Cantidad de sugerencias precalculadas por prefijo (application.properties)
+    @Value("${levelup.catalogo.sugerencias.max:10}")
+    private int maxSugerencias;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Nodo raiz = new Nodo("");
+
+    // Unidades vendidas por producto (se cargan al arrancar y crecen con cada checkout)
+    private final Map<Long, Long> ventasPorProducto = new HashMap<>();
+    private final Map<Long, Entrada> productos = new HashMap<>();
+    private final Map<String, Entrada> categorias = new HashMap<>();
+
+    /**
+     * Una sugerencia dentro del árbol: el DTO ya armado (se devuelve tal cual), su peso
+     * y las claves (prefijos normalizados) bajo las que está colgada.
+     */
+    private static final class Entrada {
+        final Sugerencia sugerencia;
+        final List<String> claves;
+        long peso;
+
+        Entrada(Sugerencia sugerencia, List<String> claves, long peso) {
+            this.sugerencia = sugerencia;
+            this.claves = claves;
+            this.peso = peso;
+        }
+    }
+
+    // Mayor peso primero; a igual peso, orden alfabético
+    private static final Comparator<Entrada> MEJOR_PRIMERO = Comparator
+            .comparingLong((Entrada e) -> -e.peso)
+            .thenComparing(e -> e.sugerencia.texto());
+
+    private static final Entrada[] SIN_ENTRADAS = new Entrada[0];
+    private static final Nodo[] SIN_HIJOS = new Nodo[0];
+
+    /**
+     * Nodo del trie radix. 'tramo' es el texto de la arista que llega a él (vacío en la raíz);
+     * los hijos van en un arreglo ordenado por la primera letra de su tramo (búsqueda binaria).
+     * Solo dos arreglos de entradas: las que terminan aquí y el Top-K del subárbol.
+     */
+    private static final class Nodo {
+        String tramo;
+        Nodo[] hijos = SIN_HIJOS;
+        Entrada[] terminales = SIN_ENTRADAS;            // Sugerencias cuya clave termina aquí
+        Entrada[] mejores = SIN_ENTRADAS;               // Top-K del subárbol, mejor primero
+
+        Nodo(String tramo) {
+            this.tramo = tramo;
+        }
+
+        private int posicion(char c) {
+            int bajo = 0;
+            int alto = hijos.length - 1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                char m = hijos[medio].tramo.charAt(0);
+                if (m < c) {
+                    bajo = medio + 1;
+                } else if (m > c) {
+                    alto = medio - 1;
+                } else {
+                    return medio;
+                }
+            }
+            return -(bajo + 1);
+        }
+
+        Nodo hijo(char c) {
+            int i = posicion(c);
+            return i >= 0 ? hijos[i] : null;
+        }
+
+        /**
+         * Agrega el hijo o reemplaza al que empieza con la misma letra.
+         */
+        void ponerHijo(Nodo hijo) {
+            int i = posicion(hijo.tramo.charAt(0));
+            if (i >= 0) {
+                hijos[i] = hijo;
+                return;
+            }
+            int pos = -i - 1;
+            Nodo[] nuevos = new Nodo[hijos.length + 1];
+            System.arraycopy(hijos, 0, nuevos, 0, pos);
+            nuevos[pos] = hijo;
+            System.arraycopy(hijos, pos, nuevos, pos + 1, hijos.length - pos);
+            hijos = nuevos;
+        }
+
+        void quitarHijo(char c) {
+            int i = posicion(c);
+            if (i < 0) {
+                return;
+            }
+            Nodo[] nuevos = hijos.length == 1 ? SIN_HIJOS : new Nodo[hijos.length - 1];
+            System.arraycopy(hijos, 0, nuevos, 0, i);
+            System.arraycopy(hijos, i + 1, nuevos, i, hijos.length - i - 1);
+            hijos = nuevos;
+        }
+
+        /**
+         * Absorbe a su único hijo (tramo concatenado). Se usa al borrar, para no dejar
+         * nodos intermedios sin sugerencias propias y con un solo camino.
+         */
+        void fundirConHijo() {
+            Nodo unico = hijos[0];
+            tramo = tramo + unico.tramo;
+            hijos = unico.hijos;
+            terminales = unico.terminales;
+            mejores = unico.mejores;
+        }
+    }
+
+    /**
+     * 1. SUGERIR
+     * @param prefijo Lo que el usuario lleva escrito (sin importar tildes ni mayúsculas).
+     * @param limite Máximo de sugerencias (como mucho el K precalculado).
+     * @return Las primeras 'limite' del Top-K precalculado; no se ordena nada en cada consulta.
+     */
+    public List<Sugerencia> sugerir(String prefijo, int limite) {
+        String clave = normalizarClave(prefijo);
+        if (clave.isEmpty() || limite <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Nodo nodo = buscarNodo(clave);
+            if (nodo == null) {
+                return List.of();
+            }
+            int n = Math.min(limite, nodo.mejores.length);
+            Sugerencia[] vista = new Sugerencia[n];
+            for (int i = 0; i < n; i++) {
+                vista[i] = nodo.mejores[i].sugerencia;
+            }
+            return List.of(vista);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 2. CONSTRUCCIÓN COMPLETA AL ARRANCAR
+     * Carga las ventas con un solo GROUP BY, inserta todo sin recalcular y al final
+     * calcula los Top-K de todos los nodos en una sola pasada (de las hojas a la raíz).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        Map<Long, Long> ventas = new HashMap<>();
+        for (Object[] fila : detalleOrdenRepository.sumarUnidadesVendidasPorProducto()) {
+            ventas.put((Long) fila[0], ((Number) fila[1]).longValue());
+        }
+
+        lock.writeLock().lock();
+        try {
+            ventasPorProducto.clear();
+            ventasPorProducto.putAll(ventas);
+            productos.clear();
+            categorias.clear();
+            raiz = new Nodo("");
+
+            CatalogoCache.Snapshot catalogo = catalogoCache.snapshot();
+            for (ProductoCatalogo p : catalogo.productos()) {
+                Entrada e = entradaProducto(p);
+                productos.put(p.getId(), e);
+                e.claves.forEach(clave -> colgar(clave, e));
+            }
+            for (Categoria c : catalogo.categorias()) {
+                Entrada e = entradaCategoria(c, catalogo);
+                categorias.put(c.getNombre(), e);
+                e.claves.forEach(clave -> colgar(clave, e));
+            }
+            recalcularSubarbol(raiz);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 3. ACTUALIZACIÓN INCREMENTAL DEL CATÁLOGO (después del commit)
+     * Solo se tocan los caminos del árbol de los productos afectados.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCambiarCatalogo(CatalogoEvento evento) {
+        if (evento.tipo() == CatalogoEvento.Tipo.CATEGORIAS_MODIFICADAS) {
+            reconstruir();
+            return;
+        }
+        CatalogoCache.Snapshot catalogo = catalogoCache.snapshot();
+
+        lock.writeLock().lock();
+        try {
+            Set<String> categoriasAfectadas = new LinkedHashSet<>();
+            for (Long id : evento.productoIds()) {
+                Entrada anterior = productos.remove(id);
+                if (anterior != null) {
+                    anterior.claves.forEach(clave -> descolgar(clave, anterior));
+                }
+                ProductoCatalogo p = catalogo.porId().get(id);
+                if (p != null && evento.tipo() == CatalogoEvento.Tipo.PRODUCTOS_MODIFICADOS) {
+                    Entrada e = entradaProducto(p);
+                    productos.put(id, e);
+                    e.claves.forEach(clave -> colgarYRecalcular(clave, e));
+                    if (p.getCategoria() != null) {
+                        categoriasAfectadas.add(p.getCategoria().getNombre());
+                    }
+                }
+            }
+            categoriasAfectadas.forEach(nombre -> repesarCategoria(nombre, catalogo));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 4. NUEVAS VENTAS (después del commit del checkout)
+     * Sube la popularidad de los productos comprados y de sus categorías.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alGenerarOrden(OrdenGeneradaEvento evento) {
+        CatalogoCache.Snapshot catalogo = catalogoCache.snapshot();
+
+        lock.writeLock().lock();
+        try {
+            Set<String> categoriasAfectadas = new LinkedHashSet<>();
+            for (DetalleOrden d : evento.orden().getDetalles()) {
+                if (d.getProducto() == null || d.getCantidad() == null) {
+                    continue;
+                }
+                Long id = d.getProducto().getId();
+                long total = ventasPorProducto.merge(id, (long) d.getCantidad(), Long::sum);
+                Entrada e = productos.get(id);
+                if (e != null) {
+                    cambiarPeso(e, total);
+                }
+                if (d.getProducto().getCategoria() != null) {
+                    categoriasAfectadas.add(d.getProducto().getCategoria().getNombre());
+                }
+            }
+            categoriasAfectadas.forEach(nombre -> repesarCategoria(nombre, catalogo));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Métricas: cantidad de sugerencias y de nodos del árbol.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("productos", productos.size());
+            stats.put("categorias", categorias.size());
+            stats.put("nodos", contarNodos(raiz));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA (siempre bajo el lock de escritura, salvo contarNodos) ---
+
+    private Entrada entradaProducto(ProductoCatalogo p) {
+        Sugerencia s = new Sugerencia(p.getNombre(), TIPO_PRODUCTO, p.getId());
+        return new Entrada(s, clavesDe(p.getNombre()), ventasPorProducto.getOrDefault(p.getId(), 0L));
+    }
+
+    private Entrada entradaCategoria(Categoria c, CatalogoCache.Snapshot catalogo) {
+        Sugerencia s = new Sugerencia(c.getNombre(), TIPO_CATEGORIA, null);
+        return new Entrada(s, clavesDe(c.getNombre()), ventasDeCategoria(c.getNombre(), catalogo));
+    }
+
+    private long ventasDeCategoria(String nombre, CatalogoCache.Snapshot catalogo) {
+        long total = 0;
+        for (ProductoCatalogo p : catalogo.porCategoria().getOrDefault(nombre, List.of())) {
+            total += ventasPorProducto.getOrDefault(p.getId(), 0L);
+        }
+        return total;
+    }
+
+    private void repesarCategoria(String nombre, CatalogoCache.Snapshot catalogo) {
+        Entrada e = categorias.get(nombre);
+        if (e != null) {
+            cambiarPeso(e, ventasDeCategoria(nombre, catalogo));
+        }
+    }
+
+    private void cambiarPeso(Entrada e, long peso) {
+        if (e.peso != peso) {
+            e.peso = peso;
+            e.claves.forEach(this::recalcularCamino);
+        }
+    }
+
+    /**
+     * Claves de un texto: el texto completo y cada sufijo que empieza en una palabra
+     * ("mouse logitech g203" -> también "logitech g203" y "g203").
+     */
+    private static List<String> clavesDe(String texto) {
+        String normalizado = normalizarClave(texto);
+        List<String> claves = new ArrayList<>();
+        for (int i = 0; i < normalizado.length(); i++) {
+            if (i == 0 || normalizado.charAt(i - 1) == ' ') {
+                claves.add(normalizado.substring(i));
+            }
+        }
+        return claves;
+    }
+
+    /**
+     * Minúsculas, sin tildes y con los espacios colapsados (igual para índice y consultas).
+     */
+    private static String normalizarClave(String texto) {
+        return String.join(" ", TextoBusqueda.normalizar(texto).trim().split("\\s+"));
+    }
+
+    /**
+     * Nodo que cubre todas las claves que empiezan con el prefijo: el que termina justo en
+     * el prefijo, o el primero cuyo tramo lo sobrepasa ("logi" cae en el nodo "logitech ").
+     */
+    private Nodo buscarNodo(String prefijo) {
+        Nodo nodo = raiz;
+        int pos = 0;
+        while (pos < prefijo.length()) {
+            Nodo hijo = nodo.hijo(prefijo.charAt(pos));
+            if (hijo == null) {
+                return null;
+            }
+            int comun = prefijoComun(hijo.tramo, prefijo, pos);
+            if (pos + comun == prefijo.length()) {
+                return hijo;
+            }
+            if (comun < hijo.tramo.length()) {
+                return null;
+            }
+            nodo = hijo;
+            pos += comun;
+        }
+        return nodo;
+    }
+
+    /**
+     * Letras iguales entre el tramo y la clave a partir de 'desde'.
+     */
+    private static int prefijoComun(String tramo, String clave, int desde) {
+        int max = Math.min(tramo.length(), clave.length() - desde);
+        int i = 0;
+        while (i < max && tramo.charAt(i) == clave.charAt(desde + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Cuelga la entrada al final de la clave. Si la clave se separa a mitad de un tramo,
+     * ese tramo se parte en dos (el nodo nuevo de en medio hereda el Top-K del de abajo).
+     */
+    private void colgar(String clave, Entrada e) {
+        Nodo nodo = raiz;
+        int pos = 0;
+        while (pos < clave.length()) {
+            Nodo hijo = nodo.hijo(clave.charAt(pos));
+            if (hijo == null) {
+                hijo = new Nodo(clave.substring(pos));
+                nodo.ponerHijo(hijo);
+                nodo = hijo;
+                break;
+            }
+            int comun = prefijoComun(hijo.tramo, clave, pos);
+            if (comun < hijo.tramo.length()) {
+                Nodo medio = new Nodo(hijo.tramo.substring(0, comun));
+                medio.hijos = new Nodo[] { hijo };
+                medio.mejores = hijo.mejores;
+                nodo.ponerHijo(medio); // Reemplaza a 'hijo' (misma primera letra) antes de recortarle el tramo
+                hijo.tramo = hijo.tramo.substring(comun);
+                hijo = medio;
+            }
+            nodo = hijo;
+            pos += comun;
+        }
+        Entrada[] terminales = Arrays.copyOf(nodo.terminales, nodo.terminales.length + 1);
+        terminales[terminales.length - 1] = e;
+        nodo.terminales = terminales;
+    }
+
+    private void colgarYRecalcular(String clave, Entrada e) {
+        colgar(clave, e);
+        recalcularCamino(clave);
+    }
+
+    /**
+     * Quita la entrada del nodo donde termina la clave, poda el nodo si quedó vacío, funde
+     * los nodos que quedan con un solo hijo y sin sugerencias propias, y recalcula los Top-K
+     * del camino.
+     */
+    private void descolgar(String clave, Entrada e) {
+        List<Nodo> camino = new ArrayList<>();
+        Nodo nodo = raiz;
+        camino.add(nodo);
+        int pos = 0;
+        while (pos < clave.length()) {
+            nodo = nodo.hijo(clave.charAt(pos));
+            if (nodo == null || !clave.startsWith(nodo.tramo, pos)) {
+                return;
+            }
+            camino.add(nodo);
+            pos += nodo.tramo.length();
+        }
+
+        Nodo fin = camino.get(camino.size() - 1);
+        List<Entrada> terminales = new ArrayList<>(Arrays.asList(fin.terminales));
+        terminales.remove(e);
+        fin.terminales = terminales.toArray(SIN_ENTRADAS);
+
+        if (fin != raiz) {
+            Nodo padre = camino.get(camino.size() - 2);
+            if (fin.terminales.length == 0 && fin.hijos.length == 0) {
+                padre.quitarHijo(fin.tramo.charAt(0));
+                if (padre != raiz && padre.terminales.length == 0 && padre.hijos.length == 1) {
+                    padre.fundirConHijo();
+                }
+            } else if (fin.terminales.length == 0 && fin.hijos.length == 1) {
+                fin.fundirConHijo();
+            }
+        }
+        recalcularCamino(clave);
+    }
+
+    /**
+     * Recalcula los Top-K de la raíz hasta el nodo de la clave, de abajo hacia arriba
+     * (cada nodo combina sus terminales con los Top-K de sus hijos).
+     */
+    private void recalcularCamino(String clave) {
+        List<Nodo> camino = new ArrayList<>();
+        Nodo nodo = raiz;
+        camino.add(nodo);
+        int pos = 0;
+        while (pos < clave.length()) {
+            nodo = nodo.hijo(clave.charAt(pos));
+            if (nodo == null || !clave.startsWith(nodo.tramo, pos)) {
+                break;
+            }
+            camino.add(nodo);
+            pos += nodo.tramo.length();
+        }
+        for (int i = camino.size() - 1; i >= 0; i--) {
+            recalcularNodo(camino.get(i));
+        }
+    }
+
+    private void recalcularSubarbol(Nodo nodo) {
+        for (Nodo hijo : nodo.hijos) {
+            recalcularSubarbol(hijo);
+        }
+        recalcularNodo(nodo);
+    }
+
+    private void recalcularNodo(Nodo nodo) {
+        List<Entrada> candidatos = new ArrayList<>(Arrays.asList(nodo.terminales));
+        for (Nodo hijo : nodo.hijos) {
+            candidatos.addAll(Arrays.asList(hijo.mejores));
+        }
+        candidatos.sort(MEJOR_PRIMERO);
+
+        // Una misma sugerencia puede llegar por dos claves (ej: "gamer gamer"): se deja una sola vez
+        List<Entrada> mejores = new ArrayList<>(Math.min(candidatos.size(), maxSugerencias));
+        for (Entrada e : candidatos) {
+            if (mejores.size() == maxSugerencias) {
+                break;
+            }
+            if (!mejores.contains(e)) {
+                mejores.add(e);
+            }
+        }
+        nodo.mejores = mejores.toArray(SIN_ENTRADAS);
+    }
+
+    private static int contarNodos(Nodo nodo) {
+        int total = 1;
+        for (Nodo hijo : nodo.hijos) {
+            total += contarNodos(hijo);
+        }
+        return total;
+    }
+}
@@ -2,6 +2,7 @@ package com.levels.backend.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,11 @@ public class BlogPostService {
     @Autowired
     private BlogPostRepository blogRepository;
 
+    // VERSIÓN DE LOS DATOS: Cambia con cada publicación o eliminación (base del ETag).
+    // Parte en el instante de arranque para que nunca se repita entre reinicios.
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    private volatile long ultimaModificacion = System.currentTimeMillis();
+
     /**
      * 1. LISTAR TODAS LAS NOTICIAS
      * Propósito: Llenar el feed de noticias en el Frontend.
@@ -31,6 +37,21 @@ public class BlogPostService {
         // El findAll() es heredado de JpaRepository
         return blogRepository.findAll();
     }
+
+    /**
+     * 1.B VERSIÓN DE LOS DATOS
+     * Uso: El Controller calcula el ETag con este número y responde 304 sin consultar la BD.
+     */
+    public long versionDatos() {
+        return version.get();
+    }
+
+    /**
+     * Instante (ms) del último cambio, para la cabecera 'Last-Modified'.
+     */
+    public long ultimaModificacion() {
+        return ultimaModificacion;
+    }
     
     /**
      * 2. CREAR UNA NOTICIA
@@ -44,7 +65,9 @@ public class BlogPostService {
         if (post.getFechaPublicacion() == null) {
             post.setFechaPublicacion(LocalDateTime.now());
         }
-        return blogRepository.save(post);
+        BlogPost guardado = blogRepository.save(post);
+        registrarCambio();
+        return guardado;
     }
 
     /**
@@ -57,8 +80,17 @@ public class BlogPostService {
         // existsById() evita una excepción si intentamos borrar algo que no existe
         if (blogRepository.existsById(id)) {
             blogRepository.deleteById(id);
+            registrarCambio();
             return true;
         }
         return false;
     }
+
+    /**
+     * Incrementa la versión tras una escritura (invalida los ETags entregados).
+     */
+    private void registrarCambio() {
+        ultimaModificacion = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,227 @@
+package com.levels.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.levels.backend.dto.ProductoCatalogo;
+
+/**
+ * ÍNDICE: BÚSQUEDA DE TEXTO COMPLETO DE PRODUCTOS (en memoria)
+ * ----------------------------------------------------
+ * Índice invertido (palabra -> productos que la contienen) sobre el nombre, la descripción
+ * y la categoría de cada producto. Reemplaza a un "LIKE '%x%'" que recorrería toda la tabla.
+ * * Ranking: BM25 (el estándar de los motores de búsqueda). Premia las palabras raras y las
+ * repeticiones, y penaliza los textos muy largos. Además, una coincidencia en el nombre pesa
+ * más que en la categoría, y esta más que en la descripción.
+ * * Concurrencia: muchas búsquedas en paralelo (lock de lectura); las actualizaciones
+ * incrementales toman el lock de escritura solo el tiempo de reindexar un producto.
+ * Los escritores (reconstrucción y parches) se serializan con 'synchronized'.
+ */
+@Component
+public class BusquedaProductosIndex {
+
+    // Parámetros clásicos de BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Peso de cada campo (una palabra en el nombre "vale" 3 veces más que en la descripción)
+    private static final float PESO_NOMBRE = 3f;
+    private static final float PESO_CATEGORIA = 2f;
+    private static final float PESO_DESCRIPCION = 1f;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Indice indice = new Indice();
+    private volatile long ultimaConstruccionMs;
+
+    /**
+     * Estructura interna del índice (se accede siempre bajo el lock).
+     */
+    private static final class Indice {
+        // palabra -> (productoId -> frecuencia ponderada)
+        final Map<String, Map<Long, Float>> postings = new HashMap<>();
+        // productoId -> largo ponderado del documento
+        final Map<Long, Float> largos = new HashMap<>();
+        // productoId -> palabras indexadas (para poder borrarlo)
+        final Map<Long, Collection<String>> terminosPorProducto = new HashMap<>();
+        double sumaLargos;
+
+        void agregar(ProductoCatalogo p) {
+            Map<String, Float> frecuencias = new HashMap<>();
+            acumular(frecuencias, p.getNombre(), PESO_NOMBRE);
+            acumular(frecuencias, p.getCategoria() != null ? p.getCategoria().getNombre() : null, PESO_CATEGORIA);
+            acumular(frecuencias, p.getDescripcion(), PESO_DESCRIPCION);
+
+            float largo = 0;
+            for (Map.Entry<String, Float> e : frecuencias.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(p.getId(), e.getValue());
+                largo += e.getValue();
+            }
+            largos.put(p.getId(), largo);
+            terminosPorProducto.put(p.getId(), frecuencias.keySet());
+            sumaLargos += largo;
+        }
+
+        void quitar(Long id) {
+            Collection<String> terminos = terminosPorProducto.remove(id);
+            if (terminos == null) {
+                return;
+            }
+            for (String t : terminos) {
+                Map<Long, Float> lista = postings.get(t);
+                if (lista != null) {
+                    lista.remove(id);
+                    if (lista.isEmpty()) {
+                        postings.remove(t);
+                    }
+                }
+            }
+            sumaLargos -= largos.remove(id);
+        }
+
+        private static void acumular(Map<String, Float> frecuencias, String texto, float peso) {
+            for (String token : TextoBusqueda.tokenizar(texto)) {
+                frecuencias.merge(token, peso, Float::sum);
+            }
+        }
+    }
+
+    /**
+     * Resultado de búsqueda: id del producto y su puntaje BM25.
+     */
+    public record Coincidencia(Long productoId, double puntaje) {}
+
+    /**
+     * 1. BUSCAR
+     * @param consulta Texto libre escrito por el usuario (ej: "juego futbol").
+     * @param limite Cantidad máxima de resultados.
+     * @return Ids de productos ordenados por relevancia (mayor puntaje primero).
+     */
+    public List<Coincidencia> buscar(String consulta, int limite) {
+        List<String> terminos = TextoBusqueda.tokenizar(consulta);
+        if (terminos.isEmpty() || limite <= 0) {
+            return List.of();
+        }
+
+        Map<Long, Double> puntajes = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int n = indice.largos.size();
+            double largoPromedio = n > 0 ? indice.sumaLargos / n : 1;
+
+            for (String termino : terminos) {
+                Map<Long, Float> lista = indice.postings.get(termino);
+                if (lista == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (n - lista.size() + 0.5) / (lista.size() + 0.5));
+                for (Map.Entry<Long, Float> e : lista.entrySet()) {
+                    double tf = e.getValue();
+                    double largo = indice.largos.get(e.getKey());
+                    double puntaje = idf * (tf * (K1 + 1)) / (tf + K1 * (1 - B + B * largo / largoPromedio));
+                    puntajes.merge(e.getKey(), puntaje, Double::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Top-K con un heap de tamaño 'limite' (evita ordenar todos los candidatos).
+        // El heap deja arriba al "peor" resultado; a igual puntaje gana el id menor.
+        Comparator<Coincidencia> peorPrimero = Comparator.comparingDouble(Coincidencia::puntaje)
+                .thenComparing(Coincidencia::productoId, Comparator.reverseOrder());
+        PriorityQueue<Coincidencia> top = new PriorityQueue<>(peorPrimero);
+        for (Map.Entry<Long, Double> e : puntajes.entrySet()) {
+            Coincidencia c = new Coincidencia(e.getKey(), e.getValue());
+            if (top.size() < limite) {
+                top.add(c);
+            } else if (peorPrimero.compare(c, top.peek()) > 0) {
+                top.poll();
+                top.add(c);
+            }
+        }
+        List<Coincidencia> resultado = new ArrayList<>(top);
+        resultado.sort(peorPrimero.reversed());
+        return resultado;
+    }
+
+    /**
+     * 2. CONSTRUCCIÓN COMPLETA AL ARRANCAR
+     * Se indexa desde la foto del catálogo (ya cargada desde la BD). El índice nuevo se arma
+     * fuera del lock y luego se reemplaza de una vez: las búsquedas no se bloquean mientras tanto.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        Indice nuevo = new Indice();
+        for (ProductoCatalogo p : catalogoCache.snapshot().productos()) {
+            nuevo.agregar(p);
+        }
+
+        lock.writeLock().lock();
+        try {
+            indice = nuevo;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ultimaConstruccionMs = System.currentTimeMillis() - inicio;
+    }
+
+    /**
+     * 3. ACTUALIZACIÓN INCREMENTAL (después del commit)
+     * Se reindexan solo los productos afectados, leyendo su versión nueva desde la foto
+     * del catálogo (CatalogoCache procesa el evento antes que este oyente).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCambiarCatalogo(CatalogoEvento evento) {
+        if (evento.tipo() == CatalogoEvento.Tipo.CATEGORIAS_MODIFICADAS) {
+            reconstruir(); // Un cambio de categoría puede alterar el texto de muchos productos
+            return;
+        }
+        Map<Long, ProductoCatalogo> porId = catalogoCache.snapshot().porId();
+
+        lock.writeLock().lock();
+        try {
+            for (Long id : evento.productoIds()) {
+                indice.quitar(id);
+                ProductoCatalogo p = porId.get(id);
+                if (p != null && evento.tipo() == CatalogoEvento.Tipo.PRODUCTOS_MODIFICADOS) {
+                    indice.agregar(p);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Métricas del índice (tamaño y tiempo de la última construcción completa).
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("productos", indice.largos.size());
+            stats.put("terminos", indice.postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("ultimaConstruccionMs", ultimaConstruccionMs);
+        return stats;
+    }
+}
@@ -0,0 +1,246 @@
+package com.levels.backend.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.security.JwtService;
+
+/**
+ * SERVICIO: CARRITO ANÓNIMO (sin cuenta, sin BD)
+ * ----------------------------------------------------
+ * Quien solo está mirando no necesita un carrito en MySQL: su contenido viaja con él, en
+ * una cookie (o cabecera) firmada con HMAC. El servidor no guarda nada hasta el login,
+ * donde se fusiona con el Carrito persistente (CarritoService.fusionarAnonimo).
+ * * Formato (Base64 URL, ~10 bytes por producto): [formato][emitido][versión del catálogo]
+ * [total visto][n][(productoId, cantidad) x n] "." [HMAC-SHA256 truncado a 16 bytes].
+ * * Precios: NO viajan en el token (siempre se usan los del catálogo). Se guarda el total que
+ * vio el cliente para avisarle si los precios cambiaron desde entonces.
+ * * Un token alterado, vencido o de otro formato se trata como carrito vacío.
+ * * Sin reservas de stock: se valida contra lo disponible, pero no se aparta nada.
+ */
+@Service
+public class CarritoAnonimoService {
+
+    // Nombre de la cookie / cabecera que transporta el carrito
+    public static final String COOKIE = "carrito_anonimo";
+    public static final String CABECERA = "X-Carrito-Anonimo";
+
+    private static final String PROPOSITO_FIRMA = "carrito-anonimo";
+    private static final byte FORMATO = 1;
+    private static final int BYTES_FIRMA = 16;
+    private static final int MAX_PRODUCTOS = 50; // La cookie no puede crecer sin límite (máx. ~4 KB)
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Value("${levelup.carrito-anonimo.dias-vigencia:30}")
+    private long diasVigencia;
+
+    // Métricas
+    private final LongAdder tokensEmitidos = new LongAdder();
+    private final LongAdder tokensRechazados = new LongAdder();
+
+    /**
+     * Contenido de un carrito anónimo.
+     * @param lineas productoId -> cantidad (en el orden en que se agregaron).
+     * @param versionCatalogo Versión de la foto del catálogo cuando se armó el token.
+     * @param totalVisto Total (en pesos) que vio el cliente en ese momento.
+     */
+    public record Contenido(Map<Long, Integer> lineas, long versionCatalogo, long totalVisto) {
+
+        public static Contenido vacio() {
+            return new Contenido(Map.of(), 0, 0);
+        }
+    }
+
+    /**
+     * 1. LEER un token (null o inválido = carrito vacío).
+     */
+    public Contenido leer(String token) {
+        if (token == null || token.isBlank()) return Contenido.vacio();
+        try {
+            int punto = token.indexOf('.');
+            if (punto < 0) throw new IllegalArgumentException("Sin firma");
+            Base64.Decoder base64 = Base64.getUrlDecoder();
+            byte[] datos = base64.decode(token.substring(0, punto));
+            byte[] firma = base64.decode(token.substring(punto + 1));
+            if (!jwtService.verificarFirma(PROPOSITO_FIRMA, datos, firma)) throw new IllegalArgumentException("Firma inválida");
+
+            ByteBuffer in = ByteBuffer.wrap(datos);
+            if (in.get() != FORMATO) throw new IllegalArgumentException("Formato desconocido");
+            long emitidoEn = leerVarLong(in);
+            if (emitidoEn + diasVigencia * 86_400 < System.currentTimeMillis() / 1000) {
+                throw new IllegalArgumentException("Vencido");
+            }
+            long versionCatalogo = in.getLong();
+            long totalVisto = leerVarLong(in);
+            int n = (int) leerVarLong(in);
+            if (n > MAX_PRODUCTOS) throw new IllegalArgumentException("Demasiados productos");
+            Map<Long, Integer> lineas = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                lineas.put(leerVarLong(in), (int) leerVarLong(in));
+            }
+            return new Contenido(lineas, versionCatalogo, totalVisto);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            tokensRechazados.increment();
+            return Contenido.vacio();
+        }
+    }
+
+    /**
+     * 2. AGREGAR un producto (o sumar cantidad). Valida contra el stock disponible.
+     * @return El nuevo token.
+     */
+    public String agregar(String token, Long productoId, int cantidad) {
+        if (cantidad <= 0) throw new RuntimeException("La cantidad debe ser mayor a cero.");
+        Map<Long, Integer> lineas = new LinkedHashMap<>(leer(token).lineas());
+        int total = lineas.getOrDefault(productoId, 0) + cantidad;
+        if (!lineas.containsKey(productoId) && lineas.size() >= MAX_PRODUCTOS) {
+            throw new RuntimeException("El carrito no admite más de " + MAX_PRODUCTOS + " productos distintos.");
+        }
+        validarStock(productoId, total);
+        lineas.put(productoId, total);
+        return emitir(lineas);
+    }
+
+    /**
+     * 3. CAMBIAR LA CANTIDAD (0 o menos = quitar).
+     */
+    public String actualizarCantidad(String token, Long productoId, int cantidad) {
+        Map<Long, Integer> lineas = new LinkedHashMap<>(leer(token).lineas());
+        if (!lineas.containsKey(productoId)) throw new RuntimeException("Producto no encontrado en el carrito");
+        if (cantidad <= 0) {
+            lineas.remove(productoId);
+        } else {
+            validarStock(productoId, cantidad);
+            lineas.put(productoId, cantidad);
+        }
+        return emitir(lineas);
+    }
+
+    /**
+     * 4. QUITAR un producto.
+     */
+    public String eliminar(String token, Long productoId) {
+        Map<Long, Integer> lineas = new LinkedHashMap<>(leer(token).lineas());
+        lineas.remove(productoId);
+        return emitir(lineas);
+    }
+
+    /**
+     * 5. VISTA para el Frontend: productos y precios al día (de la foto del catálogo).
+     * Los productos que ya no existen se omiten.
+     */
+    public Map<String, Object> vista(String token) {
+        Contenido contenido = leer(token);
+        Map<Long, ProductoCatalogo> catalogo = catalogoCache.snapshot().porId();
+        List<Map<String, Object>> items = new ArrayList<>();
+        double total = 0;
+        for (Map.Entry<Long, Integer> linea : contenido.lineas().entrySet()) {
+            ProductoCatalogo p = catalogo.get(linea.getKey());
+            if (p == null) continue;
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("productoId", p.getId());
+            item.put("nombre", p.getNombre());
+            item.put("imagenUrl", p.getImagenUrl());
+            item.put("precioUnitario", p.getPrecio());
+            item.put("cantidad", linea.getValue());
+            item.put("subtotal", p.getPrecio() * linea.getValue());
+            items.add(item);
+            total += p.getPrecio() * linea.getValue();
+        }
+        Map<String, Object> vista = new LinkedHashMap<>();
+        vista.put("items", items);
+        vista.put("total", total);
+        vista.put("versionCatalogo", contenido.versionCatalogo());
+        vista.put("preciosCambiaron", !items.isEmpty() && Math.round(total) != contenido.totalVisto());
+        vista.put("token", token);
+        return vista;
+    }
+
+    /**
+     * Métricas: tokens emitidos y rechazados (alterados o vencidos).
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tokensEmitidos", tokensEmitidos.sum());
+        stats.put("tokensRechazados", tokensRechazados.sum());
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    private void validarStock(Long productoId, int cantidad) {
+        Integer disponible = productoService.disponibilidad(List.of(productoId)).get(productoId);
+        if (disponible == null) throw new RuntimeException("Producto no encontrado");
+        if (disponible < cantidad) throw new RuntimeException("No hay suficiente stock. Disponible: " + Math.max(0, disponible));
+    }
+
+    /**
+     * Arma y firma el token con la versión del catálogo y el total actuales.
+     */
+    private String emitir(Map<Long, Integer> lineas) {
+        CatalogoCache.Snapshot foto = catalogoCache.snapshot();
+        double total = 0;
+        for (Map.Entry<Long, Integer> linea : lineas.entrySet()) {
+            ProductoCatalogo p = foto.porId().get(linea.getKey());
+            if (p != null) total += p.getPrecio() * linea.getValue();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + lineas.size() * 10);
+        out.write(FORMATO);
+        escribirVarLong(out, System.currentTimeMillis() / 1000);
+        byte[] version = ByteBuffer.allocate(Long.BYTES).putLong(foto.version()).array();
+        out.write(version, 0, version.length);
+        escribirVarLong(out, Math.round(total));
+        escribirVarLong(out, lineas.size());
+        for (Map.Entry<Long, Integer> linea : lineas.entrySet()) {
+            escribirVarLong(out, linea.getKey());
+            escribirVarLong(out, linea.getValue());
+        }
+        byte[] datos = out.toByteArray();
+        byte[] firma = Arrays.copyOf(jwtService.firmar(PROPOSITO_FIRMA, datos), BYTES_FIRMA);
+
+        tokensEmitidos.increment();
+        Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+        return base64.encodeToString(datos) + "." + base64.encodeToString(firma);
+    }
+
+    // Enteros de largo variable: 7 bits por byte (los números chicos ocupan 1 o 2 bytes)
+    private static void escribirVarLong(ByteArrayOutputStream out, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            out.write((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        out.write((int) valor);
+    }
+
+    private static long leerVarLong(ByteBuffer in) {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte b = in.get();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) return valor;
+        }
+        throw new IllegalArgumentException("Número mal formado");
+    }
+}
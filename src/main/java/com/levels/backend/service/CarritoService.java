@@ -1,171 +1,397 @@
 package com.levels.backend.service;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import com.levels.backend.dto.ProductoCatalogo;
 import com.levels.backend.model.Carrito;
 import com.levels.backend.model.DetalleCarrito;
 import com.levels.backend.model.Producto;
 import com.levels.backend.model.Usuario;
-import com.levels.backend.repository.CarritoRepository;
-import com.levels.backend.repository.DetalleCarritoRepository;
 import com.levels.backend.repository.ProductoRepository;
-import com.levels.backend.repository.UsuarioRepository; 
-
-import jakarta.transaction.Transactional;
 
 /**
  * SERVICIO: GESTIÓN DEL CARRITO
  * ----------------------------------------------------
  * Contiene toda la lógica para manipular el carrito de compras, incluyendo:
- * 1. Validación de stock antes de agregar.
+ * 1. Validación de stock y reserva temporal de las unidades (ReservasStock) antes de agregar.
  * 2. Creación/Actualización del carrito y sus detalles.
  * 3. Aplicación de reglas de negocio (Descuento DUOC).
  * 4. Eliminación robusta de ítems.
+ * * Los carritos viven en CarritoStore: aquí solo se decide QUÉ cambia; el store se encarga
+ * de guardarlo en la BD (al instante o por lotes, según levelup.carrito.persistencia).
  */
 @Service
 public class CarritoService {
 
-    // Inyección de dependencias de todos los repositorios necesarios
-    @Autowired
-    private CarritoRepository carritoRepository;
+    // Inyección de dependencias
     @Autowired
-    private UsuarioRepository usuarioRepository;
+    private CarritoStore carritoStore; // Carritos en memoria + escritura en la BD
     @Autowired
     private ProductoRepository productoRepository;
     @Autowired
-    private DetalleCarritoRepository detalleRepository;
+    private CatalogoCache catalogoCache; // Precio y stock del producto sin ir a la BD
+    @Autowired
+    private ReservasStock reservasStock; // Aparta las unidades mientras están en el carrito
+    @Autowired
+    private InventarioCaliente inventarioCaliente; // Stock en memoria de los productos en venta flash
 
     /**
      * 1. AGREGAR PRODUCTO AL CARRITO
      * ----------------------------------------------------
      * Flujo de adición de un nuevo producto o suma de cantidad a uno existente.
+     * Si el usuario aún no tiene carrito, el store lo crea.
      */
     public Carrito agregarProducto(Long usuarioId, Long productoId, Integer cantidad) {
-        
-        // 1. Carga de Entidades: Aseguramos que el Usuario y el Producto existan.
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+        return carritoStore.modificar(usuarioId, "carrito.agregar", true, carrito -> {
 
-        // 2. Validación Crítica de Stock: Regla de negocio fundamental.
-        if (producto.getStock() < cantidad) {
-            throw new RuntimeException("No hay suficiente stock. Disponible: " + producto.getStock());
-        }
+            // 1. Lógica de Ítems: Buscar si el producto ya estaba (en memoria, sin consultas).
+            DetalleCarrito detalleExistente = buscarItem(carrito, productoId);
+            Producto producto = detalleExistente != null ? detalleExistente.getProducto() : productoDelCatalogo(productoId);
 
-        // 3. Buscar o Crear Carrito: Cada usuario tiene un carrito único.
-        Carrito carrito = carritoRepository.findByUsuarioId(usuarioId);
-        if (carrito == null) {
-            carrito = new Carrito();
-            carrito.setUsuario(usuario);
-            carrito = carritoRepository.save(carrito); // Persistimos la cabecera
-        }
+            // 2. Validación Crítica de Stock + Reserva: se aparta el TOTAL de este producto en el carrito.
+            // Lanza excepción si el stock que no está reservado por otros clientes no alcanza.
+            int totalEnCarrito = cantidad + (detalleExistente != null ? detalleExistente.getCantidad() : 0);
+            reservasStock.reservar(usuarioId, productoId, totalEnCarrito, stockActual(productoId));
+
+            if (detalleExistente != null) {
+                // Si existe, sumamos la cantidad (al precio con que se agregó la primera vez)
+                detalleExistente.setCantidad(detalleExistente.getCantidad() + cantidad);
+                sumarAlTotal(carrito, detalleExistente.getPrecioUnitario() * cantidad);
+            } else {
+                // Si es nuevo, creamos una línea de detalle, asignamos el precio de lista (snapshot)
+                DetalleCarrito nuevoDetalle = new DetalleCarrito();
+                nuevoDetalle.setCarrito(carrito);
+                nuevoDetalle.setProducto(producto);
+                nuevoDetalle.setCantidad(cantidad);
+                nuevoDetalle.setPrecioUnitario(producto.getPrecio());
+
+                carrito.getItems().add(nuevoDetalle);
+                sumarAlTotal(carrito, nuevoDetalle.getSubtotal());
+            }
+        });
+    }
+
+    /**
+     * 2. OBTENER CARRITO (desde memoria)
+     * @return El carrito del usuario (con sus ítems y productos) o null.
+     */
+    public Carrito obtenerCarrito(Long usuarioId) {
+        return carritoStore.leer(usuarioId);
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    /**
+     * Stock vigente: en venta flash la tabla va atrasada y manda el contador en memoria.
+     */
+    private int stockActual(Long productoId) {
+        Integer enMemoria = inventarioCaliente.stockEnMemoria(productoId);
+        return enMemoria != null ? enMemoria : productoDelCatalogo(productoId).getStock();
+    }
 
-        // 4. Lógica de Ítems: Buscar si el producto ya estaba.
-        DetalleCarrito detalleExistente = null;
+    /**
+     * El producto sale de la foto del catálogo (sin consulta), como copia propia de este carrito.
+     * Si todavía no está en ella (recién creado), se lee de la BD.
+     */
+    private Producto productoDelCatalogo(Long productoId) {
+        ProductoCatalogo enFoto = catalogoCache.snapshot().porId().get(productoId);
+        if (enFoto != null) return enFoto.aEntidad();
+        return productoRepository.findById(productoId)
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+    }
+
+    private DetalleCarrito buscarItem(Carrito carrito, Long productoId) {
         for (DetalleCarrito detalle : carrito.getItems()) {
             if (detalle.getProducto().getId().equals(productoId)) {
-                detalleExistente = detalle;
-                break;
+                return detalle;
             }
         }
+        return null;
+    }
 
-        if (detalleExistente != null) {
-            // Si existe, sumamos la cantidad y guardamos el detalle actualizado
-            detalleExistente.setCantidad(detalleExistente.getCantidad() + cantidad);
-            detalleRepository.save(detalleExistente);
-        } else {
-            // Si es nuevo, creamos una línea de detalle, asignamos el precio de lista (snapshot)
-            DetalleCarrito nuevoDetalle = new DetalleCarrito();
-            nuevoDetalle.setCarrito(carrito);
-            nuevoDetalle.setProducto(producto);
-            nuevoDetalle.setCantidad(cantidad);
-            nuevoDetalle.setPrecioUnitario(producto.getPrecio());
-            
-            carrito.getItems().add(nuevoDetalle);
-            detalleRepository.save(nuevoDetalle); 
+    /**
+     * Total incremental: se suma (o resta) solo la diferencia de la línea que cambió, en vez
+     * de recorrer todo el carrito. La diferencia va al subtotal SIN descuento, en centavos
+     * (exacto); el total se deriva de él con el descuento vigente del usuario.
+     */
+    private void sumarAlTotal(Carrito carrito, double diferencia) {
+        if (carrito.getItems().isEmpty()) {
+            carrito.setSubtotalCentavos(0L);
+            carrito.setTotal(0.0);
+            return;
         }
 
-        // 5. Calcular Totales (Incluye Gamificación)
-        calcularTotalCarrito(carrito);
-
-        return carritoRepository.save(carrito);
+        // Carrito anterior a la columna: se parte de sus líneas (que ya incluyen este cambio)
+        long subtotal = carrito.getSubtotalCentavos() != null
+                ? carrito.getSubtotalCentavos() + aCentavos(diferencia)
+                : subtotalCentavos(carrito);
+        carrito.setSubtotalCentavos(subtotal);
+        carrito.setTotal(totalConDescuento(subtotal, carrito.getUsuario()));
     }
 
     /**
-     * 2. OBTENER CARRITO
-     * @return El carrito del usuario o null.
+     * Subtotal sin descuento de las líneas del carrito, en centavos.
      */
-    public Carrito obtenerCarrito(Long usuarioId) {
-        return carritoRepository.findByUsuarioId(usuarioId);
+    static long subtotalCentavos(Carrito carrito) {
+        long subtotal = 0;
+        for (DetalleCarrito d : carrito.getItems()) {
+            subtotal += aCentavos(d.getSubtotal());
+        }
+        return subtotal;
     }
-    
-    // --- LÓGICA PRIVADA ---
 
     /**
-     * Método privado para recalcular el precio total aplicando reglas de negocio.
+     * Total a pagar: REGLA DE NEGOCIO Descuento DUOC (20%), aplicado una sola vez sobre el
+     * subtotal y redondeado al centavo. También lo usa el checkout (OrdenService).
      */
-    private void calcularTotalCarrito(Carrito carrito) {
-        double suma = 0;
-        for (DetalleCarrito item : carrito.getItems()) {
-            suma += item.getPrecioUnitario() * item.getCantidad();
-        }
+    static double totalConDescuento(long subtotalCentavos, Usuario usuario) {
+        long centavos = usuario != null && usuario.isEsEstudianteDuoc()
+                ? Math.round(subtotalCentavos * 0.80) // Descuenta el 20%
+                : subtotalCentavos;
+        return centavos / 100.0;
+    }
 
-        // REGLA DE NEGOCIO: Descuento DUOC (Gamificación/Beneficio)
-        if (carrito.getUsuario().isEsEstudianteDuoc()) {
-            suma = suma * 0.80; // Descuenta el 20%
-        }
+    static long aCentavos(Double monto) {
+        return monto != null ? Math.round(monto * 100) : 0;
+    }
 
-        carrito.setTotal(suma);
+    /**
+     * Quita una línea del carrito y ajusta el total.
+     */
+    private void quitarItem(Carrito carrito, DetalleCarrito detalle) {
+        carrito.getItems().remove(detalle);
+        sumarAlTotal(carrito, -detalle.getSubtotal());
     }
 
     /**
      * 3. ELIMINAR UN PRODUCTO ESPECÍFICO DEL CARRITO
-     * ----------------------------------------------------
-     * * @Transactional: Asegura que el borrado masivo en el Repositorio se ejecute.
      */
-    @Transactional 
     public Carrito eliminarProducto(Long usuarioId, Long productoId) {
-        Carrito carrito = carritoRepository.findByUsuarioId(usuarioId);
-        if (carrito == null) throw new RuntimeException("Carrito no encontrado");
+        return carritoStore.modificar(usuarioId, "carrito.eliminarProducto", false, carrito -> {
+            // Las unidades vuelven a quedar disponibles para los demás clientes
+            reservasStock.liberar(usuarioId, productoId);
 
-        // Borrado directo en BD (más robusto que solo usar la lista en Java)
-        detalleRepository.deleteByCarritoIdAndProductoId(carrito.getId(), productoId);
-        
-        // Sincronizamos la lista en memoria para evitar errores de cálculo
-        carrito.getItems().removeIf(item -> item.getProducto().getId().equals(productoId));
-        
-        calcularTotalCarrito(carrito);
-        
-        return carritoRepository.save(carrito);
+            DetalleCarrito detalle = buscarItem(carrito, productoId);
+            if (detalle != null) {
+                quitarItem(carrito, detalle);
+            }
+        });
     }
 
     /**
      * 4. ACTUALIZAR CANTIDAD (+ o -)
      */
     public Carrito actualizarCantidad(Long usuarioId, Long productoId, Integer nuevaCantidad) {
-        Carrito carrito = carritoRepository.findByUsuarioId(usuarioId);
-        if (carrito == null) throw new RuntimeException("Carrito no encontrado");
+        return carritoStore.modificar(usuarioId, "carrito.actualizarCantidad", false, carrito -> {
+            DetalleCarrito detalle = buscarItem(carrito, productoId);
+            if (detalle == null) throw new RuntimeException("Producto no encontrado en el carrito");
 
-        DetalleCarrito detalle = carrito.getItems().stream()
-                .filter(item -> item.getProducto().getId().equals(productoId))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado en el carrito"));
+            // Lógica de Eliminación/Stock
+            if (nuevaCantidad <= 0) {
+                reservasStock.liberar(usuarioId, productoId);
+                quitarItem(carrito, detalle);
+                return;
+            }
 
-        // Lógica de Eliminación/Stock
-        if (nuevaCantidad <= 0) {
-            return eliminarProducto(usuarioId, productoId); // Delega la eliminación
-        }
-        
-        if (nuevaCantidad > detalle.getProducto().getStock()) {
-            throw new RuntimeException("Stock insuficiente. Máximo disponible: " + detalle.getProducto().getStock());
-        }
+            // La reserva se ajusta a la nueva cantidad (y se renueva su vencimiento)
+            reservasStock.reservar(usuarioId, productoId, nuevaCantidad, stockActual(productoId));
+
+            // Actualizamos la cantidad y el total (solo la diferencia)
+            int diferencia = nuevaCantidad - detalle.getCantidad();
+            detalle.setCantidad(nuevaCantidad);
+            sumarAlTotal(carrito, detalle.getPrecioUnitario() * diferencia);
+        });
+    }
+
+    /**
+     * Una operación de un lote (PATCH /api/carrito/{usuarioId}).
+     * @param cantidad AGREGAR: unidades a sumar; FIJAR: cantidad final (0 = quitar); QUITAR: se ignora.
+     */
+    public record Operacion(TipoOperacion tipo, Long productoId, int cantidad) {
+    }
+
+    public enum TipoOperacion { AGREGAR, FIJAR, QUITAR }
+
+    /**
+     * Resultado de un lote.
+     * @param coalescidas Operaciones que no generaron un cambio propio porque se juntaron con
+     * otras del mismo producto (ej: +1, +1, =5 sobre el mismo producto = 1 cambio, 2 coalescidas).
+     */
+    public record ResultadoLote(Carrito carrito, int operaciones, int lineasModificadas, int coalescidas) {
+    }
+
+    /**
+     * 5. APLICAR UN LOTE DE OPERACIONES (el Frontend edita varias cantidades de una vez).
+     * ----------------------------------------------------
+     * Las operaciones se resuelven primero en memoria a una cantidad final por producto; después
+     * se reserva el stock, se cambian las líneas y se ajusta el total UNA vez, en una sola
+     * modificación del carrito (una lectura, una escritura por lotes, una transacción).
+     * Si alguna operación no se puede aplicar (sin stock, producto inexistente) no se aplica ninguna.
+     */
+    public ResultadoLote aplicarOperaciones(Long usuarioId, List<Operacion> operaciones) {
+        if (operaciones.isEmpty()) throw new RuntimeException("No se recibieron operaciones.");
+        boolean agregaAlgo = operaciones.stream().anyMatch(op -> op.tipo() != TipoOperacion.QUITAR && op.cantidad() > 0);
+        int[] lineasModificadas = new int[1];
+
+        Carrito resultado = carritoStore.modificar(usuarioId, "carrito.lote", agregaAlgo, carrito -> {
+
+            // 1. Cantidad final de cada producto (en el orden en que aparecen)
+            Map<Long, Integer> finales = new LinkedHashMap<>();
+            for (Operacion op : operaciones) {
+                if (op.productoId() == null) throw new RuntimeException("Falta el productoId en una operación.");
+                int actual = finales.computeIfAbsent(op.productoId(), id -> {
+                    DetalleCarrito detalle = buscarItem(carrito, id);
+                    return detalle != null ? detalle.getCantidad() : 0;
+                });
+                switch (op.tipo()) {
+                    case AGREGAR -> {
+                        if (op.cantidad() <= 0) throw new RuntimeException("La cantidad a agregar debe ser mayor a cero.");
+                        finales.put(op.productoId(), actual + op.cantidad());
+                    }
+                    case FIJAR -> finales.put(op.productoId(), Math.max(0, op.cantidad()));
+                    case QUITAR -> finales.put(op.productoId(), 0);
+                }
+            }
+
+            // 2. Validación: los productos nuevos deben existir (aún no se toca nada)
+            Map<Long, Producto> productosNuevos = new LinkedHashMap<>();
+            for (Map.Entry<Long, Integer> fin : finales.entrySet()) {
+                if (fin.getValue() > 0 && buscarItem(carrito, fin.getKey()) == null) {
+                    productosNuevos.put(fin.getKey(), productoDelCatalogo(fin.getKey()));
+                }
+            }
+
+            // 3. Reservas: si una falla, se devuelven las ya ajustadas y el lote completo se rechaza
+            // con el error original (si además falla una devolución, se sigue con las demás y su
+            // error queda adjunto como 'suppressed')
+            Map<Long, Integer> reservadas = new LinkedHashMap<>();
+            try {
+                for (Map.Entry<Long, Integer> fin : finales.entrySet()) {
+                    if (fin.getValue() <= 0) continue;
+                    DetalleCarrito detalle = buscarItem(carrito, fin.getKey());
+                    int antes = detalle != null ? detalle.getCantidad() : 0;
+                    if (fin.getValue() == antes) continue;
+                    reservasStock.reservar(usuarioId, fin.getKey(), fin.getValue(), stockActual(fin.getKey()));
+                    reservadas.put(fin.getKey(), antes);
+                }
+            } catch (RuntimeException e) {
+                for (Map.Entry<Long, Integer> previa : reservadas.entrySet()) {
+                    try {
+                        reservasStock.restaurar(usuarioId, previa.getKey(), previa.getValue());
+                    } catch (RuntimeException alDevolver) {
+                        e.addSuppressed(alDevolver);
+                    }
+                }
+                throw e;
+            }
+
+            // 4. Cambios en las líneas y UN solo ajuste del total
+            double diferencia = 0;
+            for (Map.Entry<Long, Integer> fin : finales.entrySet()) {
+                Long productoId = fin.getKey();
+                int cantidad = fin.getValue();
+                DetalleCarrito detalle = buscarItem(carrito, productoId);
+                int antes = detalle != null ? detalle.getCantidad() : 0;
+                if (cantidad == antes) continue;
 
-        // Actualizamos la cantidad, recalculamos y guardamos
-        detalle.setCantidad(nuevaCantidad);
-        
-        calcularTotalCarrito(carrito);
-        return carritoRepository.save(carrito);
+                if (cantidad == 0) {
+                    reservasStock.liberar(usuarioId, productoId);
+                    carrito.getItems().remove(detalle);
+                    diferencia -= detalle.getSubtotal();
+                } else if (detalle != null) {
+                    detalle.setCantidad(cantidad);
+                    diferencia += detalle.getPrecioUnitario() * (cantidad - antes);
+                } else {
+                    Producto producto = productosNuevos.get(productoId);
+                    DetalleCarrito nuevoDetalle = new DetalleCarrito();
+                    nuevoDetalle.setCarrito(carrito);
+                    nuevoDetalle.setProducto(producto);
+                    nuevoDetalle.setCantidad(cantidad);
+                    nuevoDetalle.setPrecioUnitario(producto.getPrecio());
+                    carrito.getItems().add(nuevoDetalle);
+                    diferencia += nuevoDetalle.getSubtotal();
+                }
+                lineasModificadas[0]++;
+            }
+            sumarAlTotal(carrito, diferencia);
+        });
+
+        return new ResultadoLote(resultado, operaciones.size(), lineasModificadas[0],
+                operaciones.size() - lineasModificadas[0]);
+    }
+
+    /**
+     * 6. FUSIONAR EL CARRITO ANÓNIMO al iniciar sesión (CarritoAnonimoService).
+     * Todo entra en UNA modificación del carrito (= una sola escritura). De cada producto queda la
+     * mayor cantidad entre la que ya tenía y la elegida sin sesión (no se suman): el token no es de
+     * un solo uso y vive días, así que reenviarlo no puede volver a agregar lo mismo (idempotente).
+     * Si el stock no alcanza, se agrega lo que haya disponible.
+     * @param lineas productoId -> cantidad elegida sin sesión.
+     * @return Lo que efectivamente se agregó (productoId -> cantidad).
+     */
+    public Map<Long, Integer> fusionarAnonimo(Long usuarioId, Map<Long, Integer> lineas) {
+        Map<Long, Integer> agregadas = new LinkedHashMap<>();
+        if (lineas.isEmpty()) return agregadas;
+
+        carritoStore.modificar(usuarioId, "carrito.fusionar", true, carrito -> {
+            Map<Long, ProductoCatalogo> catalogo = catalogoCache.snapshot().porId();
+            for (Map.Entry<Long, Integer> linea : lineas.entrySet()) {
+                Long productoId = linea.getKey();
+                ProductoCatalogo producto = catalogo.get(productoId);
+                if (producto == null) continue; // Ya no está en el catálogo
+
+                DetalleCarrito detalleExistente = buscarItem(carrito, productoId);
+                int yaTenia = detalleExistente != null ? detalleExistente.getCantidad() : 0;
+                int stock = stockActual(productoId);
+                int cantidad = Math.min(linea.getValue() - yaTenia, reservasStock.disponible(productoId, stock));
+                if (cantidad <= 0) continue;
+                try {
+                    reservasStock.reservar(usuarioId, productoId, yaTenia + cantidad, stock);
+                } catch (RuntimeException e) {
+                    continue; // Otro cliente se llevó las unidades entre medio
+                }
+
+                if (detalleExistente != null) {
+                    detalleExistente.setCantidad(yaTenia + cantidad);
+                    sumarAlTotal(carrito, detalleExistente.getPrecioUnitario() * cantidad);
+                } else {
+                    DetalleCarrito nuevoDetalle = new DetalleCarrito();
+                    nuevoDetalle.setCarrito(carrito);
+                    nuevoDetalle.setProducto(producto.aEntidad());
+                    nuevoDetalle.setCantidad(cantidad);
+                    nuevoDetalle.setPrecioUnitario(producto.getPrecio());
+                    carrito.getItems().add(nuevoDetalle);
+                    sumarAlTotal(carrito, nuevoDetalle.getSubtotal());
+                }
+                agregadas.put(productoId, cantidad);
+            }
+        });
+        return agregadas;
+    }
+
+    /**
+     * 7. PRODUCTOS BORRADOS: desaparecen de los carritos en memoria tras el commit
+     * (sus filas de 'detalle_carrito' ya se borraron en la misma transacción que el producto).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarCatalogo(CatalogoEvento evento) {
+        if (evento.tipo() != CatalogoEvento.Tipo.PRODUCTOS_ELIMINADOS) return;
+        carritoStore.corregirEnMemoria(carrito -> {
+            boolean cambio = false;
+            for (Long productoId : evento.productoIds()) {
+                DetalleCarrito detalle = buscarItem(carrito, productoId);
+                if (detalle != null) {
+                    quitarItem(carrito, detalle);
+                    cambio = true;
+                }
+            }
+            return cambio;
+        });
     }
-}
\ No newline at end of file
+}
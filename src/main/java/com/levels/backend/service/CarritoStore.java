@@ -0,0 +1,495 @@
+package com.levels.backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.model.Carrito;
+import com.levels.backend.model.DetalleCarrito;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.CarritoRepository;
+import com.levels.backend.repository.UsuarioRepository;
+
+/**
+ * CARRITOS EN MEMORIA (por id de usuario, con desalojo LRU)
+ * ----------------------------------------------------
+ * Los carritos cambian en cada clic. Aquí vive la copia "viva" de cada carrito en uso:
+ * las lecturas (GET /api/carrito/{id}) no van a la BD y los cambios se aplican en memoria.
+ * * Persistencia (levelup.carrito.persistencia):
+ * - write-through (por defecto): cada cambio se escribe en la BD antes de responder.
+ * - write-behind: los cambios se acumulan y una tarea los escribe por lotes cada
+ * 'volcado-ms' (varios clics en el mismo carrito = una sola escritura). Si la app se cae,
+ * se pierden a lo sumo los cambios de ese intervalo; al apagarse normalmente se vuelca todo.
+ * * El checkout vuelca el carrito antes de comprar (la orden se arma con lo que hay en la BD).
+ * * Cada carrito tiene su propio lock: un cambio, un volcado o un checkout del mismo usuario
+ * nunca se cruzan, y los de usuarios distintos no compiten entre sí.
+ * * Pensado para UNA instancia de la aplicación (con varias, cada una tendría su copia).
+ */
+@Component
+public class CarritoStore {
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @Value("${levelup.carrito.persistencia:write-through}")
+    private String persistencia;
+
+    @Value("${levelup.carrito.max-carritos:10000}")
+    private int maxCarritos;
+
+    @Value("${levelup.carrito.lote-volcado:200}")
+    private int loteVolcado;
+
+    // usuarioId -> carrito vivo. accessOrder = true: el primero es el usado hace más tiempo (LRU).
+    // Protegido por synchronized (carritos); solo para buscar/insertar/desalojar, nunca durante E/S.
+    private final LinkedHashMap<Long, CarritoVivo> carritos = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Carritos con cambios que aún no están en la BD
+    private final Map<Long, CarritoVivo> sucios = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder cargas = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder cambios = new LongAdder();
+    private final LongAdder escrituras = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private volatile long ultimoVolcadoMs;
+
+    private static final class CarritoVivo {
+        final Long usuarioId;
+        final ReentrantLock lock = new ReentrantLock();
+        boolean cargado;    // ¿Ya se leyó de la BD?
+        Carrito carrito;    // null = el usuario todavía no tiene carrito
+        boolean sucio;      // Tiene cambios que no están en la BD
+        boolean desalojado; // Ya no está en el mapa: quien lo tenga debe volver a buscarlo
+
+        CarritoVivo(Long usuarioId) {
+            this.usuarioId = usuarioId;
+        }
+    }
+
+    /**
+     * 1. LEER (sin ir a la BD si el carrito está en memoria).
+     * @return Copia del carrito (con los productos de la foto del catálogo), o null si no tiene.
+     */
+    public Carrito leer(Long usuarioId) {
+        CarritoVivo vivo = bloquear(usuarioId);
+        try {
+            return vivo.carrito != null ? copiar(vivo.carrito) : null;
+        } finally {
+            vivo.lock.unlock();
+        }
+    }
+
+    /**
+     * 2. MODIFICAR un carrito. 'cambio' debe validar ANTES de tocar el carrito: si lanza una
+     * excepción, el carrito en memoria tiene que quedar como estaba.
+     * @param operacion Nombre para las métricas de reintentos (ej: "carrito.agregar").
+     * @param crearSiFalta Si el usuario no tiene carrito: true = se crea; false = error.
+     * @return Copia del carrito ya modificado.
+     */
+    public Carrito modificar(Long usuarioId, String operacion, boolean crearSiFalta, Consumer<Carrito> cambio) {
+        CarritoVivo vivo = bloquear(usuarioId);
+        try {
+            if (vivo.carrito == null) {
+                if (!crearSiFalta) throw new RuntimeException("Carrito no encontrado");
+                Usuario usuario = usuarioRepository.findById(usuarioId)
+                        .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+                Carrito nuevo = new Carrito();
+                nuevo.setUsuario(usuario);
+                cambio.accept(nuevo);
+                vivo.carrito = nuevo;
+            } else {
+                cambio.accept(vivo.carrito);
+            }
+            cambios.increment();
+
+            if (escrituraDiferida()) {
+                marcarSucio(vivo);
+            } else {
+                escribirAhora(vivo, operacion);
+            }
+            return copiar(vivo.carrito);
+        } finally {
+            vivo.lock.unlock();
+        }
+    }
+
+    /**
+     * 3. CORRECCIÓN MASIVA en memoria (ej: un producto borrado del catálogo).
+     * Los carritos que cambian quedan para el próximo volcado, en ambos modos.
+     * @param cambio Devuelve true si modificó el carrito.
+     */
+    public void corregirEnMemoria(Predicate<Carrito> cambio) {
+        List<CarritoVivo> todos;
+        synchronized (carritos) {
+            todos = new ArrayList<>(carritos.values());
+        }
+        for (CarritoVivo vivo : todos) {
+            vivo.lock.lock();
+            try {
+                if (!vivo.desalojado && vivo.carrito != null && cambio.test(vivo.carrito)) {
+                    marcarSucio(vivo);
+                }
+            } finally {
+                vivo.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 4. CHECKOUT: con el carrito bloqueado, se vuelca lo pendiente y se ejecuta la compra.
+     * Si la compra sale bien, el carrito sale de memoria (la BD ya lo dejó vacío).
+     */
+    public <T> T cerrarCompra(Long usuarioId, Supplier<T> compra) {
+        CarritoVivo vivo = bloquear(usuarioId);
+        try {
+            if (vivo.sucio) {
+                escribirAhora(vivo, "carrito.volcado");
+            }
+            T resultado = compra.get();
+            desalojar(vivo);
+            return resultado;
+        } finally {
+            vivo.lock.unlock();
+        }
+    }
+
+    /**
+     * 5. VOLCADO PERIÓDICO (write-behind): escribe los carritos con cambios, por lotes,
+     * una transacción por lote. Los que están en uso justo ahora quedan para la próxima vuelta.
+     */
+    @Scheduled(fixedDelayString = "${levelup.carrito.volcado-ms:2000}")
+    public void volcarPendientes() {
+        long inicio = System.currentTimeMillis();
+        boolean huboTrabajo = false;
+        Iterator<CarritoVivo> pendientes = new ArrayList<>(sucios.values()).iterator();
+        while (pendientes.hasNext()) {
+            List<CarritoVivo> lote = new ArrayList<>();
+            while (lote.size() < loteVolcado && pendientes.hasNext()) {
+                CarritoVivo vivo = pendientes.next();
+                if (!vivo.lock.tryLock()) continue; // Lo está usando su dueño
+                if (vivo.sucio && !vivo.desalojado) {
+                    lote.add(vivo);
+                } else {
+                    vivo.lock.unlock();
+                }
+            }
+            try {
+                escribirLote(lote);
+                huboTrabajo |= !lote.isEmpty();
+            } finally {
+                lote.forEach(vivo -> vivo.lock.unlock());
+            }
+        }
+        if (huboTrabajo) {
+            ultimoVolcadoMs = System.currentTimeMillis() - inicio;
+        }
+    }
+
+    /**
+     * 6. APAGADO NORMAL: no se pierde nada de lo pendiente.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void alCerrar() {
+        volcarPendientes();
+    }
+
+    /**
+     * 7. Vacía la memoria SIN volcar, tal como quedaría tras una caída de la aplicación.
+     * Las siguientes lecturas vuelven a la BD. Uso: pruebas y soporte.
+     */
+    public void descartarMemoria() {
+        List<CarritoVivo> todos;
+        synchronized (carritos) {
+            todos = new ArrayList<>(carritos.values());
+        }
+        for (CarritoVivo vivo : todos) {
+            vivo.lock.lock();
+            try {
+                desalojar(vivo);
+            } finally {
+                vivo.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Métricas: tamaño, aciertos, cambios pendientes y actividad del volcado.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (carritos) {
+            stats.put("enMemoria", carritos.size());
+        }
+        stats.put("persistencia", escrituraDiferida() ? "write-behind" : "write-through");
+        stats.put("pendientes", sucios.size());
+        stats.put("aciertos", aciertos.sum());
+        stats.put("cargasDesdeBd", cargas.sum());
+        stats.put("desalojos", desalojos.sum());
+        stats.put("cambios", cambios.sum());
+        stats.put("carritosEscritos", escrituras.sum());
+        stats.put("descartadosPorError", descartados.sum());
+        stats.put("ultimoVolcadoMs", ultimoVolcadoMs);
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    private boolean escrituraDiferida() {
+        return "write-behind".equalsIgnoreCase(persistencia);
+    }
+
+    /**
+     * Devuelve el carrito vivo del usuario, ya bloqueado y cargado (quien llama debe soltar el lock).
+     */
+    private CarritoVivo bloquear(Long usuarioId) {
+        while (true) {
+            CarritoVivo vivo;
+            synchronized (carritos) {
+                vivo = carritos.get(usuarioId);
+                if (vivo == null) {
+                    vivo = new CarritoVivo(usuarioId);
+                    carritos.put(usuarioId, vivo);
+                    liberarEspacio();
+                } else {
+                    aciertos.increment();
+                }
+            }
+            vivo.lock.lock();
+            if (vivo.desalojado) { // Lo desalojaron entre medio: se busca de nuevo
+                vivo.lock.unlock();
+                continue;
+            }
+            if (!vivo.cargado) {
+                try {
+                    Carrito enBd = carritoRepository.cargarCompleto(usuarioId);
+                    vivo.carrito = enBd != null ? copiar(enBd) : null;
+                    vivo.cargado = true;
+                    cargas.increment();
+                } catch (RuntimeException e) {
+                    desalojar(vivo);
+                    vivo.lock.unlock();
+                    throw e;
+                }
+            }
+            return vivo;
+        }
+    }
+
+    /**
+     * Desaloja los carritos usados hace más tiempo, salvo los que tienen cambios sin volcar
+     * o están en uso. Se llama con 'carritos' bloqueado; revisa a lo sumo 64 por vez.
+     */
+    private void liberarEspacio() {
+        Iterator<CarritoVivo> it = carritos.values().iterator();
+        for (int revisados = 0; carritos.size() > maxCarritos && it.hasNext() && revisados < 64; revisados++) {
+            CarritoVivo vivo = it.next();
+            if (!vivo.lock.tryLock()) continue;
+            try {
+                if (!vivo.sucio) {
+                    it.remove();
+                    vivo.desalojado = true;
+                    desalojos.increment();
+                }
+            } finally {
+                vivo.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Saca el carrito de memoria (con su lock tomado): la próxima vez se lee de la BD.
+     */
+    private void desalojar(CarritoVivo vivo) {
+        vivo.desalojado = true;
+        vivo.sucio = false;
+        sucios.remove(vivo.usuarioId, vivo);
+        synchronized (carritos) {
+            carritos.remove(vivo.usuarioId, vivo);
+        }
+    }
+
+    private void marcarSucio(CarritoVivo vivo) {
+        vivo.sucio = true;
+        sucios.put(vivo.usuarioId, vivo);
+    }
+
+    /**
+     * Escritura inmediata de un carrito (write-through o checkout). Si la transacción de quien
+     * llama termina en rollback, la copia en memoria se descarta para no quedar desfasada.
+     */
+    private void escribirAhora(CarritoVivo vivo, String operacion) {
+        try {
+            Map<Long, Carrito> guardados = escribir(operacion, List.of(vivo));
+            anotarGuardado(vivo, guardados.get(vivo.usuarioId));
+        } catch (RuntimeException e) {
+            desalojar(vivo);
+            throw e;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        vivo.lock.lock();
+                        try {
+                            desalojar(vivo);
+                        } finally {
+                            vivo.lock.unlock();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Escribe un lote (todos con su lock tomado). Si la transacción del lote falla, se
+     * reintenta carrito por carrito; el que vuelva a fallar se descarta de memoria
+     * (la BD conserva su último estado bueno) para que no bloquee a los demás.
+     */
+    private void escribirLote(List<CarritoVivo> lote) {
+        if (lote.isEmpty()) return;
+        try {
+            Map<Long, Carrito> guardados = escribir("carrito.volcado", lote);
+            lote.forEach(vivo -> anotarGuardado(vivo, guardados.get(vivo.usuarioId)));
+        } catch (RuntimeException e) {
+            for (CarritoVivo vivo : lote) {
+                try {
+                    Map<Long, Carrito> guardados = escribir("carrito.volcado", List.of(vivo));
+                    anotarGuardado(vivo, guardados.get(vivo.usuarioId));
+                } catch (RuntimeException e2) {
+                    descartados.increment();
+                    desalojar(vivo);
+                }
+            }
+        }
+    }
+
+    /**
+     * UNA transacción: lee todos los carritos del lote (una consulta) y deja la BD igual a la
+     * memoria. Hibernate envía solo lo que cambió, agrupado por tabla.
+     * @return usuarioId -> carrito guardado (con ids y versiones al día).
+     */
+    private Map<Long, Carrito> escribir(String operacion, List<CarritoVivo> lote) {
+        return reintentos.ejecutar(operacion, () -> {
+            Map<Long, Carrito> enBd = new HashMap<>();
+            for (Carrito c : carritoRepository.cargarCompletos(lote.stream().map(v -> v.usuarioId).toList())) {
+                enBd.put(c.getUsuario().getId(), c);
+            }
+            Map<Long, Carrito> guardados = new HashMap<>();
+            for (CarritoVivo vivo : lote) {
+                guardados.put(vivo.usuarioId, aplicar(vivo.carrito, enBd.get(vivo.usuarioId)));
+            }
+            carritoRepository.flush(); // Ids y versiones listos aunque la transacción sea de quien llama
+            escrituras.add(lote.size());
+            return guardados;
+        });
+    }
+
+    /**
+     * Copia el estado en memoria sobre la entidad administrada (o la crea).
+     */
+    private Carrito aplicar(Carrito memoria, Carrito destino) {
+        if (destino == null) {
+            destino = new Carrito();
+            destino.setUsuario(memoria.getUsuario());
+        }
+        Map<Long, DetalleCarrito> sobrantes = new HashMap<>();
+        for (DetalleCarrito d : destino.getItems()) {
+            sobrantes.put(d.getProducto().getId(), d);
+        }
+        for (DetalleCarrito linea : memoria.getItems()) {
+            DetalleCarrito d = sobrantes.remove(linea.getProducto().getId());
+            if (d == null) {
+                d = new DetalleCarrito();
+                d.setCarrito(destino);
+                d.setProducto(linea.getProducto());
+                destino.getItems().add(d);
+            }
+            d.setCantidad(linea.getCantidad());
+            d.setPrecioUnitario(linea.getPrecioUnitario());
+        }
+        destino.getItems().removeAll(sobrantes.values()); // orphanRemoval: se borran
+        destino.setTotal(memoria.getTotal());
+        destino.setSubtotalCentavos(memoria.getSubtotalCentavos());
+        return destino.getId() == null ? carritoRepository.save(destino) : destino;
+    }
+
+    /**
+     * Tras escribir: la copia en memoria toma los ids y versiones que asignó la BD.
+     */
+    private void anotarGuardado(CarritoVivo vivo, Carrito guardado) {
+        vivo.carrito.setId(guardado.getId());
+        vivo.carrito.setVersion(guardado.getVersion());
+        Map<Long, DetalleCarrito> porProducto = new HashMap<>();
+        for (DetalleCarrito d : guardado.getItems()) {
+            porProducto.put(d.getProducto().getId(), d);
+        }
+        for (DetalleCarrito linea : vivo.carrito.getItems()) {
+            DetalleCarrito d = porProducto.get(linea.getProducto().getId());
+            if (d != null) {
+                linea.setId(d.getId());
+                linea.setVersion(d.getVersion());
+            }
+        }
+        vivo.sucio = false;
+        sucios.remove(vivo.usuarioId, vivo);
+    }
+
+    /**
+     * Copia independiente del carrito (ninguna entidad compartida con JPA ni con quien la reciba).
+     * Los productos se copian de la foto del catálogo, así muestran precio y stock al día.
+     */
+    private Carrito copiar(Carrito origen) {
+        Map<Long, ProductoCatalogo> catalogo = catalogoCache.snapshot().porId();
+        Carrito copia = new Carrito();
+        copia.setId(origen.getId());
+        copia.setUsuario(origen.getUsuario());
+        copia.setTotal(origen.getTotal());
+        copia.setSubtotalCentavos(origen.getSubtotalCentavos());
+        copia.setVersion(origen.getVersion());
+        for (DetalleCarrito d : origen.getItems()) {
+            DetalleCarrito linea = new DetalleCarrito();
+            linea.setId(d.getId());
+            linea.setCarrito(copia);
+            ProductoCatalogo enFoto = catalogo.get(d.getProducto().getId());
+            linea.setProducto(enFoto != null ? enFoto.aEntidad() : d.getProducto());
+            linea.setCantidad(d.getCantidad());
+            linea.setPrecioUnitario(d.getPrecioUnitario());
+            linea.setVersion(d.getVersion());
+            copia.getItems().add(linea);
+        }
+        return copia;
+    }
+}
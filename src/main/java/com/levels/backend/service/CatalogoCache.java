@@ -0,0 +1,295 @@
+package com.levels.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.levels.backend.dto.EstadoStock;
+import com.levels.backend.dto.ProductoCard;
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * CACHÉ: SNAPSHOT VERSIONADO DEL CATÁLOGO
+ * ----------------------------------------------------
+ * El catálogo público se lee muchísimo más de lo que se escribe. Esta clase mantiene
+ * en memoria una "foto" inmutable de todos los productos y categorías.
+ * * Lectores: obtienen la foto actual con una sola lectura atómica (sin locks) y nunca
+ * ven una actualización a medias.
+ * * Escritores: tras cada commit que toca el catálogo (CatalogoEvento) se arma una
+ * foto NUEVA (copy-on-write), parchando solo los productos afectados o reconstruyendo
+ * todo si cambian las categorías, y se reemplaza la referencia con su versión incrementada.
+ * * Stock: NO forma parte de la foto versionada. Cada producto lee su stock de una celda
+ * atómica compartida entre fotos; una venta (StockActualizadoEvento) solo cambia esas celdas,
+ * sin lock global, sin copiar el catálogo y sin cambiar la versión (ni los ETags de las listas).
+ */
+@Component
+public class CatalogoCache {
+
+    // Usamos un EntityManager propio y de vida corta: siempre lee la BD real,
+    // sin entidades "viejas" del contexto de persistencia de la petición en curso.
+    // Si el hilo ya tiene una conexión (oyente post-commit), la reutiliza: pedir una segunda al pool
+    // mientras se retiene la primera agota el pool cuando muchos checkouts terminan a la vez.
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final AtomicReference<Snapshot> actual = new AtomicReference<>();
+
+    // Stock y versión de cada producto, por id. Las fotos sucesivas comparten la misma celda.
+    private final Map<Long, AtomicReference<EstadoStock>> inventario = new ConcurrentHashMap<>();
+
+    // La versión parte en el instante de arranque: así nunca se repite entre reinicios
+    // (útil para ETags y cachés externas).
+    private final AtomicLong versiones = new AtomicLong(System.currentTimeMillis());
+
+    // Métricas
+    private volatile long ultimaReconstruccionMs;
+    private final AtomicLong reconstrucciones = new AtomicLong();
+    private final AtomicLong parches = new AtomicLong();
+    private final AtomicLong actualizacionesStock = new AtomicLong();
+    private volatile long ultimoCambioStock;
+
+    /**
+     * FOTO INMUTABLE DEL CATÁLOGO
+     * @param version Número que crece con cada cambio.
+     * @param creadoEn Instante (ms) en que se armó.
+     * @param productos Todos los productos ordenados por id (copias de solo lectura).
+     * @param porId Índice por id.
+     * @param porCategoria Índice por nombre de categoría.
+     * @param categorias Todas las categorías ordenadas por id.
+     * @param tarjetas Vista liviana (ProductoCard) de todos los productos, ya convertida.
+     * @param tarjetasPorCategoria Vista liviana por nombre de categoría.
+     */
+    public record Snapshot(
+            long version,
+            long creadoEn,
+            List<ProductoCatalogo> productos,
+            Map<Long, ProductoCatalogo> porId,
+            Map<String, List<ProductoCatalogo>> porCategoria,
+            List<Categoria> categorias,
+            List<ProductoCard> tarjetas,
+            Map<String, List<ProductoCard>> tarjetasPorCategoria) {}
+
+    /**
+     * 1. LEER LA FOTO ACTUAL (sin bloqueos)
+     * Si aún no existe (primer acceso), se construye.
+     */
+    public Snapshot snapshot() {
+        Snapshot s = actual.get();
+        return s != null ? s : reconstruir();
+    }
+
+    /**
+     * 2. CARGA INICIAL al arrancar la aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void alIniciar() {
+        reconstruir();
+    }
+
+    /**
+     * 3. ACTUALIZACIÓN TRAS UN CAMBIO (después del commit)
+     * fallbackExecution = true: si el cambio se hizo fuera de una transacción, se aplica de inmediato.
+     * Se ejecuta ANTES que los demás oyentes (índices derivados), que leen la foto ya parchada.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarCatalogo(CatalogoEvento evento) {
+        switch (evento.tipo()) {
+            case PRODUCTOS_MODIFICADOS -> parchar(evento.productoIds(), false);
+            case PRODUCTOS_ELIMINADOS -> parchar(evento.productoIds(), true);
+            case CATEGORIAS_MODIFICADAS -> reconstruir();
+        }
+    }
+
+    /**
+     * 4. VENTAS: STOCK EN SU LUGAR (después del commit)
+     * Solo se actualizan las celdas de los productos vendidos; la foto, su versión y los índices
+     * derivados no cambian (las listas suman 'versionStock' a su ETag). Una celda nunca retrocede: si ya tiene una versión más nueva, se queda.
+     * Un producto que aún no está en la foto se ignora: al entrar, se lee con su stock de la BD.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarStock(StockActualizadoEvento evento) {
+        evento.estados().forEach((id, estado) -> {
+            AtomicReference<EstadoStock> celda = inventario.get(id);
+            if (celda != null) {
+                celda.accumulateAndGet(estado, EstadoStock::masReciente);
+            }
+        });
+        ultimoCambioStock = System.currentTimeMillis();
+        actualizacionesStock.incrementAndGet();
+    }
+
+    /**
+     * 5. VERSIÓN DEL STOCK: crece con cada venta aplicada (la de la foto no cambia con ellas).
+     */
+    public long versionStock() {
+        return actualizacionesStock.get();
+    }
+
+    /**
+     * Instante (ms) de la última venta aplicada; 0 si aún no hay ninguna.
+     */
+    public long ultimoCambioStock() {
+        return ultimoCambioStock;
+    }
+
+    /**
+     * Métricas: versión, edad de la foto y costo de la última reconstrucción.
+     */
+    public Map<String, Object> estadisticas() {
+        Snapshot s = actual.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", s != null ? s.version() : null);
+        stats.put("edadMs", s != null ? System.currentTimeMillis() - s.creadoEn() : null);
+        stats.put("productos", s != null ? s.productos().size() : 0);
+        stats.put("ultimaReconstruccionMs", ultimaReconstruccionMs);
+        stats.put("reconstrucciones", reconstrucciones.get());
+        stats.put("parches", parches.get());
+        stats.put("actualizacionesStock", actualizacionesStock.get());
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA (los escritores se serializan con 'synchronized') ---
+
+    /**
+     * Reconstrucción completa: lee todos los productos (con su categoría) y categorías.
+     */
+    private synchronized Snapshot reconstruir() {
+        long inicio = System.currentTimeMillis();
+        EntityManager em = abrirLectura();
+        try {
+            List<Producto> productos = em.createQuery(
+                    "SELECT p FROM Producto p LEFT JOIN FETCH p.categoria ORDER BY p.id", Producto.class)
+                    .getResultList();
+            List<Categoria> categorias = em.createQuery(
+                    "SELECT c FROM Categoria c ORDER BY c.id", Categoria.class)
+                    .getResultList();
+
+            List<ProductoCatalogo> copias = new ArrayList<>(productos.size());
+            productos.forEach(p -> copias.add(copiar(p)));
+            // Las celdas de productos que ya no existen se descartan
+            inventario.keySet().retainAll(copias.stream().map(ProductoCatalogo::getId).toList());
+
+            Snapshot nuevo = armar(copias, categorias);
+            actual.set(nuevo);
+            reconstrucciones.incrementAndGet();
+            ultimaReconstruccionMs = System.currentTimeMillis() - inicio;
+            return nuevo;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Parche: recarga (o quita) solo los productos indicados y arma una foto nueva.
+     */
+    private synchronized void parchar(Collection<Long> ids, boolean eliminar) {
+        Snapshot base = actual.get();
+        if (base == null) {
+            reconstruir(); // Aún no hay foto: la reconstrucción ya incluye el cambio
+            return;
+        }
+
+        Map<Long, ProductoCatalogo> porId = new HashMap<>(base.porId());
+        if (eliminar) {
+            ids.forEach(porId::remove);
+            ids.forEach(inventario::remove);
+        } else if (!ids.isEmpty()) {
+            EntityManager em = abrirLectura();
+            try {
+                ids.forEach(porId::remove); // Si alguno ya no existe, desaparece de la foto
+                em.createQuery("SELECT p FROM Producto p LEFT JOIN FETCH p.categoria WHERE p.id IN :ids", Producto.class)
+                        .setParameter("ids", ids)
+                        .getResultList()
+                        .forEach(p -> porId.put(p.getId(), copiar(p)));
+            } finally {
+                em.close();
+            }
+        }
+
+        List<ProductoCatalogo> productos = new ArrayList<>(porId.values());
+        productos.sort(Comparator.comparing(ProductoCatalogo::getId));
+        actual.set(armar(productos, base.categorias()));
+        parches.incrementAndGet();
+    }
+
+    /**
+     * Copia de solo lectura de la entidad, enganchada a la celda de stock de su producto.
+     * Si la celda ya existe se conserva el estado más nuevo entre ella y lo que se acaba de leer.
+     */
+    private ProductoCatalogo copiar(Producto p) {
+        EstadoStock leido = new EstadoStock(p.getStock(), p.getVersion());
+        AtomicReference<EstadoStock> celda = inventario.computeIfAbsent(p.getId(), id -> new AtomicReference<>(leido));
+        celda.accumulateAndGet(leido, EstadoStock::masReciente);
+        return ProductoCatalogo.desde(p, celda);
+    }
+
+    /**
+     * EntityManager de lectura con contexto de persistencia vacío. Si el hilo tiene uno ligado
+     * (transacción recién confirmada u open-in-view), comparte su conexión JDBC en vez de pedir otra.
+     */
+    private EntityManager abrirLectura() {
+        EntityManagerHolder ligado = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+        if (ligado != null && ligado.getEntityManager().isOpen()) {
+            return ligado.getEntityManager().unwrap(Session.class).sessionWithOptions().connection().openSession();
+        }
+        return entityManagerFactory.createEntityManager();
+    }
+
+    /**
+     * Arma la foto inmutable (listas y mapas no modificables) con la siguiente versión.
+     * Las tarjetas se convierten aquí, una vez por cambio, y no en cada petición.
+     */
+    private Snapshot armar(List<ProductoCatalogo> productos, List<Categoria> categorias) {
+        Map<Long, ProductoCatalogo> porId = new HashMap<>();
+        Map<String, List<ProductoCatalogo>> porCategoria = new HashMap<>();
+        List<ProductoCard> tarjetas = new ArrayList<>(productos.size());
+        Map<String, List<ProductoCard>> tarjetasPorCategoria = new HashMap<>();
+        for (ProductoCatalogo p : productos) {
+            ProductoCard tarjeta = ProductoCard.desde(p);
+            porId.put(p.getId(), p);
+            tarjetas.add(tarjeta);
+            if (p.getCategoria() != null && p.getCategoria().getNombre() != null) {
+                porCategoria.computeIfAbsent(p.getCategoria().getNombre(), k -> new ArrayList<>()).add(p);
+                tarjetasPorCategoria.computeIfAbsent(p.getCategoria().getNombre(), k -> new ArrayList<>()).add(tarjeta);
+            }
+        }
+        porCategoria.replaceAll((k, lista) -> Collections.unmodifiableList(lista));
+        tarjetasPorCategoria.replaceAll((k, lista) -> Collections.unmodifiableList(lista));
+
+        return new Snapshot(
+                versiones.incrementAndGet(),
+                System.currentTimeMillis(),
+                Collections.unmodifiableList(new ArrayList<>(productos)),
+                Collections.unmodifiableMap(porId),
+                Collections.unmodifiableMap(porCategoria),
+                Collections.unmodifiableList(new ArrayList<>(categorias)),
+                Collections.unmodifiableList(tarjetas),
+                Collections.unmodifiableMap(tarjetasPorCategoria));
+    }
+}
@@ -0,0 +1,40 @@
+package com.levels.backend.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * EVENTO: CAMBIO EN EL CATÁLOGO
+ * ----------------------------------------------------
+ * Lo publican los servicios que escriben productos o categorías (ProductoService,
+ * CategoriaService, OrdenService) para que las estructuras en memoria del catálogo
+ * se actualicen.
+ * * Los oyentes usan @TransactionalEventListener: reaccionan DESPUÉS del commit, así nunca
+ * reflejan un cambio que luego se revierte (rollback).
+ * @param tipo Qué cambió.
+ * @param productoIds Productos afectados (vacío para cambios de categorías).
+ */
+public record CatalogoEvento(Tipo tipo, Collection<Long> productoIds) {
+
+    public enum Tipo {
+        PRODUCTOS_MODIFICADOS, // Creación, edición o cambio de stock
+        PRODUCTOS_ELIMINADOS,
+        CATEGORIAS_MODIFICADAS
+    }
+
+    public static CatalogoEvento productosModificados(Collection<Long> ids) {
+        return new CatalogoEvento(Tipo.PRODUCTOS_MODIFICADOS, ids);
+    }
+
+    public static CatalogoEvento productoModificado(Long id) {
+        return new CatalogoEvento(Tipo.PRODUCTOS_MODIFICADOS, List.of(id));
+    }
+
+    public static CatalogoEvento productoEliminado(Long id) {
+        return new CatalogoEvento(Tipo.PRODUCTOS_ELIMINADOS, List.of(id));
+    }
+
+    public static CatalogoEvento categoriasModificadas() {
+        return new CatalogoEvento(Tipo.CATEGORIAS_MODIFICADAS, List.of());
+    }
+}
@@ -3,6 +3,7 @@ package com.levels.backend.service;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.levels.backend.model.Categoria;
@@ -22,13 +23,36 @@ public class CategoriaService {
     @Autowired
     private CategoriaRepository categoriaRepository;
 
+    // Foto en memoria del catálogo y el canal para avisarle los cambios
+    @Autowired
+    private CatalogoCache catalogoCache;
+    @Autowired
+    private ApplicationEventPublisher eventos;
+
     /**
      * 1. LISTAR TODAS
      * Uso: Llenar los menús y filtros de navegación en el Frontend.
+     * Se sirve desde la foto en memoria del catálogo (sin consultar MySQL).
      * @return Lista de todas las categorías disponibles.
      */
     public List<Categoria> findAll() {
-        return categoriaRepository.findAll();
+        return catalogoCache.snapshot().categorias();
+    }
+
+    /**
+     * 1.B VERSIÓN DE LOS DATOS
+     * Las categorías viven en la misma foto del catálogo: su versión cambia con cada
+     * escritura. Se usa para calcular el ETag de GET /api/categorias.
+     */
+    public long versionDatos() {
+        return catalogoCache.snapshot().version();
+    }
+
+    /**
+     * Instante (ms) del último cambio, para la cabecera 'Last-Modified'.
+     */
+    public long ultimaModificacion() {
+        return catalogoCache.snapshot().creadoEn();
     }
 
     /**
@@ -52,7 +76,29 @@ public class CategoriaService {
         }
         
         // Si las validaciones pasan, delegamos la persistencia al repositorio.
-        return categoriaRepository.save(categoria);
+        Categoria guardada = categoriaRepository.save(categoria);
+        eventos.publishEvent(CatalogoEvento.categoriasModificadas());
+        return guardada;
+    }
+
+    /**
+     * 2.B BUSCAR O CREAR CATEGORÍA
+     * Uso: El ProductoController recibe la categoría como texto (ej: "Teclados").
+     * Si no existe, se crea al vuelo usando la imagen del producto como portada.
+     * @param nombre Nombre de la categoría.
+     * @param imagenUrl Imagen por defecto si hay que crearla.
+     * @return La categoría existente o la recién creada.
+     */
+    public Categoria buscarOCrear(String nombre, String imagenUrl) {
+        return categoriaRepository.findByNombre(nombre)
+                .orElseGet(() -> {
+                    Categoria nueva = new Categoria();
+                    nueva.setNombre(nombre);
+                    nueva.setImagenUrl(imagenUrl);
+                    Categoria guardada = categoriaRepository.save(nueva);
+                    eventos.publishEvent(CatalogoEvento.categoriasModificadas());
+                    return guardada;
+                });
     }
     
     /**
@@ -65,5 +111,6 @@ public class CategoriaService {
      */
     public void delete(Long id) {
         categoriaRepository.deleteById(id);
+        eventos.publishEvent(CatalogoEvento.categoriasModificadas());
     }
 }
\ No newline at end of file
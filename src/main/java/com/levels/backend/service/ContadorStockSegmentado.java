@@ -0,0 +1,84 @@
+package com.levels.backend.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CONTADOR DE STOCK SEGMENTADO (sin locks)
+ * ----------------------------------------------------
+ * El stock de un producto "caliente" se reparte en franjas. Cada compra empieza por una
+ * franja al azar y descuenta con compareAndSet, así miles de hilos casi nunca pelean por
+ * el mismo valor (a diferencia de un único AtomicInteger, o de la fila en MySQL).
+ * * Si su franja no alcanza, sigue con las demás; si entre todas no alcanza, devuelve lo
+ * tomado y rechaza. La suma de las franjas nunca baja de cero.
+ */
+final class ContadorStockSegmentado {
+
+    // Potencia de 2
+    private static final int FRANJAS = 16;
+    // Cada franja ocupa su propia línea de caché (16 ints = 64 bytes) para evitar "false sharing"
+    private static final int SEPARACION = 16;
+
+    private final AtomicIntegerArray franjas = new AtomicIntegerArray(FRANJAS * SEPARACION);
+    private final LongAdder reintentos = new LongAdder();
+
+    ContadorStockSegmentado(int stock) {
+        int base = Math.max(0, stock) / FRANJAS;
+        int resto = Math.max(0, stock) % FRANJAS;
+        for (int i = 0; i < FRANJAS; i++) {
+            franjas.set(i * SEPARACION, base + (i < resto ? 1 : 0));
+        }
+    }
+
+    /**
+     * Reclama 'cantidad' unidades.
+     * @return true si se descontaron todas; false si no alcanzaba (no se descuenta nada).
+     */
+    boolean reclamar(int cantidad) {
+        int inicio = ThreadLocalRandom.current().nextInt(FRANJAS);
+        int tomado = 0;
+        for (int k = 0; k < FRANJAS && tomado < cantidad; k++) {
+            int i = ((inicio + k) & (FRANJAS - 1)) * SEPARACION;
+            while (true) {
+                int actual = franjas.get(i);
+                if (actual == 0) break;
+                int tomar = Math.min(actual, cantidad - tomado);
+                if (franjas.compareAndSet(i, actual, actual - tomar)) {
+                    tomado += tomar;
+                    break;
+                }
+                reintentos.increment(); // Otro hilo ganó el CAS: se relee y se reintenta
+            }
+        }
+        if (tomado < cantidad) {
+            devolver(tomado);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve unidades (compra revertida) a una franja cualquiera.
+     */
+    void devolver(int cantidad) {
+        if (cantidad > 0) {
+            franjas.addAndGet(ThreadLocalRandom.current().nextInt(FRANJAS) * SEPARACION, cantidad);
+        }
+    }
+
+    /**
+     * Stock disponible (suma de las franjas; aproximado si hay compras en curso).
+     */
+    int disponible() {
+        int total = 0;
+        for (int i = 0; i < FRANJAS; i++) {
+            total += franjas.get(i * SEPARACION);
+        }
+        return total;
+    }
+
+    long reintentos() {
+        return reintentos.sum();
+    }
+}
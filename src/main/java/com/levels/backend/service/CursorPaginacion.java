@@ -0,0 +1,57 @@
+package com.levels.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * UTILIDAD: CODIFICACIÓN DE CURSORES (Keyset Pagination)
+ * ----------------------------------------------------
+ * Convierte la "última fila vista" (criterio, valor de la columna de orden, id)
+ * en un token opaco Base64 URL-safe, y viceversa.
+ * * El Frontend no debe interpretar el cursor: solo lo devuelve tal cual.
+ * * Valor NULL (producto sin precio o sin nombre): el token no lleva valor ("criterio|id"),
+ * así se distingue de un texto vacío ("criterio||id").
+ */
+public final class CursorPaginacion {
+
+    private static final String SEPARADOR = "|";
+
+    private CursorPaginacion() {}
+
+    /**
+     * Datos decodificados de un cursor.
+     * @param criterio Criterio de orden con que se generó (ej: "precio").
+     * @param valor Valor de la columna de orden de la última fila (texto; null si la columna era NULL).
+     * @param id Id de la última fila (desempate).
+     */
+    public record Posicion(String criterio, String valor, Long id) {}
+
+    /**
+     * Genera el token para continuar después de la fila indicada.
+     */
+    public static String codificar(String criterio, Object valor, Long id) {
+        String crudo = criterio + SEPARADOR + (valor != null ? valor + SEPARADOR : "") + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(crudo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica y valida un token.
+     * @param criterioEsperado El criterio de la petición actual (un cursor de otro orden no es válido).
+     * @throws RuntimeException Si el token está corrupto o no corresponde al criterio.
+     */
+    public static Posicion decodificar(String cursor, String criterioEsperado) {
+        try {
+            String crudo = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int primero = crudo.indexOf(SEPARADOR);
+            int ultimo = crudo.lastIndexOf(SEPARADOR);
+            String criterio = crudo.substring(0, primero);
+            if (!criterio.equals(criterioEsperado)) {
+                throw new IllegalArgumentException();
+            }
+            String valor = primero == ultimo ? null : crudo.substring(primero + 1, ultimo);
+            return new Posicion(criterio, valor, Long.valueOf(crudo.substring(ultimo + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Cursor de paginación inválido.");
+        }
+    }
+}
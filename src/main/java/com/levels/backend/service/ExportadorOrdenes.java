@@ -0,0 +1,150 @@
+package com.levels.backend.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.levels.backend.dto.OrdenExportada;
+import com.levels.backend.repository.OrdenExportJdbcRepository;
+
+/**
+ * SERVICIO: EXPORTACIÓN DE ÓRDENES (NDJSON / CSV en streaming)
+ * ----------------------------------------------------
+ * Escribe cada fila en la respuesta apenas sale de la BD (OrdenExportJdbcRepository), a través
+ * de un buffer de tamaño fijo. Exportar 100 o 10 millones de órdenes usa la misma memoria.
+ * * NDJSON: un objeto JSON por línea (fácil de procesar línea a línea).
+ * * CSV: cabecera + una fila por orden (para abrir en Excel / Google Sheets).
+ */
+@Service
+public class ExportadorOrdenes {
+
+    public static final String NDJSON = "ndjson";
+    public static final String CSV = "csv";
+
+    private static final String CABECERA_CSV = "id,fechaCreacion,usuarioId,email,total,region,comuna,direccion,unidades";
+    private static final int BUFFER = 16 * 1024;
+
+    @Autowired
+    private OrdenExportJdbcRepository exportRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Métricas
+    private final LongAdder exportaciones = new LongAdder();
+    private final LongAdder filasExportadas = new LongAdder();
+    private final AtomicLong ultimaDuracionMs = new AtomicLong();
+
+    /**
+     * 1. EXPORTAR las órdenes que cumplen los filtros en el formato pedido.
+     * @param formato "ndjson" o "csv" (validado por el controlador).
+     * @param desde Primer día incluido (opcional).
+     * @param hasta Último día incluido (opcional).
+     * @param region Región exacta (opcional).
+     * @param salida Cuerpo de la respuesta HTTP.
+     */
+    public void exportar(String formato, LocalDate desde, LocalDate hasta, String region, OutputStream salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        ZoneId zona = ZoneId.systemDefault();
+        Date inicioRango = desde != null ? Date.from(desde.atStartOfDay(zona).toInstant()) : null;
+        Date finRango = hasta != null ? Date.from(hasta.plusDays(1).atStartOfDay(zona).toInstant()) : null; // Exclusivo
+        String regionFiltro = (region != null && !region.isBlank()) ? region : null;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), BUFFER);
+        boolean csv = CSV.equals(formato);
+        ObjectWriter json = objectMapper.writerFor(OrdenExportada.class);
+        if (csv) {
+            writer.write(CABECERA_CSV);
+            writer.write('\n');
+        }
+
+        long filas;
+        try {
+            filas = exportRepository.recorrer(inicioRango, finRango, regionFiltro, orden -> {
+                try {
+                    if (csv) {
+                        escribirCsv(writer, orden);
+                    } else {
+                        writer.write(json.writeValueAsString(orden));
+                    }
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // Ej: el cliente cerró la conexión
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+
+        exportaciones.increment();
+        filasExportadas.add(filas);
+        ultimaDuracionMs.set(System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Métricas: exportaciones completadas, filas escritas y duración de la última.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("exportaciones", exportaciones.sum());
+        stats.put("filasExportadas", filasExportadas.sum());
+        stats.put("ultimaDuracionMs", ultimaDuracionMs.get());
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    private void escribirCsv(Writer writer, OrdenExportada o) throws IOException {
+        writer.write(String.valueOf(o.id()));
+        writer.write(',');
+        writer.write(o.fechaCreacion() != null ? o.fechaCreacion().toString() : "");
+        writer.write(',');
+        writer.write(o.usuarioId() != null ? o.usuarioId().toString() : "");
+        writer.write(',');
+        writer.write(campoCsv(o.email()));
+        writer.write(',');
+        writer.write(o.total() != null ? o.total().toString() : "");
+        writer.write(',');
+        writer.write(campoCsv(o.region()));
+        writer.write(',');
+        writer.write(campoCsv(o.comuna()));
+        writer.write(',');
+        writer.write(campoCsv(o.direccion()));
+        writer.write(',');
+        writer.write(String.valueOf(o.unidades()));
+    }
+
+    /**
+     * Texto CSV (RFC 4180): entre comillas si trae comas, comillas o saltos de línea.
+     * * Inyección de fórmulas: email, comuna y dirección los escribe el cliente. Si empiezan con
+     * '=', '+', '-', '@', tabulador o retorno de carro, Excel / Google Sheets los ejecutan como
+     * fórmula al abrir el archivo: se anteponen con un apóstrofo para que queden como texto.
+     */
+    private static String campoCsv(String valor) {
+        if (valor == null || valor.isEmpty()) return "";
+        if ("=+-@\t\r".indexOf(valor.charAt(0)) >= 0) {
+            valor = "'" + valor;
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,410 @@
+package com.levels.backend.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.dto.ResultadoFiltro;
+import com.levels.backend.repository.ResenaRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * ÍNDICE: FACETAS DEL CATÁLOGO (Bitsets en memoria)
+ * ----------------------------------------------------
+ * Cada producto recibe un número denso (ordinal: 0, 1, 2...). Por cada valor de cada faceta
+ * (categoría "Teclados", rango de precio "20000-50000", "con stock", "4+ estrellas") se guarda
+ * un BitSet con un 1 en los ordinales de los productos que lo cumplen.
+ * * Filtrar = intersectar (AND) bitsets. Contar cuántos productos hay por cada valor de faceta
+ * = cardinalidad de una intersección. Todo en memoria y en una sola pasada, en vez de una
+ * consulta JPA por faceta.
+ * * Conteo "disyuntivo": los conteos de una faceta se calculan con los filtros de las DEMÁS
+ * facetas, para que el cliente pueda ver cuántos productos sumaría al marcar otro valor.
+ */
+@Component
+public class FacetasCatalogo {
+
+    public static final String FACETA_CATEGORIA = "categoria";
+    public static final String FACETA_PRECIO = "precio";
+    public static final String FACETA_STOCK = "enStock";
+    public static final String FACETA_CALIFICACION = "calificacion";
+
+    private static final int MAX_ESTRELLAS = 5;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private ResenaRepository resenaRepository;
+
+    // Límites de los rangos de precio (application.properties). Ej: 20000,50000 -> "0-20000", "20000-50000", "50000+"
+    @Value("${levelup.catalogo.facetas.rangos-precio:20000,50000,100000,200000}")
+    private long[] limitesPrecio;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Ordinales: producto <-> número denso. Los ordinales de productos borrados se reutilizan.
+    private final List<ProductoCatalogo> porOrdinal = new ArrayList<>();
+    private final Map<Long, Integer> ordinalPorId = new HashMap<>();
+    private final Deque<Integer> ordinalesLibres = new ArrayDeque<>();
+
+    // Bitsets por valor de faceta ('vivos' = todos los ordinales ocupados)
+    private final BitSet vivos = new BitSet();
+    private final Map<String, BitSet> porCategoria = new TreeMap<>();
+    private BitSet[] porRangoPrecio;
+    private final BitSet conStock = new BitSet();
+    private final BitSet[] porCalificacionMinima = new BitSet[MAX_ESTRELLAS + 1]; // [k] = promedio >= k
+    private String[] etiquetasPrecio;
+
+    // Reseñas por producto (suma de estrellas y cantidad) para calcular el promedio
+    private final Map<Long, long[]> resenasPorProducto = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        etiquetasPrecio = new String[limitesPrecio.length + 1];
+        long desde = 0;
+        for (int i = 0; i < limitesPrecio.length; i++) {
+            etiquetasPrecio[i] = desde + "-" + limitesPrecio[i];
+            desde = limitesPrecio[i];
+        }
+        etiquetasPrecio[limitesPrecio.length] = desde + "+";
+        vaciar();
+    }
+
+    /**
+     * 1. FILTRAR Y CONTAR
+     * @param categorias Categorías aceptadas (OR entre ellas). Vacío = todas.
+     * @param rangosPrecio Etiquetas de rango aceptadas (OR). Vacío = todos.
+     * @param soloConStock true = solo productos con stock.
+     * @param calificacionMinima Promedio mínimo de estrellas (1 a 5), o null.
+     * @param pagina Número de página (desde 0).
+     * @param limite Tamaño de página.
+     */
+    public ResultadoFiltro<ProductoCatalogo> filtrar(Collection<String> categorias, Collection<String> rangosPrecio,
+            boolean soloConStock, Integer calificacionMinima, int pagina, int limite) {
+
+        if (calificacionMinima != null && (calificacionMinima < 1 || calificacionMinima > MAX_ESTRELLAS)) {
+            throw new RuntimeException("La calificación mínima debe ser entre 1 y 5.");
+        }
+
+        lock.readLock().lock();
+        try {
+            // A. Un bitset por faceta con el filtro pedido (null = la faceta no filtra)
+            BitSet filtroCategoria = unir(categorias, porCategoria::get);
+            BitSet filtroPrecio = unir(rangosPrecio, etiqueta -> porRangoPrecio[indiceRango(etiqueta)]);
+            BitSet filtroStock = soloConStock ? conStock : null;
+            BitSet filtroCalificacion = calificacionMinima != null ? porCalificacionMinima[calificacionMinima] : null;
+
+            // B. Resultado: AND de todas las facetas
+            BitSet resultado = intersectar(filtroCategoria, filtroPrecio, filtroStock, filtroCalificacion);
+
+            // C. Conteos disyuntivos: cada faceta se cuenta con los filtros de las otras
+            Map<String, Map<String, Integer>> facetas = new LinkedHashMap<>();
+
+            BitSet base = intersectar(filtroPrecio, filtroStock, filtroCalificacion);
+            Map<String, Integer> conteoCategorias = new LinkedHashMap<>();
+            porCategoria.forEach((nombre, bits) -> conteoCategorias.put(nombre, contarInterseccion(base, bits)));
+            facetas.put(FACETA_CATEGORIA, conteoCategorias);
+
+            BitSet basePrecio = intersectar(filtroCategoria, filtroStock, filtroCalificacion);
+            Map<String, Integer> conteoPrecios = new LinkedHashMap<>();
+            for (int i = 0; i < etiquetasPrecio.length; i++) {
+                conteoPrecios.put(etiquetasPrecio[i], contarInterseccion(basePrecio, porRangoPrecio[i]));
+            }
+            facetas.put(FACETA_PRECIO, conteoPrecios);
+
+            BitSet baseStock = intersectar(filtroCategoria, filtroPrecio, filtroCalificacion);
+            facetas.put(FACETA_STOCK, Map.of("true", contarInterseccion(baseStock, conStock)));
+
+            BitSet baseCalificacion = intersectar(filtroCategoria, filtroPrecio, filtroStock);
+            Map<String, Integer> conteoCalificacion = new LinkedHashMap<>();
+            for (int k = MAX_ESTRELLAS; k >= 1; k--) {
+                conteoCalificacion.put(k + "+", contarInterseccion(baseCalificacion, porCalificacionMinima[k]));
+            }
+            facetas.put(FACETA_CALIFICACION, conteoCalificacion);
+
+            // D. Página de productos: se salta directo a los bits encendidos
+            List<ProductoCatalogo> items = new ArrayList<>(limite);
+            int saltar = pagina * limite;
+            for (int i = resultado.nextSetBit(0); i >= 0 && items.size() < limite; i = resultado.nextSetBit(i + 1)) {
+                if (saltar > 0) {
+                    saltar--;
+                } else {
+                    items.add(porOrdinal.get(i));
+                }
+            }
+            return new ResultadoFiltro<>(items, resultado.cardinality(), facetas);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 2. CONSTRUCCIÓN COMPLETA AL ARRANCAR
+     * Productos desde la foto del catálogo; calificaciones con un solo GROUP BY.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        Map<Long, long[]> resenas = new HashMap<>();
+        for (Object[] fila : resenaRepository.sumarCalificacionesPorProducto()) {
+            resenas.put((Long) fila[0], new long[] { ((Number) fila[1]).longValue(), ((Number) fila[2]).longValue() });
+        }
+
+        lock.writeLock().lock();
+        try {
+            vaciar();
+            resenasPorProducto.putAll(resenas);
+
+            for (ProductoCatalogo p : catalogoCache.snapshot().productos()) {
+                int ordinal = porOrdinal.size();
+                porOrdinal.add(p);
+                ordinalPorId.put(p.getId(), ordinal);
+                marcar(ordinal, p);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 3. ACTUALIZACIÓN INCREMENTAL DEL CATÁLOGO (después del commit)
+     * Solo se tocan los bits de los productos afectados.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCambiarCatalogo(CatalogoEvento evento) {
+        if (evento.tipo() == CatalogoEvento.Tipo.CATEGORIAS_MODIFICADAS) {
+            reconstruir();
+            return;
+        }
+        Map<Long, ProductoCatalogo> porId = catalogoCache.snapshot().porId();
+
+        lock.writeLock().lock();
+        try {
+            for (Long id : evento.productoIds()) {
+                Integer ordinal = ordinalPorId.get(id);
+                ProductoCatalogo p = evento.tipo() == CatalogoEvento.Tipo.PRODUCTOS_MODIFICADOS ? porId.get(id) : null;
+
+                if (ordinal != null) {
+                    desmarcar(ordinal);
+                    if (p == null) { // Eliminado: el ordinal queda libre para el próximo producto
+                        porOrdinal.set(ordinal, null);
+                        ordinalPorId.remove(id);
+                        resenasPorProducto.remove(id);
+                        ordinalesLibres.push(ordinal);
+                        continue;
+                    }
+                } else if (p != null) {
+                    ordinal = asignarOrdinal(id);
+                } else {
+                    continue;
+                }
+                porOrdinal.set(ordinal, p);
+                marcar(ordinal, p);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 4. VENTAS: solo cambia el bit "con stock" de los productos vendidos.
+     * Se lee el stock del producto (la foto ya aplicó el evento y descarta estados viejos).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarStock(StockActualizadoEvento evento) {
+        lock.writeLock().lock();
+        try {
+            for (Long id : evento.estados().keySet()) {
+                Integer ordinal = ordinalPorId.get(id);
+                if (ordinal != null) {
+                    Integer stock = porOrdinal.get(ordinal).getStock();
+                    conStock.set(ordinal, stock != null && stock > 0);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 5. NUEVA RESEÑA: actualiza el promedio del producto y sus bits de calificación.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCrearResena(ResenaCreadaEvento evento) {
+        lock.writeLock().lock();
+        try {
+            long[] acumulado = resenasPorProducto.computeIfAbsent(evento.productoId(), k -> new long[2]);
+            acumulado[0] += evento.calificacion();
+            acumulado[1]++;
+
+            Integer ordinal = ordinalPorId.get(evento.productoId());
+            if (ordinal != null) {
+                marcarCalificacion(ordinal, evento.productoId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Métricas: productos indexados y valores por faceta.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("productos", ordinalPorId.size());
+            stats.put("ordinalesLibres", ordinalesLibres.size());
+            stats.put("categorias", porCategoria.size());
+            stats.put("rangosPrecio", etiquetasPrecio.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA (escrituras siempre bajo el lock de escritura) ---
+
+    private void vaciar() {
+        resenasPorProducto.clear();
+        porOrdinal.clear();
+        ordinalPorId.clear();
+        ordinalesLibres.clear();
+        vivos.clear();
+        porCategoria.clear();
+        conStock.clear();
+        porRangoPrecio = new BitSet[etiquetasPrecio.length];
+        for (int i = 0; i < porRangoPrecio.length; i++) {
+            porRangoPrecio[i] = new BitSet();
+        }
+        for (int k = 0; k <= MAX_ESTRELLAS; k++) {
+            porCalificacionMinima[k] = new BitSet();
+        }
+    }
+
+    private int asignarOrdinal(Long id) {
+        Integer ordinal = ordinalesLibres.poll();
+        if (ordinal == null) {
+            ordinal = porOrdinal.size();
+            porOrdinal.add(null);
+        }
+        ordinalPorId.put(id, ordinal);
+        return ordinal;
+    }
+
+    private void marcar(int ordinal, ProductoCatalogo p) {
+        vivos.set(ordinal);
+        if (p.getCategoria() != null && p.getCategoria().getNombre() != null) {
+            porCategoria.computeIfAbsent(p.getCategoria().getNombre(), k -> new BitSet()).set(ordinal);
+        }
+        if (p.getPrecio() != null) {
+            porRangoPrecio[rangoDe(p.getPrecio())].set(ordinal);
+        }
+        if (p.getStock() != null && p.getStock() > 0) {
+            conStock.set(ordinal);
+        }
+        marcarCalificacion(ordinal, p.getId());
+    }
+
+    private void marcarCalificacion(int ordinal, Long productoId) {
+        long[] acumulado = resenasPorProducto.get(productoId);
+        double promedio = (acumulado != null && acumulado[1] > 0) ? (double) acumulado[0] / acumulado[1] : 0;
+        for (int k = 1; k <= MAX_ESTRELLAS; k++) {
+            porCalificacionMinima[k].set(ordinal, promedio >= k);
+        }
+    }
+
+    private void desmarcar(int ordinal) {
+        vivos.clear(ordinal);
+        porCategoria.values().forEach(bits -> bits.clear(ordinal));
+        porCategoria.values().removeIf(BitSet::isEmpty);
+        for (BitSet bits : porRangoPrecio) {
+            bits.clear(ordinal);
+        }
+        conStock.clear(ordinal);
+        for (int k = 1; k <= MAX_ESTRELLAS; k++) {
+            porCalificacionMinima[k].clear(ordinal);
+        }
+    }
+
+    private int rangoDe(double precio) {
+        for (int i = 0; i < limitesPrecio.length; i++) {
+            if (precio < limitesPrecio[i]) {
+                return i;
+            }
+        }
+        return limitesPrecio.length;
+    }
+
+    private int indiceRango(String etiqueta) {
+        for (int i = 0; i < etiquetasPrecio.length; i++) {
+            if (etiquetasPrecio[i].equals(etiqueta)) {
+                return i;
+            }
+        }
+        throw new RuntimeException("Rango de precio desconocido: " + etiqueta);
+    }
+
+    /**
+     * OR de los bitsets de los valores pedidos. Devuelve null si no se pidió ningún valor
+     * (la faceta no filtra). Un valor inexistente (ej: categoría sin productos) no suma nada.
+     */
+    private static BitSet unir(Collection<String> valores, Function<String, BitSet> bitsDe) {
+        if (valores == null || valores.isEmpty()) {
+            return null;
+        }
+        BitSet union = new BitSet();
+        for (String valor : valores) {
+            BitSet bits = bitsDe.apply(valor);
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * AND de los filtros activos (los null se ignoran). Sin filtros = todos los productos vivos
+     * (se devuelve el bitset interno: quien lo reciba solo debe leerlo).
+     */
+    private BitSet intersectar(BitSet... filtros) {
+        BitSet resultado = null;
+        for (BitSet filtro : filtros) {
+            if (filtro == null) {
+                continue;
+            }
+            if (resultado == null) {
+                resultado = (BitSet) filtro.clone();
+            } else {
+                resultado.and(filtro);
+            }
+        }
+        return resultado != null ? resultado : vivos;
+    }
+
+    /**
+     * |a AND b|: AND palabra por palabra (64 productos por operación) y conteo de bits.
+     */
+    private static int contarInterseccion(BitSet a, BitSet b) {
+        BitSet copia = (BitSet) b.clone();
+        copia.and(a);
+        return copia.cardinality();
+    }
+}
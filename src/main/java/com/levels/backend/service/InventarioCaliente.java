@@ -0,0 +1,226 @@
+package com.levels.backend.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.dto.EstadoStock;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.ProductoRepository;
+import com.levels.backend.repository.StockJdbcRepository;
+import com.levels.backend.repository.StockJdbcRepository.LineaStock;
+import com.levels.backend.repository.StockJdbcRepository.Volcado;
+
+/**
+ * INVENTARIO CALIENTE (modo venta flash, por producto)
+ * ----------------------------------------------------
+ * En un lanzamiento, miles de compras llegan a la vez por los mismos pocos productos y el
+ * bloqueo de su fila en MySQL las pone en fila india. Para los productos marcados por el Admin:
+ * * El stock vive en memoria, en un ContadorStockSegmentado (CAS, sin locks).
+ * * El checkout reclama del contador y anota la venta en 'movimiento_inventario', en la misma
+ * transacción que la orden (si hay rollback, las unidades vuelven al contador).
+ * * Las reservas de carrito (ReservasStock) se respetan igual que con la fila bloqueada:
+ * nadie se lleva las unidades apartadas por otro cliente.
+ * * Una tarea periódica vuelca el diario a 'producto' por lotes (una resta por producto).
+ * * Al arrancar se aplica lo que haya quedado pendiente (caída) y se recargan los contadores.
+ * Activar o desactivar el modo con la venta en curso puede dejar unas pocas unidades
+ * desfasadas: se recomienda hacerlo antes de abrir el lanzamiento y después de cerrarlo.
+ */
+@Component
+public class InventarioCaliente {
+
+    @Autowired
+    private StockJdbcRepository stockRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventos;
+
+    @Autowired
+    private ReservasStock reservasStock;
+
+    @Value("${levelup.inventario-caliente.lote-volcado:5000}")
+    private int loteVolcado;
+
+    // productoId -> stock en memoria (solo productos con el modo activo)
+    private final Map<Long, ContadorStockSegmentado> contadores = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final LongAdder ventas = new LongAdder();
+    private final LongAdder rechazos = new LongAdder();
+    private final LongAdder devueltas = new LongAdder();
+    private final LongAdder movimientosAplicados = new LongAdder();
+    private volatile long ultimoVolcadoMs;
+
+    /**
+     * 1. ¿El producto está en modo inventario caliente?
+     */
+    public boolean esCaliente(Long productoId) {
+        return contadores.containsKey(productoId);
+    }
+
+    /**
+     * 2. STOCK EN MEMORIA (el de la tabla va unos instantes atrasado).
+     * @return null si el producto no está en modo caliente.
+     */
+    public Integer stockEnMemoria(Long productoId) {
+        ContadorStockSegmentado contador = contadores.get(productoId);
+        return contador != null ? contador.disponible() : null;
+    }
+
+    /**
+     * 3. CHECKOUT: descuenta en memoria y anota los movimientos en el diario.
+     * Se llama dentro de la transacción de la orden.
+     * Las reservas se revisan DESPUÉS de reclamar: el stock que queda ya descuenta las compras en
+     * curso de otros hilos, así que ante una carrera se rechaza de más, nunca se vende lo apartado.
+     * @param usuarioId Cliente que compra (sus propias reservas sí las puede usar).
+     * @return Ids de los productos sin stock suficiente (vacío = todo descontado).
+     */
+    public List<Long> descontar(Long usuarioId, Long ordenId, List<LineaStock> lineas) {
+        List<LineaStock> reclamadas = new ArrayList<>();
+        for (LineaStock linea : lineas) {
+            ContadorStockSegmentado contador = contadores.get(linea.productoId());
+            if (contador == null || !contador.reclamar(linea.cantidad())) {
+                rechazos.increment();
+                devolver(reclamadas);
+                return List.of(linea.productoId());
+            }
+            reclamadas.add(linea);
+            int stockAntes = contador.disponible() + linea.cantidad();
+            if (!reservasStock.puedeComprar(usuarioId, linea.productoId(), linea.cantidad(), stockAntes)) {
+                rechazos.increment();
+                devolver(reclamadas);
+                return List.of(linea.productoId());
+            }
+        }
+
+        // Si la orden termina en rollback (por cualquier motivo), se devuelven las unidades
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        devolver(reclamadas);
+                    }
+                }
+            });
+        }
+        stockRepository.anotarMovimientos(ordenId, lineas);
+        ventas.add(lineas.size());
+        return List.of();
+    }
+
+    /**
+     * 4. VOLCADO PERIÓDICO del diario a la tabla 'producto'.
+     * Cada lote es una transacción (restar + marcar aplicado). Luego se avisa al catálogo
+     * con el stock en que quedó cada producto (se parcha en su lugar, sin releerlo).
+     */
+    @Scheduled(fixedDelayString = "${levelup.inventario-caliente.volcado-ms:1000}")
+    public synchronized void volcar() {
+        long inicio = System.currentTimeMillis();
+        Map<Long, EstadoStock> estados = new LinkedHashMap<>();
+        Volcado volcado;
+        do {
+            volcado = transactionTemplate.execute(tx -> stockRepository.aplicarMovimientos(loteVolcado));
+            volcado.estados().forEach((id, estado) -> estados.merge(id, estado, EstadoStock::masReciente));
+            movimientosAplicados.add(volcado.movimientos());
+        } while (volcado.movimientos() == loteVolcado);
+
+        if (!estados.isEmpty()) {
+            eventos.publishEvent(new StockActualizadoEvento(estados));
+            ultimoVolcadoMs = System.currentTimeMillis() - inicio;
+        }
+    }
+
+    /**
+     * 5. ACTIVAR el modo (Admin). El stock inicial se lee con la fila bloqueada.
+     */
+    public synchronized void activar(Long productoId) {
+        if (esCaliente(productoId)) return;
+        volcar(); // Por si quedaba algo pendiente de una activación anterior
+        transactionTemplate.executeWithoutResult(tx -> {
+            EstadoStock estado = stockRepository.bloquear(List.of(productoId)).get(productoId);
+            if (estado == null) throw new RuntimeException("Producto no encontrado");
+            int stock = estado.stock();
+            stockRepository.marcarInventarioCaliente(productoId, true);
+            contadores.put(productoId, new ContadorStockSegmentado(stock));
+        });
+        eventos.publishEvent(CatalogoEvento.productoModificado(productoId));
+    }
+
+    /**
+     * 6. DESACTIVAR el modo (Admin). Se vuelca el diario para que la tabla quede al día.
+     */
+    public synchronized void desactivar(Long productoId) {
+        if (contadores.remove(productoId) == null) return;
+        volcar();
+        stockRepository.marcarInventarioCaliente(productoId, false);
+        eventos.publishEvent(CatalogoEvento.productoModificado(productoId));
+    }
+
+    /**
+     * 7. RECUPERACIÓN al arrancar: se aplican los movimientos que quedaron pendientes
+     * y los contadores parten del stock (ya al día) de la tabla.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        volcar();
+        contadores.clear();
+        for (Producto p : productoRepository.findByInventarioCalienteTrue()) {
+            contadores.put(p.getId(), new ContadorStockSegmentado(p.getStock() != null ? p.getStock() : 0));
+        }
+    }
+
+    /**
+     * Métricas: stock en memoria por producto, ventas y estado del volcado.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<Long, Integer> stock = new LinkedHashMap<>();
+        long reintentos = 0;
+        for (Map.Entry<Long, ContadorStockSegmentado> e : contadores.entrySet()) {
+            stock.put(e.getKey(), e.getValue().disponible());
+            reintentos += e.getValue().reintentos();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stockEnMemoria", stock);
+        stats.put("ventas", ventas.sum());
+        stats.put("rechazos", rechazos.sum());
+        stats.put("unidadesDevueltas", devueltas.sum());
+        stats.put("reintentosCas", reintentos);
+        stats.put("pendientesDeVolcar", stockRepository.pendientesPorProducto());
+        stats.put("movimientosAplicados", movimientosAplicados.sum());
+        stats.put("ultimoVolcadoMs", ultimoVolcadoMs);
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    private void devolver(List<LineaStock> lineas) {
+        for (LineaStock linea : lineas) {
+            ContadorStockSegmentado contador = contadores.get(linea.productoId());
+            if (contador != null) {
+                contador.devolver(linea.cantidad());
+                devueltas.add(linea.cantidad());
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.levels.backend.service;
+
+import com.levels.backend.model.Orden;
+
+/**
+ * EVENTO: ORDEN DE COMPRA GENERADA (Checkout confirmado)
+ * ----------------------------------------------------
+ * Lo publica OrdenService al terminar un checkout. Los oyentes usan
+ * @TransactionalEventListener: solo se enteran de las compras que llegaron al commit.
+ * @param orden La orden recién creada, con sus detalles (productos, cantidades y precios).
+ */
+public record OrdenGeneradaEvento(Orden orden) {}
@@ -1,22 +1,40 @@
 package com.levels.backend.service;
 
-import java.util.Date;
-import java.util.List; // Import necesario para la fecha
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date; // Import necesario para la fecha
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.levels.backend.dto.EstadoStock;
+import com.levels.backend.dto.OrdenResumen;
+import com.levels.backend.dto.PaginaCursor;
 import com.levels.backend.model.Carrito;
 import com.levels.backend.model.DetalleCarrito;
 import com.levels.backend.model.DetalleOrden;
 import com.levels.backend.model.Orden;
+import com.levels.backend.model.OrdenLectura;
 import com.levels.backend.model.Producto;
 import com.levels.backend.repository.CarritoRepository;
 import com.levels.backend.repository.DetalleCarritoRepository;
 import com.levels.backend.repository.OrdenRepository;
-import com.levels.backend.repository.ProductoRepository;
-
-import jakarta.transaction.Transactional;
+import com.levels.backend.repository.StockJdbcRepository;
+import com.levels.backend.repository.StockJdbcRepository.LineaStock;
 
 /**
  * SERVICIO: GESTIÓN DE ÓRDENES DE COMPRA (Checkout)
@@ -31,34 +49,74 @@ public class OrdenService {
     @Autowired private OrdenRepository ordenRepository;
     @Autowired private CarritoRepository carritoRepository;
     @Autowired private DetalleCarritoRepository detalleCarritoRepository; 
-    @Autowired private ProductoRepository productoRepository; 
+    @Autowired private StockJdbcRepository stockRepository; // Descuento de stock atómico (UPDATE condicional en batch)
+    @Autowired private ReservasStock reservasStock; // Unidades apartadas al agregar al carrito
+    @Autowired private InventarioCaliente inventarioCaliente; // Venta flash: stock en memoria + volcado por lotes
+    @Autowired private ApplicationEventPublisher eventos; // Avisa a las estructuras en memoria los cambios de stock y las ventas
+    @Autowired private ReintentosConcurrencia reintentos; // Transacción por intento + reintento ante conflictos
+    @Autowired private CarritoStore carritoStore; // Carritos en memoria (se vuelcan antes de comprar)
+    @Autowired private VentasAcumuladas ventasAcumuladas; // Totales del dashboard (por día y por región)
+    @Autowired private OrdenesLectura ordenesLectura; // Copia plana de cada orden para leerla en una consulta
+
+    // Tamaño de página del historial por defecto y máximo permitido (application.properties)
+    @Value("${levelup.ordenes.limite-por-defecto:20}") private int limitePorDefecto;
+    @Value("${levelup.ordenes.limite-maximo:100}") private int limiteMaximo;
+
+    // Métricas del tramo con productos bloqueados
+    private final LongAdder bloqueos = new LongAdder();
+    private final LongAdder nanosBloqueo = new LongAdder();
+    private final AtomicLong maxNanosBloqueo = new AtomicLong();
 
     /**
      * CHECKOUT: Genera una orden de compra completa.
      * ----------------------------------------------------
-     * Es una operación de 5 pasos que toca 4 tablas.
+     * Es una operación de 6 pasos que toca 4 tablas (más los acumulados de ventas del paso 5.C).
+     * * Bloqueos: las filas de 'producto' se bloquean recién en el paso 5.B, todas juntas y en
+     * orden de id, y se liberan con el commit. Las validaciones y las escrituras de la orden
+     * y del carrito quedan FUERA de ese tramo crítico.
+     * * Venta flash: los productos con inventario caliente no se bloquean (paso 5.A).
+     * * ¡CRÍTICO! Cada intento es UNA transacción: si la BD falla en el paso 3, 4 o 5, todos los
+     * cambios se revierten (rollback). Si fue por un conflicto (deadlock, timeout de bloqueo o
+     * el carrito cambió en otra pestaña = @Version), se reintenta desde el paso 1 con datos frescos.
+     * * Carrito en memoria (CarritoStore): antes de empezar se vuelcan sus cambios pendientes a la
+     * BD, y mientras dura la compra nadie puede modificarlo.
      * @param usuarioId ID del cliente que compra.
      * @param direccion, region, comuna Datos de envío.
      */
-    @Transactional // ¡CRÍTICO! Si la BD falla en el paso 3 o 4, todos los cambios se revierten (rollback).
     public Orden generarOrden(Long usuarioId, String direccion, String region, String comuna) {
-        
-        // 1. Obtener el carrito y validar datos iniciales
-        Carrito carrito = carritoRepository.findByUsuarioId(usuarioId);
+        return carritoStore.cerrarCompra(usuarioId,
+                () -> reintentos.ejecutar("orden.checkout", () -> generarOrdenUnaVez(usuarioId, direccion, region, comuna)));
+    }
+
+    private Orden generarOrdenUnaVez(Long usuarioId, String direccion, String region, String comuna) {
+
+        // 1. Validación de datos de envío (antes de tocar la BD)
+        if (direccion == null || direccion.trim().isEmpty()) throw new RuntimeException("La dirección es obligatoria.");
+        if (region == null || region.trim().isEmpty()) throw new RuntimeException("La región es obligatoria.");
+        if (comuna == null || comuna.trim().isEmpty()) throw new RuntimeException("La comuna es obligatoria.");
+
+        // 2. Obtener el carrito (con ítems y productos, en una sola consulta)
+        Carrito carrito = carritoRepository.cargarCompleto(usuarioId);
         
         if (carrito == null || carrito.getItems().isEmpty()) {
             throw new RuntimeException("No se puede procesar la compra: El carrito está vacío.");
         }
 
-        // Validación de datos de envío
-        if (direccion == null || direccion.trim().isEmpty()) throw new RuntimeException("La dirección es obligatoria.");
-        if (region == null || region.trim().isEmpty()) throw new RuntimeException("La región es obligatoria.");
-        if (comuna == null || comuna.trim().isEmpty()) throw new RuntimeException("La comuna es obligatoria.");
+        // Los ítems se procesan SIEMPRE en orden de id de producto (nunca en el orden del carrito)
+        List<DetalleCarrito> items = new ArrayList<>(carrito.getItems());
+        items.sort(Comparator.comparing(item -> item.getProducto().getId()));
+
+        // El total se calcula de nuevo desde las líneas que se van a facturar (mismo precio que cada
+        // DetalleOrden) y el descuento vigente del usuario, no desde el total acumulado del carrito
+        long subtotalCentavos = 0;
+        for (DetalleCarrito item : items) {
+            subtotalCentavos += CarritoService.aCentavos(item.getProducto().getPrecio()) * item.getCantidad();
+        }
 
-        // 2. Crear la Cabecera de la Orden (Snapshot de datos del usuario)
+        // 3. Crear la Cabecera de la Orden (Snapshot de datos del usuario)
         Orden nuevaOrden = new Orden();
         nuevaOrden.setUsuario(carrito.getUsuario());
-        nuevaOrden.setTotal(carrito.getTotal()); // Usamos el total calculado con descuentos
+        nuevaOrden.setTotal(CarritoService.totalConDescuento(subtotalCentavos, carrito.getUsuario()));
         nuevaOrden.setFechaCreacion(new Date()); 
         
         // Guardamos los datos de envío
@@ -69,21 +127,25 @@ public class OrdenService {
         // Guardamos la orden inicial para generar el ID (necesario para las FK de los detalles)
         nuevaOrden = ordenRepository.save(nuevaOrden);
 
-        // 3. Procesar cada producto del carrito (Bucle transaccional)
-        for (DetalleCarrito itemCarrito : carrito.getItems()) {
+        List<Long> productosVendidos = new ArrayList<>();
+        List<Long> productosBloqueados = new ArrayList<>();
+        List<LineaStock> lineasStock = new ArrayList<>();
+        List<LineaStock> lineasCalientes = new ArrayList<>();
+        for (DetalleCarrito itemCarrito : items) {
             Producto producto = itemCarrito.getProducto();
+            productosVendidos.add(producto.getId());
 
-            // A. REVALIDAR STOCK (Doble check antes de comprometer la venta)
-            if (producto.getStock() < itemCarrito.getCantidad()) {
-                // Si el stock fallara aquí, la excepción fuerza el ROLLBACK de toda la orden (paso 2 se borra)
-                throw new RuntimeException("Stock insuficiente para: " + producto.getNombre());
+            // A. Anotamos cuánto restar: la BD valida y descuenta todo junto en el paso 5.B,
+            // salvo los productos en venta flash (inventario caliente), que van por el paso 5.A
+            LineaStock linea = new LineaStock(producto.getId(), itemCarrito.getCantidad());
+            if (inventarioCaliente.esCaliente(producto.getId())) {
+                lineasCalientes.add(linea);
+            } else {
+                lineasStock.add(linea);
+                productosBloqueados.add(producto.getId());
             }
 
-            // B. RESTAR STOCK REAL (Actualizamos el inventario)
-            producto.setStock(producto.getStock() - itemCarrito.getCantidad());
-            productoRepository.save(producto); // Persistimos el cambio de stock
-
-            // C. CREAR DETALLE DE ORDEN (El SNAPSHOT)
+            // B. CREAR DETALLE DE ORDEN (El SNAPSHOT)
             DetalleOrden detalleOrden = new DetalleOrden();
             detalleOrden.setOrden(nuevaOrden);
             detalleOrden.setProducto(producto);
@@ -103,33 +165,184 @@ public class OrdenService {
         // Reseteamos el objeto Carrito en memoria para que no tenga items ni total
         carrito.getItems().clear();
         carrito.setTotal(0.0);
+        carrito.setSubtotalCentavos(0L);
         carritoRepository.save(carrito);
 
-        // 5. Devolver la Orden final (se persiste automáticamente el detalle gracias al Cascade)
+        // Enviamos YA los INSERT/DELETE pendientes de JPA, para que no se ejecuten con los productos bloqueados
+        ordenRepository.flush();
+
+        // Vista de lectura (una fila con las líneas en JSON): la leen el historial, el detalle y el Admin
+        ordenesLectura.registrar(nuevaOrden);
+
+        // 5.A VENTA FLASH: se descuenta del contador en memoria (CAS, sin bloquear la fila) y se
+        // anota en el diario; la tabla 'producto' se actualiza después, por lotes.
+        // Igual que en 5.B, las unidades reservadas por otros clientes no se venden.
+        if (!lineasCalientes.isEmpty()) {
+            List<Long> agotados = inventarioCaliente.descontar(usuarioId, nuevaOrden.getId(), lineasCalientes);
+            if (!agotados.isEmpty()) {
+                throw new RuntimeException("Stock insuficiente para: " + nombreDe(items, agotados.get(0)));
+            }
+        }
+
+        // 5.B TRAMO CRÍTICO: bloquear productos (una consulta, en orden de id) y restar stock
+        // El UPDATE condicional (... WHERE stock >= cantidad, un solo batch) sigue siendo la garantía
+        // final de que el stock nunca queda negativo.
+        if (!lineasStock.isEmpty()) {
+            Map<Long, EstadoStock> stockBloqueado = stockRepository.bloquear(productosBloqueados);
+            registrarFinDelBloqueo(System.nanoTime());
+            // Las reservas vigentes de OTROS clientes no se pueden tocar; las propias se convierten en compra.
+            for (LineaStock linea : lineasStock) {
+                EstadoStock estado = stockBloqueado.get(linea.productoId());
+                int stock = estado != null ? estado.stock() : 0;
+                if (!reservasStock.puedeComprar(usuarioId, linea.productoId(), linea.cantidad(), stock)) {
+                    // La excepción fuerza el ROLLBACK de toda la orden (pasos 3 y 4 se deshacen)
+                    throw new RuntimeException("Stock insuficiente para: " + nombreDe(items, linea.productoId()));
+                }
+            }
+            List<Long> sinStock = stockRepository.descontar(lineasStock);
+            if (!sinStock.isEmpty()) {
+                throw new RuntimeException("Stock insuficiente para: " + nombreDe(items, sinStock.get(0)));
+            }
+
+            // El stock cambió: con las filas bloqueadas, el estado final se calcula sin releerlas
+            // (cada UPDATE resta su cantidad y suma 1 a la versión). Después del commit la foto del
+            // catálogo lo aplica en su lugar; la de los productos en venta flash, tras cada volcado.
+            Map<Long, EstadoStock> stockFinal = new HashMap<>(stockBloqueado);
+            for (LineaStock linea : lineasStock) {
+                stockFinal.computeIfPresent(linea.productoId(),
+                        (id, e) -> new EstadoStock(e.stock() - linea.cantidad(), e.version() + 1));
+            }
+            eventos.publishEvent(new StockActualizadoEvento(stockFinal));
+        }
+        reservasStock.confirmar(usuarioId, productosVendidos);
+
+        // 5.C Acumulados de ventas (dashboard): al final, porque bloquean la fila del día hasta el commit
+        ventasAcumuladas.registrar(nuevaOrden);
+
+        // Y las ventas nuevas suben la popularidad de los productos (autocompletado)
+        eventos.publishEvent(new OrdenGeneradaEvento(nuevaOrden));
+
+        // 6. Devolver la Orden final (se persiste automáticamente el detalle gracias al Cascade)
         return nuevaOrden;
     }
 
+    /**
+     * Métricas del checkout: cuánto tiempo quedan bloqueadas las filas de producto
+     * (desde el SELECT ... FOR UPDATE hasta el commit o rollback).
+     */
+    public Map<String, Object> estadisticas() {
+        long transacciones = bloqueos.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("transaccionesConBloqueo", transacciones);
+        stats.put("bloqueoPromedioMs", transacciones > 0 ? nanosBloqueo.sum() / transacciones / 1_000_000.0 : 0);
+        stats.put("bloqueoMaximoMs", maxNanosBloqueo.get() / 1_000_000.0);
+        return stats;
+    }
+
+    /**
+     * Mide el tramo crítico: al terminar la transacción (commit o rollback) se liberan los bloqueos.
+     */
+    private void registrarFinDelBloqueo(long inicioBloqueo) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            // Primera en ejecutarse: los oyentes post-commit no cuentan como tiempo bloqueado
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCommit() {
+                registrar(System.nanoTime() - inicioBloqueo);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    registrar(System.nanoTime() - inicioBloqueo);
+                }
+            }
+
+            private void registrar(long duracion) {
+                bloqueos.increment();
+                nanosBloqueo.add(duracion);
+                maxNanosBloqueo.accumulateAndGet(duracion, Math::max);
+            }
+        });
+    }
+
+    /**
+     * Nombre del producto (tomado del carrito) para el mensaje de error.
+     */
+    private String nombreDe(List<DetalleCarrito> items, Long productoId) {
+        for (DetalleCarrito item : items) {
+            if (item.getProducto().getId().equals(productoId)) {
+                return item.getProducto().getNombre();
+            }
+        }
+        return "producto " + productoId;
+    }
+
     // --- MÉTODOS DE LECTURA ---
     
     /**
      * Obtiene el historial de compras de un usuario específico.
+     * Se lee de la vista de lectura: una consulta, sin cargar usuario/detalles/productos.
      */
-    public List<Orden> obtenerOrdenesUsuario(Long usuarioId) {
-        return ordenRepository.findByUsuarioId(usuarioId);
+    public List<OrdenLectura> obtenerOrdenesUsuario(Long usuarioId) {
+        return ordenesLectura.delUsuario(usuarioId);
+    }
+
+    /**
+     * Historial paginado por cursor: una fila liviana por orden (OrdenResumen), más recientes primero.
+     * Igual que el catálogo, se pide una fila extra para saber si hay otra página sin hacer un COUNT.
+     * @param cursor Token 'siguienteCursor' de la página anterior (null = primera página).
+     * @param desde Primer día incluido (opcional).
+     * @param hasta Último día incluido (opcional).
+     */
+    public PaginaCursor<OrdenResumen> historialPaginado(Long usuarioId, String cursor, Integer limite,
+                                                       LocalDate desde, LocalDate hasta) {
+        int tamano = (limite == null || limite <= 0) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+        Limit limiteConExtra = Limit.of(tamano + 1);
+        ZoneId zona = ZoneId.systemDefault();
+        Date inicio = desde != null ? Date.from(desde.atStartOfDay(zona).toInstant()) : null;
+        Date fin = hasta != null ? Date.from(hasta.plusDays(1).atStartOfDay(zona).toInstant()) : null; // Exclusivo
+
+        List<OrdenResumen> filas;
+        if (cursor == null || cursor.isEmpty()) {
+            filas = ordenRepository.primeraPaginaHistorial(usuarioId, inicio, fin, limiteConExtra);
+        } else {
+            CursorPaginacion.Posicion pos = CursorPaginacion.decodificar(cursor, "historial");
+            Date fecha;
+            try {
+                fecha = new Date(Long.parseLong(pos.valor()));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Cursor de paginación inválido.");
+            }
+            filas = ordenRepository.siguientePaginaHistorial(usuarioId, inicio, fin, fecha, pos.id(), limiteConExtra);
+        }
+
+        // Si llegó la fila extra, hay otra página: el cursor apunta a la última fila que SÍ devolvemos
+        String siguienteCursor = null;
+        if (filas.size() > tamano) {
+            filas = filas.subList(0, tamano);
+            OrdenResumen ultima = filas.get(tamano - 1);
+            siguienteCursor = CursorPaginacion.codificar("historial", ultima.fechaCreacion().getTime(), ultima.id());
+        }
+        return new PaginaCursor<>(filas, siguienteCursor, tamano);
     }
 
     /**
-     * Ver todas las ventas (Admin)
+     * Ver todas las ventas (Admin), desde la vista de lectura.
      */
-    public List<Orden> listarTodas() {
-        return ordenRepository.findAll();
+    public List<OrdenLectura> listarTodas() {
+        return ordenesLectura.todas();
     }
     
     /**
-     * Buscar una orden por ID
+     * Buscar una orden por ID (vista de lectura).
+     * Devuelve null si no se encuentra la orden.
      */
-    public Orden findById(Long id) {
-        // Usamos orElse(null) para devolver null si no se encuentra la orden.
-        return ordenRepository.findById(id).orElse(null);
+    public OrdenLectura findById(Long id) {
+        return ordenesLectura.buscar(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.levels.backend.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.DetalleOrden;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.OrdenLectura;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.OrdenLecturaRepository;
+import com.levels.backend.repository.OrdenRepository;
+
+/**
+ * VISTA DE LECTURA DE LAS ÓRDENES (ordenes_lectura)
+ * ----------------------------------------------------
+ * Las órdenes no cambian después del checkout: se guardan también como una fila plana
+ * (OrdenLectura) con sus líneas en JSON, y el historial, el detalle y el listado del Admin
+ * se leen de ahí con UNA consulta, sin recorrer usuario/detalles/producto/categoría.
+ * * Escritura: en la misma transacción del checkout (si la compra se revierte, la vista también).
+ * * Órdenes anteriores a la vista: se completan por lotes al arrancar, y si alguna se pide
+ * antes de eso, se arma en el momento desde la Orden (y queda guardada).
+ */
+@Component
+public class OrdenesLectura {
+
+    @Autowired
+    private OrdenLecturaRepository lecturaRepository;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${levelup.ordenes.lectura.lote-completar:500}")
+    private int loteCompletar;
+
+    // Forma de cada línea en el JSON: igual que DetalleOrden serializado (Producto y Categoria sin
+    // los campos internos de inventario), con los valores del momento de la compra
+    private record CategoriaVendida(Long id, String nombre, String imagenUrl) {}
+
+    private record ProductoVendido(Long id, String nombre, String descripcion, Double precio, Integer stock,
+            String imagenUrl, String videoUrl, CategoriaVendida categoria) {}
+
+    private record LineaOrden(Long id, ProductoVendido producto, Integer cantidad, Double precioUnitario) {}
+
+    // Métricas
+    private final LongAdder escritas = new LongAdder();
+    private final LongAdder completadas = new LongAdder();
+    private final LongAdder armadasAlLeer = new LongAdder();
+
+    /**
+     * 1. REGISTRAR la vista de una orden recién creada (dentro de la transacción del checkout).
+     * Se escribe de inmediato (saveAndFlush) para que el INSERT no espere al commit.
+     */
+    public void registrar(Orden orden) {
+        lecturaRepository.saveAndFlush(aVista(orden));
+        escritas.increment();
+    }
+
+    /**
+     * 2. HISTORIAL completo de un cliente.
+     */
+    public List<OrdenLectura> delUsuario(Long usuarioId) {
+        return lecturaRepository.delUsuario(usuarioId);
+    }
+
+    /**
+     * 3. DETALLE de una orden (null si no existe).
+     */
+    public OrdenLectura buscar(Long id) {
+        OrdenLectura vista = lecturaRepository.buscar(id).orElse(null);
+        if (vista != null) return vista;
+
+        // Orden antigua aún sin vista: se arma desde la Orden y se guarda para la próxima vez
+        try {
+            return transactionTemplate.execute(tx -> {
+                List<Orden> ordenes = ordenRepository.cargarCompletas(List.of(id));
+                if (ordenes.isEmpty()) return null;
+                armadasAlLeer.increment();
+                return lecturaRepository.save(aVista(ordenes.get(0)));
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Otra petición (o el lote de arranque) la guardó primero
+            return lecturaRepository.buscar(id).orElse(null);
+        }
+    }
+
+    /**
+     * 4. TODAS las ventas (Admin).
+     */
+    public List<OrdenLectura> todas() {
+        return lecturaRepository.todas();
+    }
+
+    /**
+     * 5. COMPLETAR las vistas que faltan (órdenes anteriores a esta tabla), de a 'lote'
+     * órdenes por transacción: una consulta de ids y una carga con JOIN FETCH por lote.
+     * @return Cantidad de vistas creadas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public long completarFaltantes() {
+        long total = 0;
+        int creadas;
+        do {
+            creadas = transactionTemplate.execute(tx -> {
+                List<Long> ids = lecturaRepository.idsSinVista(loteCompletar);
+                if (ids.isEmpty()) return 0;
+                List<OrdenLectura> vistas = new ArrayList<>(ids.size());
+                for (Orden orden : ordenRepository.cargarCompletas(ids)) {
+                    vistas.add(aVista(orden));
+                }
+                lecturaRepository.saveAll(vistas);
+                return vistas.size();
+            });
+            total += creadas;
+            completadas.add(creadas);
+        } while (creadas == loteCompletar);
+        return total;
+    }
+
+    /**
+     * Métricas: vistas escritas en el checkout, completadas por lote y armadas al leer.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("escritasEnCheckout", escritas.sum());
+        stats.put("completadasPorLote", completadas.sum());
+        stats.put("armadasAlLeer", armadasAlLeer.sum());
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    /**
+     * Copia la orden (y los datos ACTUALES de cada producto y su categoría, que quedan congelados).
+     */
+    private OrdenLectura aVista(Orden orden) {
+        OrdenLectura vista = new OrdenLectura();
+        vista.setId(orden.getId());
+        if (orden.getUsuario() != null) {
+            vista.setUsuarioId(orden.getUsuario().getId());
+            vista.setUsuario(orden.getUsuario());
+        }
+        vista.setFechaCreacion(orden.getFechaCreacion());
+        vista.setTotal(orden.getTotal());
+        vista.setDireccion(orden.getDireccion());
+        vista.setRegion(orden.getRegion());
+        vista.setComuna(orden.getComuna());
+
+        long unidades = 0;
+        List<LineaOrden> lineas = new ArrayList<>(orden.getDetalles().size());
+        for (DetalleOrden d : orden.getDetalles()) {
+            Producto p = d.getProducto();
+            ProductoVendido producto = null;
+            if (p != null) {
+                Categoria c = p.getCategoria();
+                CategoriaVendida categoria = c == null ? null : new CategoriaVendida(c.getId(), c.getNombre(), c.getImagenUrl());
+                producto = new ProductoVendido(p.getId(), p.getNombre(), p.getDescripcion(), p.getPrecio(), p.getStock(),
+                        p.getImagenUrl(), p.getVideoUrl(), categoria);
+            }
+            lineas.add(new LineaOrden(d.getId(), producto, d.getCantidad(), d.getPrecioUnitario()));
+            unidades += d.getCantidad() != null ? d.getCantidad() : 0;
+        }
+        vista.setCantidadItems(unidades);
+        try {
+            vista.setDetalles(objectMapper.writeValueAsString(lineas));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("No se pudo guardar el detalle de la orden: " + e.getOriginalMessage());
+        }
+        return vista;
+    }
+}
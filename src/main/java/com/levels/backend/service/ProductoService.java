@@ -1,15 +1,29 @@
 package com.levels.backend.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import com.levels.backend.dto.PaginaCursor;
+import com.levels.backend.dto.ProductoCard;
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.dto.ProductoDetalle;
+import com.levels.backend.dto.ResultadoFiltro;
+import com.levels.backend.dto.Sugerencia;
 import com.levels.backend.model.Producto;
 import com.levels.backend.repository.CategoriaRepository; // Importamos todos los repositorios
 import com.levels.backend.repository.DetalleCarritoRepository;
 import com.levels.backend.repository.ProductoRepository;
+import com.levels.backend.repository.ReservaStockRepository;
 import com.levels.backend.repository.ResenaRepository;
 
 import jakarta.transaction.Transactional;
@@ -27,27 +41,227 @@ public class ProductoService {
     @Autowired private DetalleCarritoRepository detalleRepository; // Para limpiar carritos
     @Autowired private ResenaRepository resenaRepository;         // Para limpiar reseñas
     @Autowired private CategoriaRepository categoriaRepository;    // Para buscar categorías (aunque lo haga el Controller, aquí está disponible)
+    @Autowired private CatalogoCache catalogoCache;                // Foto en memoria del catálogo (lecturas sin BD)
+    @Autowired private ApplicationEventPublisher eventos;          // Avisa los cambios para refrescar la foto
+    @Autowired private BusquedaProductosIndex busquedaIndex;       // Índice de texto completo (búsqueda)
+    @Autowired private AutocompletadoIndex autocompletado;         // Sugerencias por prefijo (type-ahead)
+    @Autowired private FacetasCatalogo facetas;                    // Filtros combinados con conteos (bitsets)
+    @Autowired private ReservasStock reservasStock;                // Unidades apartadas en carritos
+    @Autowired private ReservaStockRepository reservaRepository;   // Para limpiar reservas
+    @Autowired private InventarioCaliente inventarioCaliente;      // Stock en memoria (venta flash)
+
+    // Tamaño de página por defecto y máximo permitido (application.properties)
+    @Value("${levelup.catalogo.limite-por-defecto:24}") private int limitePorDefecto;
+    @Value("${levelup.catalogo.limite-maximo:100}") private int limiteMaximo;
+    @Value("${levelup.catalogo.sugerencias.max:10}") private int limiteSugerencias;
 
     /**
      * 1. OBTENER PRODUCTOS (con o sin filtro)
+     * Se sirve desde la foto en memoria del catálogo (CatalogoCache), sin consultar MySQL.
      * @param nombreCategoria Nombre de la categoría a filtrar (opcional).
      * @return Lista de productos.
      */
-    public List<Producto> listarProductos(String nombreCategoria) { 
+    public List<ProductoCatalogo> listarProductos(String nombreCategoria) { 
+        CatalogoCache.Snapshot catalogo = catalogoCache.snapshot();
         if (nombreCategoria != null && !nombreCategoria.isEmpty()) {
-            // Filtrado: Busca por el nombre dentro de la entidad Categoria
-            return productoRepository.findByCategoria_Nombre(nombreCategoria); 
+            // Filtrado: Índice por nombre de categoría
+            return catalogo.porCategoria().getOrDefault(nombreCategoria, List.of()); 
         }
         // Sin filtro, devuelve todo
-        return productoRepository.findAll();
+        return catalogo.productos();
+    }
+
+    /**
+     * 1.A TARJETAS DEL CATÁLOGO (Vista de grilla)
+     * Igual que listarProductos, pero con la vista liviana (sin descripción ni video).
+     * Las tarjetas ya vienen armadas en la foto del catálogo (con el stock del momento).
+     */
+    public List<ProductoCard> listarTarjetas(String nombreCategoria) {
+        CatalogoCache.Snapshot catalogo = catalogoCache.snapshot();
+        if (nombreCategoria != null && !nombreCategoria.isEmpty()) {
+            return catalogo.tarjetasPorCategoria().getOrDefault(nombreCategoria, List.of());
+        }
+        return catalogo.tarjetas();
+    }
+
+    /**
+     * 1.B OBTENER UNA PÁGINA DEL CATÁLOGO (Paginación por Cursor)
+     * ----------------------------------------------------
+     * Devuelve como máximo 'limite' productos, ordenados por precio, nombre o más recientes.
+     * Pedimos una fila extra para saber si existe una página siguiente sin hacer un COUNT.
+     * @param nombreCategoria Filtro opcional por categoría.
+     * @param orden "precio", "nombre" o "recientes" (por defecto).
+     * @param cursor Token 'siguienteCursor' de la página anterior (null = primera página).
+     * @param limite Tamaño de página solicitado (se recorta al máximo configurado).
+     */
+    public PaginaCursor<Producto> listarPagina(String nombreCategoria, String orden, String cursor, Integer limite) {
+        String categoria = (nombreCategoria != null && !nombreCategoria.isEmpty()) ? nombreCategoria : null;
+        String criterio = (orden == null || orden.isEmpty()) ? "recientes" : orden.toLowerCase();
+        int tamano = (limite == null || limite <= 0) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+        Limit limiteConExtra = Limit.of(tamano + 1);
+
+        CursorPaginacion.Posicion pos = (cursor != null && !cursor.isEmpty())
+                ? CursorPaginacion.decodificar(cursor, criterio)
+                : null;
+
+        List<Producto> filas = switch (criterio) {
+            case "precio" -> pos == null
+                    ? productoRepository.primeraPaginaPorPrecio(categoria, limiteConExtra)
+                    : pos.valor() == null
+                            ? productoRepository.siguientePaginaPorPrecioDesdeNulos(categoria, pos.id(), limiteConExtra)
+                            : productoRepository.siguientePaginaPorPrecio(categoria, Double.valueOf(pos.valor()), pos.id(), limiteConExtra);
+            case "nombre" -> pos == null
+                    ? productoRepository.primeraPaginaPorNombre(categoria, limiteConExtra)
+                    : pos.valor() == null
+                            ? productoRepository.siguientePaginaPorNombreDesdeNulos(categoria, pos.id(), limiteConExtra)
+                            : productoRepository.siguientePaginaPorNombre(categoria, pos.valor(), pos.id(), limiteConExtra);
+            case "recientes" -> pos == null
+                    ? productoRepository.primeraPaginaRecientes(categoria, limiteConExtra)
+                    : productoRepository.siguientePaginaRecientes(categoria, pos.id(), limiteConExtra);
+            default -> throw new RuntimeException("Orden no soportado: " + orden + " (use precio, nombre o recientes)");
+        };
+
+        // Si llegó la fila extra, hay otra página: el cursor apunta a la última fila que SÍ devolvemos
+        String siguienteCursor = null;
+        if (filas.size() > tamano) {
+            filas = filas.subList(0, tamano);
+            Producto ultimo = filas.get(tamano - 1);
+            Object valor = switch (criterio) {
+                case "precio" -> ultimo.getPrecio();
+                case "nombre" -> ultimo.getNombre();
+                default -> null;
+            };
+            siguienteCursor = CursorPaginacion.codificar(criterio, valor, ultimo.getId());
+        }
+        return new PaginaCursor<>(filas, siguienteCursor, tamano);
+    }
+
+    /**
+     * 1.B2 BUSCAR PRODUCTOS POR TEXTO (Índice invertido en memoria)
+     * ----------------------------------------------------
+     * Busca en nombre, descripción y categoría, sin importar tildes ni mayúsculas.
+     * @param consulta Texto libre (ej: "teclado mecanico").
+     * @param limite Cantidad máxima de resultados (se recorta al máximo configurado).
+     * @return Productos ordenados por relevancia.
+     */
+    public List<ProductoCatalogo> buscar(String consulta, Integer limite) {
+        int tamano = (limite == null || limite <= 0) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+        Map<Long, ProductoCatalogo> porId = catalogoCache.snapshot().porId();
+
+        List<ProductoCatalogo> resultado = new ArrayList<>();
+        for (BusquedaProductosIndex.Coincidencia c : busquedaIndex.buscar(consulta, tamano)) {
+            ProductoCatalogo p = porId.get(c.productoId());
+            if (p != null) {
+                resultado.add(p);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * 1.B3 SUGERENCIAS MIENTRAS SE ESCRIBE (Autocompletado)
+     * Productos y categorías cuyo nombre (o alguna de sus palabras) empieza con el prefijo,
+     * los más vendidos primero. Se responde desde memoria en cada tecla.
+     */
+    public List<Sugerencia> sugerir(String prefijo, Integer limite) {
+        int tamano = (limite == null || limite <= 0) ? limiteSugerencias : Math.min(limite, limiteSugerencias);
+        return autocompletado.sugerir(prefijo, tamano);
+    }
+
+    /**
+     * 1.B4 FILTRO POR FACETAS (categoría, rango de precio, stock y calificación)
+     * Devuelve la página pedida y, para cada faceta, la cantidad de productos por valor.
+     * @param pagina Número de página (desde 0).
+     * @param limite Tamaño de página (se recorta al máximo configurado).
+     */
+    public ResultadoFiltro<ProductoCatalogo> filtrar(List<String> categorias, List<String> rangosPrecio,
+            Boolean enStock, Integer calificacionMinima, Integer pagina, Integer limite) {
+        int tamano = (limite == null || limite <= 0) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+        int numeroPagina = (pagina == null || pagina < 0) ? 0 : pagina;
+        return facetas.filtrar(categorias, rangosPrecio, Boolean.TRUE.equals(enStock), calificacionMinima, numeroPagina, tamano);
+    }
+
+    /**
+     * 1.C VERSIÓN DE LOS DATOS DEL CATÁLOGO
+     * Cambia con cada escritura de productos o categorías. Los controladores la usan
+     * para calcular el ETag (GET condicional) sin tocar la BD.
+     * Las ventas NO la cambian: las listas, que muestran stock, suman además 'versionStock'.
+     */
+    public long versionDatos() {
+        return catalogoCache.snapshot().version();
+    }
+
+    /**
+     * VERSIÓN DEL STOCK (crece con cada venta)
+     * Va en el ETag de las listas: sin ella, tras 'max-age' un cliente revalidaría y recibiría
+     * 304 con el stock viejo hasta la próxima edición del catálogo.
+     */
+    public long versionStock() {
+        return catalogoCache.versionStock();
+    }
+
+    /**
+     * 1.D VERSIÓN DE UN PRODUCTO (la de su fila: cambia con cada edición y con cada venta)
+     * Para el ETag de la página de detalle, donde el stock sí debe estar al día.
+     * @return -1 si el producto no existe.
+     */
+    public long versionProducto(Long id) {
+        ProductoCatalogo p = catalogoCache.snapshot().porId().get(id);
+        return p != null && p.getVersion() != null ? p.getVersion() : -1;
+    }
+
+    /**
+     * Instante (ms) del último cambio del catálogo o de su stock, para la cabecera 'Last-Modified'.
+     */
+    public long ultimaModificacion() {
+        return Math.max(catalogoCache.snapshot().creadoEn(), catalogoCache.ultimoCambioStock());
     }
 
     /**
      * 2. OBTENER UN PRODUCTO POR ID
-     * Uso: Para la página de detalle (ProductDetail.jsx).
+     * Uso: Para la página de detalle (ProductDetail.jsx). Se lee desde la foto en memoria
+     * (copia de solo lectura: para modificarlo, usar actualizarProducto).
      */
-    public Optional<Producto> obtenerPorId(Long id) {
-        return productoRepository.findById(id);
+    public Optional<ProductoCatalogo> obtenerPorId(Long id) {
+        return Optional.ofNullable(catalogoCache.snapshot().porId().get(id));
+    }
+
+    /**
+     * 2.B DETALLE APLANADO (DTO en vez de la entidad)
+     */
+    public Optional<ProductoDetalle> obtenerDetalle(Long id) {
+        return obtenerPorId(id).map(ProductoDetalle::desde);
+    }
+
+    /**
+     * 2.C DISPONIBILIDAD REAL (stock - unidades reservadas en carritos), por id.
+     * Sale de la foto en memoria y del libro de reservas: no consulta la BD.
+     * Los ids que no existen se omiten.
+     */
+    public Map<Long, Integer> disponibilidad(List<Long> ids) {
+        Map<Long, ProductoCatalogo> porId = catalogoCache.snapshot().porId();
+        Map<Long, Integer> disponibles = new LinkedHashMap<>();
+        for (Long id : ids) {
+            ProductoCatalogo p = porId.get(id);
+            if (p == null) continue;
+            Integer stock = inventarioCaliente.stockEnMemoria(id); // Venta flash: manda el contador en memoria
+            if (stock == null) stock = p.getStock() != null ? p.getStock() : 0;
+            disponibles.put(id, reservasStock.disponible(id, stock));
+        }
+        return disponibles;
+    }
+
+    /**
+     * 2.D MODO INVENTARIO CALIENTE (venta flash) - Solo Admin
+     * Activo: el stock se descuenta en memoria y se vuelca a la BD por lotes.
+     */
+    public Producto cambiarInventarioCaliente(Long id, boolean activo) {
+        if (activo) {
+            inventarioCaliente.activar(id);
+        } else {
+            inventarioCaliente.desactivar(id);
+        }
+        return productoRepository.findById(id).orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
 
     /**
@@ -56,10 +270,12 @@ public class ProductoService {
      */
     public Producto guardarProducto(Producto producto) {
         // LÓGICA DE NEGOCIO: Evitar datos inconsistentes
-        if (producto.getPrecio() < 0) {
+        if (producto.getPrecio() != null && producto.getPrecio() < 0) { // null = "precio no asignado"
             throw new RuntimeException("El precio no puede ser negativo");
         }
-        return productoRepository.save(producto);
+        Producto guardado = productoRepository.save(producto);
+        eventos.publishEvent(CatalogoEvento.productoModificado(guardado.getId()));
+        return guardado;
     }
 
     /**
@@ -80,10 +296,15 @@ public class ProductoService {
             // Usamos una consulta DELETE masiva que elimina todas las reseñas asociadas.
             resenaRepository.deleteByProductoId(id);
 
+            // PASO B2: Las reservas de stock no tienen FK, pero no deben quedar huérfanas
+            reservaRepository.eliminarPorProductos(List.of(id));
+
             // PASO C: Eliminar el Producto principal
             // Esto solo es seguro si los pasos A y B eliminaron todas las FK que apuntaban a él.
             productoRepository.deleteById(id);
-            
+
+            // Se aplica a la foto en memoria solo si la transacción hace commit
+            eventos.publishEvent(CatalogoEvento.productoEliminado(id));
             return true;
         }
         return false;
@@ -92,11 +313,27 @@ public class ProductoService {
     /**
      * 5. ACTUALIZAR PRODUCTO EXISTENTE (Recomendado para el Admin Panel)
      * Patrón: Busca el original -> Aplica cambios -> Guarda la versión modificada.
+     * * El Admin envía la 'version' que tenía en pantalla: si ya no es la actual (otro Admin lo
+     * editó o un checkout descontó stock), se rechaza en vez de pisar cambios que no vio.
+     * * Sin reintento automático: la edición reemplaza el 'stock' por un valor absoluto, y
+     * repetirla sobre la fila recién leída borraría la venta que causó el conflicto.
+     * @throws OptimisticLockingFailureException si la versión no coincide (el controlador responde 409).
      */
+    @Transactional
     public Producto actualizarProducto(Long id, Producto nuevosDatos) {
         // Busca el producto original. Si no existe, lanza excepción.
         return productoRepository.findById(id).map(prod -> {
             
+            if (nuevosDatos.getVersion() != null && !nuevosDatos.getVersion().equals(prod.getVersion())) {
+                throw new OptimisticLockingFailureException("El producto fue modificado por otra persona. Recarga para ver los cambios.");
+            }
+
+            // En venta flash el stock lo lleva InventarioCaliente y se vuelca a la tabla por lotes:
+            // guardar la entidad completa pisaría esas restas.
+            if (inventarioCaliente.esCaliente(id)) {
+                throw new RuntimeException("El producto está en modo inventario caliente: desactívalo antes de editarlo.");
+            }
+
             // Mapeo defensivo: Solo actualizamos los campos que el Frontend puede enviar
             prod.setNombre(nuevosDatos.getNombre());
             prod.setDescripcion(nuevosDatos.getDescripcion());
@@ -108,7 +345,10 @@ public class ProductoService {
             prod.setImagenUrl(nuevosDatos.getImagenUrl());
             prod.setVideoUrl(nuevosDatos.getVideoUrl());
 
-            return productoRepository.save(prod); // Guarda la entidad actualizada
+            // saveAndFlush: si la fila cambió entre la lectura y este UPDATE (@Version), falla aquí
+            Producto guardado = productoRepository.saveAndFlush(prod);
+            eventos.publishEvent(CatalogoEvento.productoModificado(guardado.getId()));
+            return guardado;
         }).orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
 }
\ No newline at end of file
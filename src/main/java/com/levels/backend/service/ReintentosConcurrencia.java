@@ -0,0 +1,109 @@
+package com.levels.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * REINTENTOS ANTE CONFLICTOS DE CONCURRENCIA
+ * ----------------------------------------------------
+ * Producto, Carrito y DetalleCarrito tienen @Version (bloqueo optimista): si dos escrituras
+ * se cruzan, la segunda falla en vez de pisar a la primera. Esta clase ejecuta la operación
+ * en su propia transacción y, si falla por un conflicto (versión vieja, deadlock o timeout
+ * de bloqueo = ConcurrencyFailureException), la repite desde cero con datos frescos.
+ * * Espera entre intentos: exponencial con "full jitter" (al azar entre 0 y el tope), para que
+ * los que chocaron no vuelvan a chocar en el mismo instante.
+ * * Cuenta ejecuciones, conflictos y reintentos por operación (ver /api/admin/metricas).
+ */
+@Component
+public class ReintentosConcurrencia {
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${levelup.reintentos.max-intentos:4}")
+    private int maxIntentos;
+
+    @Value("${levelup.reintentos.espera-base-ms:10}")
+    private long esperaBaseMs;
+
+    @Value("${levelup.reintentos.espera-maxima-ms:200}")
+    private long esperaMaximaMs;
+
+    private final Map<String, Contadores> porOperacion = new ConcurrentHashMap<>();
+
+    private static final class Contadores {
+        final LongAdder ejecuciones = new LongAdder();
+        final LongAdder conflictos = new LongAdder();
+        final LongAdder reintentos = new LongAdder();
+        final LongAdder agotados = new LongAdder();
+    }
+
+    /**
+     * Ejecuta 'accion' en una transacción, reintentando ante conflictos de concurrencia.
+     * Si ya hay una transacción abierta por fuera, se ejecuta una sola vez dentro de ella
+     * (reintentar le corresponde a quien la abrió).
+     * @param operacion Nombre para las métricas (ej: "carrito.agregar").
+     */
+    public <T> T ejecutar(String operacion, Supplier<T> accion) {
+        Contadores contadores = porOperacion.computeIfAbsent(operacion, k -> new Contadores());
+        contadores.ejecuciones.increment();
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return accion.get();
+        }
+
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(tx -> accion.get());
+            } catch (ConcurrencyFailureException e) {
+                contadores.conflictos.increment();
+                if (intento >= maxIntentos) {
+                    contadores.agotados.increment();
+                    throw new RuntimeException("Otro cambio se cruzó con el tuyo. Intenta nuevamente.", e);
+                }
+                contadores.reintentos.increment();
+                esperar(intento);
+            }
+        }
+    }
+
+    /**
+     * Métricas por operación: { "carrito.agregar": { ejecuciones, conflictos, reintentos, agotados }, ... }
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new TreeMap<>();
+        porOperacion.forEach((operacion, c) -> {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("ejecuciones", c.ejecuciones.sum());
+            fila.put("conflictos", c.conflictos.sum());
+            fila.put("reintentos", c.reintentos.sum());
+            fila.put("agotados", c.agotados.sum());
+            stats.put(operacion, fila);
+        });
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    private void esperar(int intento) {
+        long tope = Math.min(esperaMaximaMs, esperaBaseMs << Math.min(intento - 1, 20));
+        long espera = ThreadLocalRandom.current().nextLong(tope + 1);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Operación interrumpida", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.levels.backend.service;
+
+/**
+ * EVENTO: NUEVA RESEÑA
+ * ----------------------------------------------------
+ * Lo publica ResenaService al guardar una reseña, para que las facetas del catálogo
+ * recalculen la calificación promedio del producto sin volver a consultar la BD.
+ * @param productoId Producto reseñado.
+ * @param calificacion Estrellas (1 a 5).
+ */
+public record ResenaCreadaEvento(Long productoId, int calificacion) {}
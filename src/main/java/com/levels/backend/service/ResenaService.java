@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.levels.backend.model.Producto;
@@ -29,6 +30,8 @@ public class ResenaService {
     private UsuarioRepository usuarioRepository;
     @Autowired
     private ProductoRepository productoRepository;
+    @Autowired
+    private ApplicationEventPublisher eventos; // Avisa a las facetas del catálogo (calificación promedio)
 
     /**
      * 1. AGREGAR UNA RESEÑA
@@ -64,7 +67,9 @@ public class ResenaService {
         resena.setFecha(LocalDateTime.now()); 
 
         // 4. Persistencia en la Base de Datos
-        return resenaRepository.save(resena);
+        Resena guardada = resenaRepository.save(resena);
+        eventos.publishEvent(new ResenaCreadaEvento(productoId, estrellas));
+        return guardada;
     }
 
     /**
@@ -0,0 +1,379 @@
+package com.levels.backend.service;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.levels.backend.model.ReservaStock;
+import com.levels.backend.repository.ReservaStockRepository;
+
+/**
+ * LIBRO DE RESERVAS DE STOCK (con vencimiento)
+ * ----------------------------------------------------
+ * Al agregar al carrito, las unidades quedan "apartadas" por un tiempo (TTL). Así, en los
+ * lanzamientos con mucha demanda, el cliente se entera de que no hay stock al agregar,
+ * y no recién al pagar.
+ * * Memoria: el libro está dividido en fragmentos por id de producto, cada uno con su
+ * propio lock. Las reservas de productos distintos casi nunca compiten entre sí.
+ * * Disponible = stock de la foto del catálogo - unidades reservadas (sin ir a la BD).
+ * * Persistencia: cada cambio se escribe en 'reserva_stock' y se recarga al arrancar.
+ * Si esa escritura falla, la memoria vuelve a como estaba (no quedan reservas solo en memoria).
+ * * Barrido: una tarea periódica libera por lotes las reservas vencidas.
+ */
+@Component
+public class ReservasStock {
+
+    // Potencia de 2: el fragmento se elige con una máscara de bits
+    private static final int FRAGMENTOS = 32;
+
+    @Autowired
+    private ReservaStockRepository reservaRepository;
+
+    @Value("${levelup.reservas.ttl-segundos:900}")
+    private long ttlSegundos;
+
+    @Value("${levelup.reservas.lote-barrido:500}")
+    private int loteBarrido;
+
+    private final Fragmento[] fragmentos = new Fragmento[FRAGMENTOS];
+
+    // Métricas
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder vencidas = new LongAdder();
+    private final LongAdder confirmadas = new LongAdder();
+    private volatile long ultimoBarridoMs;
+
+    private record Reserva(int cantidad, long expiraEn) {}
+
+    private record Vencimiento(long expiraEn, Long productoId, Long usuarioId) {}
+
+    /**
+     * Un fragmento del libro. Los mapas solo se modifican con el lock del fragmento;
+     * 'totales' además se puede leer sin lock.
+     */
+    private static final class Fragmento {
+        // productoId -> (usuarioId -> reserva)
+        final Map<Long, Map<Long, Reserva>> porProducto = new HashMap<>();
+        // productoId -> unidades reservadas (suma de las reservas del producto)
+        final Map<Long, Integer> totales = new ConcurrentHashMap<>();
+        // Reservas por orden de vencimiento. Al renovar o liberar, la entrada vieja queda
+        // obsoleta y se descarta cuando el barrido la encuentra.
+        final PriorityQueue<Vencimiento> vencimientos = new PriorityQueue<>(Comparator.comparingLong(Vencimiento::expiraEn));
+    }
+
+    public ReservasStock() {
+        for (int i = 0; i < FRAGMENTOS; i++) {
+            fragmentos[i] = new Fragmento();
+        }
+    }
+
+    /**
+     * 1. RESERVAR (o ajustar) las unidades de un producto para el carrito de un usuario.
+     * @param cantidad Total de ese producto en el carrito (reemplaza la reserva anterior).
+     * @param stock Stock actual del producto.
+     * @throws RuntimeException si lo que dejan libre las reservas de otros no alcanza.
+     */
+    public void reservar(Long usuarioId, Long productoId, int cantidad, int stock) {
+        apartar(usuarioId, productoId, cantidad, stock, true);
+    }
+
+    /**
+     * 1.B RESTAURAR la reserva que el usuario tenía antes de un cambio de carrito que falló.
+     * No se vuelve a validar contra el stock: son unidades que ya eran suyas.
+     * @param cantidad Cantidad anterior (0 = no tenía reserva).
+     */
+    public void restaurar(Long usuarioId, Long productoId, int cantidad) {
+        if (cantidad <= 0) {
+            liberar(usuarioId, productoId);
+        } else {
+            apartar(usuarioId, productoId, cantidad, 0, false);
+        }
+    }
+
+    /**
+     * 2. LIBERAR la reserva de un usuario (producto quitado del carrito).
+     */
+    public void liberar(Long usuarioId, Long productoId) {
+        Fragmento f = fragmento(productoId);
+        Reserva anterior;
+        synchronized (f) {
+            anterior = quitar(f, productoId, usuarioId);
+        }
+        try {
+            reservaRepository.eliminar(usuarioId, List.of(productoId));
+        } catch (RuntimeException e) {
+            synchronized (f) {
+                deshacer(f, productoId, usuarioId, null, anterior);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 3. CHECKOUT: ¿puede este usuario comprar 'cantidad' unidades con el stock (ya bloqueado) dado?
+     * Si tiene una reserva vigente que la cubre, basta con que haya stock; si no, solo cuenta
+     * lo que dejan libre las reservas de los demás.
+     */
+    public boolean puedeComprar(Long usuarioId, Long productoId, int cantidad, int stock) {
+        Fragmento f = fragmento(productoId);
+        synchronized (f) {
+            Map<Long, Reserva> reservas = f.porProducto.get(productoId);
+            Reserva propia = reservas != null ? reservas.get(usuarioId) : null;
+            if (propia != null && propia.cantidad() >= cantidad && propia.expiraEn() > System.currentTimeMillis()) {
+                return stock >= cantidad;
+            }
+            return stock - reservadoPorOtros(f, productoId, usuarioId) >= cantidad;
+        }
+    }
+
+    /**
+     * 4. CHECKOUT: las reservas se convierten en descuento de stock.
+     * Se borran de la BD dentro de la transacción del checkout y de memoria recién tras el commit
+     * (si la compra falla, el cliente conserva sus reservas).
+     */
+    public void confirmar(Long usuarioId, Collection<Long> productoIds) {
+        reservaRepository.eliminar(usuarioId, productoIds);
+        Runnable quitarDeMemoria = () -> {
+            for (Long productoId : productoIds) {
+                Fragmento f = fragmento(productoId);
+                synchronized (f) {
+                    quitar(f, productoId, usuarioId);
+                }
+            }
+            confirmadas.increment();
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    quitarDeMemoria.run();
+                }
+            });
+        } else {
+            quitarDeMemoria.run();
+        }
+    }
+
+    /**
+     * 5. UNIDADES RESERVADAS de un producto (sin locks ni BD).
+     */
+    public int reservado(Long productoId) {
+        return fragmento(productoId).totales.getOrDefault(productoId, 0);
+    }
+
+    /**
+     * 6. DISPONIBLE PARA LOS CLIENTES = stock - reservas (nunca negativo).
+     * Se llama con el stock de la foto del catálogo (o el del inventario caliente): no consulta la BD.
+     */
+    public int disponible(Long productoId, int stock) {
+        return Math.max(0, stock - reservado(productoId));
+    }
+
+    /**
+     * 7. BARRIDO PERIÓDICO: libera las reservas vencidas, por lotes.
+     * Cada lote toma el lock del fragmento por poco tiempo; en la BD se borra con DELETE ... LIMIT.
+     */
+    @Scheduled(fixedDelayString = "${levelup.reservas.barrido-ms:15000}")
+    public void liberarVencidas() {
+        long ahora = System.currentTimeMillis();
+        for (Fragmento f : fragmentos) {
+            boolean quedan = true;
+            while (quedan) {
+                synchronized (f) {
+                    quedan = barrerLote(f, ahora);
+                }
+            }
+        }
+        Date limite = new Date(ahora);
+        while (reservaRepository.eliminarVencidas(limite, loteBarrido) == loteBarrido) {
+            // Siguiente lote
+        }
+        ultimoBarridoMs = System.currentTimeMillis() - ahora;
+    }
+
+    /**
+     * 8. CARGA al arrancar: descarta las vencidas y recarga las vigentes desde la BD.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        Date ahora = new Date();
+        while (reservaRepository.eliminarVencidas(ahora, loteBarrido) == loteBarrido) {
+            // Siguiente lote
+        }
+        for (Fragmento f : fragmentos) {
+            synchronized (f) {
+                f.porProducto.clear();
+                f.totales.clear();
+                f.vencimientos.clear();
+            }
+        }
+        for (ReservaStock r : reservaRepository.findByExpiraEnAfter(ahora)) {
+            Fragmento f = fragmento(r.getProductoId());
+            long expiraEn = r.getExpiraEn().getTime();
+            synchronized (f) {
+                f.porProducto.computeIfAbsent(r.getProductoId(), k -> new HashMap<>())
+                        .put(r.getUsuarioId(), new Reserva(r.getCantidad(), expiraEn));
+                f.totales.merge(r.getProductoId(), r.getCantidad(), Integer::sum);
+                f.vencimientos.add(new Vencimiento(expiraEn, r.getProductoId(), r.getUsuarioId()));
+            }
+        }
+    }
+
+    /**
+     * 9. PRODUCTOS BORRADOS: sus reservas desaparecen de memoria tras el commit
+     * (las filas ya se borraron en la misma transacción que el producto).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarCatalogo(CatalogoEvento evento) {
+        if (evento.tipo() != CatalogoEvento.Tipo.PRODUCTOS_ELIMINADOS) return;
+        for (Long productoId : evento.productoIds()) {
+            Fragmento f = fragmento(productoId);
+            synchronized (f) {
+                f.porProducto.remove(productoId);
+                f.totales.remove(productoId);
+            }
+        }
+    }
+
+    /**
+     * Métricas: reservas vivas, unidades apartadas y actividad del barrido.
+     */
+    public Map<String, Object> estadisticas() {
+        int activas = 0;
+        long unidades = 0;
+        for (Fragmento f : fragmentos) {
+            synchronized (f) {
+                for (Map<Long, Reserva> reservas : f.porProducto.values()) {
+                    activas += reservas.size();
+                }
+                for (int total : f.totales.values()) {
+                    unidades += total;
+                }
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reservasActivas", activas);
+        stats.put("unidadesReservadas", unidades);
+        stats.put("rechazadas", rechazadas.sum());
+        stats.put("confirmadasEnCheckout", confirmadas.sum());
+        stats.put("liberadasPorVencimiento", vencidas.sum());
+        stats.put("ttlSegundos", ttlSegundos);
+        stats.put("ultimoBarridoMs", ultimoBarridoMs);
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    /**
+     * Reserva en memoria (donde se decide si alcanza) y después escribe la fila.
+     * Si la escritura falla, se vuelve a la reserva anterior y se relanza el error.
+     */
+    private void apartar(Long usuarioId, Long productoId, int cantidad, int stock, boolean validar) {
+        long expiraEn = System.currentTimeMillis() + ttlSegundos * 1000;
+        Reserva nueva = new Reserva(cantidad, expiraEn);
+        Reserva anterior;
+        Fragmento f = fragmento(productoId);
+        synchronized (f) {
+            int deOtros = reservadoPorOtros(f, productoId, usuarioId);
+            if (validar && stock - deOtros < cantidad) {
+                rechazadas.increment();
+                throw new RuntimeException("No hay suficiente stock. Disponible: " + Math.max(0, stock - deOtros));
+            }
+            anterior = f.porProducto.computeIfAbsent(productoId, k -> new HashMap<>()).put(usuarioId, nueva);
+            f.totales.put(productoId, deOtros + cantidad);
+            f.vencimientos.add(new Vencimiento(expiraEn, productoId, usuarioId));
+        }
+        try {
+            reservaRepository.guardar(usuarioId, productoId, cantidad, new Date(expiraEn));
+        } catch (RuntimeException e) {
+            synchronized (f) {
+                deshacer(f, productoId, usuarioId, nueva, anterior);
+            }
+            throw e;
+        }
+    }
+
+    // (Desde aquí, siempre con el lock del fragmento tomado)
+
+    private Fragmento fragmento(Long productoId) {
+        return fragmentos[Long.hashCode(productoId) & (FRAGMENTOS - 1)];
+    }
+
+    private int reservadoPorOtros(Fragmento f, Long productoId, Long usuarioId) {
+        Map<Long, Reserva> reservas = f.porProducto.get(productoId);
+        Reserva propia = reservas != null ? reservas.get(usuarioId) : null;
+        return f.totales.getOrDefault(productoId, 0) - (propia != null ? propia.cantidad() : 0);
+    }
+
+    /**
+     * @return La reserva quitada (null si no tenía).
+     */
+    private Reserva quitar(Fragmento f, Long productoId, Long usuarioId) {
+        Map<Long, Reserva> reservas = f.porProducto.get(productoId);
+        Reserva reserva = reservas != null ? reservas.remove(usuarioId) : null;
+        if (reserva == null) return null;
+        if (reservas.isEmpty()) {
+            f.porProducto.remove(productoId);
+            f.totales.remove(productoId);
+        } else {
+            f.totales.merge(productoId, -reserva.cantidad(), Integer::sum);
+        }
+        return reserva;
+    }
+
+    /**
+     * Vuelve de 'actual' (null = sin reserva) a 'anterior', salvo que la reserva ya haya
+     * cambiado otra vez entretanto (esa escritura más nueva manda).
+     */
+    private void deshacer(Fragmento f, Long productoId, Long usuarioId, Reserva actual, Reserva anterior) {
+        Map<Long, Reserva> reservas = f.porProducto.get(productoId);
+        if ((reservas != null ? reservas.get(usuarioId) : null) != actual) return;
+        if (anterior == null) {
+            quitar(f, productoId, usuarioId);
+            return;
+        }
+        f.porProducto.computeIfAbsent(productoId, k -> new HashMap<>()).put(usuarioId, anterior);
+        f.totales.merge(productoId, anterior.cantidad() - (actual != null ? actual.cantidad() : 0), Integer::sum);
+        // Su entrada en 'vencimientos' pudo descartarse como obsoleta: se agrega de nuevo
+        f.vencimientos.add(new Vencimiento(anterior.expiraEn(), productoId, usuarioId));
+    }
+
+    /**
+     * Libera hasta 'loteBarrido' reservas vencidas del fragmento.
+     * @return true si llenó el lote (puede que queden más).
+     */
+    private boolean barrerLote(Fragmento f, long ahora) {
+        int liberadas = 0;
+        while (liberadas < loteBarrido) {
+            Vencimiento v = f.vencimientos.peek();
+            if (v == null || v.expiraEn() > ahora) break;
+            f.vencimientos.poll();
+            Map<Long, Reserva> reservas = f.porProducto.get(v.productoId());
+            Reserva actual = reservas != null ? reservas.get(v.usuarioId()) : null;
+            // Si la reserva se renovó o ya se liberó, esta entrada es obsoleta
+            if (actual != null && actual.expiraEn() == v.expiraEn()) {
+                quitar(f, v.productoId(), v.usuarioId());
+                liberadas++;
+            }
+        }
+        vencidas.add(liberadas);
+        return liberadas == loteBarrido;
+    }
+}
@@ -0,0 +1,290 @@
+package com.levels.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.levels.backend.model.RespuestaIdempotente;
+import com.levels.backend.repository.RespuestaIdempotenteRepository;
+
+/**
+ * RESPUESTAS IDEMPOTENTES (cabecera Idempotency-Key)
+ * ----------------------------------------------------
+ * Las apps móviles reintentan el checkout y el "agregar al carrito" cuando se les corta la
+ * conexión. Con una 'Idempotency-Key', el reintento recibe la MISMA respuesta sin volver a
+ * ejecutar nada (ni una segunda orden, ni el doble de unidades).
+ * * Memoria: clave -> respuesta futura. Un duplicado que llega mientras la primera sigue
+ * ejecutándose espera su resultado en vez de competir con ella. Tamaño acotado y con vencimiento.
+ * * BD (respuesta_idempotente): respaldo para reinicios y otras instancias. La clave única
+ * hace de candado: si otra instancia la está ejecutando, se responde 409 (reintentar luego).
+ * * Solo se guardan las respuestas 2xx: un error (sin stock, conflicto) se puede reintentar.
+ * * La misma clave con otro cuerpo de petición se rechaza con 422.
+ */
+@Component
+public class RespuestasIdempotentes {
+
+    public static final String CABECERA = "Idempotency-Key";
+    public static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+
+    private static final int LARGO_MAXIMO_CLAVE = 200;
+
+    @Autowired
+    private RespuestaIdempotenteRepository respuestaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${levelup.idempotencia.ttl-horas:24}")
+    private long ttlHoras;
+
+    @Value("${levelup.idempotencia.max-entradas:10000}")
+    private int maxEntradas;
+
+    @Value("${levelup.idempotencia.espera-maxima-ms:30000}")
+    private long esperaMaximaMs;
+
+    @Value("${levelup.idempotencia.en-curso-maximo-segundos:120}")
+    private long enCursoMaximoSegundos;
+
+    @Value("${levelup.idempotencia.lote-barrido:500}")
+    private int loteBarrido;
+
+    private record Respuesta(int status, String cuerpo) {}
+
+    private record Entrada(String huella, long expiraEn, CompletableFuture<Respuesta> respuesta) {}
+
+    // clave -> entrada (orden de llegada: al superar 'maxEntradas' se descarta la más antigua).
+    // Protegido por synchronized (entradas); nunca se espera ni se va a la BD con el lock tomado.
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>();
+
+    // Métricas
+    private final LongAdder ejecutadas = new LongAdder();
+    private final LongAdder repetidasDesdeMemoria = new LongAdder();
+    private final LongAdder repetidasDesdeBd = new LongAdder();
+    private final LongAdder esperaronALaPrimera = new LongAdder();
+    private final LongAdder enCursoEnOtraInstancia = new LongAdder();
+    private final LongAdder huellaDistinta = new LongAdder();
+
+    /**
+     * 1. EJECUTAR una petición con Idempotency-Key (o directo si no trae clave).
+     * @param clave Valor de la cabecera (null = sin idempotencia).
+     * @param operacion Ámbito de la clave (ej: "orden.checkout"); la misma clave en otra operación no choca.
+     * @param peticion Cuerpo de la petición (para detectar una clave reutilizada con otros datos).
+     * @param accion Lo que hace el endpoint; solo se ejecuta la primera vez.
+     */
+    public ResponseEntity<?> ejecutar(String clave, String operacion, Object peticion, Supplier<ResponseEntity<?>> accion) {
+        if (clave == null || clave.isBlank()) return accion.get();
+        if (clave.length() > LARGO_MAXIMO_CLAVE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "La Idempotency-Key no puede superar " + LARGO_MAXIMO_CLAVE + " caracteres."));
+        }
+        String id = operacion + ":" + clave;
+        String huella = huella(peticion);
+        long ahora = System.currentTimeMillis();
+
+        // A. ¿Ya la vimos en esta instancia? (terminada o en curso)
+        Entrada propia = new Entrada(huella, ahora + TimeUnit.HOURS.toMillis(ttlHoras), new CompletableFuture<>());
+        Entrada existente;
+        synchronized (entradas) {
+            existente = entradas.get(id);
+            if (existente != null && existente.expiraEn() <= ahora) {
+                entradas.remove(id);
+                existente = null;
+            }
+            if (existente == null) {
+                entradas.put(id, propia);
+                if (entradas.size() > maxEntradas) {
+                    Iterator<String> masAntigua = entradas.keySet().iterator();
+                    masAntigua.next();
+                    masAntigua.remove();
+                }
+            }
+        }
+        if (existente != null) return repetir(existente, huella);
+
+        // B. Primera vez aquí: se reclama en la BD (otra instancia o un reinicio pudieron verla antes)
+        try {
+            Date expiraEn = new Date(propia.expiraEn());
+            boolean reclamada = respuestaRepository.reclamar(id, huella, new Date(ahora), expiraEn) == 1
+                    || respuestaRepository.tomar(id, huella, new Date(ahora), expiraEn,
+                            new Date(ahora - TimeUnit.SECONDS.toMillis(enCursoMaximoSegundos))) == 1;
+            if (!reclamada) {
+                return desdeBd(id, huella, propia);
+            }
+
+            // C. Se ejecuta UNA vez
+            ResponseEntity<?> original = accion.get();
+            ejecutadas.increment();
+            Respuesta respuesta = new Respuesta(original.getStatusCode().value(), aJson(original.getBody()));
+            if (original.getStatusCode().is2xxSuccessful()) {
+                respuestaRepository.completar(id, respuesta.status(), respuesta.cuerpo());
+                propia.respuesta().complete(respuesta);
+            } else {
+                soltar(id, propia);
+                propia.respuesta().complete(respuesta); // Los duplicados que esperaban reciben el mismo error
+            }
+            return original;
+        } catch (RuntimeException e) {
+            soltar(id, propia);
+            propia.respuesta().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 2. BARRIDO PERIÓDICO: claves vencidas fuera de memoria y de la BD (por lotes).
+     */
+    @Scheduled(fixedDelayString = "${levelup.idempotencia.barrido-ms:600000}")
+    public void eliminarVencidas() {
+        long ahora = System.currentTimeMillis();
+        synchronized (entradas) {
+            entradas.values().removeIf(e -> e.expiraEn() <= ahora && e.respuesta().isDone());
+        }
+        Date limite = new Date(ahora);
+        while (respuestaRepository.eliminarVencidas(limite, loteBarrido) == loteBarrido) {
+            // Siguiente lote
+        }
+    }
+
+    /**
+     * 3. Vacía la memoria, tal como quedaría tras un reinicio (las claves siguen en la BD).
+     * Uso: pruebas y soporte.
+     */
+    public void descartarMemoria() {
+        synchronized (entradas) {
+            entradas.clear();
+        }
+    }
+
+    /**
+     * Métricas: cuántas peticiones se ejecutaron y cuántos duplicados se ahorraron (y de dónde).
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entradas) {
+            stats.put("enMemoria", entradas.size());
+        }
+        stats.put("ejecutadas", ejecutadas.sum());
+        stats.put("repetidasDesdeMemoria", repetidasDesdeMemoria.sum());
+        stats.put("repetidasDesdeBd", repetidasDesdeBd.sum());
+        stats.put("esperaronALaPrimera", esperaronALaPrimera.sum());
+        stats.put("enCursoEnOtraInstancia", enCursoEnOtraInstancia.sum());
+        stats.put("huellaDistinta", huellaDistinta.sum());
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    /**
+     * Duplicado visto en esta instancia: si la primera sigue en curso, se espera su resultado.
+     */
+    private ResponseEntity<?> repetir(Entrada existente, String huella) {
+        if (!existente.huella().equals(huella)) return otraPeticion();
+        if (!existente.respuesta().isDone()) esperaronALaPrimera.increment();
+        try {
+            Respuesta respuesta = existente.respuesta().get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+            repetidasDesdeMemoria.increment();
+            return comoRespuesta(respuesta);
+        } catch (TimeoutException e) {
+            return enCurso();
+        } catch (ExecutionException e) {
+            // La primera falló con una excepción: este duplicado la recibe igual
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return enCurso();
+        }
+    }
+
+    /**
+     * La clave ya estaba en la BD (otra instancia o antes de un reinicio).
+     */
+    private ResponseEntity<?> desdeBd(String id, String huella, Entrada propia) {
+        RespuestaIdempotente guardada = respuestaRepository.findByClave(id);
+        if (guardada == null || !RespuestaIdempotente.COMPLETA.equals(guardada.getEstado())) {
+            // En curso en otra instancia (o se acaba de soltar): el cliente reintenta en un momento
+            enCursoEnOtraInstancia.increment();
+            quitarDeMemoria(id, propia);
+            propia.respuesta().complete(null);
+            return enCurso();
+        }
+        if (!huella.equals(guardada.getHuella())) {
+            quitarDeMemoria(id, propia);
+            propia.respuesta().complete(null);
+            return otraPeticion();
+        }
+        Respuesta respuesta = new Respuesta(guardada.getStatus(), guardada.getCuerpo());
+        propia.respuesta().complete(respuesta); // Desde ahora se responde desde memoria
+        repetidasDesdeBd.increment();
+        return comoRespuesta(respuesta);
+    }
+
+    private void soltar(String id, Entrada propia) {
+        quitarDeMemoria(id, propia);
+        respuestaRepository.soltar(id);
+    }
+
+    private void quitarDeMemoria(String id, Entrada propia) {
+        synchronized (entradas) {
+            entradas.remove(id, propia);
+        }
+    }
+
+    private ResponseEntity<?> comoRespuesta(Respuesta respuesta) {
+        if (respuesta == null) return enCurso();
+        return ResponseEntity.status(respuesta.status())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(CABECERA_REPETIDA, "true")
+                .body(respuesta.cuerpo());
+    }
+
+    private ResponseEntity<?> enCurso() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "Tu solicitud anterior con esta Idempotency-Key aún se está procesando."));
+    }
+
+    private ResponseEntity<?> otraPeticion() {
+        huellaDistinta.increment();
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of("error", "La Idempotency-Key ya se usó con otros datos."));
+    }
+
+    private String aJson(Object cuerpo) {
+        try {
+            return objectMapper.writeValueAsString(cuerpo);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("No se pudo guardar la respuesta: " + e.getOriginalMessage());
+        }
+    }
+
+    private String huella(Object peticion) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(aJson(peticion).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.levels.backend.service;
+
+import java.util.Map;
+
+import com.levels.backend.dto.EstadoStock;
+
+/**
+ * EVENTO: CAMBIO DE STOCK POR VENTAS
+ * ----------------------------------------------------
+ * Lo publican el checkout (OrdenService) y el volcado del inventario caliente con el stock y la
+ * versión en que quedó cada producto. Es más liviano que un CatalogoEvento: la foto del
+ * catálogo y las facetas se actualizan en su lugar, sin releer productos ni cambiar de versión.
+ * * Igual que CatalogoEvento, los oyentes reaccionan DESPUÉS del commit.
+ * @param estados Estado final por id de producto.
+ */
+public record StockActualizadoEvento(Map<Long, EstadoStock> estados) {}
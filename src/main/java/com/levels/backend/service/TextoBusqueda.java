@@ -0,0 +1,61 @@
+package com.levels.backend.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * UTILIDAD: NORMALIZACIÓN DE TEXTO PARA BÚSQUEDAS
+ * ----------------------------------------------------
+ * Prepara textos en español para indexarlos y compararlos:
+ * 1. Minúsculas.
+ * 2. Sin tildes ni diéresis ("Fútbol" -> "futbol", "pingüino" -> "pinguino").
+ * 3. Separación en palabras (tokens) descartando palabras vacías ("de", "la", "para"...).
+ */
+public final class TextoBusqueda {
+
+    // Marcas diacríticas que quedan separadas tras la descomposición NFD (á = a + ´)
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+
+    // Palabras demasiado comunes en español: no ayudan a distinguir productos
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "con", "de", "del", "el", "en", "es", "la", "las", "lo", "los",
+            "o", "para", "por", "se", "sin", "su", "un", "una", "y");
+
+    private TextoBusqueda() {}
+
+    /**
+     * Minúsculas y sin tildes. No separa en palabras.
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        return DIACRITICOS.matcher(descompuesto).replaceAll("").toLowerCase();
+    }
+
+    /**
+     * Separa el texto normalizado en palabras (letras y dígitos), sin palabras vacías.
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        String normalizado = normalizar(texto);
+        int inicio = -1;
+        for (int i = 0; i <= normalizado.length(); i++) {
+            boolean esLetra = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+            if (esLetra && inicio < 0) {
+                inicio = i;
+            } else if (!esLetra && inicio >= 0) {
+                String token = normalizado.substring(inicio, i);
+                if (!PALABRAS_VACIAS.contains(token)) {
+                    tokens.add(token);
+                }
+                inicio = -1;
+            }
+        }
+        return tokens;
+    }
+}
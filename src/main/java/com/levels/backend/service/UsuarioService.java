@@ -9,6 +9,10 @@ import org.springframework.stereotype.Service;
 
 import com.levels.backend.model.Usuario;
 import com.levels.backend.repository.UsuarioRepository;
+import com.levels.backend.security.CustomUserDetailsService;
+import com.levels.backend.security.RegistroVersionesSeguridad;
+
+import jakarta.transaction.Transactional;
 
 /**
  * SERVICIO: GESTIÓN DE USUARIOS
@@ -24,6 +28,14 @@ public class UsuarioService {
     @Autowired
     private UsuarioRepository usuarioRepository;
 
+    // Tabla de versiones para revocar Tokens JWT emitidos antes de un cambio de credenciales
+    @Autowired
+    private RegistroVersionesSeguridad registroVersiones;
+
+    // Caché de UserDetails: se invalida cada vez que escribimos un usuario
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
     /**
      * MÉTODO PRINCIPAL: REGISTRAR USUARIO
      * ----------------------------------------------------
@@ -77,7 +89,9 @@ public class UsuarioService {
             usuario.setRol("CLIENTE"); 
         }
 
-        return usuarioRepository.save(usuario);
+        Usuario guardado = usuarioRepository.save(usuario);
+        userDetailsService.invalidar(guardado.getEmail()); // Por si había una búsqueda previa en caché
+        return guardado;
     }
 
     /**
@@ -111,7 +125,9 @@ public class UsuarioService {
     /**
      * MÉTODO: ACTUALIZAR PERFIL
      * Aplica los cambios enviados por el usuario, actualizando solo los campos necesarios.
+     * Transaccional: la nueva versión de seguridad solo se publica si el guardado hace commit.
      */
+    @Transactional
     public Usuario actualizarPerfil(Long id, Usuario datosNuevos) {
         // 1. Buscamos la versión original del usuario
         Usuario usuarioActual = usuarioRepository.findById(id)
@@ -121,9 +137,13 @@ public class UsuarioService {
         if (datosNuevos.getNombre() != null) {
             usuarioActual.setNombre(datosNuevos.getNombre());
         }
+        boolean cambiaPassword = false;
         if (datosNuevos.getPassword() != null && !datosNuevos.getPassword().isEmpty()) {
             // En un app real, aquí se hashearía la nueva contraseña: usuarioActual.setPassword(hashear(nueva));
-            usuarioActual.setPassword(datosNuevos.getPassword());
+            if (!datosNuevos.getPassword().equals(usuarioActual.getPassword())) {
+                usuarioActual.setPassword(datosNuevos.getPassword());
+                cambiaPassword = true;
+            }
         }
 
         // 3. Re-validación de Edad si cambia la fecha
@@ -135,7 +155,15 @@ public class UsuarioService {
             usuarioActual.setFechaNacimiento(datosNuevos.getFechaNacimiento());
         }
 
-        // 4. Guardamos los cambios
-        return usuarioRepository.save(usuarioActual);
+        // Seguridad: Los tokens emitidos con la contraseña anterior dejan de ser válidos
+        // (después de validar todo; la tabla en memoria se actualiza al hacer commit)
+        if (cambiaPassword) {
+            registroVersiones.incrementar(usuarioActual);
+        }
+
+        // 4. Guardamos los cambios e invalidamos la caché de seguridad (la contraseña pudo cambiar)
+        Usuario guardado = usuarioRepository.save(usuarioActual);
+        userDetailsService.invalidar(guardado.getEmail());
+        return guardado;
     }
 }
\ No newline at end of file
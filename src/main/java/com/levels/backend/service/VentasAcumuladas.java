@@ -0,0 +1,354 @@
+package com.levels.backend.service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.VentaDiaria;
+import com.levels.backend.model.VentaRegion;
+import com.levels.backend.repository.OrdenExportJdbcRepository;
+import com.levels.backend.repository.VentaDiariaRepository;
+import com.levels.backend.repository.VentaRegionRepository;
+
+/**
+ * VENTAS ACUMULADAS (Dashboard: GET /api/ordenes/stats)
+ * ----------------------------------------------------
+ * SUM(total) y COUNT(*) sobre 'ordenes' recorren la tabla entera en cada refresco del
+ * dashboard. En vez de eso, cada checkout suma su orden a dos tablas pequeñas:
+ * * venta_diaria (una fila por día) y venta_region (una fila por región), en la MISMA
+ * transacción que la orden: si la compra se revierte, el acumulado también.
+ * * En memoria: los totales generales (base leída de las tablas + LongAdder con lo vendido
+ * desde entonces). /stats responde sin ir a la BD.
+ * * Refresco consistente: cada checkout toma el lock 'confirmaciones' (compartido) desde su
+ * UPSERT hasta sumar en memoria, después del commit; el refresco lo toma exclusivo para leer
+ * las tablas. Así toda orden confirmada está a la vez en la lectura y en la memoria, o en
+ * ninguna de las dos: nunca se cuenta dos veces ni se pierde.
+ * * Conciliación (diaria, o a pedido del Admin): recalcula los acumulados desde 'ordenes',
+ * informa las diferencias y las corrige.
+ * Los montos se guardan en centavos (long) para que las sumas sean exactas.
+ */
+@Component
+public class VentasAcumuladas {
+
+    private static final int MAX_DIFERENCIAS_INFORMADAS = 50;
+
+    @Autowired
+    private VentaDiariaRepository ventaDiariaRepository;
+
+    @Autowired
+    private VentaRegionRepository ventaRegionRepository;
+
+    @Autowired
+    private OrdenExportJdbcRepository ordenJdbcRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Totales leídos de las tablas en un refresco, más las órdenes confirmadas en esta instancia
+     * desde entonces. Cada refresco publica uno nuevo: la base y lo sumado se leen siempre juntos.
+     */
+    private record Totales(long ordenes, long centavos, LongAdder ordenesNuevas, LongAdder centavosNuevos) {
+        Totales(long ordenes, long centavos) {
+            this(ordenes, centavos, new LongAdder(), new LongAdder());
+        }
+    }
+
+    private volatile Totales totales = new Totales(0, 0);
+
+    // Compartido: un checkout entre su UPSERT y la suma en memoria. Exclusivo: el refresco.
+    private final ReentrantReadWriteLock confirmaciones = new ReentrantReadWriteLock();
+
+    // Último informe de conciliación (null = aún no se ejecuta)
+    private volatile Map<String, Object> ultimaConciliacion;
+
+    // Métricas
+    private final LongAdder ordenesRegistradas = new LongAdder();
+    private final LongAdder refrescos = new LongAdder();
+    private final LongAdder conciliaciones = new LongAdder();
+    private final LongAdder correcciones = new LongAdder();
+
+    /**
+     * 1. REGISTRAR una orden nueva. Se llama DENTRO de la transacción del checkout.
+     * Los UPSERT bloquean la fila del día y la de la región hasta el commit: por eso el checkout
+     * los ejecuta al final, cuando ya no le queda trabajo por hacer.
+     */
+    public void registrar(Orden orden) {
+        long centavos = aCentavos(orden.getTotal());
+        confirmaciones.readLock().lock();
+        boolean liberarAhora = true;
+        try {
+            ventaDiariaRepository.sumar(diaDe(orden), 1, centavos);
+            ventaRegionRepository.sumar(regionDe(orden.getRegion()), 1, centavos);
+            ordenesRegistradas.increment();
+
+            // La memoria se actualiza solo si la orden se confirma (un rollback no suma).
+            // El lock se suelta al terminar la transacción, en el mismo hilo.
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        sumarEnMemoria(1, centavos);
+                    }
+
+                    @Override
+                    public void afterCompletion(int estado) {
+                        confirmaciones.readLock().unlock();
+                    }
+                });
+                liberarAhora = false;
+            } else {
+                sumarEnMemoria(1, centavos);
+            }
+        } finally {
+            if (liberarAhora) {
+                confirmaciones.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 2. TOTALES GENERALES (O(1), sin consultar la BD).
+     * Mismo formato que el endpoint original: { totalVentas, cantidadOrdenes }.
+     */
+    public Map<String, Object> totales() {
+        Totales actual = totales;
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("totalVentas", aMonto(actual.centavos() + actual.centavosNuevos().sum()));
+        resultado.put("cantidadOrdenes", actual.ordenes() + actual.ordenesNuevas().sum());
+        return resultado;
+    }
+
+    /**
+     * 3. VENTAS POR DÍA en un rango (ambos incluidos). Los días sin ventas no aparecen.
+     */
+    public List<Map<String, Object>> porDia(LocalDate desde, LocalDate hasta) {
+        List<Map<String, Object>> dias = new ArrayList<>();
+        for (VentaDiaria v : ventaDiariaRepository.findByDiaBetweenOrderByDiaAsc(desde, hasta)) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("dia", v.getDia());
+            fila.put("cantidadOrdenes", v.getCantidadOrdenes());
+            fila.put("totalVentas", aMonto(v.getTotalCentavos()));
+            dias.add(fila);
+        }
+        return dias;
+    }
+
+    /**
+     * 4. VENTAS POR REGIÓN, de mayor a menor monto.
+     */
+    public List<Map<String, Object>> porRegion() {
+        List<Map<String, Object>> regiones = new ArrayList<>();
+        for (VentaRegion v : ventaRegionRepository.findAllByOrderByTotalCentavosDesc()) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("region", v.getRegion());
+            fila.put("cantidadOrdenes", v.getCantidadOrdenes());
+            fila.put("totalVentas", aMonto(v.getTotalCentavos()));
+            regiones.add(fila);
+        }
+        return regiones;
+    }
+
+    /**
+     * 5. ARRANQUE: carga los totales. Si las tablas están vacías (primer despliegue con órdenes
+     * antiguas), la conciliación las llena.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        refrescar();
+        if (totales.ordenes() == 0) {
+            conciliar();
+        }
+    }
+
+    /**
+     * 6. REFRESCO PERIÓDICO: relee los totales de las tablas (un SUM sobre una fila por día).
+     * Con varias instancias, así cada una ve también lo vendido en las demás.
+     * Con el lock exclusivo ningún checkout de esta instancia está a medio confirmar: lo sumado
+     * en memoria es justo lo que la lectura ya incluye, y se parte de cero. Los checkouts que
+     * llegan mientras tanto esperan solo lo que dura la consulta.
+     * * La conexión se pide ANTES del lock: los checkouts que esperan el lock ya tienen la suya,
+     * y si llenaran el pool el refresco no podría consultar ni soltarlo.
+     */
+    @Scheduled(fixedDelayString = "${levelup.ventas.refresco-ms:60000}", initialDelayString = "${levelup.ventas.refresco-ms:60000}")
+    public synchronized void refrescar() {
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        transaccion.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        transaccion.setReadOnly(true);
+        transaccion.executeWithoutResult(tx -> {
+            confirmaciones.writeLock().lock();
+            try {
+                Object[] fila = ventaDiariaRepository.sumarTotales().get(0);
+                totales = new Totales(((Number) fila[0]).longValue(), ((Number) fila[1]).longValue());
+            } finally {
+                confirmaciones.writeLock().unlock();
+            }
+        });
+        refrescos.increment();
+    }
+
+    /**
+     * 7. CONCILIACIÓN: recalcula día por día y región por región desde 'ordenes' y corrige.
+     * * Una sola transacción REPEATABLE READ: las órdenes y los acumulados se leen de la misma
+     * foto de la BD, así un checkout que se confirma a mitad de camino no se cuenta como diferencia.
+     * * La corrección SUMA la diferencia (UPSERT con delta) en vez de sobrescribir: lo que otros
+     * checkouts sumaron después de la foto se conserva. Solo se escriben las filas que difieren.
+     * @return Informe: órdenes revisadas, filas corregidas y detalle de cada diferencia.
+     */
+    @Scheduled(cron = "${levelup.ventas.conciliacion-cron:0 30 4 * * *}")
+    public synchronized Map<String, Object> conciliar() {
+        long inicio = System.currentTimeMillis();
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        transaccion.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        Map<String, Object> informe = transaccion.execute(tx -> {
+            // A. Recalcular desde las órdenes (streaming: la memoria crece con los días, no con las órdenes)
+            Map<LocalDate, long[]> esperadoPorDia = new HashMap<>();
+            // Misma comparación que la clave de venta_region en MySQL (sin distinguir mayúsculas ni tildes):
+            // "Valparaíso" y "valparaiso" caen en la misma fila
+            Map<String, long[]> esperadoPorRegion = new TreeMap<>(Comparator.comparing(TextoBusqueda::normalizar));
+            long revisadas = ordenJdbcRepository.recorrerVentas(fila -> {
+                if (fila.fechaCreacion() == null) return;
+                long centavos = aCentavos(fila.total());
+                acumular(esperadoPorDia.computeIfAbsent(fila.fechaCreacion().toLocalDate(), d -> new long[2]), centavos);
+                acumular(esperadoPorRegion.computeIfAbsent(regionDe(fila.region()), r -> new long[2]), centavos);
+            });
+
+            // B. Comparar con los acumulados y corregir solo lo que difiere
+            List<Map<String, Object>> diferencias = new ArrayList<>();
+            long[] corregidas = new long[2]; // [días, regiones]
+            for (VentaDiaria v : ventaDiariaRepository.findAll()) {
+                long[] esperado = esperadoPorDia.remove(v.getDia());
+                if (corregir("dia", v.getDia(), esperado, v.getCantidadOrdenes(), v.getTotalCentavos(), diferencias)) {
+                    corregidas[0]++;
+                }
+            }
+            for (Map.Entry<LocalDate, long[]> faltante : esperadoPorDia.entrySet()) {
+                if (corregir("dia", faltante.getKey(), faltante.getValue(), 0, 0, diferencias)) corregidas[0]++;
+            }
+            for (VentaRegion v : ventaRegionRepository.findAll()) {
+                long[] esperado = esperadoPorRegion.remove(v.getRegion());
+                if (corregir("region", v.getRegion(), esperado, v.getCantidadOrdenes(), v.getTotalCentavos(), diferencias)) {
+                    corregidas[1]++;
+                }
+            }
+            for (Map.Entry<String, long[]> faltante : esperadoPorRegion.entrySet()) {
+                if (corregir("region", faltante.getKey(), faltante.getValue(), 0, 0, diferencias)) corregidas[1]++;
+            }
+
+            Map<String, Object> resultado = new LinkedHashMap<>();
+            resultado.put("fecha", new Date());
+            resultado.put("ordenesRevisadas", revisadas);
+            resultado.put("diasCorregidos", corregidas[0]);
+            resultado.put("regionesCorregidas", corregidas[1]);
+            resultado.put("diferencias", diferencias.size() > MAX_DIFERENCIAS_INFORMADAS
+                    ? new ArrayList<>(diferencias.subList(0, MAX_DIFERENCIAS_INFORMADAS)) : diferencias);
+            return resultado;
+        });
+
+        // Las correcciones ya están confirmadas: la memoria se relee de las tablas
+        refrescar();
+        informe.put("duracionMs", System.currentTimeMillis() - inicio);
+        conciliaciones.increment();
+        correcciones.add((long) informe.get("diasCorregidos") + (long) informe.get("regionesCorregidas"));
+        ultimaConciliacion = informe;
+        return informe;
+    }
+
+    /**
+     * 8. Último informe de conciliación (null si aún no se ejecuta ninguna).
+     */
+    public Map<String, Object> ultimaConciliacion() {
+        return ultimaConciliacion;
+    }
+
+    /**
+     * Métricas: órdenes sumadas, refrescos y resultado de las conciliaciones.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ordenesRegistradas", ordenesRegistradas.sum());
+        stats.put("ordenesDesdeUltimoRefresco", totales.ordenesNuevas().sum());
+        stats.put("refrescos", refrescos.sum());
+        stats.put("conciliaciones", conciliaciones.sum());
+        stats.put("filasCorregidas", correcciones.sum());
+        return stats;
+    }
+
+    // --- LÓGICA PRIVADA ---
+
+    private void sumarEnMemoria(long ordenes, long centavos) {
+        Totales actual = totales;
+        actual.ordenesNuevas().add(ordenes);
+        actual.centavosNuevos().add(centavos);
+    }
+
+    /**
+     * Si el acumulado no coincide con lo recalculado, suma la diferencia y la anota en el informe.
+     * @param esperado [órdenes, centavos] recalculados (null = ya no hay órdenes para esa fila).
+     */
+    private boolean corregir(String tipo, Object clave, long[] esperado, long ordenes, long centavos,
+                             List<Map<String, Object>> diferencias) {
+        long ordenesEsperadas = esperado != null ? esperado[0] : 0;
+        long centavosEsperados = esperado != null ? esperado[1] : 0;
+        long deltaOrdenes = ordenesEsperadas - ordenes;
+        long deltaCentavos = centavosEsperados - centavos;
+        if (deltaOrdenes == 0 && deltaCentavos == 0) return false;
+
+        if (clave instanceof LocalDate dia) {
+            ventaDiariaRepository.sumar(dia, deltaOrdenes, deltaCentavos);
+        } else {
+            ventaRegionRepository.sumar((String) clave, deltaOrdenes, deltaCentavos);
+        }
+        Map<String, Object> diferencia = new LinkedHashMap<>();
+        diferencia.put(tipo, clave);
+        diferencia.put("ordenesAcumuladas", ordenes);
+        diferencia.put("ordenesReales", ordenesEsperadas);
+        diferencia.put("totalAcumulado", aMonto(centavos));
+        diferencia.put("totalReal", aMonto(centavosEsperados));
+        diferencias.add(diferencia);
+        return true;
+    }
+
+    private static void acumular(long[] acumulado, long centavos) {
+        acumulado[0]++;
+        acumulado[1] += centavos;
+    }
+
+    private static LocalDate diaDe(Orden orden) {
+        return orden.getFechaCreacion().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static String regionDe(String region) {
+        return (region == null || region.isBlank()) ? VentaRegion.SIN_REGION : region.trim();
+    }
+
+    private static long aCentavos(Double monto) {
+        return monto != null ? Math.round(monto * 100) : 0;
+    }
+
+    private static double aMonto(long centavos) {
+        return centavos / 100.0;
+    }
+}
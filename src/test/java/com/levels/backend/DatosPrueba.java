@@ -0,0 +1,84 @@
+package com.levels.backend;
+
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.UsuarioRepository;
+import com.levels.backend.service.CategoriaService;
+import com.levels.backend.service.ProductoService;
+
+/**
+ * AUXILIAR DE PRUEBAS: DATOS DE EJEMPLO
+ * ----------------------------------------------------
+ * Crea clientes, categorías y productos ya guardados, con valores por defecto para todo
+ * lo que la prueba no indica. Las pruebas lo reciben con @Autowired.
+ * * Los productos y categorías se guardan por sus servicios: publican el evento del catálogo
+ * y entran a la foto en memoria y a los índices, igual que los que crea el Admin.
+ */
+@Component
+public class DatosPrueba {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private CategoriaService categoriaService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    /**
+     * Cliente con email '{nombre}@levelup.cl' y contraseña "clave".
+     */
+    public Usuario crearCliente(String nombre) {
+        return crearCliente(nombre, false);
+    }
+
+    /**
+     * Cliente, con o sin el descuento de estudiante Duoc.
+     */
+    public Usuario crearCliente(String nombre, boolean estudianteDuoc) {
+        Usuario u = new Usuario();
+        u.setNombre(nombre);
+        u.setEmail(nombre + "@levelup.cl");
+        u.setPassword("clave");
+        u.setRol("CLIENTE");
+        u.setFechaNacimiento(LocalDate.of(1995, 5, 5));
+        u.setEsEstudianteDuoc(estudianteDuoc);
+        return usuarioRepository.save(u);
+    }
+
+    public Categoria crearCategoria(String nombre) {
+        Categoria c = new Categoria();
+        c.setNombre(nombre);
+        return categoriaService.save(c);
+    }
+
+    /**
+     * Producto sin categoría.
+     */
+    public Producto crearProducto(String nombre, Double precio, int stock) {
+        return crearProducto(nombre, null, precio, stock);
+    }
+
+    public Producto crearProducto(String nombre, Categoria categoria, Double precio, int stock) {
+        return productoService.guardarProducto(producto(nombre, categoria, precio, stock));
+    }
+
+    /**
+     * Producto SIN guardar, para completar otros campos (o guardarlo por otro camino) antes.
+     */
+    public static Producto producto(String nombre, Categoria categoria, Double precio, int stock) {
+        Producto p = new Producto();
+        p.setNombre(nombre);
+        p.setPrecio(precio);
+        p.setStock(stock);
+        p.setCategoria(categoria);
+        return p;
+    }
+}
@@ -0,0 +1,33 @@
+package com.levels.backend.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.levels.backend.BackendApplication;
+
+/**
+ * Arranca la aplicación completa para un benchmark, sobre una BD H2 en memoria (modo MySQL).
+ */
+final class AplicacionBenchmark {
+
+    private AplicacionBenchmark() {}
+
+    /**
+     * @param baseDeDatos Nombre de la BD en memoria (una por benchmark).
+     */
+    static ConfigurableApplicationContext arrancar(String baseDeDatos) {
+        // Como argumentos de línea de comandos: así pisan a application.properties
+        return new SpringApplicationBuilder(BackendApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:" + baseDeDatos + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.tool.schema=ERROR",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+    }
+}
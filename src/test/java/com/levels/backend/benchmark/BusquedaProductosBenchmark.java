@@ -0,0 +1,115 @@
+package com.levels.backend.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.ProductoRepository;
+import com.levels.backend.service.BusquedaProductosIndex;
+import com.levels.backend.service.CatalogoCache;
+import com.levels.backend.service.CatalogoEvento;
+
+/**
+ * BENCHMARK: BÚSQUEDA DE TEXTO (BusquedaProductosIndex)
+ * 'indice' busca con el índice invertido + BM25; 'likeEnBd' es lo que reemplazó
+ * (LIKE '%palabra%' sobre nombre y descripción). El LIKE trae todas las filas que coinciden:
+ * sin verlas todas no se puede elegir las 20 más relevantes. 'reindexarUnProducto' mide
+ * la actualización incremental tras editar un producto.
+ * Catálogo sintético (semilla fija): descripciones de un vocabulario chico, así que 'teclado'
+ * aparece en cerca de la mitad de los productos; cada 'modeloNNN' solo en el 1%.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusquedaProductosBenchmark {
+
+    private static final String[] PALABRAS = {
+            "consola", "control", "teclado", "mouse", "audifonos", "monitor", "juego", "edicion",
+            "coleccionista", "inalambrico", "mecanico", "gamer", "retro", "portatil", "pro", "ultra",
+            "negro", "blanco", "rojo", "rgb", "bluetooth", "usb", "aventura", "carreras", "futbol",
+            "estrategia", "rol", "terror", "plataformas", "deportes", "disparos", "simulador" };
+
+    @Param({"1000", "10000"})
+    int productos;
+
+    @Param({"teclado", "modelo142"})
+    String consulta;
+
+    private ConfigurableApplicationContext contexto;
+    private BusquedaProductosIndex busquedaIndex;
+    private JdbcTemplate jdbcTemplate;
+    private Long editado;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = AplicacionBenchmark.arrancar("busqueda");
+        busquedaIndex = contexto.getBean(BusquedaProductosIndex.class);
+        jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+
+        Random azar = new Random(42);
+        List<Producto> catalogo = new ArrayList<>();
+        for (int i = 0; i < productos; i++) {
+            Producto p = new Producto();
+            p.setNombre(frase(azar, 3) + " modelo" + (100 + i % 100));
+            p.setDescripcion(frase(azar, 20));
+            p.setPrecio(9_990.0 + azar.nextInt(300_000));
+            p.setStock(10);
+            catalogo.add(p);
+        }
+        editado = contexto.getBean(ProductoRepository.class).saveAll(catalogo).get(0).getId();
+        contexto.getBean(CatalogoCache.class).alIniciar();
+        busquedaIndex.reconstruir();
+    }
+
+    @TearDown(Level.Trial)
+    public void detener() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<BusquedaProductosIndex.Coincidencia> indice() {
+        return busquedaIndex.buscar(consulta, 20);
+    }
+
+    @Benchmark
+    public List<Long> likeEnBd() {
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM producto WHERE LOWER(nombre) LIKE ? OR LOWER(descripcion) LIKE ?",
+                Long.class, "%" + consulta + "%", "%" + consulta + "%");
+    }
+
+    @Benchmark
+    public void reindexarUnProducto() {
+        busquedaIndex.alCambiarCatalogo(CatalogoEvento.productoModificado(editado));
+    }
+
+    private static String frase(Random azar, int palabras) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < palabras; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(PALABRAS[azar.nextInt(PALABRAS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,131 @@
+package com.levels.backend.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Producto;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.ProductoRepository;
+import com.levels.backend.repository.UsuarioRepository;
+import com.levels.backend.service.CarritoService;
+import com.levels.backend.service.OrdenService;
+import com.levels.backend.service.ProductoService;
+
+/**
+ * BENCHMARK: CHECKOUTS POR SEGUNDO (OrdenService.generarOrden)
+ * Cada comprador lleva 1 unidad de uno de 'productos' productos (BD H2 en memoria, modo MySQL).
+ * Con 1 producto todas las compras bloquean la misma fila; con más, se reparten.
+ * 'stock': filaBloqueada (SELECT ... FOR UPDATE + UPDATE condicional) o inventarioCaliente
+ * (venta flash: contador en memoria y volcado por lotes).
+ * Para ver cómo escala, correrlo con distinta cantidad de hilos:
+ * ... org.openjdk.jmh.Main CheckoutBenchmark -t 1
+ * ... org.openjdk.jmh.Main CheckoutBenchmark -t 8
+ * El calentamiento es largo a propósito: las primeras decenas de segundos la JVM aún está
+ * compilando Hibernate y H2, y las cifras salen varias veces más bajas.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 10)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CheckoutBenchmark {
+
+    /**
+     * La aplicación completa (una por corrida) y los productos que se compran.
+     */
+    @State(Scope.Benchmark)
+    public static class Tienda {
+
+        @Param({"1", "16"})
+        int productos;
+
+        @Param({"filaBloqueada", "inventarioCaliente"})
+        String stock;
+
+        ConfigurableApplicationContext contexto;
+        OrdenService ordenService;
+        CarritoService carritoService;
+        UsuarioRepository usuarioRepository;
+        TransactionTemplate transactionTemplate;
+        final List<Long> productoIds = new ArrayList<>();
+        final AtomicInteger secuencia = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void arrancar() {
+            contexto = AplicacionBenchmark.arrancar("checkout");
+            ordenService = contexto.getBean(OrdenService.class);
+            carritoService = contexto.getBean(CarritoService.class);
+            usuarioRepository = contexto.getBean(UsuarioRepository.class);
+            transactionTemplate = contexto.getBean(TransactionTemplate.class);
+
+            ProductoRepository productoRepository = contexto.getBean(ProductoRepository.class);
+            for (int i = 1; i <= productos; i++) {
+                Producto p = new Producto();
+                p.setNombre("Pokémon Edición Limitada #" + i);
+                p.setPrecio(29_990.0);
+                p.setStock(10_000_000); // No se agota durante la medición
+                productoIds.add(productoRepository.save(p).getId());
+            }
+            if (stock.equals("inventarioCaliente")) {
+                ProductoService productoService = contexto.getBean(ProductoService.class);
+                productoIds.forEach(id -> productoService.cambiarInventarioCaliente(id, true));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void detener() {
+            contexto.close();
+        }
+
+        Long crearClienteConCarrito() {
+            int n = secuencia.incrementAndGet();
+            Usuario u = new Usuario();
+            u.setNombre("Cliente " + n);
+            u.setEmail("cliente" + n + "@levelup.cl");
+            u.setPassword("clave");
+            u.setRol("CLIENTE");
+            Long usuarioId = usuarioRepository.save(u).getId();
+            Long productoId = productoIds.get(n % productoIds.size());
+            transactionTemplate.executeWithoutResult(tx -> carritoService.agregarProducto(usuarioId, productoId, 1));
+            return usuarioId;
+        }
+    }
+
+    /**
+     * Cada compra es de un cliente nuevo; armar su carrito no entra en la medición.
+     */
+    @State(Scope.Thread)
+    public static class Comprador {
+
+        Long usuarioId;
+
+        @Setup(Level.Invocation)
+        public void armarCarrito(Tienda tienda) {
+            usuarioId = tienda.crearClienteConCarrito();
+        }
+    }
+
+    @Benchmark
+    public Orden checkout(Tienda tienda, Comprador comprador) {
+        return tienda.ordenService.generarOrden(comprador.usuarioId, "Av. Siempre Viva 742", "Metropolitana", "Santiago");
+    }
+}
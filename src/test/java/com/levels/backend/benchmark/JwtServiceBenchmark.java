@@ -0,0 +1,52 @@
+package com.levels.backend.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.levels.backend.security.JwtService;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * BENCHMARK: VERIFICACIÓN DE TOKENS CON Y SIN CACHÉ (JwtService)
+ * 'sinCache' usa un JwtService nuevo por operación (siempre verifica la firma HMAC);
+ * 'conCache' reutiliza uno que ya verificó el token (acierto de caché).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private JwtService cacheado;
+    private String token;
+
+    @Setup
+    public void preparar() {
+        cacheado = new JwtService();
+        token = cacheado.generateToken("jugador@duoc.cl");
+        cacheado.extractAllClaims(token);
+    }
+
+    @Benchmark
+    public Claims sinCache() {
+        return new JwtService().extractAllClaims(token);
+    }
+
+    @Benchmark
+    public Claims conCache() {
+        return cacheado.extractAllClaims(token);
+    }
+}
@@ -0,0 +1,118 @@
+package com.levels.backend.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.levels.backend.dto.EstadoStock;
+import com.levels.backend.dto.ProductoCard;
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.dto.ProductoDetalle;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+
+/**
+ * BENCHMARK: SERIALIZACIÓN DE LAS VISTAS DEL CATÁLOGO (ProductoCard / ProductoDetalle)
+ * 'entidad' escribe la entidad Producto con su categoría anidada (lo que servía la API antes);
+ * 'catalogo' la copia de la foto en memoria (GET /api/productos); 'tarjetas' y 'detalles'
+ * las vistas livianas que se arman desde esa misma foto.
+ * El resultado viene en filas por segundo (cada operación serializa FILAS productos);
+ * los bytes por fila de cada vista se imprimen al preparar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ProductoVistasBenchmark.FILAS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductoVistasBenchmark {
+
+    static final int FILAS = 1000;
+
+    // Mismo ObjectMapper que arma Spring Boot para los controladores
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private List<Producto> entidades;
+    private List<ProductoCatalogo> catalogo;
+    private List<ProductoCard> tarjetas;
+    private List<ProductoDetalle> detalles;
+
+    @Setup
+    public void preparar() throws JsonProcessingException {
+        List<Categoria> categorias = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Categoria c = new Categoria();
+            c.setId((long) i);
+            c.setNombre("Categoría " + i);
+            c.setImagenUrl("https://cdn.levelup.cl/categorias/" + i + ".png");
+            categorias.add(c);
+        }
+
+        entidades = new ArrayList<>(FILAS);
+        catalogo = new ArrayList<>(FILAS);
+        tarjetas = new ArrayList<>(FILAS);
+        detalles = new ArrayList<>(FILAS);
+        for (int i = 0; i < FILAS; i++) {
+            Producto p = new Producto();
+            p.setId((long) i);
+            p.setNombre("Producto " + i);
+            p.setDescripcion("Descripción larga del producto con especificaciones técnicas, garantía y "
+                    + "contenido de la caja que la grilla del catálogo nunca muestra.");
+            p.setPrecio(9_990.0 + i);
+            p.setStock(10);
+            p.setVersion(0L);
+            p.setImagenUrl("https://cdn.levelup.cl/productos/" + i + ".png");
+            p.setVideoUrl("https://www.youtube.com/embed/" + i);
+            p.setCategoria(categorias.get(i % categorias.size()));
+            entidades.add(p);
+
+            ProductoCatalogo enFoto = ProductoCatalogo.desde(p, new AtomicReference<>(new EstadoStock(10, 0L)));
+            catalogo.add(enFoto);
+            tarjetas.add(ProductoCard.desde(enFoto));
+            detalles.add(ProductoDetalle.desde(enFoto));
+        }
+
+        System.out.printf("%nBytes por fila: entidad=%d, catalogo=%d, tarjetas=%d, detalles=%d%n",
+                objectMapper.writeValueAsBytes(entidades).length / FILAS,
+                objectMapper.writeValueAsBytes(catalogo).length / FILAS,
+                objectMapper.writeValueAsBytes(tarjetas).length / FILAS,
+                objectMapper.writeValueAsBytes(detalles).length / FILAS);
+    }
+
+    @Benchmark
+    public byte[] entidad() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(entidades);
+    }
+
+    @Benchmark
+    public byte[] catalogo() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(catalogo);
+    }
+
+    @Benchmark
+    public byte[] tarjetas() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(tarjetas);
+    }
+
+    @Benchmark
+    public byte[] detalles() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(detalles);
+    }
+}
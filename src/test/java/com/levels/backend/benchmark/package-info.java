@@ -0,0 +1,13 @@
+/**
+ * BENCHMARKS (JMH)
+ * ----------------------------------------------------
+ * Mediciones de rendimiento, separadas de las pruebas: 'mvn test' no las ejecuta (Surefire
+ * solo corre las clases *Test) y los tiempos nunca deciden si el build pasa o falla.
+ * Para correrlas:
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main [NombreDelBenchmark]
+ * </pre>
+ */
+package com.levels.backend.benchmark;
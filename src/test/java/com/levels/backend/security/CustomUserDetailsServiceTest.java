@@ -0,0 +1,97 @@
+package com.levels.backend.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.service.UsuarioService;
+
+/**
+ * Pruebas de la caché de UserDetails: aciertos y fallos, copias independientes, errores
+ * que no se cachean e invalidación al modificar el usuario (también dentro de una transacción).
+ */
+@SpringBootTest
+@DirtiesContext
+class CustomUserDetailsServiceTest {
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void cacheaCopiasYNoCacheaUsuariosInexistentes() {
+        datos.crearCliente("carla");
+        long fallos = contador("fallos");
+        long aciertos = contador("aciertos");
+
+        UserDetails primera = userDetailsService.loadUserByUsername("carla@levelup.cl");
+        ((User) primera).eraseCredentials(); // Lo que hace Spring Security tras el login
+        UserDetails segunda = userDetailsService.loadUserByUsername("carla@levelup.cl");
+
+        assertEquals("clave", segunda.getPassword()); // La entrada cacheada no se vio afectada
+        assertEquals(fallos + 1, contador("fallos"));
+        assertEquals(aciertos + 1, contador("aciertos"));
+
+        // Un email desconocido se consulta cada vez (el error no queda guardado)
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nadie@levelup.cl"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nadie@levelup.cl"));
+        assertEquals(fallos + 3, contador("fallos"));
+    }
+
+    @Test
+    void actualizarElPerfilInvalidaLaEntrada() {
+        Usuario usuario = datos.crearCliente("diego");
+        assertEquals("clave", userDetailsService.loadUserByUsername("diego@levelup.cl").getPassword());
+
+        cambiarClave(usuario, "nueva-clave");
+
+        assertEquals("nueva-clave", userDetailsService.loadUserByUsername("diego@levelup.cl").getPassword());
+    }
+
+    @Test
+    void unaCargaAntesDelCommitNoDejaLaFilaViejaEnLaCache() {
+        Usuario usuario = datos.crearCliente("elena");
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            cambiarClave(usuario, "clave-de-elena"); // Se une a esta transacción: invalida, pero aún no hay commit
+            // Otra petición carga al usuario en ese momento y solo puede ver la fila anterior
+            UserDetails enVuelo = CompletableFuture
+                    .supplyAsync(() -> userDetailsService.loadUserByUsername("elena@levelup.cl")).join();
+            assertEquals("clave", enVuelo.getPassword());
+        });
+
+        assertEquals("clave-de-elena", userDetailsService.loadUserByUsername("elena@levelup.cl").getPassword());
+    }
+
+    // --- AUXILIARES ---
+
+    private long contador(String nombre) {
+        return (long) userDetailsService.estadisticas().get(nombre);
+    }
+
+    private void cambiarClave(Usuario usuario, String clave) {
+        Usuario cambios = new Usuario();
+        cambios.setPassword(clave);
+        usuarioService.actualizarPerfil(usuario.getId(), cambios);
+    }
+}
@@ -0,0 +1,102 @@
+package com.levels.backend.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Base64;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+/**
+ * Pruebas de la caché de tokens verificados de JwtService.
+ * (El costo con y sin caché se mide aparte, en benchmark.JwtServiceBenchmark.)
+ */
+class JwtServiceTest {
+
+    @Test
+    void reutilizaLosClaimsDeUnTokenYaVerificado() {
+        JwtService jwtService = new JwtService();
+        String token = jwtService.generateToken("jugador@duoc.cl");
+
+        Claims primera = jwtService.extractAllClaims(token);
+        Claims segunda = jwtService.extractAllClaims(token);
+
+        // El segundo acceso no vuelve a parsear: devuelve la misma instancia cacheada
+        assertSame(primera, segunda);
+        assertEquals(1, jwtService.tokensEnCache());
+        assertEquals("jugador@duoc.cl", jwtService.extractUsername(token));
+        assertTrue(jwtService.validateToken(token, "jugador@duoc.cl"));
+        // Cuatro lecturas del mismo token, una sola verificación de firma
+        assertEquals(1, jwtService.verificacionesCompletas());
+    }
+
+    @Test
+    void losClaimsCacheadosNoSePuedenModificar() {
+        JwtService jwtService = new JwtService();
+        String token = jwtService.generateToken("jugador@duoc.cl");
+        Claims claims = jwtService.extractAllClaims(token);
+
+        // Un llamador no puede cambiar lo que las peticiones siguientes reciben como verificado
+        assertThrows(UnsupportedOperationException.class, () -> claims.put(JwtService.CLAIM_ROL, "ADMIN"));
+        assertThrows(UnsupportedOperationException.class, () -> claims.setSubject("admin@duoc.cl"));
+        assertThrows(UnsupportedOperationException.class, () -> claims.remove(Claims.SUBJECT));
+        assertThrows(UnsupportedOperationException.class, () -> claims.entrySet().clear());
+
+        Claims otraVez = jwtService.extractAllClaims(token);
+        assertEquals("jugador@duoc.cl", otraVez.getSubject());
+        assertNull(otraVez.get(JwtService.CLAIM_ROL));
+    }
+
+    @Test
+    void rechazaTokensConFirmaAlterada() {
+        JwtService jwtService = new JwtService();
+        String token = jwtService.generateToken("jugador@duoc.cl");
+        String alterado = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(SignatureException.class, () -> jwtService.extractAllClaims(alterado));
+        assertEquals(0, jwtService.tokensEnCache());
+    }
+
+    @Test
+    void unTokenCacheadoNoAvalaOtroConElContenidoAlterado() {
+        JwtService jwtService = new JwtService();
+        String token = jwtService.generateToken("jugador@duoc.cl");
+        jwtService.extractAllClaims(token);
+
+        // Mismo encabezado y firma, otro sujeto en el cuerpo: no coincide con el token cacheado
+        String[] partes = token.split("\\.");
+        String cuerpo = new String(Base64.getUrlDecoder().decode(partes[1])).replace("jugador@duoc.cl", "admin@duoc.cl");
+        String alterado = partes[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(cuerpo.getBytes())
+                + "." + partes[2];
+
+        assertThrows(SignatureException.class, () -> jwtService.extractAllClaims(alterado));
+        assertEquals(1, jwtService.tokensEnCache());
+    }
+
+    @Test
+    void unTokenExpiradoSeRechazaAunqueEsteEnCache() throws InterruptedException {
+        JwtService jwtService = new JwtService();
+        assertThrows(ExpiredJwtException.class,
+                () -> jwtService.extractAllClaims(jwtService.createToken(Map.of(), "jugador@duoc.cl", -1_000)));
+        assertEquals(0, jwtService.tokensEnCache());
+
+        String token = jwtService.createToken(Map.of(), "jugador@duoc.cl", 1_000);
+        long expiraEn = jwtService.extractAllClaims(token).getExpiration().getTime();
+        assertEquals(1, jwtService.tokensEnCache());
+        while (System.currentTimeMillis() <= expiraEn) {
+            Thread.sleep(50);
+        }
+
+        // La entrada vencida se descarta y la verificación completa lo rechaza
+        assertThrows(ExpiredJwtException.class, () -> jwtService.extractAllClaims(token));
+        assertEquals(0, jwtService.tokensEnCache());
+    }
+}
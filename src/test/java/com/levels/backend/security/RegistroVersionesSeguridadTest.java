@@ -0,0 +1,85 @@
+package com.levels.backend.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.UsuarioRepository;
+import com.levels.backend.service.UsuarioService;
+
+/**
+ * Pruebas de la revocación de tokens por versión de seguridad: la tabla en memoria solo
+ * avanza cuando el cambio de contraseña se guarda, nunca antes que la BD.
+ */
+@SpringBootTest
+@DirtiesContext
+class RegistroVersionesSeguridadTest {
+
+    @Autowired
+    private RegistroVersionesSeguridad registroVersiones;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void cambiarLaContrasenaRevocaLosTokensAnteriores() {
+        Usuario usuario = datos.crearCliente("ana");
+        assertTrue(registroVersiones.esVigente(usuario.getId(), 0));
+
+        Usuario cambios = new Usuario();
+        cambios.setPassword("nueva-clave");
+        usuarioService.actualizarPerfil(usuario.getId(), cambios);
+
+        // Memoria y BD coinciden: el token viejo (0) no vale, el que emita el login (1) sí
+        int enBd = usuarioRepository.findById(usuario.getId()).orElseThrow().getVersionSeguridad();
+        assertEquals(1, enBd);
+        assertEquals(1, registroVersiones.versionActual(usuario.getId()));
+        assertFalse(registroVersiones.esVigente(usuario.getId(), 0));
+        assertTrue(registroVersiones.esVigente(usuario.getId(), enBd));
+    }
+
+    @Test
+    void unaActualizacionFallidaNoAdelantaLaVersion() {
+        Usuario usuario = datos.crearCliente("bruno");
+
+        // La contraseña cambia, pero la fecha de nacimiento no pasa la validación
+        Usuario cambios = new Usuario();
+        cambios.setPassword("otra-clave");
+        cambios.setFechaNacimiento(LocalDate.now().minusYears(10));
+        assertThrows(RuntimeException.class, () -> usuarioService.actualizarPerfil(usuario.getId(), cambios));
+
+        // Y si el guardado no llega al commit, la memoria tampoco cambia
+        transactionTemplate.executeWithoutResult(tx -> {
+            Usuario u = usuarioRepository.findById(usuario.getId()).orElseThrow();
+            registroVersiones.incrementar(u);
+            usuarioRepository.save(u);
+            tx.setRollbackOnly();
+        });
+
+        Usuario enBd = usuarioRepository.findById(usuario.getId()).orElseThrow();
+        assertEquals("clave", enBd.getPassword());
+        assertEquals(0, enBd.getVersionSeguridad());
+        assertEquals(0, registroVersiones.versionActual(usuario.getId()));
+        assertTrue(registroVersiones.esVigente(usuario.getId(), 0)); // Los tokens vigentes siguen sirviendo
+    }
+}
@@ -0,0 +1,155 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.DetalleOrden;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Producto;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.OrdenRepository;
+
+/**
+ * Pruebas de la analítica en memoria: carga desde la BD, ventas nuevas tras el checkout y
+ * consultas por producto, categoría, región/comuna y tiempo. Bloques de 4 filas para que
+ * cada consulta se reparta en varias tareas ForkJoin y los filtros por fecha salten bloques.
+ */
+@SpringBootTest(properties = {
+        "levelup.analitica.filas-por-bloque=4",
+        "levelup.analitica.paralelismo=3" })
+@DirtiesContext
+class AnaliticaVentasTest {
+
+    @Autowired
+    private AnaliticaVentas analiticaVentas;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void cargaDesdeLaBdYSumaLasVentasNuevas() {
+        Categoria consolas = datos.crearCategoria("Consolas");
+        Categoria perifericos = datos.crearCategoria("Periféricos");
+        Producto ps5 = datos.crearProducto("PlayStation 5", consolas, 500_000.0, 50);
+        Producto teclado = datos.crearProducto("Teclado Redragon", perifericos, 30_000.0, 50);
+        Producto mouse = datos.crearProducto("Mouse Logitech", perifericos, 20_000.0, 50);
+        Usuario cliente = datos.crearCliente("tomas");
+
+        // Junio de 2025: 6 órdenes (más filas que un bloque), cargadas directo en la BD
+        for (int dia = 1; dia <= 6; dia++) {
+            String comuna = dia % 2 == 0 ? "Viña del Mar" : "Valparaíso";
+            crearOrden(cliente, LocalDate.of(2025, 6, dia).atTime(10 + dia, 15), "Valparaíso", comuna,
+                    linea(teclado, 1), linea(mouse, 2));
+        }
+        crearOrden(cliente, LocalDate.of(2025, 6, 3).atTime(11, 40), "Metropolitana", "Santiago", linea(ps5, 1));
+        analiticaVentas.reconstruir();
+
+        LocalDate inicio = LocalDate.of(2025, 6, 1);
+        LocalDate fin = LocalDate.of(2025, 6, 30);
+        List<Map<String, Object>> porUnidades = items(analiticaVentas.topProductos(inicio, fin, 2, false));
+        assertEquals("Mouse Logitech", porUnidades.get(0).get("nombre"));
+        assertEquals(12L, porUnidades.get(0).get("unidades"));
+        assertEquals(6L, porUnidades.get(0).get("ordenes"));
+        assertEquals(2, porUnidades.size());
+        assertEquals("PlayStation 5", items(analiticaVentas.topProductos(inicio, fin, 1, true)).get(0).get("nombre"));
+
+        List<Map<String, Object>> categorias = items(analiticaVentas.agrupar(AnaliticaVentas.Dimension.CATEGORIA, inicio, fin));
+        assertEquals("Consolas", categorias.get(0).get("categoria"));
+        assertEquals(6 * 70_000.0, categorias.get(1).get("ingresos"));
+
+        List<Map<String, Object>> regiones = items(analiticaVentas.agrupar(AnaliticaVentas.Dimension.REGION, inicio, fin));
+        assertEquals("Metropolitana", regiones.get(0).get("region")); // Mayor ingreso primero
+        assertEquals("Valparaíso", regiones.get(1).get("region"));
+        assertEquals(6L, regiones.get(1).get("ordenes")); // Dos líneas por orden, pero 6 órdenes
+        List<Map<String, Object>> comunas = items(analiticaVentas.agrupar(AnaliticaVentas.Dimension.COMUNA, inicio, fin));
+        assertEquals(3, comunas.size());
+
+        // Una venta nueva por el checkout se suma sin recargar
+        Long comprador = datos.crearCliente("ursula").getId();
+        carritoService.agregarProducto(comprador, ps5.getId(), 2);
+        ordenService.generarOrden(comprador, "Av. Alemania 50", "Araucanía", "Temuco");
+        List<Map<String, Object>> hoy = items(analiticaVentas.topProductos(LocalDate.now(), LocalDate.now(), 5, false));
+        assertEquals(1, hoy.size());
+        assertEquals(2L, hoy.get(0).get("unidades"));
+    }
+
+    @Test
+    void lasSeriesCubrenCadaHoraODiaDelRango() {
+        Categoria juegos = datos.crearCategoria("Juegos de mesa");
+        Producto catan = datos.crearProducto("Catan", juegos, 35_000.0, 50);
+        Usuario cliente = datos.crearCliente("valeria");
+        for (int i = 0; i < 9; i++) {
+            crearOrden(cliente, LocalDate.of(2024, 2, 10).atTime(i % 3 == 0 ? 9 : 18, 5 * i), "Biobío", "Concepción", linea(catan, 1));
+        }
+        crearOrden(cliente, LocalDate.of(2024, 2, 12).atTime(12, 0), "Biobío", "Concepción", linea(catan, 4));
+        analiticaVentas.reconstruir();
+
+        List<Map<String, Object>> dias = items(analiticaVentas.serie(AnaliticaVentas.Dimension.DIA,
+                LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 12)));
+        assertEquals(3, dias.size());
+        assertEquals("2024-02-10", dias.get(0).get("dia"));
+        assertEquals(9L, dias.get(0).get("ordenes"));
+        assertEquals(0L, dias.get(1).get("ordenes")); // Día sin ventas: cubeta en cero
+        assertEquals(4L, dias.get(2).get("unidades"));
+
+        List<Map<String, Object>> horas = items(analiticaVentas.serie(AnaliticaVentas.Dimension.HORA,
+                LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 10)));
+        assertEquals(24, horas.size());
+        assertEquals("2024-02-10T09:00", horas.get(9).get("hora"));
+        assertEquals(3L, horas.get(9).get("ordenes"));
+        assertEquals(6L, horas.get(18).get("ordenes"));
+    }
+
+    // --- AUXILIARES ---
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> items(Map<String, Object> respuesta) {
+        return (List<Map<String, Object>>) respuesta.get("items");
+    }
+
+    private static DetalleOrden linea(Producto producto, int cantidad) {
+        DetalleOrden detalle = new DetalleOrden();
+        detalle.setProducto(producto);
+        detalle.setCantidad(cantidad);
+        detalle.setPrecioUnitario(producto.getPrecio());
+        return detalle;
+    }
+
+    private Orden crearOrden(Usuario usuario, LocalDateTime fecha, String region, String comuna, DetalleOrden... lineas) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setFechaCreacion(Date.from(fecha.atZone(ZoneId.systemDefault()).toInstant()));
+        orden.setRegion(region);
+        orden.setComuna(comuna);
+        double total = 0;
+        for (DetalleOrden detalle : lineas) {
+            detalle.setOrden(orden);
+            orden.getDetalles().add(detalle);
+            total += detalle.getCantidad() * detalle.getPrecioUnitario();
+        }
+        orden.setTotal(total);
+        return ordenRepository.save(orden);
+    }
+}
@@ -0,0 +1,126 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.dto.Sugerencia;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.DetalleOrden;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Producto;
+
+/**
+ * Pruebas del autocompletado: coincidencia por el inicio del nombre y de cada palabra,
+ * Top-K por unidades vendidas (productos y categorías) y limpieza del árbol al borrar.
+ */
+@SpringBootTest(properties = "levelup.catalogo.sugerencias.max=10")
+@DirtiesContext
+class AutocompletadoIndexTest {
+
+    @Autowired
+    private AutocompletadoIndex autocompletado;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void sugierePorElInicioDelNombreYDeCadaPalabra() {
+        Producto mouse = datos.crearProducto("Mouse Logitech G203", null, 19_990.0, 5);
+        Producto teclado = datos.crearProducto("Teclado Logitech G915", null, 19_990.0, 5);
+        Producto audifonos = datos.crearProducto("Audífonos HyperX Cloud", null, 19_990.0, 5);
+
+        assertEquals(List.of(mouse.getId(), teclado.getId()), ids("logi"));
+        assertEquals(List.of(mouse.getId()), ids("MOUSE  log"));
+        assertEquals(List.of(mouse.getId()), ids("g2"));
+        assertEquals(List.of(audifonos.getId()), ids("audif"));
+        assertEquals(List.of(audifonos.getId()), ids("hyperx cloud"));
+        // Solo por el inicio de una palabra, y no más allá del texto
+        assertEquals(List.of(), ids("ogitech"));
+        assertEquals(List.of(), ids("mouse logitech g2039"));
+        assertEquals(List.of(), ids("   "));
+    }
+
+    @Test
+    void ordenaPorUnidadesVendidasYCortaEnK() {
+        Categoria serie = datos.crearCategoria("Zentrix Series");
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            productos.add(datos.crearProducto("Zentrix " + i, i >= 11 ? serie : null, 19_990.0, 5));
+        }
+        // El producto i vende i unidades; la categoría suma las de sus productos (11 + 12)
+        Orden orden = new Orden();
+        List<DetalleOrden> detalles = new ArrayList<>();
+        for (int i = 0; i < productos.size(); i++) {
+            DetalleOrden d = new DetalleOrden();
+            d.setProducto(productos.get(i));
+            d.setCantidad(i + 1);
+            detalles.add(d);
+        }
+        orden.setDetalles(detalles);
+        autocompletado.alGenerarOrden(new OrdenGeneradaEvento(orden));
+
+        List<Sugerencia> top = autocompletado.sugerir("zentrix", 10);
+        assertEquals(10, top.size());
+        assertEquals(new Sugerencia("Zentrix Series", "categoria", null), top.get(0));
+        for (int i = 1; i < 10; i++) {
+            assertEquals(productos.get(12 - i).getId(), top.get(i).productoId(), top.toString());
+        }
+        // Un límite menor devuelve el principio de la misma lista
+        assertEquals(top.subList(0, 3), autocompletado.sugerir("zent", 3));
+
+        // Una venta nueva reordena: el producto 1 pasa a ser el más vendido
+        DetalleOrden otra = new DetalleOrden();
+        otra.setProducto(productos.get(0));
+        otra.setCantidad(100);
+        Orden segunda = new Orden();
+        segunda.setDetalles(List.of(otra));
+        autocompletado.alGenerarOrden(new OrdenGeneradaEvento(segunda));
+        assertEquals(productos.get(0).getId(), autocompletado.sugerir("zentrix", 1).get(0).productoId());
+    }
+
+    @Test
+    void borrarYRenombrarSacaLasSugerenciasYDejaElArbolComoEstaba() {
+        Object nodosAntes = autocompletado.estadisticas().get("nodos");
+
+        Producto prime = datos.crearProducto("Quasar Prime Edition", null, 19_990.0, 5);
+        Producto pro = datos.crearProducto("Quasar Pro", null, 19_990.0, 5);
+        assertEquals(List.of(prime.getId(), pro.getId()), ids("quasar pr"));
+        assertTrue((int) autocompletado.estadisticas().get("nodos") > (int) nodosAntes);
+
+        productoService.eliminarProducto(prime.getId());
+        assertEquals(List.of(pro.getId()), ids("quasar"));
+        assertEquals(List.of(), ids("prime"));
+        assertEquals(List.of(), ids("edition"));
+
+        Producto cambios = new Producto();
+        cambios.setNombre("Nebula Pro");
+        cambios.setPrecio(pro.getPrecio());
+        cambios.setStock(pro.getStock());
+        productoService.actualizarProducto(pro.getId(), cambios);
+        assertEquals(List.of(), ids("quasar"));
+        assertEquals(List.of(pro.getId()), ids("nebula"));
+        assertEquals(List.of(pro.getId()), ids("pro"));
+
+        productoService.eliminarProducto(pro.getId());
+        assertEquals(List.of(), ids("pro"));
+        assertEquals(nodosAntes, autocompletado.estadisticas().get("nodos"));
+    }
+
+    // --- AUXILIARES ---
+
+    private List<Long> ids(String prefijo) {
+        return autocompletado.sugerir(prefijo, 10).stream().map(Sugerencia::productoId).toList();
+    }
+}
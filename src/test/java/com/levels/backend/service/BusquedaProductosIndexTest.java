@@ -0,0 +1,100 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+
+/**
+ * Pruebas del índice de búsqueda de texto: normalización de las palabras, orden BM25
+ * (campo, frecuencia y largo del texto) y actualización incremental al crear, editar y borrar.
+ * (El tiempo de una búsqueda frente a un LIKE en la BD se mide en benchmark.BusquedaProductosBenchmark.)
+ */
+@SpringBootTest
+@DirtiesContext
+class BusquedaProductosIndexTest {
+
+    @Autowired
+    private BusquedaProductosIndex busquedaIndex;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void tokenizaSinTildesMayusculasNiPalabrasVacias() {
+        assertEquals(List.of("futbol", "pinguinos", "edicion", "2024"),
+                TextoBusqueda.tokenizar("¡Fútbol de PINGÜINOS, la Edición-2024!"));
+        assertEquals(List.of(), TextoBusqueda.tokenizar("de la y para"));
+        assertEquals(List.of(), TextoBusqueda.tokenizar(null));
+
+        Producto juego = crearProducto("Fútbol Pingüino Manager", "Simulador de clubes", null);
+        assertEquals(List.of(juego.getId()), ids("FUTBOL pinguino"));
+        assertEquals(List.of(), ids("de la"));
+    }
+
+    @Test
+    void ordenaPorCampoFrecuenciaYLargo() {
+        Categoria retro = datos.crearCategoria("Zorblax Retro");
+        Producto corto = crearProducto("Zorblax", "Consola portátil", null);
+        Producto largo = crearProducto("Consola Zorblax Pro", "Consola de sobremesa", null);
+        Producto enCategoria = crearProducto("Cartucho Aventura", "Juego de plataformas", retro);
+        Producto enDescripcion = crearProducto("Control inalámbrico", "Compatible con la consola Zorblax", null);
+
+        // Nombre (x3) > categoría (x2) > descripción (x1); en el mismo campo, el texto más corto gana
+        assertEquals(List.of(corto.getId(), largo.getId(), enCategoria.getId(), enDescripcion.getId()), ids("zorblax"));
+        // Top-K: solo los 'limite' mejores, en el mismo orden
+        assertEquals(List.of(corto.getId(), largo.getId()),
+                busquedaIndex.buscar("zorblax", 2).stream().map(BusquedaProductosIndex.Coincidencia::productoId).toList());
+        // Coincidir en más palabras de la consulta suma: "pro" solo está en uno
+        assertEquals(largo.getId(), ids("zorblax pro").get(0));
+        // Una palabra repetida en el texto pesa más que una sola mención en el mismo campo
+        List<Long> consola = ids("consola");
+        assertTrue(consola.indexOf(largo.getId()) < consola.indexOf(corto.getId()), consola.toString());
+    }
+
+    @Test
+    void seActualizaAlCrearEditarYBorrar() {
+        assertEquals(List.of(), ids("quasitron"));
+
+        Producto p = crearProducto("Quasitron 3000", "Teclado mecánico", null);
+        assertEquals(List.of(p.getId()), ids("quasitron"));
+
+        Producto cambios = new Producto();
+        cambios.setNombre("Hyperion 3000");
+        cambios.setDescripcion("Teclado óptico");
+        cambios.setPrecio(p.getPrecio());
+        cambios.setStock(p.getStock());
+        productoService.actualizarProducto(p.getId(), cambios);
+        assertEquals(List.of(), ids("quasitron"));
+        assertEquals(List.of(), ids("mecanico"));
+        assertEquals(List.of(p.getId()), ids("hyperion optico"));
+
+        productoService.eliminarProducto(p.getId());
+        assertEquals(List.of(), ids("hyperion"));
+        assertEquals(List.of(), ids("3000"));
+    }
+
+    // --- AUXILIARES ---
+
+    private List<Long> ids(String consulta) {
+        return busquedaIndex.buscar(consulta, 10).stream().map(BusquedaProductosIndex.Coincidencia::productoId).toList();
+    }
+
+    private Producto crearProducto(String nombre, String descripcion, Categoria categoria) {
+        Producto p = DatosPrueba.producto(nombre, categoria, 19_990.0, 5);
+        p.setDescripcion(descripcion);
+        return productoService.guardarProducto(p); // Publica el evento: entra a la foto y al índice
+    }
+}
@@ -0,0 +1,121 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Carrito;
+import com.levels.backend.model.DetalleCarrito;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.CarritoRepository;
+
+/**
+ * Pruebas del carrito anónimo: viaja firmado (sin BD), rechaza tokens alterados y al
+ * iniciar sesión se fusiona (una sola vez) con el carrito persistente.
+ */
+@SpringBootTest
+@DirtiesContext
+class CarritoAnonimoServiceTest {
+
+    @Autowired
+    private CarritoAnonimoService carritoAnonimoService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void elCarritoViajaFirmadoYNoTocaLaBd() {
+        Producto mouse = datos.crearProducto("Mouse Logitech G502", 39_990.0, 5);
+        Producto pad = datos.crearProducto("Mousepad SteelSeries QcK", 9_990.0, 5);
+        long carritosAntes = carritoRepository.count();
+
+        String token = carritoAnonimoService.agregar(null, mouse.getId(), 1);
+        token = carritoAnonimoService.agregar(token, pad.getId(), 2);
+        token = carritoAnonimoService.agregar(token, mouse.getId(), 1);
+        token = carritoAnonimoService.actualizarCantidad(token, pad.getId(), 1);
+
+        Map<String, Object> vista = carritoAnonimoService.vista(token);
+        assertEquals(2, ((List<?>) vista.get("items")).size());
+        assertEquals(2 * 39_990.0 + 9_990.0, vista.get("total"));
+        assertEquals(false, vista.get("preciosCambiaron"));
+        assertEquals(Map.of(mouse.getId(), 2, pad.getId(), 1), carritoAnonimoService.leer(token).lineas());
+        assertEquals(carritosAntes, carritoRepository.count()); // Nada se guardó
+
+        // Stock: no se puede pedir más de lo que hay
+        String actual = token;
+        assertThrows(RuntimeException.class, () -> carritoAnonimoService.agregar(actual, mouse.getId(), 4));
+
+        // Un token alterado (un carácter distinto, misma firma) se trata como carrito vacío
+        String alterado = (token.charAt(3) == 'A' ? 'B' : 'A') + "";
+        alterado = token.substring(0, 3) + alterado + token.substring(4);
+        assertTrue(carritoAnonimoService.leer(alterado).lineas().isEmpty());
+        assertTrue(carritoAnonimoService.leer("basura.sinfirma").lineas().isEmpty());
+    }
+
+    @Test
+    void alIniciarSesionSeFusionaConElCarritoPersistente() {
+        Producto teclado = datos.crearProducto("Teclado HyperX Alloy", 59_990.0, 3);
+        Producto monitor = datos.crearProducto("Monitor Samsung Odyssey", 249_990.0, 4);
+        Long cliente = datos.crearCliente("gabriela").getId();
+
+        // Sin sesión elige 3 teclados (todo el stock) y un monitor; no se aparta nada
+        String token = carritoAnonimoService.agregar(null, teclado.getId(), 3);
+        token = carritoAnonimoService.agregar(token, monitor.getId(), 1);
+
+        // Mientras tanto, en otro dispositivo (con sesión) ya había agregado un teclado
+        carritoService.agregarProducto(cliente, teclado.getId(), 1);
+
+        Map<Long, Integer> agregadas = carritoService.fusionarAnonimo(cliente, carritoAnonimoService.leer(token).lineas());
+
+        // Del teclado solo quedaban 2 libres: se agrega lo disponible
+        assertEquals(Map.of(teclado.getId(), 2, monitor.getId(), 1), agregadas);
+        Carrito carrito = carritoRepository.cargarCompleto(cliente);
+        assertEquals(2, carrito.getItems().size());
+        for (DetalleCarrito detalle : carrito.getItems()) {
+            int esperado = detalle.getProducto().getId().equals(teclado.getId()) ? 3 : 1;
+            assertEquals(esperado, detalle.getCantidad());
+        }
+        assertEquals(3 * 59_990.0 + 249_990.0, carrito.getTotal());
+        assertFalse(carritoService.obtenerCarrito(cliente).getItems().isEmpty());
+    }
+
+    @Test
+    void reenviarElMismoCarritoAnonimoNoLoVuelveASumar() {
+        Producto audifonos = datos.crearProducto("Audífonos Razer BlackShark", 89_990.0, 10);
+        Producto microfono = datos.crearProducto("Micrófono HyperX QuadCast", 119_990.0, 10);
+        Long cliente = datos.crearCliente("hector").getId();
+        String token = carritoAnonimoService.agregar(null, audifonos.getId(), 2);
+        token = carritoAnonimoService.agregar(token, microfono.getId(), 1);
+        Map<Long, Integer> lineas = carritoAnonimoService.leer(token).lineas();
+
+        assertEquals(lineas, carritoService.fusionarAnonimo(cliente, lineas));
+        // Segundo login con la misma cookie (o la cabecera reenviada): nada nuevo que agregar
+        assertEquals(Map.of(), carritoService.fusionarAnonimo(cliente, lineas));
+        // Si ya tenía más con sesión, se conserva lo que tenía
+        carritoService.actualizarCantidad(cliente, audifonos.getId(), 4);
+        assertEquals(Map.of(), carritoService.fusionarAnonimo(cliente, lineas));
+
+        Carrito carrito = carritoRepository.cargarCompleto(cliente);
+        for (DetalleCarrito detalle : carrito.getItems()) {
+            int esperado = detalle.getProducto().getId().equals(audifonos.getId()) ? 4 : 1;
+            assertEquals(esperado, detalle.getCantidad());
+        }
+        assertEquals(4 * 89_990.0 + 119_990.0, carrito.getTotal());
+    }
+}
@@ -0,0 +1,126 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Carrito;
+import com.levels.backend.model.Producto;
+import com.levels.backend.service.CarritoService.Operacion;
+import com.levels.backend.service.CarritoService.ResultadoLote;
+import com.levels.backend.service.CarritoService.TipoOperacion;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Cuenta las sentencias SQL de cada operación del carrito (estadísticas de Hibernate):
+ * una sola lectura (JOIN FETCH) y nada más que las escrituras de lo que cambió.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@DirtiesContext
+class CarritoServiceConsultasTest {
+
+    // Lectura del carrito + reserva + línea + cabecera (total)
+    private static final int MAXIMO_SENTENCIAS = 4;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void prepararEstadisticas() {
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void cadaOperacionLeeElCarritoUnaSolaVez() {
+        Producto audifonos = datos.crearProducto("Audífonos HyperX Cloud II", 19_990.0, 10);
+        Producto silla = datos.crearProducto("Silla Gamer Corsair", 149_990.0, 10);
+        Long cliente = datos.crearCliente("dani", true).getId();
+        carritoService.agregarProducto(cliente, audifonos.getId(), 1);
+
+        medir("agregar (producto nuevo)", () -> carritoService.agregarProducto(cliente, silla.getId(), 1));
+        medir("agregar (producto repetido)", () -> carritoService.agregarProducto(cliente, silla.getId(), 1));
+        medir("actualizar cantidad", () -> carritoService.actualizarCantidad(cliente, audifonos.getId(), 3));
+        Carrito carrito = medir("eliminar", () -> carritoService.eliminarProducto(cliente, silla.getId()));
+
+        // El total incremental coincide con sumar las líneas (3 audífonos con 20% DUOC)
+        assertEquals(1, carrito.getItems().size());
+        assertEquals(19_990.0 * 3 * 0.80, carrito.getTotal(), 0.001);
+        assertEquals(carrito.getTotal(), carritoService.obtenerCarrito(cliente).getTotal());
+
+        Carrito vacio = carritoService.actualizarCantidad(cliente, audifonos.getId(), 0);
+        assertEquals(0.0, vacio.getTotal());
+    }
+
+    @Test
+    void unLoteDeOperacionesLeeElCarritoUnaVezYSeAplicaCompleto() {
+        Producto teclado = datos.crearProducto("Teclado Redragon Kumara", 29_990.0, 10);
+        Producto mouse = datos.crearProducto("Mouse Glorious Model O", 44_990.0, 10);
+        Producto microfono = datos.crearProducto("Micrófono HyperX QuadCast", 99_990.0, 10);
+        Long cliente = datos.crearCliente("ignacio", false).getId();
+        carritoService.agregarProducto(cliente, teclado.getId(), 1);
+        carritoService.agregarProducto(cliente, microfono.getId(), 1);
+
+        // +1, +1 y =4 sobre el teclado, un mouse nuevo y el micrófono fuera: 3 cambios, 2 coalescidas
+        estadisticas.clear();
+        ResultadoLote lote = carritoService.aplicarOperaciones(cliente, List.of(
+                new Operacion(TipoOperacion.AGREGAR, teclado.getId(), 1),
+                new Operacion(TipoOperacion.AGREGAR, teclado.getId(), 1),
+                new Operacion(TipoOperacion.AGREGAR, mouse.getId(), 2),
+                new Operacion(TipoOperacion.FIJAR, teclado.getId(), 4),
+                new Operacion(TipoOperacion.QUITAR, microfono.getId(), 0)));
+
+        assertEquals(1, estadisticas.getQueryExecutionCount());
+        assertEquals(0, estadisticas.getEntityFetchCount());
+        assertEquals(3, lote.lineasModificadas());
+        assertEquals(2, lote.coalescidas());
+        assertEquals(2, lote.carrito().getItems().size());
+        assertEquals(4 * 29_990.0 + 2 * 44_990.0, lote.carrito().getTotal(), 0.001);
+
+        // Si una operación no alcanza stock, no se aplica ninguna
+        assertThrows(RuntimeException.class, () -> carritoService.aplicarOperaciones(cliente, List.of(
+                new Operacion(TipoOperacion.QUITAR, mouse.getId(), 0),
+                new Operacion(TipoOperacion.FIJAR, teclado.getId(), 11))));
+        Carrito sinCambios = carritoService.obtenerCarrito(cliente);
+        assertEquals(2, sinCambios.getItems().size());
+        assertEquals(lote.carrito().getTotal(), sinCambios.getTotal());
+
+        // ... y las reservas quedan como estaban
+        assertEquals(2, carritoService.aplicarOperaciones(cliente, List.of(
+                new Operacion(TipoOperacion.FIJAR, mouse.getId(), 10))).carrito().getItems().size());
+    }
+
+    // --- AUXILIARES ---
+
+    private Carrito medir(String operacion, Supplier<Carrito> accion) {
+        estadisticas.clear();
+        Carrito carrito = accion.get();
+
+        assertEquals(1, estadisticas.getQueryExecutionCount(), operacion + ": consultas");
+        assertEquals(0, estadisticas.getEntityFetchCount(), operacion + ": entidades cargadas de a una");
+        assertEquals(0, estadisticas.getCollectionFetchCount(), operacion + ": colecciones cargadas aparte");
+        assertTrue(estadisticas.getPrepareStatementCount() <= MAXIMO_SENTENCIAS,
+                operacion + ": " + estadisticas.getPrepareStatementCount() + " sentencias");
+        return carrito;
+    }
+}
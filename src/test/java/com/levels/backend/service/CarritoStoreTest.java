@@ -0,0 +1,94 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Carrito;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.CarritoRepository;
+
+/**
+ * Pruebas del carrito en memoria con escritura diferida (write-behind): los cambios se
+ * juntan y se escriben por lotes; una caída pierde, a lo sumo, lo que no se alcanzó a volcar.
+ */
+@SpringBootTest(properties = {
+        "levelup.carrito.persistencia=write-behind",
+        "levelup.carrito.volcado-ms=3600000" }) // El volcado se llama a mano
+@DirtiesContext
+class CarritoStoreTest {
+
+    @Autowired
+    private CarritoStore carritoStore;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void trasUnaCaidaSeRecuperaElUltimoVolcado() {
+        Producto teclado = datos.crearProducto("Teclado Razer Huntsman", 49_990.0, 10);
+        Producto mouse = datos.crearProducto("Mouse Razer Viper", 29_990.0, 10);
+        Long cliente = datos.crearCliente("elena").getId();
+
+        // Varios clics: todo en memoria, la BD todavía no sabe nada
+        carritoService.agregarProducto(cliente, teclado.getId(), 1);
+        carritoService.agregarProducto(cliente, teclado.getId(), 1);
+        assertNull(carritoRepository.cargarCompleto(cliente));
+        assertEquals(2, carritoService.obtenerCarrito(cliente).getItems().get(0).getCantidad());
+
+        carritoStore.volcarPendientes();
+        Carrito enBd = carritoRepository.cargarCompleto(cliente);
+        assertEquals(2, enBd.getItems().get(0).getCantidad());
+        assertEquals(99_980.0, enBd.getTotal());
+
+        // Un cambio más que no alcanza a volcarse... y la aplicación se cae
+        carritoService.agregarProducto(cliente, mouse.getId(), 1);
+        assertEquals(2, carritoService.obtenerCarrito(cliente).getItems().size());
+        carritoStore.descartarMemoria();
+
+        // Al volver, el carrito se lee de la BD: queda lo del último volcado
+        Carrito recuperado = carritoService.obtenerCarrito(cliente);
+        assertEquals(1, recuperado.getItems().size());
+        assertEquals(teclado.getId(), recuperado.getItems().get(0).getProducto().getId());
+        assertEquals(99_980.0, recuperado.getTotal());
+
+        // Y se puede seguir comprando con normalidad
+        carritoService.actualizarCantidad(cliente, teclado.getId(), 3);
+        carritoStore.volcarPendientes();
+        assertEquals(3, carritoRepository.cargarCompleto(cliente).getItems().get(0).getCantidad());
+    }
+
+    @Test
+    void elCheckoutVuelcaLosCambiosPendientesAntesDeComprar() {
+        Producto monitor = datos.crearProducto("Monitor LG UltraGear", 189_990.0, 10);
+        Producto parlantes = datos.crearProducto("Parlantes Logitech Z407", 69_990.0, 10);
+        Long cliente = datos.crearCliente("fabian").getId();
+
+        carritoService.agregarProducto(cliente, monitor.getId(), 1);
+        carritoService.agregarProducto(cliente, parlantes.getId(), 2);
+        assertNull(carritoRepository.cargarCompleto(cliente)); // Nada volcado aún
+
+        Orden orden = ordenService.generarOrden(cliente, "Av. Providencia 1234", "Metropolitana", "Providencia");
+
+        assertEquals(2, orden.getDetalles().size());
+        assertEquals(189_990.0 + 2 * 69_990.0, orden.getTotal());
+        assertTrue(carritoService.obtenerCarrito(cliente).getItems().isEmpty());
+        assertEquals(0.0, carritoService.obtenerCarrito(cliente).getTotal());
+    }
+}
@@ -0,0 +1,68 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Producto;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.UsuarioRepository;
+
+/**
+ * Pruebas del total del carrito y de la orden: el descuento DUOC se aplica una sola vez sobre
+ * el subtotal exacto, y el checkout factura con las líneas y el descuento vigentes.
+ */
+@SpringBootTest
+@DirtiesContext
+class CarritoTotalTest {
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void muchasOperacionesNoAcumulanRedondeos() {
+        Producto stickers = datos.crearProducto("Pack Stickers Retro", 10.01, 50);
+        Usuario estudiante = datos.crearCliente("zoe", true);
+
+        // Antes: cada +1 se descontaba y redondeaba por separado (8,01 x 7 = 56,07)
+        for (int i = 0; i < 7; i++) {
+            carritoService.agregarProducto(estudiante.getId(), stickers.getId(), 1);
+        }
+        carritoService.actualizarCantidad(estudiante.getId(), stickers.getId(), 9);
+        carritoService.actualizarCantidad(estudiante.getId(), stickers.getId(), 7);
+        assertEquals(56.06, carritoService.obtenerCarrito(estudiante.getId()).getTotal()); // 70,07 - 20%
+
+        Orden orden = ordenService.generarOrden(estudiante.getId(), "Baquedano 239", "Tarapacá", "Iquique");
+        assertEquals(56.06, orden.getTotal());
+    }
+
+    @Test
+    void elCheckoutUsaElDescuentoVigente() {
+        Producto mousepad = datos.crearProducto("Mousepad XL", 15_990.0, 50);
+        Usuario cliente = datos.crearCliente("ursula", true);
+        carritoService.agregarProducto(cliente.getId(), mousepad.getId(), 2);
+        assertEquals(25_584.0, carritoService.obtenerCarrito(cliente.getId()).getTotal());
+
+        // Deja de ser estudiante DUOC antes de pagar: se factura sin descuento
+        Usuario enBd = usuarioRepository.findById(cliente.getId()).orElseThrow();
+        enBd.setEsEstudianteDuoc(false);
+        usuarioRepository.save(enBd);
+
+        Orden orden = ordenService.generarOrden(cliente.getId(), "Prat 828", "Antofagasta", "Antofagasta");
+        assertEquals(31_980.0, orden.getTotal());
+    }
+}
@@ -0,0 +1,129 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.dto.ProductoCard;
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.ProductoRepository;
+
+/**
+ * Pruebas de la foto en memoria del catálogo: una venta actualiza el stock en su lugar
+ * (sin foto nueva ni cambio de versión, pero sí con ETag nuevo en las listas) y una edición
+ * del Admin arma una foto nueva.
+ */
+@SpringBootTest
+@DirtiesContext
+@AutoConfigureMockMvc
+class CatalogoCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void unaVentaActualizaElStockSinCambiarLaFoto() {
+        Categoria mandos = datos.crearCategoria("Mandos");
+        Producto dualSense = datos.crearProducto("DualSense", mandos, 299_990.0, 10);
+        long versionCatalogo = productoService.versionDatos();
+        long versionProducto = productoService.versionProducto(dualSense.getId());
+        ProductoCatalogo enFoto = productoService.obtenerPorId(dualSense.getId()).orElseThrow();
+        ProductoCard tarjeta = productoService.listarTarjetas("Mandos").get(0);
+
+        Usuario cliente = datos.crearCliente("yolanda");
+        carritoService.agregarProducto(cliente.getId(), dualSense.getId(), 3);
+        ordenService.generarOrden(cliente.getId(), "Av. Alemania 0450", "Araucanía", "Temuco");
+
+        // Misma foto, pero el stock ya es el nuevo, también en lo servido antes
+        assertEquals(versionCatalogo, productoService.versionDatos());
+        assertEquals(7, enFoto.getStock());
+        assertEquals(7, tarjeta.getStock());
+        assertEquals(7, productoService.obtenerDetalle(dualSense.getId()).orElseThrow().stock());
+
+        // La versión del producto (ETag del detalle) sigue a la de la fila
+        Producto enBd = productoRepository.findById(dualSense.getId()).orElseThrow();
+        assertEquals(7, enBd.getStock());
+        assertTrue(productoService.versionProducto(dualSense.getId()) > versionProducto);
+        assertEquals(enBd.getVersion(), productoService.versionProducto(dualSense.getId()));
+
+        // Agotado: la faceta "con stock" lo deja fuera
+        carritoService.agregarProducto(cliente.getId(), dualSense.getId(), 7);
+        ordenService.generarOrden(cliente.getId(), "Av. Alemania 0450", "Araucanía", "Temuco");
+        assertEquals(0, productoService.filtrar(List.of("Mandos"), null, true, null, 0, 10).total());
+        assertEquals(1, productoService.filtrar(List.of("Mandos"), null, false, null, 0, 10).total());
+    }
+
+    @Test
+    void unaVentaCambiaElEtagDeLasListas() throws Exception {
+        Producto cascos = datos.crearProducto("Cascos Etag", datos.crearCategoria("Cascos"), 299_990.0, 5);
+        String etag = mockMvc.perform(get("/api/productos"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        mockMvc.perform(get("/api/productos").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        Usuario cliente = datos.crearCliente("zoe");
+        carritoService.agregarProducto(cliente.getId(), cascos.getId(), 2);
+        ordenService.generarOrden(cliente.getId(), "Av. Alemania 0450", "Araucanía", "Temuco");
+
+        // La foto es la misma, pero el cliente que revalida recibe el stock nuevo (no un 304)
+        String nuevo = mockMvc.perform(get("/api/productos").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, nuevo);
+    }
+
+    @Test
+    void unaEdicionDelAdminArmaUnaFotoNueva() {
+        Categoria volantes = datos.crearCategoria("Volantes");
+        Producto g29 = datos.crearProducto("Logitech G29", volantes, 299_990.0, 4);
+        long versionCatalogo = productoService.versionDatos();
+        ProductoCatalogo antes = productoService.obtenerPorId(g29.getId()).orElseThrow();
+
+        Producto cambios = productoRepository.findById(g29.getId()).orElseThrow();
+        cambios.setPrecio(259_990.0);
+        productoService.guardarProducto(cambios);
+
+        ProductoCatalogo despues = productoService.obtenerPorId(g29.getId()).orElseThrow();
+        assertTrue(productoService.versionDatos() > versionCatalogo);
+        assertEquals(259_990.0, despues.getPrecio());
+        assertEquals(299_990.0, antes.getPrecio()); // La copia anterior no cambia
+        // Quien necesita una entidad recibe una copia propia
+        assertNotSame(despues.aEntidad(), despues.aEntidad());
+        assertEquals("Volantes", despues.aEntidad().getCategoria().getNombre());
+    }
+}
@@ -0,0 +1,57 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas del contador segmentado (sin Spring): nunca entrega más unidades de las que hay.
+ */
+class ContadorStockSegmentadoTest {
+
+    @Test
+    void muchosHilosNuncaReclamanMasQueElStock() throws Exception {
+        ContadorStockSegmentado contador = new ContadorStockSegmentado(1_000);
+        AtomicInteger vendidas = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch largada = new CountDownLatch(1);
+
+        for (int h = 0; h < 32; h++) {
+            pool.submit(() -> {
+                largada.await();
+                for (int i = 0; i < 200; i++) {
+                    if (contador.reclamar(1)) vendidas.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        largada.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(1_000, vendidas.get());
+        assertEquals(0, contador.disponible());
+    }
+
+    @Test
+    void unaCompraPuedeJuntarUnidadesDeVariasFranjas() {
+        ContadorStockSegmentado contador = new ContadorStockSegmentado(16); // 1 unidad por franja
+
+        assertFalse(contador.reclamar(17));
+        assertEquals(16, contador.disponible()); // Lo tomado se devolvió
+
+        assertTrue(contador.reclamar(16));
+        assertEquals(0, contador.disponible());
+
+        contador.devolver(3);
+        assertTrue(contador.reclamar(3));
+    }
+}
@@ -0,0 +1,142 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.DetalleOrden;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.OrdenRepository;
+
+/**
+ * Pruebas de la exportación en streaming: una línea por orden (NDJSON o CSV), con filtros
+ * por fecha y región, leyendo la BD por tramos pequeños (fetch size 2), y fórmulas neutralizadas en el CSV.
+ */
+@SpringBootTest(properties = "levelup.ordenes.exportar.fetch-size=2")
+@DirtiesContext
+@AutoConfigureMockMvc
+class ExportadorOrdenesTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ExportadorOrdenes exportadorOrdenes;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void exportaUnaLineaPorOrdenConFiltros() throws Exception {
+        Usuario cliente = datos.crearCliente("lucas");
+        for (int dia = 1; dia <= 6; dia++) {
+            crearOrden(cliente, LocalDate.of(2025, 5, dia), dia % 2 == 0 ? "Valparaíso" : "Metropolitana", dia);
+        }
+
+        // NDJSON del mes: 6 líneas, cada una un objeto plano
+        String[] lineas = exportar(ExportadorOrdenes.NDJSON, LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 31), null).split("\n");
+        assertEquals(6, lineas.length);
+        JsonNode primera = objectMapper.readTree(lineas[0]);
+        assertEquals("lucas@levelup.cl", primera.get("email").asText());
+        assertEquals(1, primera.get("unidades").asInt());
+        assertEquals("2025-05-01T12:00:00", primera.get("fechaCreacion").asText());
+
+        // Filtros: región + rango de días (ambos incluidos)
+        String[] filtradas = exportar(ExportadorOrdenes.NDJSON, LocalDate.of(2025, 5, 2), LocalDate.of(2025, 5, 5), "Valparaíso").split("\n");
+        assertEquals(2, filtradas.length); // Días 2 y 4
+        assertEquals(4, objectMapper.readTree(filtradas[1]).get("unidades").asInt());
+    }
+
+    @Test
+    void elCsvEscapaLosCamposConComasYComillas() throws Exception {
+        Usuario cliente = datos.crearCliente("marta");
+        Orden orden = crearOrden(cliente, LocalDate.of(2026, 1, 15), "Biobío", 2);
+        orden.setDireccion("Calle \"Los Aromos\" 123, depto 4");
+        ordenRepository.save(orden);
+
+        String[] lineas = exportar(ExportadorOrdenes.CSV, LocalDate.of(2026, 1, 1), null, null).split("\n");
+        assertEquals(2, lineas.length);
+        assertEquals("id,fechaCreacion,usuarioId,email,total,region,comuna,direccion,unidades", lineas[0]);
+        assertTrue(lineas[1].endsWith(",Biobío,Centro,\"Calle \"\"Los Aromos\"\" 123, depto 4\",2"), lineas[1]);
+    }
+
+    @Test
+    void elCsvNeutralizaLasFormulas() throws Exception {
+        Usuario cliente = datos.crearCliente("=HYPERLINK(\"http://x.cl\")");
+        Orden orden = crearOrden(cliente, LocalDate.of(2027, 3, 10), "Los Lagos", 1);
+        orden.setComuna("@SUM(A1:A9)");
+        orden.setDireccion("-2+3,cmd|' /C calc'!A0");
+        ordenRepository.save(orden);
+
+        String[] lineas = exportar(ExportadorOrdenes.CSV, LocalDate.of(2027, 3, 1), null, null).split("\n");
+        assertEquals(2, lineas.length);
+        // Cada celda controlada por el cliente parte con un apóstrofo: la planilla la muestra como texto
+        assertTrue(lineas[1].contains(",\"'=HYPERLINK(\"\"http://x.cl\"\")@levelup.cl\","), lineas[1]);
+        assertTrue(lineas[1].endsWith(",Los Lagos,'@SUM(A1:A9),\"'-2+3,cmd|' /C calc'!A0\",1"), lineas[1]);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void laExportacionEsAsincronaYSoloEllaAlargaElTiempoMaximo() throws Exception {
+        MvcResult resultado = mockMvc.perform(get("/api/ordenes/exportar").param("formato", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(600_000L, resultado.getRequest().getAsyncContext().getTimeout());
+        mockMvc.perform(asyncDispatch(resultado)).andExpect(status().isOk());
+
+        MvcResult invalido = mockMvc.perform(get("/api/ordenes/exportar").param("formato", "xlsx")).andReturn();
+        mockMvc.perform(asyncDispatch(invalido)).andExpect(status().isBadRequest());
+    }
+
+    // --- AUXILIARES ---
+
+    private String exportar(String formato, LocalDate desde, LocalDate hasta, String region) throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportadorOrdenes.exportar(formato, desde, hasta, region, salida);
+        return salida.toString(StandardCharsets.UTF_8);
+    }
+
+    private Orden crearOrden(Usuario usuario, LocalDate dia, String region, int unidades) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setFechaCreacion(Date.from(dia.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant()));
+        orden.setTotal(unidades * 1_000.0);
+        orden.setRegion(region);
+        orden.setComuna("Centro");
+        orden.setDireccion("Av. Siempre Viva " + unidades);
+        DetalleOrden detalle = new DetalleOrden();
+        detalle.setOrden(orden);
+        detalle.setCantidad(unidades);
+        detalle.setPrecioUnitario(1_000.0);
+        orden.getDetalles().add(detalle);
+        return ordenRepository.save(orden);
+    }
+}
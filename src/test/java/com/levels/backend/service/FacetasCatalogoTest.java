@@ -0,0 +1,148 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.dto.ProductoCatalogo;
+import com.levels.backend.dto.ResultadoFiltro;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+
+/**
+ * Pruebas del filtro por facetas: conteos disyuntivos (cada faceta contada con los filtros
+ * de las demás), combinación de filtros (OR dentro de una faceta, AND entre facetas)
+ * y reutilización de ordinales tras borrar productos.
+ * Cada prueba usa sus propias categorías y filtra por ellas: la BD se comparte en la clase.
+ */
+@SpringBootTest(properties = "levelup.catalogo.facetas.rangos-precio=20000,50000,100000,200000")
+@DirtiesContext
+class FacetasCatalogoTest {
+
+    @Autowired
+    private FacetasCatalogo facetas;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void cuentaCadaFacetaConLosFiltrosDeLasDemas() {
+        Categoria teclados = datos.crearCategoria("Teclados Conteo");
+        Categoria mouses = datos.crearCategoria("Mouses Conteo");
+        datos.crearProducto("T1", teclados, 15_000.0, 5);
+        datos.crearProducto("T2", teclados, 30_000.0, 0);
+        datos.crearProducto("T3", teclados, 60_000.0, 3);
+        datos.crearProducto("M1", mouses, 15_000.0, 2);
+        datos.crearProducto("M2", mouses, 250_000.0, 1);
+
+        ResultadoFiltro<ProductoCatalogo> r = facetas.filtrar(
+                List.of("Teclados Conteo"), List.of(), false, null, 0, 10);
+        assertEquals(3, r.total());
+        assertEquals(List.of("T1", "T2", "T3"), nombres(r));
+
+        // La faceta categoría no se cuenta con su propio filtro: muestra lo que sumaría marcar "Mouses"
+        assertEquals(3, r.facetas().get(FacetasCatalogo.FACETA_CATEGORIA).get("Teclados Conteo"));
+        assertEquals(2, r.facetas().get(FacetasCatalogo.FACETA_CATEGORIA).get("Mouses Conteo"));
+        // Las demás sí se cuentan dentro de "Teclados"
+        assertEquals(Map.of("0-20000", 1, "20000-50000", 1, "50000-100000", 1, "100000-200000", 0, "200000+", 0),
+                r.facetas().get(FacetasCatalogo.FACETA_PRECIO));
+        assertEquals(2, r.facetas().get(FacetasCatalogo.FACETA_STOCK).get("true"));
+
+        // Con un rango de precio marcado, el conteo de ese rango sigue mostrando los demás rangos
+        r = facetas.filtrar(List.of("Teclados Conteo", "Mouses Conteo"), List.of("0-20000"), false, null, 0, 10);
+        assertEquals(List.of("T1", "M1"), nombres(r));
+        assertEquals(1, r.facetas().get(FacetasCatalogo.FACETA_PRECIO).get("200000+"));
+        assertEquals(1, r.facetas().get(FacetasCatalogo.FACETA_CATEGORIA).get("Mouses Conteo"));
+    }
+
+    @Test
+    void combinaOrDentroDeUnaFacetaYAndEntreFacetas() {
+        Categoria consolas = datos.crearCategoria("Consolas Combinado");
+        Categoria juegos = datos.crearCategoria("Juegos Combinado");
+        Producto c1 = datos.crearProducto("C1", consolas, 15_000.0, 5);
+        datos.crearProducto("C2", consolas, 30_000.0, 4);
+        Producto c3 = datos.crearProducto("C3", consolas, 60_000.0, 0);
+        Producto j1 = datos.crearProducto("J1", juegos, 70_000.0, 2);
+        Producto j2 = datos.crearProducto("J2", juegos, 10_000.0, 1);
+        calificar(c1, 5, 4);   // 4.5
+        calificar(c3, 5);      // 5 (sin stock)
+        calificar(j1, 4, 4);   // 4
+        calificar(j2, 2);      // 2
+
+        List<String> categorias = List.of("Consolas Combinado", "Juegos Combinado");
+        List<String> rangos = List.of("0-20000", "50000-100000");
+
+        assertEquals(List.of("C1", "C3", "J1", "J2"), nombres(facetas.filtrar(categorias, rangos, false, null, 0, 10)));
+        assertEquals(List.of("C1", "J1", "J2"), nombres(facetas.filtrar(categorias, rangos, true, null, 0, 10)));
+        assertEquals(List.of("C1", "J1"), nombres(facetas.filtrar(categorias, rangos, true, 4, 0, 10)));
+        assertEquals(List.of("C1"), nombres(facetas.filtrar(List.of("Consolas Combinado"), rangos, true, 4, 0, 10)));
+
+        // Conteo de calificación con los demás filtros: "4+" incluye a "5+"
+        Map<String, Integer> estrellas = facetas.filtrar(categorias, rangos, true, 4, 0, 10)
+                .facetas().get(FacetasCatalogo.FACETA_CALIFICACION);
+        assertEquals(0, estrellas.get("5+"));
+        assertEquals(2, estrellas.get("4+"));
+        assertEquals(3, estrellas.get("1+"));
+
+        // Paginación sobre el resultado combinado (el total no cambia)
+        ResultadoFiltro<ProductoCatalogo> segunda = facetas.filtrar(categorias, rangos, false, null, 1, 3);
+        assertEquals(4, segunda.total());
+        assertEquals(List.of("J2"), nombres(segunda));
+
+        assertThrows(RuntimeException.class, () -> facetas.filtrar(categorias, List.of("1-2"), false, null, 0, 10));
+        assertThrows(RuntimeException.class, () -> facetas.filtrar(categorias, rangos, false, 6, 0, 10));
+    }
+
+    @Test
+    void reutilizaElOrdinalDeUnBorradoSinHeredarSusFacetas() {
+        Categoria vieja = datos.crearCategoria("Retro Ordinal");
+        Categoria nueva = datos.crearCategoria("Moderna Ordinal");
+        Producto borrado = datos.crearProducto("Borrado", vieja, 15_000.0, 5);
+        calificar(borrado, 5);
+        int productosAntes = (int) facetas.estadisticas().get("productos");
+
+        productoService.eliminarProducto(borrado.getId());
+        assertEquals(productosAntes - 1, facetas.estadisticas().get("productos"));
+        assertEquals(1, facetas.estadisticas().get("ordinalesLibres"));
+        assertEquals(0, facetas.filtrar(List.of("Retro Ordinal"), List.of(), false, null, 0, 10).total());
+
+        // El siguiente producto ocupa el mismo ordinal: solo deben verse SUS facetas
+        datos.crearProducto("Nuevo", nueva, 150_000.0, 0);
+        assertEquals(productosAntes, facetas.estadisticas().get("productos"));
+        assertEquals(0, facetas.estadisticas().get("ordinalesLibres"));
+
+        ResultadoFiltro<ProductoCatalogo> r = facetas.filtrar(List.of("Moderna Ordinal"), List.of(), false, null, 0, 10);
+        assertEquals(List.of("Nuevo"), nombres(r));
+        assertFalse(r.facetas().get(FacetasCatalogo.FACETA_CATEGORIA).containsKey("Retro Ordinal"));
+        assertEquals(1, r.facetas().get(FacetasCatalogo.FACETA_PRECIO).get("100000-200000"));
+        assertEquals(0, r.facetas().get(FacetasCatalogo.FACETA_PRECIO).get("0-20000"));
+        assertEquals(0, r.facetas().get(FacetasCatalogo.FACETA_STOCK).get("true"));
+        assertEquals(0, r.facetas().get(FacetasCatalogo.FACETA_CALIFICACION).get("1+"));
+        assertEquals(List.of(), nombres(facetas.filtrar(List.of("Moderna Ordinal"), List.of(), true, null, 0, 10)));
+        assertEquals(List.of(), nombres(facetas.filtrar(List.of("Moderna Ordinal"), List.of(), false, 5, 0, 10)));
+    }
+
+    // --- AUXILIARES ---
+
+    private static List<String> nombres(ResultadoFiltro<ProductoCatalogo> r) {
+        return r.items().stream().map(ProductoCatalogo::getNombre).toList();
+    }
+
+    private void calificar(Producto p, int... estrellas) {
+        for (int e : estrellas) {
+            facetas.alCrearResena(new ResenaCreadaEvento(p.getId(), e));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.dto.OrdenResumen;
+import com.levels.backend.dto.PaginaCursor;
+import com.levels.backend.model.DetalleOrden;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.OrdenRepository;
+
+/**
+ * Pruebas del historial de compras paginado por cursor (fechaCreacion, id): sin repetidos
+ * ni saltos entre páginas, aunque dos órdenes tengan la misma fecha, y con filtro por fechas.
+ */
+@SpringBootTest
+@DirtiesContext
+class OrdenHistorialTest {
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void recorreElHistorialPorPaginasSinRepetirNiSaltar() {
+        Usuario cliente = datos.crearCliente("ivan");
+        Usuario otro = datos.crearCliente("julia");
+        List<Long> esperadas = new ArrayList<>();
+        // Dos órdenes por día (mismo instante: desempata el id), del 1 al 5 de marzo
+        for (int dia = 1; dia <= 5; dia++) {
+            esperadas.add(crearOrden(cliente, LocalDate.of(2025, 3, dia), dia).getId());
+            esperadas.add(crearOrden(cliente, LocalDate.of(2025, 3, dia), 1).getId());
+            crearOrden(otro, LocalDate.of(2025, 3, dia), 1);
+        }
+        List<Long> recorridas = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            PaginaCursor<OrdenResumen> pagina = ordenService.historialPaginado(cliente.getId(), cursor, 3, null, null);
+            pagina.items().forEach(o -> recorridas.add(o.id()));
+            cursor = pagina.siguienteCursor();
+            paginas++;
+        } while (cursor != null);
+
+        // Más recientes primero: día 5 (id mayor primero), día 5, día 4...
+        List<Long> descendente = new ArrayList<>();
+        for (int i = esperadas.size() - 1; i >= 0; i--) descendente.add(esperadas.get(i));
+        assertEquals(descendente, recorridas);
+        assertEquals(4, paginas);
+
+        // Fila liviana: unidades = suma de las cantidades de sus líneas
+        OrdenResumen masNueva = ordenService.historialPaginado(cliente.getId(), null, 2, null, null).items().get(1);
+        assertEquals(5L, masNueva.cantidadItems());
+        assertEquals(5 * 1_000.0, masNueva.total());
+    }
+
+    @Test
+    void filtraPorRangoDeFechas() {
+        Usuario cliente = datos.crearCliente("karla");
+        for (int dia = 1; dia <= 10; dia++) {
+            crearOrden(cliente, LocalDate.of(2025, 4, dia), 1);
+        }
+
+        PaginaCursor<OrdenResumen> pagina = ordenService.historialPaginado(cliente.getId(), null, 50,
+                LocalDate.of(2025, 4, 3), LocalDate.of(2025, 4, 6));
+        assertEquals(4, pagina.items().size()); // Del 3 al 6, ambos incluidos
+        assertNull(pagina.siguienteCursor());
+
+        assertThrows(RuntimeException.class,
+                () -> ordenService.historialPaginado(cliente.getId(), "no-es-un-cursor", 5, null, null));
+    }
+
+    // --- AUXILIARES ---
+
+    private Orden crearOrden(Usuario usuario, LocalDate dia, int unidades) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setFechaCreacion(Date.from(dia.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant()));
+        orden.setTotal(unidades * 1_000.0);
+        DetalleOrden detalle = new DetalleOrden();
+        detalle.setOrden(orden);
+        detalle.setCantidad(unidades);
+        detalle.setPrecioUnitario(1_000.0);
+        orden.getDetalles().add(detalle);
+        return ordenRepository.save(orden);
+    }
+}
@@ -0,0 +1,373 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Producto;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.OrdenRepository;
+import com.levels.backend.repository.ProductoRepository;
+import com.levels.backend.repository.StockJdbcRepository;
+import com.levels.backend.repository.UsuarioRepository;
+
+/**
+ * Pruebas de concurrencia del checkout: muchos clientes compran a la vez las últimas
+ * unidades de un mismo producto, o los mismos productos en distinto orden, con y sin
+ * inventario caliente (venta flash).
+ * (Los checkouts por segundo se miden aparte, en benchmark.CheckoutBenchmark.)
+ * Usa una BD H2 en memoria (modo MySQL).
+ */
+@SpringBootTest
+@DirtiesContext
+class OrdenServiceConcurrenciaTest {
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private InventarioCaliente inventarioCaliente;
+
+    @Autowired
+    private StockJdbcRepository stockRepository;
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @Autowired
+    private ReservasStock reservasStock;
+
+    private final AtomicInteger secuencia = new AtomicInteger();
+
+    @Test
+    void elStockNuncaQuedaNegativoConCompradoresSimultaneos() throws Exception {
+        int stockInicial = 10;
+        int compradores = 40;
+        // Los carritos se arman con stock de sobra (cada uno reserva su unidad) y luego un ajuste
+        // de inventario deja menos stock que lo reservado: el checkout igual no debe vender de más.
+        Producto producto = crearProducto("Nintendo Switch OLED", compradores);
+        List<Long> clientes = crearClientesConCarrito(compradores, producto);
+        producto.setStock(stockInicial);
+        productoRepository.save(producto);
+        long ordenesAntes = ordenRepository.count();
+
+        Resultado resultado = comprarEnParalelo(clientes, 16);
+
+        int stockFinal = productoRepository.findById(producto.getId()).orElseThrow().getStock();
+        assertEquals(stockInicial, resultado.exitos());
+        assertEquals(compradores - stockInicial, resultado.errores().size());
+        assertEquals(0, stockFinal);
+        assertEquals(ordenesAntes + stockInicial, ordenRepository.count()); // Los fallidos no dejan orden a medias
+        for (String error : resultado.errores()) {
+            assertEquals("Stock insuficiente para: Nintendo Switch OLED", error);
+        }
+    }
+
+    @Test
+    void variosHilosSobreElMismoProductoNoPierdenDescuentos() throws Exception {
+        int compras = 100;
+        Producto producto = crearProducto("Control DualSense", compras * 2);
+
+        Resultado resultado = comprarEnParalelo(crearClientesConCarrito(compras, producto), 8);
+
+        assertEquals(compras, resultado.exitos());
+        // Cada compra restó su unidad: ningún UPDATE pisó a otro
+        assertEquals(compras, productoRepository.findById(producto.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void unaCompraNoEsperaPorOtroProductoBloqueado() throws Exception {
+        // Para escalar con más hilos, las compras de productos distintos no pueden hacer fila:
+        // mientras otra transacción tiene bloqueada la fila de A, la compra de B termina igual.
+        Producto a = crearProducto("Control Xbox Series", 5);
+        Producto b = crearProducto("Control Pro Switch", 5);
+        Long cliente = crearClienteConCarrito(List.of(b));
+        CountDownLatch bloqueado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> bloqueo = pool.submit(() -> transactionTemplate.executeWithoutResult(tx -> {
+                stockRepository.bloquear(List.of(a.getId()));
+                bloqueado.countDown();
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(bloqueado.await(10, TimeUnit.SECONDS));
+
+            // Si esperara la fila de A, seguiría bloqueada hasta el LOCK_TIMEOUT (10 s)
+            Future<Orden> compra = pool.submit(() -> ordenService.generarOrden(cliente, "Av. Siempre Viva 742", "Metropolitana", "Santiago"));
+            assertEquals(b.getId(), compra.get(5, TimeUnit.SECONDS).getDetalles().get(0).getProducto().getId());
+            assertEquals(4, productoRepository.findById(b.getId()).orElseThrow().getStock());
+
+            liberar.countDown();
+            bloqueo.get(10, TimeUnit.SECONDS);
+        } finally {
+            liberar.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void carritosConLosMismosProductosEnDistintoOrdenNoSeBloqueanMutuamente() throws Exception {
+        int compradores = 60;
+        Producto teclado = crearProducto("Teclado mecánico", compradores);
+        Producto mouse = crearProducto("Mouse gamer", compradores);
+        Producto audifonos = crearProducto("Audífonos 7.1", compradores);
+
+        // La mitad arma el carrito A-B-C y la otra mitad C-B-A: el peor caso para un deadlock
+        List<Long> clientes = new ArrayList<>();
+        for (int i = 0; i < compradores; i++) {
+            List<Producto> orden = i % 2 == 0 ? List.of(teclado, mouse, audifonos) : List.of(audifonos, mouse, teclado);
+            clientes.add(crearClienteConCarrito(orden));
+        }
+
+        long bloqueosAntes = (long) ordenService.estadisticas().get("transaccionesConBloqueo");
+        long conflictosAntes = conflictosDeCheckout();
+
+        // Más hilos que conexiones en el pool (10)
+        Resultado resultado = comprarEnParalelo(clientes, 16);
+
+        assertEquals(List.of(), resultado.errores()); // Ningún deadlock ni timeout de bloqueo
+        assertEquals(compradores, resultado.exitos());
+        for (Producto p : List.of(teclado, mouse, audifonos)) {
+            assertEquals(0, productoRepository.findById(p.getId()).orElseThrow().getStock());
+        }
+        // Tampoco hubo deadlocks resueltos por reintento: un solo bloqueo por compra
+        assertEquals(0, conflictosDeCheckout() - conflictosAntes);
+        Map<String, Object> bloqueo = ordenService.estadisticas();
+        assertEquals(bloqueosAntes + compradores, (long) bloqueo.get("transaccionesConBloqueo"));
+        double promedioMs = ((Number) bloqueo.get("bloqueoPromedioMs")).doubleValue();
+        double maximoMs = ((Number) bloqueo.get("bloqueoMaximoMs")).doubleValue();
+        assertTrue(promedioMs > 0 && promedioMs <= maximoMs, bloqueo.toString());
+        assertTrue(maximoMs < 10_000, bloqueo.toString()); // Nadie retuvo los productos hasta el LOCK_TIMEOUT de otro
+    }
+
+    @Test
+    void elTramoBloqueadoNoIncluyeLasEscriturasDeLaOrdenNiDelCarrito() {
+        Producto consola = crearProducto("PlayStation 5 Slim", 5);
+        Long cliente = crearClienteConCarrito(List.of(consola));
+
+        List<String> sentencias = RegistroSql.grabar(
+                () -> ordenService.generarOrden(cliente, "Av. Siempre Viva 742", "Metropolitana", "Santiago"));
+
+        int bloqueo = -1;
+        for (int i = 0; i < sentencias.size() && bloqueo < 0; i++) {
+            if (sentencias.get(i).contains("for update")) bloqueo = i;
+        }
+        assertTrue(bloqueo >= 0, sentencias.toString());
+        // La orden, su detalle, la vista de lectura y el carrito se escriben ANTES de bloquear el producto...
+        List<String> antes = sentencias.subList(0, bloqueo);
+        for (String tabla : List.of("insert into ordenes ", "insert into detalles_orden ", "insert into ordenes_lectura ",
+                "delete from detalle_carrito ", "update carrito ")) {
+            assertTrue(antes.stream().anyMatch(sql -> sql.startsWith(tabla)), tabla + " no está en " + antes);
+        }
+        // ...y con el producto bloqueado solo queda restar el stock (y los acumulados del paso 5.C)
+        for (String sql : sentencias.subList(bloqueo + 1, sentencias.size())) {
+            assertFalse(sql.matches("(insert into|update|delete from) (ordenes|detalles_orden|ordenes_lectura|carrito|detalle_carrito) .*"), sql);
+        }
+    }
+
+    @Test
+    void ventaFlashConInventarioCalienteNoVendeDeMas() throws Exception {
+        int stockInicial = 10;
+        int compradores = 30;
+        Producto producto = crearProducto("Steam Deck OLED", compradores);
+        List<Long> clientes = crearClientesConCarrito(compradores, producto);
+        producto.setStock(stockInicial);
+        productoRepository.save(producto);
+        productoService.cambiarInventarioCaliente(producto.getId(), true);
+
+        Resultado resultado = comprarEnParalelo(clientes, 16);
+        inventarioCaliente.volcar();
+
+        assertEquals(stockInicial, resultado.exitos());
+        for (String error : resultado.errores()) {
+            assertEquals("Stock insuficiente para: Steam Deck OLED", error);
+        }
+        assertEquals(0, inventarioCaliente.stockEnMemoria(producto.getId()));
+        assertEquals(0, productoRepository.findById(producto.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void ventaFlashNoVendeLoReservadoPorOtros() throws Exception {
+        Producto producto = crearProducto("Xbox Series X Edición Halo", 3);
+        productoService.cambiarInventarioCaliente(producto.getId(), true);
+        Long sinReserva = crearClienteConCarrito(List.of(producto, producto));
+        reservasStock.liberar(sinReserva, producto.getId()); // Su reserva venció
+        Long conReserva = crearClienteConCarrito(List.of(producto, producto));
+
+        // Quedan 3 unidades y 2 son del otro cliente: no le alcanza aunque el contador tenga 3
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> ordenService.generarOrden(sinReserva, "Av. Siempre Viva 742", "Metropolitana", "Santiago"));
+        assertEquals("Stock insuficiente para: Xbox Series X Edición Halo", error.getMessage());
+        assertEquals(3, inventarioCaliente.stockEnMemoria(producto.getId())); // Lo reclamado se devolvió
+
+        ordenService.generarOrden(conReserva, "Av. Siempre Viva 742", "Metropolitana", "Santiago");
+        assertEquals(1, inventarioCaliente.stockEnMemoria(producto.getId()));
+    }
+
+    // --- AUXILIARES ---
+
+    private long conflictosDeCheckout() {
+        Object fila = reintentos.estadisticas().get("orden.checkout");
+        return fila == null ? 0 : (long) ((Map<?, ?>) fila).get("conflictos");
+    }
+
+    /**
+     * Anota el SQL que prepara cada conexión del pool (solo en el hilo que está grabando).
+     */
+    @TestConfiguration
+    static class RegistroSql {
+
+        private static final ThreadLocal<List<String>> grabacion = new ThreadLocal<>();
+
+        static List<String> grabar(Runnable accion) {
+            List<String> sentencias = new ArrayList<>();
+            grabacion.set(sentencias);
+            try {
+                accion.run();
+            } finally {
+                grabacion.remove();
+            }
+            return sentencias;
+        }
+
+        @Bean
+        static BeanPostProcessor registrarSql() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String nombre) {
+                    if (!(bean instanceof DataSource dataSource)) return bean;
+                    return envolver(DataSource.class, dataSource, (metodo, resultado, args) ->
+                            resultado instanceof Connection conexion ? envolver(Connection.class, conexion, (m, r, a) -> {
+                                List<String> sentencias = grabacion.get();
+                                if (sentencias != null && m.getName().startsWith("prepare") && a != null && a[0] instanceof String sql) {
+                                    sentencias.add(sql.trim().toLowerCase());
+                                }
+                                return r;
+                            }) : resultado);
+                }
+            };
+        }
+
+        private interface AlRetornar {
+            Object aplicar(Method metodo, Object resultado, Object[] args);
+        }
+
+        private static <T> T envolver(Class<T> tipo, T destino, AlRetornar alRetornar) {
+            return tipo.cast(Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[] { tipo }, (proxy, metodo, args) -> {
+                try {
+                    return alRetornar.aplicar(metodo, metodo.invoke(destino, args), args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }));
+        }
+    }
+
+    private record Resultado(int exitos, List<String> errores) {}
+
+    private Resultado comprarEnParalelo(List<Long> clientes, int hilos) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger exitos = new AtomicInteger();
+        ConcurrentLinkedQueue<String> errores = new ConcurrentLinkedQueue<>();
+
+        for (Long clienteId : clientes) {
+            pool.submit(() -> {
+                try {
+                    largada.await();
+                    ordenService.generarOrden(clienteId, "Av. Siempre Viva 742", "Metropolitana", "Santiago");
+                    exitos.incrementAndGet();
+                } catch (Exception e) {
+                    errores.add(e.getMessage());
+                }
+                return null;
+            });
+        }
+
+        largada.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        return new Resultado(exitos.get(), new ArrayList<>(errores));
+    }
+
+    private Producto crearProducto(String nombre, int stock) {
+        return productoRepository.save(DatosPrueba.producto(nombre, null, 29_990.0, stock));
+    }
+
+    private List<Long> crearClientesConCarrito(int cantidad, Producto producto) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            ids.add(crearClienteConCarrito(List.of(producto)));
+        }
+        return ids;
+    }
+
+    private Long crearClienteConCarrito(List<Producto> productos) {
+        int n = secuencia.incrementAndGet();
+        Usuario u = new Usuario();
+        u.setNombre("Cliente " + n);
+        u.setEmail("cliente" + n + "@levelup.cl");
+        u.setPassword("clave");
+        u.setRol("CLIENTE");
+        Long usuarioId = usuarioRepository.save(u).getId();
+        // En una sola transacción, como haría open-in-view en una petición HTTP
+        transactionTemplate.executeWithoutResult(tx -> {
+            for (Producto p : productos) {
+                carritoService.agregarProducto(usuarioId, p.getId(), 1);
+            }
+        });
+        return usuarioId;
+    }
+}
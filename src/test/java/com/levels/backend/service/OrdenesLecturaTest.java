@@ -0,0 +1,149 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.DetalleOrden;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.OrdenLectura;
+import com.levels.backend.model.Producto;
+import com.levels.backend.model.Usuario;
+import com.levels.backend.repository.CategoriaRepository;
+import com.levels.backend.repository.OrdenLecturaRepository;
+import com.levels.backend.repository.OrdenRepository;
+import com.levels.backend.repository.ProductoRepository;
+
+/**
+ * Pruebas de la vista de lectura de las órdenes: se escribe en el checkout con los datos del
+ * producto congelados, y las órdenes anteriores a ella se completan por lotes o al pedirlas.
+ */
+@SpringBootTest(properties = "levelup.ordenes.lectura.lote-completar=2")
+@DirtiesContext
+class OrdenesLecturaTest {
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private OrdenesLectura ordenesLectura;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private OrdenLecturaRepository ordenLecturaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void elCheckoutEscribeLaVistaConElProductoCongelado() throws Exception {
+        Categoria perifericos = new Categoria();
+        perifericos.setNombre("Periféricos");
+        perifericos = categoriaRepository.save(perifericos);
+        Producto audifonos = datos.crearProducto("HyperX Cloud II", 79_990.0, 20);
+        audifonos.setCategoria(perifericos);
+        audifonos = productoService.guardarProducto(audifonos);
+        Usuario cliente = datos.crearCliente("wanda");
+        carritoService.agregarProducto(cliente.getId(), audifonos.getId(), 2);
+        Orden orden = ordenService.generarOrden(cliente.getId(), "Los Carrera 1200", "Biobío", "Concepción");
+
+        // Después de la compra el producto cambia de nombre y de precio
+        audifonos = productoRepository.findById(audifonos.getId()).orElseThrow();
+        audifonos.setNombre("HyperX Cloud II (2026)");
+        audifonos.setPrecio(89_990.0);
+        productoService.guardarProducto(audifonos);
+
+        OrdenLectura vista = ordenService.findById(orden.getId());
+        assertEquals(2L, vista.getCantidadItems());
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(vista));
+        // Misma forma que el JSON de Orden: usuario completo sin contraseña, categoría como objeto
+        assertEquals("wanda@levelup.cl", json.get("usuario").get("email").asText());
+        assertEquals("Novato", json.get("usuario").get("nivel").asText());
+        assertTrue(json.get("usuario").has("puntosLevelUp"));
+        assertFalse(json.get("usuario").has("password"));
+        assertFalse(json.has("usuarioId"));
+        JsonNode linea = json.get("detalles").get(0);
+        JsonNode producto = linea.get("producto");
+        assertEquals("HyperX Cloud II", producto.get("nombre").asText());
+        assertEquals(79_990.0, producto.get("precio").asDouble());
+        assertEquals("Periféricos", producto.get("categoria").get("nombre").asText());
+        assertEquals(perifericos.getId(), producto.get("categoria").get("id").asLong());
+        assertEquals(79_990.0, linea.get("precioUnitario").asDouble());
+        assertEquals(2, linea.get("cantidad").asInt());
+        assertEquals("Concepción", json.get("comuna").asText());
+
+        List<OrdenLectura> historial = ordenService.obtenerOrdenesUsuario(cliente.getId());
+        assertEquals(1, historial.size());
+        assertEquals(orden.getId(), historial.get(0).getId());
+    }
+
+    @Test
+    void lasOrdenesAntiguasSeCompletanPorLotesOAlPedirlas() {
+        Producto silla = datos.crearProducto("Silla Gamer Cougar", 189_990.0, 20);
+        Usuario cliente = datos.crearCliente("ximena");
+        // Órdenes "antiguas": guardadas directo, sin vista de lectura
+        Orden primera = crearOrdenSinVista(cliente, silla, 1);
+        for (int i = 0; i < 4; i++) {
+            crearOrdenSinVista(cliente, silla, 1);
+        }
+        assertTrue(ordenLecturaRepository.findById(primera.getId()).isEmpty());
+
+        // Pedida antes del lote: se arma desde la Orden y queda guardada
+        OrdenLectura vista = ordenService.findById(primera.getId());
+        assertEquals(189_990.0, vista.getTotal());
+        assertTrue(ordenLecturaRepository.findById(primera.getId()).isPresent());
+        assertNull(ordenService.findById(-1L));
+
+        // El resto, de a 2 por transacción
+        assertEquals(4, ordenesLectura.completarFaltantes());
+        assertEquals(0, ordenesLectura.completarFaltantes());
+        assertEquals(ordenRepository.count(), ordenService.listarTodas().size());
+        assertEquals(5, ordenService.obtenerOrdenesUsuario(cliente.getId()).size());
+    }
+
+    // --- AUXILIARES ---
+
+    private Orden crearOrdenSinVista(Usuario usuario, Producto producto, int cantidad) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setTotal(cantidad * producto.getPrecio());
+        orden.setRegion("Los Lagos");
+        orden.setComuna("Puerto Montt");
+        DetalleOrden detalle = new DetalleOrden();
+        detalle.setOrden(orden);
+        detalle.setProducto(producto);
+        detalle.setCantidad(cantidad);
+        detalle.setPrecioUnitario(producto.getPrecio());
+        orden.getDetalles().add(detalle);
+        return ordenRepository.save(orden);
+    }
+}
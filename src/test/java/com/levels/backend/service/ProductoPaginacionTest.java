@@ -0,0 +1,120 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.dto.PaginaCursor;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.CategoriaRepository;
+
+/**
+ * Pruebas de la paginación por cursor del catálogo: recorrer todas las páginas entrega cada
+ * producto una sola vez y en orden, también con precio o nombre en NULL.
+ */
+@SpringBootTest
+@DirtiesContext
+class ProductoPaginacionTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    // Se carga una vez: el contexto (y la BD en memoria) se comparte entre las pruebas de la clase
+    private static final List<Producto> juegos = new ArrayList<>();
+
+    @BeforeEach
+    void cargarCatalogo() {
+        if (!juegos.isEmpty()) return;
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Juegos de Mesa");
+        categoria = categoriaRepository.save(categoria);
+        // Precios y nombres repetidos, vacíos y sin asignar (NULL)
+        juegos.add(datos.crearProducto("Catan", categoria, 29_990.0, 5));
+        juegos.add(datos.crearProducto(null, categoria, 19_990.0, 5));
+        juegos.add(datos.crearProducto("Carcassonne", categoria, null, 5));
+        juegos.add(datos.crearProducto("", categoria, 29_990.0, 5));
+        juegos.add(datos.crearProducto(null, categoria, null, 5));
+        juegos.add(datos.crearProducto("Dixit", categoria, 24_990.0, 5));
+        juegos.add(datos.crearProducto("Catan", categoria, null, 5));
+        juegos.add(datos.crearProducto("Azul", null, 19_990.0, 5));
+    }
+
+    @Test
+    void porPrecioRecorreTodoConPreciosNulos() {
+        // NULL primero (como los ordena MySQL), luego por precio; el id desempata
+        List<Long> esperados = ordenados(Comparator.comparing(Producto::getPrecio, Comparator.nullsFirst(Comparator.naturalOrder())));
+        assertEquals(esperados, recorrer(null, "precio"));
+        assertEquals(sinCategoria(esperados), recorrer("Juegos de Mesa", "precio"));
+    }
+
+    @Test
+    void porNombreNoSaltaNombresNulosNiVacios() {
+        List<Long> esperados = ordenados(Comparator.comparing(Producto::getNombre, Comparator.nullsFirst(Comparator.naturalOrder())));
+        List<Long> recorridos = recorrer(null, "nombre");
+        assertEquals(esperados, recorridos);
+        assertEquals(juegos.size(), recorridos.size());
+        assertEquals(sinCategoria(esperados), recorrer("Juegos de Mesa", "nombre"));
+    }
+
+    @Test
+    void unCursorCorruptoSeRechazaYLosIndicesExisten() {
+        assertThrows(RuntimeException.class, () -> productoService.listarPagina(null, "precio", "no-es-un-cursor", 2));
+        // Un cursor de otro criterio tampoco sirve
+        String cursorNombre = productoService.listarPagina(null, "nombre", null, 1).siguienteCursor();
+        assertThrows(RuntimeException.class, () -> productoService.listarPagina(null, "precio", cursorNombre, 2));
+
+        List<String> indices = jdbcTemplate.queryForList(
+                "SELECT LOWER(INDEX_NAME) FROM INFORMATION_SCHEMA.INDEXES WHERE LOWER(TABLE_NAME) = 'producto'", String.class);
+        assertTrue(indices.containsAll(List.of("idx_producto_precio_id", "idx_producto_nombre_id",
+                "idx_producto_categoria_precio_id", "idx_producto_categoria_nombre_id")), indices.toString());
+    }
+
+    // --- AUXILIARES ---
+
+    /**
+     * Pide páginas de 2 hasta que no haya cursor siguiente y devuelve los ids en el orden recibido.
+     */
+    private List<Long> recorrer(String categoria, String orden) {
+        List<Long> vistos = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaCursor<Producto> pagina = productoService.listarPagina(categoria, orden, cursor, 2);
+            pagina.items().forEach(p -> vistos.add(p.getId()));
+            cursor = pagina.siguienteCursor();
+        } while (cursor != null);
+        return vistos;
+    }
+
+    // Ids de todos los juegos en el orden indicado; a igual valor, menor id primero
+    private static List<Long> ordenados(Comparator<Producto> orden) {
+        return juegos.stream().sorted(orden.thenComparing(Producto::getId)).map(Producto::getId).toList();
+    }
+
+    // El último juego no tiene categoría: el filtro por categoría lo deja fuera
+    private static List<Long> sinCategoria(List<Long> ids) {
+        Long sinCategoria = juegos.get(juegos.size() - 1).getId();
+        return ids.stream().filter(id -> !id.equals(sinCategoria)).toList();
+    }
+}
@@ -0,0 +1,91 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.dto.ProductoCard;
+import com.levels.backend.dto.ProductoDetalle;
+import com.levels.backend.model.Categoria;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.CategoriaRepository;
+
+/**
+ * Pruebas de las vistas livianas del catálogo (tarjetas y detalle aplanado), tal como las
+ * sirven GET /api/productos/tarjetas y /api/productos/{id}/detalle desde la foto en memoria.
+ */
+@SpringBootTest
+@DirtiesContext
+class ProductoVistasTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void lasTarjetasTraenLaCategoriaComoTextoYPesanMenos() throws Exception {
+        Categoria sillas = crearCategoria("Sillas Gamer", "sillas.png");
+        for (int i = 0; i < 20; i++) {
+            crearProducto("Silla Cougar " + i, sillas);
+        }
+
+        List<ProductoCard> tarjetas = productoService.listarTarjetas("Sillas Gamer");
+        List<?> completos = productoService.listarProductos("Sillas Gamer");
+        assertEquals(20, tarjetas.size());
+        assertEquals(completos.size(), tarjetas.size());
+        assertEquals("Sillas Gamer", tarjetas.get(0).getCategoria());
+        assertEquals(10, tarjetas.get(0).getStock());
+
+        // Sin descripción, video ni categoría anidada, el JSON pesa menos de la mitad
+        int bytesTarjetas = objectMapper.writeValueAsBytes(tarjetas).length;
+        int bytesCompletos = objectMapper.writeValueAsBytes(completos).length;
+        assertTrue(bytesTarjetas * 2 < bytesCompletos,
+                "Tarjetas: " + bytesTarjetas + " bytes, productos: " + bytesCompletos + " bytes");
+    }
+
+    @Test
+    void elDetalleTraeLaCategoriaAplanada() {
+        Categoria consolas = crearCategoria("Consolas", "consolas.png");
+        Producto ps5 = crearProducto("PlayStation 5", consolas);
+
+        ProductoDetalle detalle = productoService.obtenerDetalle(ps5.getId()).orElseThrow();
+        assertEquals("PlayStation 5", detalle.nombre());
+        assertEquals(consolas.getId(), detalle.categoriaId());
+        assertEquals("Consolas", detalle.categoria());
+        assertEquals("consolas.png", detalle.categoriaImagenUrl());
+        assertEquals(ps5.getVideoUrl(), detalle.videoUrl());
+        assertNull(productoService.obtenerDetalle(-1L).orElse(null));
+    }
+
+    // --- AUXILIARES ---
+
+    private Categoria crearCategoria(String nombre, String imagenUrl) {
+        Categoria c = new Categoria();
+        c.setNombre(nombre);
+        c.setImagenUrl(imagenUrl);
+        return categoriaRepository.save(c);
+    }
+
+    private Producto crearProducto(String nombre, Categoria categoria) {
+        Producto p = DatosPrueba.producto(nombre, categoria, 49_990.0, 10);
+        p.setDescripcion("Descripción larga del producto con especificaciones técnicas, garantía y "
+                + "contenido de la caja que la grilla del catálogo nunca muestra.");
+        p.setImagenUrl("https://cdn.levelup.cl/productos/" + nombre.hashCode() + ".png");
+        p.setVideoUrl("https://www.youtube.com/embed/" + nombre.hashCode());
+        return productoService.guardarProducto(p);
+    }
+}
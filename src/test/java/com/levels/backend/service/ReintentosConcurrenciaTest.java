@@ -0,0 +1,126 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.ProductoRepository;
+import com.levels.backend.repository.StockJdbcRepository;
+import com.levels.backend.repository.StockJdbcRepository.LineaStock;
+
+/**
+ * Pruebas del bloqueo optimista (@Version) y del reintento: una escritura que se cruza con
+ * otra no la pisa, se repite con datos frescos.
+ */
+@SpringBootTest(properties = {
+        "levelup.reintentos.max-intentos=3",
+        "levelup.reintentos.espera-base-ms=1" })
+@DirtiesContext
+class ReintentosConcurrenciaTest {
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private StockJdbcRepository stockRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void unCambioDePrecioQueSeCruzaConUnaVentaSeReintentaSinPisarElStock() {
+        Producto mouse = datos.crearProducto("Mouse Logitech G502", 59_990.0, 10);
+        AtomicInteger intentos = new AtomicInteger();
+
+        reintentos.ejecutar("prueba.precio", () -> {
+            Producto p = productoRepository.findById(mouse.getId()).orElseThrow();
+            if (intentos.incrementAndGet() == 1) {
+                // Mientras el Admin edita, un checkout (otra transacción) vende una unidad
+                CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                        tx -> stockRepository.descontar(List.of(new LineaStock(mouse.getId(), 1))))).join();
+            }
+            p.setPrecio(39_990.0);
+            return productoRepository.saveAndFlush(p);
+        });
+
+        Producto guardado = productoRepository.findById(mouse.getId()).orElseThrow();
+        assertEquals(2, intentos.get());
+        assertEquals(9, guardado.getStock()); // La venta no se perdió
+        assertEquals(39_990.0, guardado.getPrecio());
+        assertEquals(Map.of("ejecuciones", 1L, "conflictos", 1L, "reintentos", 1L, "agotados", 0L),
+                reintentos.estadisticas().get("prueba.precio"));
+    }
+
+    @Test
+    void siElConflictoPersisteSeRindeConUnMensajeClaro() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> reintentos.ejecutar("prueba.agotado", () -> {
+            intentos.incrementAndGet();
+            throw new CannotAcquireLockException("Deadlock simulado");
+        }));
+
+        assertEquals("Otro cambio se cruzó con el tuyo. Intenta nuevamente.", error.getMessage());
+        assertEquals(3, intentos.get());
+        assertEquals(Map.of("ejecuciones", 1L, "conflictos", 3L, "reintentos", 2L, "agotados", 1L),
+                reintentos.estadisticas().get("prueba.agotado"));
+    }
+
+    @Test
+    void elAdminNoPisaUnaEdicionQueNoVio() {
+        Producto teclado = datos.crearProducto("Teclado HyperX", 59_990.0, 5);
+        Producto pantallaVieja = productoRepository.findById(teclado.getId()).orElseThrow();
+
+        // Otro Admin guarda primero
+        Producto otro = productoRepository.findById(teclado.getId()).orElseThrow();
+        otro.setDescripcion("Switches rojos");
+        productoService.actualizarProducto(teclado.getId(), otro);
+
+        pantallaVieja.setPrecio(1.0);
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> productoService.actualizarProducto(teclado.getId(), pantallaVieja));
+        assertEquals("El producto fue modificado por otra persona. Recarga para ver los cambios.", error.getMessage());
+        assertEquals(59_990.0, productoRepository.findById(teclado.getId()).orElseThrow().getPrecio());
+    }
+
+    @Test
+    void unaEdicionConStockViejoNoPisaUnaVenta() {
+        Producto audifonos = datos.crearProducto("Audífonos Razer", 59_990.0, 10);
+        Producto pantalla = productoRepository.findById(audifonos.getId()).orElseThrow();
+
+        // Mientras el Admin tiene la pantalla abierta, un checkout vende 3 unidades (sube la versión)
+        transactionTemplate.executeWithoutResult(
+                tx -> stockRepository.descontar(List.of(new LineaStock(audifonos.getId(), 3))));
+
+        pantalla.setPrecio(54_990.0); // El Admin cambia el precio y reenvía el stock que veía (10)
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> productoService.actualizarProducto(audifonos.getId(), pantalla));
+
+        Producto guardado = productoRepository.findById(audifonos.getId()).orElseThrow();
+        assertEquals(7, guardado.getStock()); // La venta se mantiene
+        assertEquals(59_990.0, guardado.getPrecio());
+    }
+}
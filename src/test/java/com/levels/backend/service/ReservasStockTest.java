@@ -0,0 +1,171 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Producto;
+import com.levels.backend.model.ReservaStock;
+import com.levels.backend.repository.ProductoRepository;
+import com.levels.backend.repository.ReservaStockRepository;
+import com.levels.backend.service.CarritoService.Operacion;
+import com.levels.backend.service.CarritoService.TipoOperacion;
+
+/**
+ * Pruebas del libro de reservas: agregar al carrito aparta unidades, el checkout las convierte
+ * en compra, y las vencidas se liberan. TTL de 1 segundo para no esperar 15 minutos.
+ * Si la BD falla, la memoria no queda con reservas que la tabla no tiene.
+ */
+@SpringBootTest(properties = {
+        "levelup.reservas.ttl-segundos=1",
+        "levelup.reservas.barrido-ms=3600000" }) // El barrido se llama a mano
+@DirtiesContext
+class ReservasStockTest {
+
+    @Autowired
+    private ReservasStock reservasStock;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @MockitoSpyBean // Para simular que la BD falla al escribir o borrar una reserva
+    private ReservaStockRepository reservaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void agregarAlCarritoApartaUnidadesYElCheckoutLasConvierte() {
+        Producto juego = datos.crearProducto("Zelda: Tears of the Kingdom", 59_990.0, 3);
+        Long ana = datos.crearCliente("ana").getId();
+        Long beto = datos.crearCliente("beto").getId();
+
+        agregar(ana, juego, 2);
+        assertEquals(Map.of(juego.getId(), 1), productoService.disponibilidad(List.of(juego.getId())));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> agregar(beto, juego, 2));
+        assertEquals("No hay suficiente stock. Disponible: 1", error.getMessage());
+
+        agregar(beto, juego, 1);
+        assertEquals(0, productoService.disponibilidad(List.of(juego.getId())).get(juego.getId()));
+
+        // Beto se arrepiente: su unidad vuelve a estar disponible
+        carritoService.eliminarProducto(beto, juego.getId());
+        assertEquals(2, reservasStock.reservado(juego.getId()));
+
+        // Ana paga: su reserva se convierte en descuento de stock
+        ordenService.generarOrden(ana, "Av. Siempre Viva 742", "Metropolitana", "Santiago");
+        assertEquals(0, reservasStock.reservado(juego.getId()));
+        assertEquals(1, productoRepository.findById(juego.getId()).orElseThrow().getStock());
+        assertEquals(0, reservaRepository.count());
+    }
+
+    @Test
+    void lasReservasSobrevivenUnReinicioYLasVencidasSeLiberan() throws Exception {
+        Producto consola = datos.crearProducto("PlayStation 5 Pro", 59_990.0, 2);
+        agregar(datos.crearCliente("carla").getId(), consola, 2);
+
+        // "Reinicio": se vacía la memoria y se recarga desde la tabla
+        reservasStock.reconstruir();
+        assertEquals(2, reservasStock.reservado(consola.getId()));
+
+        Thread.sleep(1_100); // Pasa el TTL
+        reservasStock.liberarVencidas();
+
+        assertEquals(0, reservasStock.reservado(consola.getId()));
+        assertEquals(0, reservaRepository.count());
+        assertEquals(2, productoService.disponibilidad(List.of(consola.getId())).get(consola.getId()));
+    }
+
+    @Test
+    void siLaFilaNoSeEscribeLaReservaNoQuedaSoloEnMemoria() {
+        Producto control = datos.crearProducto("DualSense Edge", 59_990.0, 3);
+        Long diego = datos.crearCliente("diego").getId();
+        agregar(diego, control, 1);
+        doThrow(new DataAccessResourceFailureException("BD no disponible"))
+                .when(reservaRepository).guardar(eq(diego), anyLong(), anyInt(), any());
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> carritoService.actualizarCantidad(diego, control.getId(), 3));
+        assertEquals("BD no disponible", error.getMessage());
+        // Memoria y tabla siguen con la reserva anterior
+        assertEquals(1, reservasStock.reservado(control.getId()));
+        assertEquals(List.of(1), cantidadesEnTabla(diego, control));
+
+        reset(reservaRepository);
+        carritoService.eliminarProducto(diego, control.getId());
+        assertEquals(0, reservasStock.reservado(control.getId()));
+    }
+
+    @Test
+    void unLoteRechazadoDevuelveTodasLasReservasAunqueUnaDevolucionFalle() {
+        Producto arcade = datos.crearProducto("Mando Arcade", 59_990.0, 2);
+        Producto volante = datos.crearProducto("Volante Logitech G29", 59_990.0, 2);
+        Producto pedalera = datos.crearProducto("Pedalera", 59_990.0, 1);
+        Long elena = datos.crearCliente("elena").getId();
+        doThrow(new DataAccessResourceFailureException("BD no disponible"))
+                .when(reservaRepository).eliminar(elena, List.of(arcade.getId()));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> carritoService.aplicarOperaciones(elena, List.of(
+                new Operacion(TipoOperacion.AGREGAR, arcade.getId(), 1),
+                new Operacion(TipoOperacion.AGREGAR, volante.getId(), 1),
+                new Operacion(TipoOperacion.AGREGAR, pedalera.getId(), 5))));
+
+        // Se informa el error original; el de la devolución que falló va adjunto
+        assertEquals("No hay suficiente stock. Disponible: 1", error.getMessage());
+        assertEquals(1, error.getSuppressed().length);
+        // La devolución del volante no se saltó
+        assertEquals(0, reservasStock.reservado(volante.getId()));
+        assertEquals(List.of(), cantidadesEnTabla(elena, volante));
+        // La fila del mando no se pudo borrar: la memoria la conserva igual que la tabla
+        assertEquals(1, reservasStock.reservado(arcade.getId()));
+        assertEquals(List.of(1), cantidadesEnTabla(elena, arcade));
+
+        reset(reservaRepository);
+        reservasStock.liberar(elena, arcade.getId());
+        assertEquals(0, reservaRepository.count());
+    }
+
+    // --- AUXILIARES ---
+
+    private List<Integer> cantidadesEnTabla(Long usuarioId, Producto producto) {
+        return reservaRepository.findAll().stream()
+                .filter(r -> r.getUsuarioId().equals(usuarioId) && r.getProductoId().equals(producto.getId()))
+                .map(ReservaStock::getCantidad)
+                .toList();
+    }
+
+    private void agregar(Long usuarioId, Producto producto, int cantidad) {
+        // En una sola transacción, como haría open-in-view en una petición HTTP
+        transactionTemplate.executeWithoutResult(tx -> carritoService.agregarProducto(usuarioId, producto.getId(), cantidad));
+    }
+}
@@ -0,0 +1,120 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.controller.CarritoController;
+import com.levels.backend.model.Producto;
+
+/**
+ * Pruebas de la cabecera Idempotency-Key: los reintentos (simultáneos o después de un
+ * reinicio) reciben la respuesta de la primera vez sin volver a ejecutar la operación.
+ */
+@SpringBootTest
+@DirtiesContext
+class RespuestasIdempotentesTest {
+
+    @Autowired
+    private RespuestasIdempotentes respuestasIdempotentes;
+
+    @Autowired
+    private CarritoController carritoController;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void losDuplicadosSimultaneosEsperanALaPrimeraEjecucion() throws Exception {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        Map<String, Object> peticion = Map.of("usuarioId", 1);
+
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        List<Future<ResponseEntity<?>>> respuestas = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            respuestas.add(hilos.submit(() -> {
+                largada.await();
+                return respuestasIdempotentes.ejecutar("reintento-1", "prueba.lenta", peticion, () -> {
+                    ejecuciones.incrementAndGet();
+                    dormir(200);
+                    return ResponseEntity.ok(Map.of("orden", 42));
+                });
+            }));
+        }
+        largada.countDown();
+        for (Future<ResponseEntity<?>> respuesta : respuestas) {
+            assertEquals(200, respuesta.get().getStatusCode().value());
+        }
+        hilos.shutdown();
+        assertEquals(1, ejecuciones.get());
+
+        // Tras un reinicio la respuesta sale de la BD; con otros datos, la clave se rechaza
+        respuestasIdempotentes.descartarMemoria();
+        ResponseEntity<?> repetida = respuestasIdempotentes.ejecutar("reintento-1", "prueba.lenta", peticion, () -> {
+            ejecuciones.incrementAndGet();
+            return ResponseEntity.ok(Map.of("orden", 43));
+        });
+        assertEquals("{\"orden\":42}", repetida.getBody());
+        assertEquals("true", repetida.getHeaders().getFirst(RespuestasIdempotentes.CABECERA_REPETIDA));
+        assertEquals(422, respuestasIdempotentes.ejecutar("reintento-1", "prueba.lenta", Map.of("usuarioId", 2),
+                () -> ResponseEntity.ok("no debería ejecutarse")).getStatusCode().value());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void reintentarAgregarAlCarritoNoDuplicaLaCantidad() {
+        Producto consola = new Producto();
+        consola.setNombre("PlayStation 5");
+        consola.setPrecio(549_990.0);
+        consola.setStock(5);
+        consola = productoService.guardarProducto(consola);
+        Long cliente = datos.crearCliente("hector").getId();
+        Map<String, Object> peticion = Map.of("usuarioId", cliente, "productoId", consola.getId(), "cantidad", 1);
+
+        carritoController.agregar("agregar-ps5", peticion);
+        carritoController.agregar("agregar-ps5", peticion); // Timeout en la app: reintenta
+
+        assertEquals(1, carritoService.obtenerCarrito(cliente).getItems().get(0).getCantidad());
+
+        // Sin clave, cada petición es una operación nueva
+        carritoController.agregar(null, peticion);
+        assertEquals(2, carritoService.obtenerCarrito(cliente).getItems().get(0).getCantidad());
+
+        // Un error no se guarda: al reintentar con la misma clave se vuelve a ejecutar
+        Map<String, Object> demasiadas = Map.of("usuarioId", cliente, "productoId", consola.getId(), "cantidad", 9);
+        assertEquals(400, carritoController.agregar("agregar-muchas", demasiadas).getStatusCode().value());
+        assertNull(carritoController.agregar("agregar-muchas", demasiadas).getHeaders().getFirst(RespuestasIdempotentes.CABECERA_REPETIDA));
+    }
+
+    // --- AUXILIARES ---
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.levels.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.levels.backend.DatosPrueba;
+import com.levels.backend.model.Orden;
+import com.levels.backend.model.Producto;
+import com.levels.backend.repository.OrdenRepository;
+import com.levels.backend.repository.UsuarioRepository;
+import com.levels.backend.repository.VentaDiariaRepository;
+
+/**
+ * Pruebas de los acumulados de ventas: el checkout los mantiene al día (sin SUM sobre
+ * 'ordenes'), un refresco concurrente no cuenta ninguna orden dos veces y la conciliación
+ * detecta y corrige las diferencias.
+ */
+@SpringBootTest
+@DirtiesContext
+class VentasAcumuladasTest {
+
+    @Autowired
+    private VentasAcumuladas ventasAcumuladas;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private VentaDiariaRepository ventaDiariaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void elCheckoutSumaALosAcumuladosSoloSiSeConfirma() {
+        Producto mouse = datos.crearProducto("Mouse Logitech G502", 49_990.0, 10);
+        Map<String, Object> antes = ventasAcumuladas.totales();
+
+        comprar(datos.crearCliente("nora").getId(), mouse, 2, "Valparaíso");
+        comprar(datos.crearCliente("oscar").getId(), mouse, 1, "Magallanes");
+        // Carrito vacío: la compra se revierte y no suma nada
+        Long sinCarrito = datos.crearCliente("pia").getId();
+        assertThrows(RuntimeException.class, () -> ordenService.generarOrden(sinCarrito, "Calle 1", "Magallanes", "Punta Arenas"));
+
+        Map<String, Object> despues = ventasAcumuladas.totales();
+        assertEquals(2L, (long) despues.get("cantidadOrdenes") - (long) antes.get("cantidadOrdenes"));
+        assertEquals(3 * 49_990.0, (double) despues.get("totalVentas") - (double) antes.get("totalVentas"), 0.001);
+
+        // Tras releer las tablas, los totales no cambian (lo sumado en memoria ya estaba en la BD)
+        ventasAcumuladas.refrescar();
+        assertEquals(despues, ventasAcumuladas.totales());
+
+        Map<String, Object> magallanes = ventasAcumuladas.porRegion().stream()
+                .filter(r -> "Magallanes".equals(r.get("region"))).findFirst().orElseThrow();
+        assertEquals(1L, magallanes.get("cantidadOrdenes"));
+        assertEquals(49_990.0, magallanes.get("totalVentas"));
+    }
+
+    @Test
+    void unRefrescoEsperaALaOrdenQueSeEstaConfirmando() throws Exception {
+        ventasAcumuladas.refrescar();
+        long antes = (long) ventasAcumuladas.totales().get("cantidadOrdenes");
+
+        // Un checkout ya sumó en las tablas y aún no hace commit
+        CountDownLatch registrada = new CountDownLatch(1);
+        CountDownLatch confirmar = new CountDownLatch(1);
+        CompletableFuture<Void> checkout = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(tx -> {
+            ventasAcumuladas.registrar(ordenSinGuardar(10_000.0));
+            registrada.countDown();
+            esperar(confirmar);
+        }));
+        assertTrue(registrada.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> refresco = CompletableFuture.runAsync(ventasAcumuladas::refrescar);
+        assertThrows(TimeoutException.class, () -> refresco.get(300, TimeUnit.MILLISECONDS));
+        assertFalse(refresco.isDone()); // No lee mientras la orden está a medio confirmar
+
+        confirmar.countDown();
+        checkout.get(10, TimeUnit.SECONDS);
+        refresco.get(10, TimeUnit.SECONDS);
+
+        // La orden está en la lectura de las tablas y no se vuelve a sumar encima
+        assertEquals(antes + 1, ventasAcumuladas.totales().get("cantidadOrdenes"));
+        assertEquals(0L, ventasAcumuladas.estadisticas().get("ordenesDesdeUltimoRefresco"));
+    }
+
+    @Test
+    void refrescarMientrasSeConfirmanOrdenesNoCuentaNadaDosVeces() throws Exception {
+        int hilos = 6;
+        int ordenesPorHilo = 40;
+        ventasAcumuladas.refrescar();
+        Map<String, Object> antes = ventasAcumuladas.totales();
+
+        AtomicBoolean terminado = new AtomicBoolean();
+        CompletableFuture<Void> refrescos = CompletableFuture.runAsync(() -> {
+            while (!terminado.get()) {
+                ventasAcumuladas.refrescar();
+            }
+        });
+        List<CompletableFuture<Void>> checkouts = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            checkouts.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < ordenesPorHilo; i++) {
+                    transactionTemplate.executeWithoutResult(tx -> ventasAcumuladas.registrar(ordenSinGuardar(1_000.0)));
+                }
+            }));
+        }
+        CompletableFuture.allOf(checkouts.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+        terminado.set(true);
+        refrescos.get(10, TimeUnit.SECONDS);
+
+        // Sin un refresco final: la memoria por sí sola debe dar el total exacto
+        Map<String, Object> despues = ventasAcumuladas.totales();
+        long ordenes = (long) hilos * ordenesPorHilo;
+        assertEquals(ordenes, (long) despues.get("cantidadOrdenes") - (long) antes.get("cantidadOrdenes"));
+        assertEquals(ordenes * 1_000.0, (double) despues.get("totalVentas") - (double) antes.get("totalVentas"), 0.001);
+        ventasAcumuladas.refrescar();
+        assertEquals(despues, ventasAcumuladas.totales());
+    }
+
+    @Test
+    void laConciliacionInformaYCorrigeLasDiferencias() {
+        ventasAcumuladas.conciliar(); // Punto de partida sin diferencias
+
+        // Diferencias: una orden cargada "por fuera" del checkout y un acumulado alterado a mano
+        LocalDate ayer = LocalDate.now().minusDays(1);
+        crearOrdenDirecta(datos.crearCliente("raul").getId(), ayer, 15_000.0, "Biobío");
+        ventaDiariaRepository.sumar(LocalDate.now(), 5, 123_456);
+
+        Map<String, Object> informe = ventasAcumuladas.conciliar();
+        assertEquals(2L, informe.get("diasCorregidos")); // Ayer faltaba, hoy sobraba
+        assertEquals(1L, informe.get("regionesCorregidas"));
+        List<?> diferencias = (List<?>) informe.get("diferencias");
+        assertEquals(3, diferencias.size());
+
+        // Ya corregidos: coinciden con la tabla de órdenes y una nueva conciliación no encuentra nada
+        Map<String, Object> totales = ventasAcumuladas.totales();
+        assertEquals(ordenRepository.count(), totales.get("cantidadOrdenes"));
+        assertEquals(ordenRepository.sumarVentasTotales(), (double) totales.get("totalVentas"), 0.001);
+        assertEquals(15_000.0, ventasAcumuladas.porDia(ayer, ayer).get(0).get("totalVentas"));
+        assertEquals(0L, ventasAcumuladas.conciliar().get("diasCorregidos"));
+    }
+
+    // --- AUXILIARES ---
+
+    private void comprar(Long usuarioId, Producto producto, int cantidad, String region) {
+        carritoService.agregarProducto(usuarioId, producto.getId(), cantidad);
+        ordenService.generarOrden(usuarioId, "Av. Principal 100", region, "Centro");
+    }
+
+    /**
+     * Solo lo que lee VentasAcumuladas.registrar (fecha, total y región); no se guarda en 'ordenes'.
+     */
+    private static Orden ordenSinGuardar(double total) {
+        Orden orden = new Orden();
+        orden.setFechaCreacion(new Date());
+        orden.setTotal(total);
+        orden.setRegion("Los Lagos");
+        return orden;
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("La prueba no liberó el checkout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Orden crearOrdenDirecta(Long usuarioId, LocalDate dia, double total, String region) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuarioRepository.findById(usuarioId).orElseThrow());
+        orden.setFechaCreacion(Date.from(dia.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant()));
+        orden.setTotal(total);
+        orden.setRegion(region);
+        return ordenRepository.save(orden);
+    }
+}